@@ -0,0 +1,41 @@
+package jls;
+
+/**
+ * Thrown by headless code that has found a fatal problem with a batch
+ * run's inputs (a malformed test or parameter file, an unopenable test
+ * file) after printing its diagnostic. It replaces the System.exit
+ * those sites used to call directly, so that one bad job in a
+ * multi-job run ends that job alone rather than the whole JVM; the
+ * single-run path turns it back into the process exit status
+ * (docs/batch-interface.md section 1).
+ */
+public class BatchAbortException extends RuntimeException {
+
+	/** Serialization version, required of every Exception subclass. */
+	private static final long serialVersionUID = 1L;
+
+	/** The exit status the run ends with. */
+	private final int status;
+
+	/**
+	 * Creates the exception for a run that must end with the given status.
+	 *
+	 * @param status The exit status (1 for a runtime failure).
+	 */
+	public BatchAbortException(int status) {
+
+		super("batch run aborted with status " + status);
+		this.status = status;
+	} // end of constructor
+
+	/**
+	 * Get the exit status the run ends with.
+	 *
+	 * @return the exit status.
+	 */
+	public int getStatus() {
+
+		return status;
+	} // end of getStatus method
+
+} // end of BatchAbortException class
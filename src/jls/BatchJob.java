@@ -0,0 +1,266 @@
+package jls;
+
+import java.io.IOException;
+import java.util.Scanner;
+
+import org.jspecify.annotations.Nullable;
+
+import jls.edit.CheckpointJournal;
+import jls.sim.BatchSimulator;
+import jls.sim.DelayModel;
+
+/**
+ * One headless batch run: load a circuit, apply an optional parameter
+ * file, simulate it (optionally driven by a test file) and report on
+ * stdout exactly as docs/batch-interface.md specifies. The single-run
+ * batch mode of JLSStart and every job of a multi-job run (BatchJobs)
+ * go through this one sequence, so a job's report cannot drift from
+ * what a separate {@code jls -b} process would have printed.
+ *
+ * Nothing here calls System.exit: each failure prints its diagnostic
+ * and throws {@link BatchAbortException} with the exit status, and the
+ * caller decides whether that ends the process or just the job.
+ *
+ * @param circuitFile The circuit (.jls or .jls~) file.
+ * @param testFile The test-vector file (-t), or null for none.
+ * @param paramFile The parameter file (-s), or null for none.
+ * @param timeLimit The simulation time limit (-d), positive.
+ * @param delayModel The element delay model (-delay).
+ * @param vcdFile The VCD output file (-vcd), or null for none.
+ * @param maxFail The failed test-file expectations that stop the run
+ *        early (-maxfail), positive.
+ */
+public record BatchJob(String circuitFile, @Nullable String testFile,
+		@Nullable String paramFile, long timeLimit, DelayModel delayModel,
+		@Nullable String vcdFile, int maxFail) {
+
+	/**
+	 * The exit status of a run that completed but failed or never
+	 * reached one of its test file's expectations.
+	 */
+	public static final int EXPECTATIONS_FAILED = 3;
+
+	/** The default -maxfail: stop at the first failed expectation. */
+	public static final int DEFAULT_MAX_FAIL = 1;
+
+	/**
+	 * Create a job that stops at its first failed expectation.
+	 *
+	 * @param circuitFile The circuit (.jls or .jls~) file.
+	 * @param testFile The test-vector file (-t), or null for none.
+	 * @param paramFile The parameter file (-s), or null for none.
+	 * @param timeLimit The simulation time limit (-d), positive.
+	 * @param delayModel The element delay model (-delay).
+	 * @param vcdFile The VCD output file (-vcd), or null for none.
+	 */
+	public BatchJob(String circuitFile, @Nullable String testFile,
+			@Nullable String paramFile, long timeLimit,
+			DelayModel delayModel, @Nullable String vcdFile) {
+
+		this(circuitFile, testFile, paramFile, timeLimit, delayModel,
+				vcdFile, DEFAULT_MAX_FAIL);
+	} // end of constructor
+
+	/**
+	 * Run the whole job: load, simulate and report, then write the VCD
+	 * file if one was requested.
+	 *
+	 * @return the exit status the run ends with (0 success, 1 failure,
+	 *         {@link #EXPECTATIONS_FAILED} if an expectation failed).
+	 *
+	 * @jls.testedby jls.BatchJobsTest#jobsReportExactlyWhatSingleRunsPrint()
+	 * @jls.testedby jls.BatchJobsTest#aFailingJobEndsOnlyItself()
+	 */
+	public int run() {
+
+		try {
+			return run(load());
+		} catch (BatchAbortException e) {
+			return e.getStatus();
+		}
+	} // end of run method
+
+	/**
+	 * Run the job on a circuit that is already loaded (with the
+	 * parameter file applied): simulate and report, then write the VCD
+	 * file if one was requested. Lets a long-running server reuse a
+	 * circuit it elaborated for an earlier, identical request.
+	 *
+	 * @param circ The circuit, as {@link #load()} returns it.
+	 *
+	 * @return the exit status the run ends with (0 success, 1 failure,
+	 *         {@link #EXPECTATIONS_FAILED} if an expectation failed).
+	 *
+	 * @jls.testedby jls.BatchServerTest#aRepeatedRequestReusesTheWarmCircuit()
+	 * @jls.testedby jls.sim.ExpectationTest#aFailedExpectationHasItsOwnExitStatus()
+	 */
+	public int run(Circuit circ) {
+
+		try {
+			BatchSimulator sim = simulate(circ);
+			writeVcd(sim);
+			writeMemLogs(sim);
+			return sim.expectationsPassed() ? 0 : EXPECTATIONS_FAILED;
+		} catch (BatchAbortException e) {
+			return e.getStatus();
+		}
+	} // end of run method
+
+	/**
+	 * Load and assemble the circuit, then apply the parameter file if
+	 * there is one.
+	 *
+	 * @return the fully loaded circuit.
+	 *
+	 * @throws BatchAbortException if the file cannot be opened, is not a
+	 *         valid circuit, or the parameter file is malformed.
+	 *
+	 * @jls.testedby jls.edit.CheckpointJournalTest#aBatchRunReplaysTheJournal()
+	 */
+	public Circuit load() {
+
+		String name;
+		if (circuitFile.endsWith(".jls~")) {
+			name = circuitFile.replaceAll("\\.jls~$","");
+		}
+		else {
+			name = circuitFile.replaceAll("\\.jls$","");
+		}
+		String cname = Util.isValidFileName(name);
+		if (cname == null) {
+			System.err.println("jls: error: " + circuitFile
+					+ " is not a valid circuit file name");
+			throw new BatchAbortException(1);
+		}
+
+		synchronized (Circuit.LOAD_LOCK) {
+
+			// open file and create scanner
+			Scanner input = FileAbstractor.openCircuit(circuitFile);
+			if (input == null) {
+				System.err.println("jls: error: can't open " + circuitFile
+						+ ": " + JLSInfo.loadError);
+				throw new BatchAbortException(1);
+			}
+
+			// read circuit from file
+			Circuit circ = new Circuit(cname);
+			boolean loadOK = circ.load(input);
+			if (loadOK && input.hasNext()) {
+				// file shouldn't have anything after ENDCIRCUIT; without
+				// a message the failure would be reported blank (#58)
+				loadOK = false;
+				JLSInfo.setLoadError(LoadError.of(
+						LoadError.Category.MALFORMED,
+						"there is extra content after the ENDCIRCUIT trailer",
+						"The file may contain more than one circuit or "
+								+ "trailing garbage; re-save it from JLS."));
+			}
+			input.close();
+			if (!loadOK) {
+				System.err.println("jls: error: " + circuitFile
+						+ " is not a valid circuit file: " + JLSInfo.loadError);
+				throw new BatchAbortException(1);
+			}
+
+			// finish up load
+			boolean finished;
+			try {
+				finished = circ.finishLoad(null);
+			} catch (Exception e) {
+				e.printStackTrace();
+				finished = false;
+			}
+			if (!finished) {
+				System.err.println("jls: error: " + circuitFile
+						+ " is not a valid circuit file: " + JLSInfo.loadError);
+				throw new BatchAbortException(1);
+			}
+
+			// a checkpoint's journal replays the edits made after it
+			if (circuitFile.endsWith(".jls~"))
+				CheckpointJournal.replay(circ, circuitFile);
+
+			// process parameter file
+			if (paramFile != null)
+				JLSStart.processParamFile(paramFile,circ);
+			return circ;
+		}
+	} // end of load method
+
+	/**
+	 * Simulate a loaded circuit and print the outcome line, the watched
+	 * elements and the expectation report on stdout.
+	 *
+	 * @param circ The circuit, as returned by {@link #load()}.
+	 *
+	 * @return the simulator, holding the run's traces.
+	 *
+	 * @throws BatchAbortException if the test file is unopenable or
+	 *         malformed.
+	 */
+	public BatchSimulator simulate(Circuit circ) {
+
+		// set up simulator
+		BatchSimulator batchSim = new BatchSimulator();
+		batchSim.setCircuit(circ);
+		batchSim.setTimeLimit(timeLimit);
+		batchSim.setDelayModel(delayModel);
+		batchSim.setMaxMismatches(maxFail);
+		batchSim.setTestFile(testFile);
+		batchSim.addTestGen();
+		// enable trace accumulation for VCD export before the run
+		// (issue #72)
+		batchSim.setVcdFile(vcdFile);
+
+		// run simulator
+		batchSim.runSim();
+
+		// display results
+		batchSim.displayOutcome();
+		JLSStart.displayResults(circ,"");
+		batchSim.displayExpectations();
+		return batchSim;
+	} // end of simulate method
+
+	/**
+	 * Write the VCD waveform file, if one was requested (issue #72).
+	 *
+	 * @param sim The simulator returned by {@link #simulate(Circuit)}.
+	 *
+	 * @throws BatchAbortException if the file cannot be written.
+	 */
+	public void writeVcd(BatchSimulator sim) {
+
+		if (vcdFile == null) {
+			return;
+		}
+		try {
+			sim.writeVcd();
+		} catch (IOException e) {
+			System.err.println("jls: error: can't write VCD file "
+					+ vcdFile + ": " + e.getMessage());
+			throw new BatchAbortException(1);
+		}
+	} // end of writeVcd method
+
+	/**
+	 * Report a failure to write the -memlog access logs of a finished
+	 * run.
+	 *
+	 * @param sim The simulator that ran.
+	 *
+	 * @throws BatchAbortException if a log cannot be written.
+	 */
+	public void writeMemLogs(BatchSimulator sim) {
+
+		try {
+			sim.writeMemLogs();
+		} catch (IOException e) {
+			System.err.println("jls: error: can't write memory access log in "
+					+ JLSInfo.memLogDir + ": " + e.getMessage());
+			throw new BatchAbortException(1);
+		}
+	} // end of writeMemLogs method
+
+} // end of BatchJob record
@@ -0,0 +1,675 @@
+package jls;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.jspecify.annotations.Nullable;
+
+import jls.elem.Element;
+import jls.elem.WireEnd;
+import jls.sim.DelayModel;
+
+/**
+ * Multi-job batch mode ({@code jls -jobs manifest}): run every job a
+ * manifest lists on a pool of worker threads inside one JVM, so a
+ * grading script pays for JVM startup, class loading and JIT warmup
+ * once instead of once per submission (docs/batch-interface.md
+ * section 7).
+ *
+ * Each job is an ordinary {@link BatchJob}, and its stdout and stderr
+ * are captured exactly as a separate {@code jls -b} process would have
+ * printed them: while jobs run, System.out and System.err are routed
+ * per thread, so the report lines, TellUser warnings and test-file
+ * diagnostics every element already prints all land in the job that
+ * caused them. The job's stdout goes to its output file, its stderr to
+ * the output file name plus {@code .err}, and its exit status to this
+ * process's stdout as one {@code status<TAB>output} line per job, in
+ * manifest order.
+ *
+ * A sweep ({@code jls -sweep list circuit}, section 7.1) is the same
+ * with one circuit for every job: it is loaded and elaborated once, and
+ * each job simulates a structural copy of it, so a grader running one
+ * design against hundreds of test files pays for loading it once.
+ */
+public final class BatchJobs {
+
+	/**
+	 * One manifest line: the job and where its report goes.
+	 *
+	 * @param job The batch run.
+	 * @param output The file the job's stdout is written to.
+	 */
+	public record Entry(BatchJob job, Path output) {
+	} // end of Entry record
+
+	/** The column placeholder for "none" or "the default". */
+	private static final String NONE = "-";
+
+	/**
+	 * Private constructor to keep this class from being instantiated.
+	 */
+	private BatchJobs() {}
+
+	/**
+	 * Parse a manifest. Each line that is neither blank nor a
+	 * {@code #} comment is one job of five tab-separated columns:
+	 * circuit file, test file, parameter file, time limit and output
+	 * file. A {@code -} in the test or parameter file column means none,
+	 * in the time limit column the default limit.
+	 *
+	 * @param lines The manifest lines.
+	 * @param defaultLimit The time limit for jobs that give none.
+	 * @param model The delay model every job uses.
+	 * @param maxFail The failed expectations that stop each job.
+	 *
+	 * @return the jobs, in manifest order.
+	 *
+	 * @throws IllegalArgumentException naming the first malformed line.
+	 *
+	 * @jls.testedby jls.BatchJobsTest#malformedManifestLinesAreRejectedByNumber()
+	 */
+	public static List<Entry> parse(List<String> lines, long defaultLimit,
+			DelayModel model, int maxFail) {
+
+		return parse(lines, null, defaultLimit, model, maxFail);
+	} // end of parse method
+
+	/**
+	 * Parse a sweep list: a manifest without the circuit column, every
+	 * job running the one given circuit. Each line that is neither blank
+	 * nor a {@code #} comment has four tab-separated columns: test file,
+	 * parameter file, time limit and output file.
+	 *
+	 * @param circuitFile The circuit every job runs.
+	 * @param lines The sweep list lines.
+	 * @param defaultLimit The time limit for jobs that give none.
+	 * @param model The delay model every job uses.
+	 * @param maxFail The failed expectations that stop each job.
+	 *
+	 * @return the jobs, in list order.
+	 *
+	 * @throws IllegalArgumentException naming the first malformed line.
+	 *
+	 * @jls.testedby jls.BatchJobsTest#malformedManifestLinesAreRejectedByNumber()
+	 */
+	public static List<Entry> parseSweep(String circuitFile,
+			List<String> lines, long defaultLimit, DelayModel model,
+			int maxFail) {
+
+		return parse(lines, circuitFile, defaultLimit, model, maxFail);
+	} // end of parseSweep method
+
+	/**
+	 * Parse a manifest or, given the circuit, a sweep list.
+	 *
+	 * @param lines The lines.
+	 * @param circuitFile The circuit of every job, or null if the first
+	 *        column names each job's circuit.
+	 * @param defaultLimit The time limit for jobs that give none.
+	 * @param model The delay model every job uses.
+	 * @param maxFail The failed expectations that stop each job.
+	 *
+	 * @return the jobs, in order.
+	 *
+	 * @throws IllegalArgumentException naming the first malformed line.
+	 */
+	private static List<Entry> parse(List<String> lines,
+			@Nullable String circuitFile, long defaultLimit,
+			DelayModel model, int maxFail) {
+
+		List<Entry> entries = new ArrayList<Entry>();
+		for (int i = 0; i < lines.size(); i += 1) {
+			String line = lines.get(i);
+			if (line.isBlank() || line.stripLeading().startsWith("#")) {
+				continue;
+			}
+			String where = "line " + (i + 1) + ": ";
+			String[] cols = line.split("\t", -1);
+			if (circuitFile != null) {
+				if (cols.length != 4) {
+					throw new IllegalArgumentException(where + "expected 4"
+							+ " tab-separated columns (test file, parameter"
+							+ " file, time limit, output), got "
+							+ cols.length);
+				}
+				String[] all = new String[5];
+				all[0] = circuitFile;
+				System.arraycopy(cols, 0, all, 1, 4);
+				cols = all;
+			}
+			else if (cols.length != 5) {
+				throw new IllegalArgumentException(where + "expected 5"
+						+ " tab-separated columns (circuit, test file,"
+						+ " parameter file, time limit, output), got "
+						+ cols.length);
+			}
+			for (int c = 0; c < cols.length; c += 1) {
+				cols[c] = cols[c].strip();
+			}
+			if (cols[0].isEmpty() || cols[0].equals(NONE)) {
+				throw new IllegalArgumentException(where
+						+ "a job requires a circuit file");
+			}
+			if (cols[4].isEmpty() || cols[4].equals(NONE)) {
+				throw new IllegalArgumentException(where
+						+ "a job requires an output file");
+			}
+			long limit = defaultLimit;
+			if (!cols[3].equals(NONE)) {
+				try {
+					limit = Long.parseLong(cols[3]);
+				} catch (NumberFormatException ex) {
+					limit = 0;
+				}
+				if (limit <= 0) {
+					throw new IllegalArgumentException(where + "time limit"
+							+ " must be a positive integer or -, got "
+							+ cols[3]);
+				}
+			}
+			BatchJob job = new BatchJob(cols[0], orNull(cols[1]),
+					orNull(cols[2]), limit, model, null, maxFail);
+			entries.add(new Entry(job, Path.of(cols[4])));
+		}
+		return List.copyOf(entries);
+	} // end of parse method
+
+	/**
+	 * A manifest column's value, or null for the placeholder.
+	 *
+	 * @param column The stripped column text.
+	 *
+	 * @return the column, or null if it is empty or {@code -}.
+	 */
+	private static @Nullable String orNull(String column) {
+
+		return column.isEmpty() || column.equals(NONE) ? null : column;
+	} // end of orNull method
+
+	/**
+	 * Run every job in a manifest and report their exit statuses.
+	 *
+	 * @param manifest The manifest file name.
+	 * @param threads The most jobs to run at once, or 0 for one per
+	 *        available processor.
+	 * @param defaultLimit The time limit for jobs that give none.
+	 * @param model The delay model every job uses.
+	 * @param maxFail The failed expectations that stop each job.
+	 * @param cache The result cache jobs go through, or null for none.
+	 *
+	 * @return 0 if every job succeeded, otherwise 1.
+	 *
+	 * @jls.testedby jls.BatchJobsTest#jobsReportExactlyWhatSingleRunsPrint()
+	 * @jls.testedby jls.BatchJobsTest#aFailingJobEndsOnlyItself()
+	 */
+	public static int run(String manifest, int threads, long defaultLimit,
+			DelayModel model, int maxFail, @Nullable ResultCache cache) {
+
+		List<Entry> entries;
+		try {
+			entries = parse(Files.readAllLines(Path.of(manifest),
+					StandardCharsets.UTF_8), defaultLimit, model, maxFail);
+		} catch (IOException e) {
+			System.err.println("jls: error: can't read job manifest "
+					+ manifest + ": " + e.getMessage());
+			return 1;
+		} catch (IllegalArgumentException e) {
+			System.err.println("jls: error: " + manifest + ": "
+					+ e.getMessage());
+			return 1;
+		}
+		if (cache != null) {
+			return runAll(entries, threads, cache::run);
+		}
+		return runAll(entries, threads, BatchJob::run);
+	} // end of run method
+
+	/**
+	 * Sweep one circuit over every test and parameter file in a list
+	 * ({@code jls -sweep list circuit}) and report the jobs' exit
+	 * statuses as {@link #run} does. The circuit is loaded and
+	 * elaborated once; each job simulates its own structural copy of
+	 * it, so the per-job cost is the copy and the simulation rather
+	 * than reading, parsing and assembling the file again.
+	 *
+	 * @param circuitFile The circuit every job runs.
+	 * @param list The sweep list file name.
+	 * @param threads The most jobs to run at once, or 0 for one per
+	 *        available processor.
+	 * @param defaultLimit The time limit for jobs that give none.
+	 * @param model The delay model every job uses.
+	 * @param maxFail The failed expectations that stop each job.
+	 * @param cache The result cache jobs go through, or null for none.
+	 *
+	 * @return 0 if every job succeeded, otherwise 1.
+	 *
+	 * @jls.testedby jls.BatchJobsTest#sweepJobsReportExactlyWhatSingleRunsPrint()
+	 */
+	public static int runSweep(String circuitFile, String list, int threads,
+			long defaultLimit, DelayModel model, int maxFail,
+			@Nullable ResultCache cache) {
+
+		List<Entry> entries;
+		try {
+			entries = parseSweep(circuitFile, Files.readAllLines(
+					Path.of(list), StandardCharsets.UTF_8), defaultLimit,
+					model, maxFail);
+		} catch (IOException e) {
+			System.err.println("jls: error: can't read sweep list "
+					+ list + ": " + e.getMessage());
+			return 1;
+		} catch (IllegalArgumentException e) {
+			System.err.println("jls: error: " + list + ": "
+					+ e.getMessage());
+			return 1;
+		}
+
+		// a circuit that does not load fails the whole sweep, once,
+		// with the diagnostic a single run would print
+		Circuit template;
+		try {
+			template = new BatchJob(circuitFile, null, null, defaultLimit,
+					model, null).load();
+		} catch (BatchAbortException e) {
+			return e.getStatus();
+		}
+		return runAll(entries, threads, job -> {
+			Circuit circ = copyOf(template);
+			String paramFile = job.paramFile();
+			if (paramFile != null) {
+				try {
+					JLSStart.processParamFile(paramFile, circ);
+				} catch (BatchAbortException e) {
+					return e.getStatus();
+				}
+			}
+			return cache == null ? job.run(circ) : cache.run(job, circ);
+		});
+	} // end of runSweep method
+
+	/**
+	 * A structural copy of a loaded circuit, subcircuits included: the
+	 * same elements with the same attributes and wiring, as the
+	 * subcircuit import of the editor makes, and with the same stable
+	 * ids, so the simulator seeds the copy in the original's order.
+	 * Simulation state is not copied; every run starts by initializing
+	 * it.
+	 *
+	 * @param template The loaded circuit. Copying records each copy in
+	 *        the originals, so calls on one template are serialized on
+	 *        it.
+	 *
+	 * @return the copy.
+	 */
+	static Circuit copyOf(Circuit template) {
+
+		synchronized (template) {
+			Set<Element> elements = new HashSet<Element>();
+			for (Element el : template.getElements()) {
+				if (el instanceof WireEnd end && end.isAttached()) {
+					continue;
+				}
+				elements.add(el);
+			}
+			Circuit copy = new Circuit(template.getName());
+			Map<Element,Element> copies = new HashMap<Element,Element>();
+			Util.copy(elements, copy, copies);
+			for (Map.Entry<Element,Element> pair : copies.entrySet()) {
+				pair.getValue().adoptStableId(pair.getKey());
+			}
+			Util.partition(copy);
+			for (Element el : copy.getElements()) {
+				el.setCircuit(copy);
+			}
+			return copy;
+		}
+	} // end of copyOf method
+
+	/**
+	 * Run jobs on a thread pool with their output captured and print
+	 * one {@code status<TAB>output} line per job, in list order.
+	 *
+	 * @param entries The jobs.
+	 * @param threads The most jobs to run at once, or 0 for one per
+	 *        available processor.
+	 * @param runner Runs one job on the calling thread.
+	 *
+	 * @return 0 if every job succeeded, otherwise 1.
+	 */
+	private static int runAll(List<Entry> entries, int threads,
+			Runner runner) {
+
+		int poolSize = threads > 0 ? threads
+				: Runtime.getRuntime().availableProcessors();
+		ExecutorService pool = Executors.newFixedThreadPool(
+				Math.max(1, Math.min(poolSize, entries.size())));
+		PrintStream console = System.err;
+		PrintStream stdout = System.out;
+		int worst = 0;
+		try (Console captured = Console.install()) {
+			List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+			for (Entry entry : entries) {
+				results.add(pool.submit(() -> runOne(entry, runner,
+						captured, console)));
+			}
+
+			// report in list order as the jobs finish
+			for (int i = 0; i < entries.size(); i += 1) {
+				int status;
+				try {
+					status = results.get(i).get();
+				} catch (ExecutionException e) {
+					console.println("jls: error: job "
+							+ entries.get(i).output() + " failed: "
+							+ e.getCause());
+					status = 1;
+				}
+				stdout.println(status + "\t" + entries.get(i).output());
+				if (status != 0) {
+					worst = 1;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			console.println("jls: error: interrupted while running jobs");
+			worst = 1;
+		} finally {
+			pool.shutdownNow();
+		}
+		stdout.flush();
+		return worst;
+	} // end of runAll method
+
+	/**
+	 * Runs one job of a list: loading its circuit, or copying the
+	 * sweep's.
+	 */
+	@FunctionalInterface
+	private interface Runner {
+
+		/**
+		 * Run the job.
+		 *
+		 * @param job The job.
+		 *
+		 * @return its exit status.
+		 */
+		int run(BatchJob job);
+
+	} // end of Runner interface
+
+	/**
+	 * Run one job with this thread's output captured, then write the
+	 * captured streams to the job's files.
+	 *
+	 * @param entry The job.
+	 * @param runner Runs the job.
+	 * @param captured The installed per-thread console.
+	 * @param console The real stderr, for failures writing the files.
+	 *
+	 * @return the job's exit status.
+	 */
+	private static int runOne(Entry entry, Runner runner, Console captured,
+			PrintStream console) {
+
+		Console.Output result = captured.run(() -> runner.run(entry.job()));
+		int status = result.status();
+		Path output = entry.output();
+		Path errors = output.resolveSibling(output.getFileName() + ".err");
+		try {
+			Files.write(output, result.stdout());
+			Files.write(errors, result.stderr());
+		} catch (IOException e) {
+			console.println("jls: error: can't write " + output + ": "
+					+ e.getMessage());
+			status = 1;
+		}
+		return status;
+	} // end of runOne method
+
+	/**
+	 * A per-thread System.out and System.err. While one is installed,
+	 * {@link #run(Job)} gives the calling thread a private stdout and
+	 * stderr for the length of one job, so the report lines, TellUser
+	 * warnings and test-file diagnostics every element already prints
+	 * land in the job that caused them, whatever other jobs run at the
+	 * same time. Threads outside run keep writing to the real streams.
+	 * Runs nest: an inner run captures only what it prints, and the
+	 * outer run's capture resumes when it ends. Closing it puts the real
+	 * streams back.
+	 */
+	static final class Console implements AutoCloseable {
+
+		/** The console currently installed, or null if none is. */
+		private static @Nullable Console installed = null;
+
+		/**
+		 * A job to run with its output captured.
+		 */
+		@FunctionalInterface
+		interface Job {
+
+			/**
+			 * Run the job.
+			 *
+			 * @return its exit status.
+			 */
+			int run();
+
+		} // end of Job interface
+
+		/**
+		 * What one job printed and how it ended.
+		 *
+		 * @param status The exit status.
+		 * @param stdout The bytes it wrote to System.out.
+		 * @param stderr The bytes it wrote to System.err.
+		 */
+		record Output(int status, byte[] stdout, byte[] stderr) {
+		} // end of Output record
+
+		/** The real stdout, restored on close. */
+		private final PrintStream savedOut;
+		/** The real stderr, restored on close. */
+		private final PrintStream savedErr;
+		/** The routing stream behind the installed System.out. */
+		private final RoutedStream out;
+		/** The routing stream behind the installed System.err. */
+		private final RoutedStream err;
+
+		/**
+		 * Create a console routing to the current streams by default.
+		 */
+		private Console() {
+
+			savedOut = System.out;
+			savedErr = System.err;
+			out = new RoutedStream(savedOut);
+			err = new RoutedStream(savedErr);
+		} // end of constructor
+
+		/**
+		 * Install per-thread routing behind System.out and System.err.
+		 *
+		 * @return the installed console, to close when done.
+		 */
+		static Console install() {
+
+			Console console = new Console();
+			System.setOut(new PrintStream(console.out, true,
+					StandardCharsets.UTF_8));
+			System.setErr(new PrintStream(console.err, true,
+					StandardCharsets.UTF_8));
+			synchronized (Console.class) {
+				installed = console;
+			}
+			return console;
+		} // end of install method
+
+		/**
+		 * Run a job on the calling thread with its output captured,
+		 * through the installed console if there is one and otherwise
+		 * through one installed for the length of the job.
+		 *
+		 * @param job The job.
+		 *
+		 * @return its status and captured output.
+		 */
+		static Output capture(Job job) {
+
+			Console current;
+			synchronized (Console.class) {
+				current = installed;
+			}
+			if (current != null) {
+				return current.run(job);
+			}
+			try (Console console = install()) {
+				return console.run(job);
+			}
+		} // end of capture method
+
+		/**
+		 * Run a job on the calling thread with its output captured. An
+		 * exception escaping the job is a bug rather than bad input: a
+		 * single run would end in the default exception handler, while
+		 * here the job alone fails with status 1.
+		 *
+		 * @param job The job.
+		 *
+		 * @return its status and captured output.
+		 */
+		Output run(Job job) {
+
+			ByteArrayOutputStream jobOut = new ByteArrayOutputStream();
+			ByteArrayOutputStream jobErr = new ByteArrayOutputStream();
+			System.out.flush();
+			System.err.flush();
+			OutputStream outerOut = out.route(jobOut);
+			OutputStream outerErr = err.route(jobErr);
+			int status;
+			try {
+				status = job.run();
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+				System.err.println("jls: error: internal error: " + e);
+				status = 1;
+			} finally {
+				System.out.flush();
+				System.err.flush();
+				out.route(outerOut);
+				err.route(outerErr);
+			}
+			return new Output(status, jobOut.toByteArray(),
+					jobErr.toByteArray());
+		} // end of run method
+
+		/**
+		 * Put the real System.out and System.err back.
+		 */
+		@Override
+		public void close() {
+
+			System.setOut(savedOut);
+			System.setErr(savedErr);
+			synchronized (Console.class) {
+				if (installed == this) {
+					installed = null;
+				}
+			}
+		} // end of close method
+
+	} // end of Console class
+
+	/**
+	 * An output stream that writes to a per-thread target while one is
+	 * set and to a fallback stream otherwise. PrintStream writes through
+	 * to its underlying stream on the calling thread while it holds its
+	 * own lock, so installing one of these behind System.out gives each
+	 * worker thread a private stdout.
+	 */
+	private static final class RoutedStream extends OutputStream {
+
+		/** Where threads without a target write. */
+		private final OutputStream fallback;
+		/** The calling thread's target, if it has one. */
+		private final ThreadLocal<@Nullable OutputStream> target =
+				new ThreadLocal<@Nullable OutputStream>();
+
+		/**
+		 * Create a routing stream.
+		 *
+		 * @param fallback Where threads without a target write.
+		 */
+		RoutedStream(OutputStream fallback) {
+
+			this.fallback = fallback;
+		} // end of constructor
+
+		/**
+		 * Send the calling thread's writes to the given stream.
+		 *
+		 * @param stream The target, or null to use the fallback again.
+		 *
+		 * @return the calling thread's previous target, or null if it
+		 *         had none.
+		 */
+		@Nullable OutputStream route(@Nullable OutputStream stream) {
+
+			OutputStream previous = target.get();
+			if (stream == null) {
+				target.remove();
+			}
+			else {
+				target.set(stream);
+			}
+			return previous;
+		} // end of route method
+
+		/**
+		 * The calling thread's destination.
+		 *
+		 * @return the target if one is set, else the fallback.
+		 */
+		private OutputStream current() {
+
+			OutputStream stream = target.get();
+			return stream == null ? fallback : stream;
+		} // end of current method
+
+		@Override
+		public void write(int b) throws IOException {
+
+			current().write(b);
+		} // end of write method
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+
+			current().write(b, off, len);
+		} // end of write method
+
+		@Override
+		public void flush() throws IOException {
+
+			current().flush();
+		} // end of flush method
+
+	} // end of RoutedStream class
+
+} // end of BatchJobs class
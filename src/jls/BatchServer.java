@@ -0,0 +1,652 @@
+package jls;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.jspecify.annotations.Nullable;
+
+import jls.collab.net.RequestListener;
+import jls.elem.Element;
+import jls.elem.Memory;
+import jls.elem.SubCircuit;
+import jls.sim.DelayModel;
+
+/**
+ * The warm simulation server ({@code jls -serve address},
+ * docs/batch-interface.md section 8): a long-lived JVM that answers
+ * batch-run requests on a local socket, so an autograder or editor
+ * plugin submitting many small jobs pays for JVM startup, class loading
+ * and JIT warmup once instead of once per job.
+ *
+ * Each request is an ordinary {@link BatchJob} run on temporary copies
+ * of the files it carries, with its stdout and stderr captured exactly
+ * as a separate {@code jls -b} process would have printed them (the
+ * same per-thread console {@link BatchJobs} uses). The socket itself is
+ * {@link RequestListener}'s business: socket code lives only in
+ * jls.collab.net, and this class sees opaque request and response
+ * payloads.
+ *
+ * Elaborated circuits are kept warm: after a run without a test file,
+ * the loaded circuit is parked in a small LRU pool keyed by the
+ * SHA-256 of the circuit and parameter file bytes, and the next
+ * identical request simulates it again without loading. Every
+ * simulation starts from initSimulation, which resets all element
+ * state, so a reused circuit reports exactly what a fresh load would.
+ * A run with a test file is never pooled, because the test generator
+ * it adds replaces the circuit's signal generators.
+ *
+ * A request's circuit must be self-contained: one whose memory names
+ * an initialization file, in the circuit or through its parameter
+ * file, is refused before it runs. The name would be resolved on the
+ * server's side, so any peer could have the server read any file its
+ * owner can read and drive it out on watched pins.
+ */
+public final class BatchServer {
+
+	/** The first line of every request. */
+	static final String REQUEST_MAGIC = "JLS-JOB 1";
+	/** The first line of every response. */
+	static final String RESPONSE_MAGIC = "JLS-RESULT 1";
+	/** The exit status of a request the server cannot parse. */
+	static final int BAD_REQUEST = 2;
+	/** The most idle circuits kept warm, over all keys. */
+	private static final int WARM_LIMIT = 32;
+	/** The longest header line a request may carry, in bytes. */
+	private static final int MAX_LINE = 256;
+
+	/**
+	 * One parsed request.
+	 *
+	 * @param circuit The circuit file's bytes.
+	 * @param test The test-vector file's bytes, or null for none.
+	 * @param param The parameter file's bytes, or null for none.
+	 * @param limit The time limit, positive.
+	 * @param model The delay model.
+	 * @param maxFail The failed expectations that stop the run.
+	 * @param vcd Whether to return a VCD waveform file.
+	 */
+	record Request(byte[] circuit, byte @Nullable [] test,
+			byte @Nullable [] param, long limit, DelayModel model,
+			int maxFail, boolean vcd) {
+	} // end of Request record
+
+	/** The listener requests arrive on. */
+	private final RequestListener listener;
+	/** The time limit of requests that give none. */
+	private final long defaultLimit;
+	/** The delay model of requests that give none. */
+	private final DelayModel defaultModel;
+	/** The failed expectations that stop requests that give no limit. */
+	private final int defaultMaxFail;
+	/** Idle elaborated circuits by content key, least recently used first. */
+	private final LinkedHashMap<String,Deque<Circuit>> warm =
+			new LinkedHashMap<String,Deque<Circuit>>(16, 0.75f, true);
+	/** The number of circuits in {@link #warm}. */
+	private int warmCount = 0;
+	/** Requests answered with a warm circuit, for the tests. */
+	private final AtomicLong warmHits = new AtomicLong();
+
+	/**
+	 * Create a server on a bound listener.
+	 *
+	 * @param listener The listener, owned (and closed) by the caller.
+	 * @param defaultLimit The time limit of requests that give none.
+	 * @param defaultModel The delay model of requests that give none.
+	 * @param defaultMaxFail The failed expectations that stop requests
+	 *        that give no limit.
+	 */
+	BatchServer(RequestListener listener, long defaultLimit,
+			DelayModel defaultModel, int defaultMaxFail) {
+
+		this.listener = listener;
+		this.defaultLimit = defaultLimit;
+		this.defaultModel = defaultModel;
+		this.defaultMaxFail = defaultMaxFail;
+	} // end of constructor
+
+	/**
+	 * Run the server until the process is killed: bind the address,
+	 * print it on stdout, then answer requests on a pool of worker
+	 * threads. A shutdown hook closes the listener, which removes a Unix
+	 * socket file.
+	 *
+	 * @param address A loopback TCP port number (0 for a system-chosen
+	 *        one), or otherwise the path of a Unix socket to create.
+	 * @param threads The most requests to run at once, or 0 for one per
+	 *        available processor.
+	 * @param defaultLimit The time limit of requests that give none.
+	 * @param defaultModel The delay model of requests that give none.
+	 * @param defaultMaxFail The failed expectations that stop requests
+	 *        that give no limit.
+	 *
+	 * @return 1 if the address cannot be bound or serving fails.
+	 */
+	public static int run(String address, int threads, long defaultLimit,
+			DelayModel defaultModel, int defaultMaxFail) {
+
+		RequestListener listener;
+		try {
+			listener = address.chars().allMatch(Character::isDigit)
+					? RequestListener.bindLoopback(Integer.parseInt(address))
+					: RequestListener.bindUnix(Path.of(address));
+		} catch (IOException | RuntimeException e) {
+			System.err.println("jls: error: can't serve on " + address
+					+ ": " + e.getMessage());
+			return 1;
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				listener.close();
+			} catch (IOException e) {
+				// the process is ending; a stale socket file is all
+				// that can be left behind
+			}
+		}, "jls-serve-shutdown"));
+
+		int poolSize = threads > 0 ? threads
+				: Runtime.getRuntime().availableProcessors();
+		ExecutorService pool = Executors.newFixedThreadPool(poolSize);
+		try (BatchJobs.Console captured = BatchJobs.Console.install()) {
+			BatchServer server = new BatchServer(listener, defaultLimit,
+					defaultModel, defaultMaxFail);
+			PrintStream stdout = System.out;
+			stdout.println("serving " + listener.describe());
+			stdout.flush();
+			server.serve(pool, captured);
+			return 0;
+		} catch (IOException e) {
+			System.err.println("jls: error: serving " + address
+					+ " failed: " + e.getMessage());
+			return 1;
+		} finally {
+			pool.shutdownNow();
+		}
+	} // end of run method
+
+	/**
+	 * Answer requests until the listener is closed.
+	 *
+	 * @param workers Runs one task per connection.
+	 * @param captured The installed per-thread console.
+	 *
+	 * @throws IOException if accepting fails for any reason but close.
+	 */
+	void serve(ExecutorService workers, BatchJobs.Console captured)
+			throws IOException {
+
+		listener.serve(request -> handle(request, captured), workers);
+	} // end of serve method
+
+	/**
+	 * Answer one request payload.
+	 *
+	 * @param payload The request.
+	 * @param captured The installed per-thread console.
+	 *
+	 * @return the response.
+	 *
+	 * @jls.testedby jls.BatchServerTest#aRequestReportsExactlyWhatASingleRunPrints()
+	 * @jls.testedby jls.BatchServerTest#aMalformedRequestIsAnsweredWithStatusTwo()
+	 */
+	byte[] handle(byte[] payload, BatchJobs.Console captured) {
+
+		Request request;
+		try {
+			request = parse(payload, defaultLimit, defaultModel,
+					defaultMaxFail);
+		} catch (IllegalArgumentException e) {
+			byte[] message = ("jls: error: bad request: " + e.getMessage()
+					+ "\n").getBytes(StandardCharsets.UTF_8);
+			return respond(BAD_REQUEST, new byte[0], message, null);
+		}
+
+		Path work = null;
+		try {
+			work = Files.createTempDirectory("jls-serve");
+			Path circuit = Files.write(work.resolve("circuit.jls"),
+					request.circuit());
+			byte[] testBytes = request.test();
+			byte[] paramBytes = request.param();
+			Path test = testBytes == null ? null
+					: Files.write(work.resolve("test.txt"), testBytes);
+			Path param = paramBytes == null ? null
+					: Files.write(work.resolve("param.txt"), paramBytes);
+			Path vcd = request.vcd() ? work.resolve("waves.vcd") : null;
+			BatchJob job = new BatchJob(circuit.toString(),
+					test == null ? null : test.toString(),
+					param == null ? null : param.toString(),
+					request.limit(), request.model(),
+					vcd == null ? null : vcd.toString(), request.maxFail());
+			String key = test == null ? key(request) : null;
+
+			BatchJobs.Console.Output output =
+					captured.run(() -> runJob(job, key));
+			byte[] waves = vcd != null && (output.status() == 0
+					|| output.status() == BatchJob.EXPECTATIONS_FAILED)
+					&& Files.exists(vcd) ? Files.readAllBytes(vcd) : null;
+			return respond(output.status(), output.stdout(),
+					output.stderr(), waves);
+		} catch (IOException e) {
+			byte[] message = ("jls: error: can't stage request files: "
+					+ e.getMessage() + "\n").getBytes(StandardCharsets.UTF_8);
+			return respond(1, new byte[0], message, null);
+		} finally {
+			if (work != null) {
+				deleteTree(work);
+			}
+		}
+	} // end of handle method
+
+	/**
+	 * Run one job, on a warm circuit when one is pooled under the key,
+	 * and pool the circuit afterwards.
+	 *
+	 * @param job The job.
+	 * @param key The circuit's content key, or null if it must not be
+	 *        pooled.
+	 *
+	 * @return the job's exit status.
+	 */
+	private int runJob(BatchJob job, @Nullable String key) {
+
+		Circuit circ = key == null ? null : borrow(key);
+		if (circ != null) {
+			warmHits.incrementAndGet();
+		}
+		else {
+			try {
+				circ = job.load();
+			} catch (BatchAbortException e) {
+				return e.getStatus();
+			}
+			Memory named = namesInitFile(circ);
+			if (named != null) {
+				System.err.println("jls: error: memory " + named.getName()
+						+ " names initialization file \"" + named.getFileName()
+						+ "\"; the server runs only self-contained circuits");
+				return 1;
+			}
+		}
+		int status = job.run(circ);
+		if (key != null) {
+			giveBack(key, circ);
+		}
+		return status;
+	} // end of runJob method
+
+	/**
+	 * Find a memory that is initialized from a file, in a circuit or any
+	 * circuit nested in it.
+	 *
+	 * @param circuit The circuit.
+	 *
+	 * @return the first such memory, or null if there is none.
+	 *
+	 * @jls.testedby jls.BatchServerTest#aMemoryFileIsRefused()
+	 */
+	private static @Nullable Memory namesInitFile(Circuit circuit) {
+
+		for (Element el : circuit.getElements()) {
+			if (el instanceof Memory mem && !mem.getFileName().isEmpty()) {
+				return mem;
+			}
+			if (el instanceof SubCircuit sub) {
+				Memory nested = namesInitFile(sub.getSubCircuit());
+				if (nested != null) {
+					return nested;
+				}
+			}
+		}
+		return null;
+	} // end of namesInitFile method
+
+	/**
+	 * Take an idle circuit out of the pool.
+	 *
+	 * @param key The content key.
+	 *
+	 * @return the circuit, now exclusively the caller's, or null if
+	 *         none is idle.
+	 */
+	private synchronized @Nullable Circuit borrow(String key) {
+
+		Deque<Circuit> idle = warm.get(key);
+		if (idle == null) {
+			return null;
+		}
+		Circuit circ = idle.poll();
+		if (idle.isEmpty()) {
+			warm.remove(key);
+		}
+		if (circ != null) {
+			warmCount -= 1;
+		}
+		return circ;
+	} // end of borrow method
+
+	/**
+	 * Return a circuit to the pool, evicting the least recently used
+	 * circuits past {@link #WARM_LIMIT}.
+	 *
+	 * @param key The content key.
+	 * @param circ The circuit, no longer in use.
+	 */
+	private synchronized void giveBack(String key, Circuit circ) {
+
+		warm.computeIfAbsent(key, k -> new ArrayDeque<Circuit>()).push(circ);
+		warmCount += 1;
+		while (warmCount > WARM_LIMIT) {
+			Map.Entry<String,Deque<Circuit>> eldest =
+					warm.entrySet().iterator().next();
+			eldest.getValue().pollLast();
+			if (eldest.getValue().isEmpty()) {
+				warm.remove(eldest.getKey());
+			}
+			warmCount -= 1;
+		}
+	} // end of giveBack method
+
+	/**
+	 * The number of requests answered with a warm circuit so far.
+	 *
+	 * @return the hit count.
+	 */
+	long warmHits() {
+
+		return warmHits.get();
+	} // end of warmHits method
+
+	/**
+	 * The pool key of a request: the SHA-256 of its circuit and
+	 * parameter file bytes, each length-prefixed so no two distinct
+	 * pairs collide by concatenation.
+	 *
+	 * @param request The request.
+	 *
+	 * @return the key, in lowercase hex.
+	 */
+	private static String key(Request request) {
+
+		MessageDigest sha;
+		try {
+			sha = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			// every JRE ships SHA-256 (it is required by the platform spec)
+			throw new AssertionError(ex);
+		}
+		sha.update(Long.toString(request.circuit().length)
+				.getBytes(StandardCharsets.US_ASCII));
+		sha.update((byte) '\n');
+		sha.update(request.circuit());
+		byte[] param = request.param();
+		sha.update((param == null ? "-" : Long.toString(param.length))
+				.getBytes(StandardCharsets.US_ASCII));
+		sha.update((byte) '\n');
+		if (param != null) {
+			sha.update(param);
+		}
+		StringBuilder hex = new StringBuilder(64);
+		for (byte b : sha.digest()) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+			hex.append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	} // end of key method
+
+	/**
+	 * Parse a request: the line {@value #REQUEST_MAGIC}, then any of the
+	 * header lines {@code limit n}, {@code delay model},
+	 * {@code maxfail n} and {@code vcd},
+	 * then the sections {@code circuit n}, {@code test n} and
+	 * {@code param n}, each followed by exactly n raw bytes, then the
+	 * line {@code end}. Lines end in a single newline.
+	 *
+	 * @param payload The request bytes.
+	 * @param defaultLimit The time limit if the request gives none.
+	 * @param defaultModel The delay model if the request gives none.
+	 * @param defaultMaxFail The failed expectations that stop the run if
+	 *        the request gives no limit.
+	 *
+	 * @return the request.
+	 *
+	 * @throws IllegalArgumentException describing the first problem.
+	 *
+	 * @jls.testedby jls.BatchServerTest#aMalformedRequestIsAnsweredWithStatusTwo()
+	 */
+	static Request parse(byte[] payload, long defaultLimit,
+			DelayModel defaultModel, int defaultMaxFail) {
+
+		int[] at = { 0 };
+		if (!line(payload, at).equals(REQUEST_MAGIC)) {
+			throw new IllegalArgumentException("expected " + REQUEST_MAGIC);
+		}
+		long limit = defaultLimit;
+		DelayModel model = defaultModel;
+		int maxFail = defaultMaxFail;
+		boolean vcd = false;
+		byte[] circuit = null;
+		byte[] test = null;
+		byte[] param = null;
+		while (true) {
+			String line = line(payload, at);
+			if (line.equals("end")) {
+				break;
+			}
+			String[] words = line.split(" ", -1);
+			String value = words.length == 2 ? words[1] : "";
+			switch (words[0]) {
+			case "vcd":
+				if (words.length != 1) {
+					throw new IllegalArgumentException("malformed line: "
+							+ line);
+				}
+				vcd = true;
+				break;
+			case "limit":
+				limit = number(line, value);
+				if (limit <= 0) {
+					throw new IllegalArgumentException("time limit must be"
+							+ " positive, got " + value);
+				}
+				break;
+			case "maxfail":
+				long count = number(line, value);
+				if (count <= 0 || count > Integer.MAX_VALUE) {
+					throw new IllegalArgumentException("maxfail must be a"
+							+ " positive integer, got " + value);
+				}
+				maxFail = (int) count;
+				break;
+			case "delay":
+				DelayModel named = DelayModel.byName(value);
+				if (named == null) {
+					throw new IllegalArgumentException("delay must be"
+							+ " configured, unit or zero, got " + value);
+				}
+				model = named;
+				break;
+			case "circuit":
+				circuit = section(payload, at, line, value, circuit);
+				break;
+			case "test":
+				test = section(payload, at, line, value, test);
+				break;
+			case "param":
+				param = section(payload, at, line, value, param);
+				break;
+			default:
+				throw new IllegalArgumentException("unknown line: " + line);
+			}
+		}
+		if (at[0] != payload.length) {
+			throw new IllegalArgumentException("content after end");
+		}
+		if (circuit == null) {
+			throw new IllegalArgumentException("a request requires a"
+					+ " circuit section");
+		}
+		return new Request(circuit, test, param, limit, model, maxFail,
+				vcd);
+	} // end of parse method
+
+	/**
+	 * Read one newline-terminated ASCII header line.
+	 *
+	 * @param payload The request bytes.
+	 * @param at The read position, advanced past the newline.
+	 *
+	 * @return the line, without its newline.
+	 *
+	 * @throws IllegalArgumentException if the request ends first or the
+	 *         line is over {@link #MAX_LINE} bytes.
+	 */
+	private static String line(byte[] payload, int[] at) {
+
+		int start = at[0];
+		int end = start;
+		while (end < payload.length && payload[end] != '\n') {
+			if (end - start >= MAX_LINE) {
+				throw new IllegalArgumentException("header line over "
+						+ MAX_LINE + " bytes");
+			}
+			end += 1;
+		}
+		if (end == payload.length) {
+			throw new IllegalArgumentException("request ends before end");
+		}
+		at[0] = end + 1;
+		return new String(payload, start, end - start,
+				StandardCharsets.US_ASCII);
+	} // end of line method
+
+	/**
+	 * Read the raw bytes of one section.
+	 *
+	 * @param payload The request bytes.
+	 * @param at The read position, advanced past the section.
+	 * @param line The section's header line, for messages.
+	 * @param value The header's length word.
+	 * @param previous The section's bytes if it already appeared.
+	 *
+	 * @return the section's bytes.
+	 *
+	 * @throws IllegalArgumentException if the section repeats or its
+	 *         length is malformed or past the end of the request.
+	 */
+	private static byte[] section(byte[] payload, int[] at, String line,
+			String value, byte @Nullable [] previous) {
+
+		if (previous != null) {
+			throw new IllegalArgumentException("repeated section: " + line);
+		}
+		long length = number(line, value);
+		if (length < 0 || length > payload.length - at[0]) {
+			throw new IllegalArgumentException("section length " + length
+					+ " runs past the end of the request");
+		}
+		int start = at[0];
+		at[0] = start + (int) length;
+		return Arrays.copyOfRange(payload, start, at[0]);
+	} // end of section method
+
+	/**
+	 * Parse a header line's number.
+	 *
+	 * @param line The whole line, for messages.
+	 * @param value The number's text.
+	 *
+	 * @return the number.
+	 *
+	 * @throws IllegalArgumentException if it is not a decimal integer.
+	 */
+	private static long number(String line, String value) {
+
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException ex) {
+			throw new IllegalArgumentException("malformed line: " + line);
+		}
+	} // end of number method
+
+	/**
+	 * Encode a response: the line {@value #RESPONSE_MAGIC}, then
+	 * {@code status s}, the sections {@code stdout n} and
+	 * {@code stderr n} and, if a waveform was requested and written,
+	 * {@code vcd n}, each followed by its n raw bytes, then {@code end}.
+	 *
+	 * @param status The job's exit status.
+	 * @param stdout What the job printed on stdout.
+	 * @param stderr What the job printed on stderr.
+	 * @param vcd The VCD file's bytes, or null for none.
+	 *
+	 * @return the response bytes.
+	 */
+	static byte[] respond(int status, byte[] stdout, byte[] stderr,
+			byte @Nullable [] vcd) {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(
+				stdout.length + stderr.length + 64);
+		out.writeBytes((RESPONSE_MAGIC + "\nstatus " + status + "\n")
+				.getBytes(StandardCharsets.US_ASCII));
+		writeSection(out, "stdout", stdout);
+		writeSection(out, "stderr", stderr);
+		if (vcd != null) {
+			writeSection(out, "vcd", vcd);
+		}
+		out.writeBytes("end\n".getBytes(StandardCharsets.US_ASCII));
+		return out.toByteArray();
+	} // end of respond method
+
+	/**
+	 * Append one length-prefixed section.
+	 *
+	 * @param out The response being built.
+	 * @param name The section name.
+	 * @param bytes The section's bytes.
+	 */
+	private static void writeSection(ByteArrayOutputStream out, String name,
+			byte[] bytes) {
+
+		out.writeBytes((name + " " + bytes.length + "\n")
+				.getBytes(StandardCharsets.US_ASCII));
+		out.writeBytes(bytes);
+	} // end of writeSection method
+
+	/**
+	 * Delete a request's scratch directory, ignoring failures: a stray
+	 * temporary file must not fail the request it served.
+	 *
+	 * @param dir The directory.
+	 */
+	private static void deleteTree(Path dir) {
+
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> {
+				try {
+					Files.deleteIfExists(file);
+				} catch (IOException e) {
+					// left for the system's temporary-file cleanup
+				}
+			});
+		} catch (IOException e) {
+			// left for the system's temporary-file cleanup
+		}
+	} // end of deleteTree method
+
+} // end of BatchServer class
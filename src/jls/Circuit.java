@@ -46,6 +46,13 @@ public class Circuit {
 	private String dir = ""; // the directory the file is in
 	/** All elements (logic elements, wires and wire ends) in this circuit. */
 	private Set<Element> elements = new HashSet<Element>();
+	/** Bumped whenever an element joins or leaves the circuit. */
+	private volatile int membership = 0;
+	/**
+	 * The elements in stable-id order, with the membership count they
+	 * were sorted at, or null.
+	 */
+	private volatile @Nullable StableOrder stableOrder = null;
 	/** The subcircuit element referring to this circuit, or null if none. */
 	private @Nullable SubCircuit subElement = null; // the element referring to this
 											// circuit
@@ -88,6 +95,18 @@ public class Circuit {
 	/** The current line number, to report errors when reading a circuit file. */
 	private static int lineNumber; // to report errors when reading circuit file
 
+	/**
+	 * Held by every caller of {@link #load} and {@link #loadElement} from
+	 * before it opens the input until it has read
+	 * {@link JLSInfo#loadError}. The loader counts lines in a static and
+	 * reports failures through JLSInfo's static load-error state, so two
+	 * loads on different threads - a background open, a batch job, an
+	 * undo restore - would report each other's errors without it.
+	 * Finishing a load reports through the same state and is held under
+	 * it too. Simulation needs no lock.
+	 */
+	public static final Object LOAD_LOCK = new Object();
+
 	/**
 	 * The newest save-format version this JLS can read (issue #79).
 	 * Headerless legacy files are implicitly version 0; headered files
@@ -320,6 +339,7 @@ public class Circuit {
 	public void clear() {
 
 		elements.clear();
+		membership += 1;
 		namesUsed.clear();
 		starts.clear();
 		highlighted.clear();
@@ -342,6 +362,7 @@ public class Circuit {
 	public void addElement(Element el) {
 
 		elements.add(el);
+		membership += 1;
 		el.setCircuit(this);
 		index.invalidate();
 	} // end of addElement method
@@ -356,6 +377,7 @@ public class Circuit {
 	public void remove(Element el) {
 
 		elements.remove(el);
+		membership += 1;
 		highlighted.remove(el);
 		index.invalidate();
 	} // end of remove method
@@ -470,20 +492,91 @@ public class Circuit {
 	 * printed page sequence (#182) - must iterate this list instead,
 	 * so the output is a pure function of circuit content.
 	 *
-	 * @return a fresh list of every element, sorted by stable id.
+	 * The list is sorted once per change of membership and kept, so
+	 * every nesting level of a run's setup does not sort again; it may
+	 * have been sorted ahead of the run by {@link #prepareStableOrder()}.
+	 *
+	 * @return an unmodifiable list of every element, sorted by stable id.
 	 *
 	 * @jls.testedby jls.PrintPageOrderTest#bookedPagesFollowStableIdOrder()
 	 * @jls.testedby jls.SimulationSeedOrderTest#stableOrderIsSortedByStableId()
 	 * @jls.testedby jls.SimulationSeedOrderTest#initSimIsSeededInStableIdOrder()
+	 * @jls.testedby jls.sim.ElaborationTest#aPreparedOrderIsUsedUntilTheCircuitChanges()
 	 */
-	public java.util.List<Element> getElementsInStableOrder() {
-
-		java.util.List<Element> ordered =
-				new java.util.ArrayList<Element>(elements);
-		ordered.sort(java.util.Comparator.comparing(Element::getStableId));
+	public List<Element> getElementsInStableOrder() {
+
+		int at = membership;
+		StableOrder cached = stableOrder;
+		if (cached != null && cached.membership() == at)
+			return cached.elements();
+		List<Element> ordered = sortStable(new java.util.ArrayList<Element>(elements));
+		stableOrder = new StableOrder(at, ordered);
 		return ordered;
 	} // end of getElementsInStableOrder method
 
+	/**
+	 * Get a task that sorts the elements into stable-id order ahead of
+	 * need. The elements are copied now, on the calling thread; the task
+	 * may run on any thread, and its order is used only if no element
+	 * has joined or left the circuit by then.
+	 *
+	 * @return the task.
+	 *
+	 * @jls.testedby jls.sim.ElaborationTest#aPreparedOrderIsUsedUntilTheCircuitChanges()
+	 */
+	public Runnable prepareStableOrder() {
+
+		final int at = membership;
+		final List<Element> unsorted = new java.util.ArrayList<Element>(elements);
+		return new Runnable() {
+			/**
+			 * Sort the copy and keep it if it is still current.
+			 */
+			@Override
+			public void run() {
+				List<Element> ordered = sortStable(unsorted);
+				if (membership == at)
+					stableOrder = new StableOrder(at, ordered);
+			}
+		};
+	} // end of prepareStableOrder method
+
+	/**
+	 * Say whether the stable-id order is already sorted for the current
+	 * elements.
+	 *
+	 * @return true if {@link #getElementsInStableOrder()} will not sort.
+	 *
+	 * @jls.testedby jls.sim.ElaborationTest#aPreparedOrderIsUsedUntilTheCircuitChanges()
+	 */
+	public boolean hasStableOrder() {
+
+		StableOrder cached = stableOrder;
+		return cached != null && cached.membership() == membership;
+	} // end of hasStableOrder method
+
+	/**
+	 * Sort elements by stable id.
+	 *
+	 * @param ordered The elements, sorted in place.
+	 *
+	 * @return the sorted elements, unmodifiable.
+	 */
+	private static List<Element> sortStable(List<Element> ordered) {
+
+		ordered.sort(java.util.Comparator.comparing(Element::getStableId));
+		return Collections.unmodifiableList(ordered);
+	} // end of sortStable method
+
+	/**
+	 * The elements in stable-id order as of a membership count.
+	 *
+	 * @param membership The membership count they were sorted at.
+	 * @param elements The sorted elements.
+	 */
+	private record StableOrder(int membership, List<Element> elements) {
+	} // end of StableOrder record
+
 	/**
 	 * Mark the spatial index stale after a geometry change the incremental
 	 * paths don't cover (rotate, flip, size change, aborted move). The next
@@ -496,6 +589,18 @@ public class Circuit {
 		index.invalidate();
 	} // end of invalidateIndex method
 
+	/**
+	 * Get the number of changes made to the spatial index so far: every
+	 * insert, remove, move and invalidation counts. Geometry drawn from
+	 * the circuit is current while this stays the same.
+	 *
+	 * @return the count.
+	 */
+	public long getIndexChanges() {
+
+		return index.changes();
+	} // end of getIndexChanges method
+
 	/**
 	 * Keep the spatial index current for elements just moved by a drag,
 	 * including wires whose bounds follow a moved wire end. No-op when a
@@ -621,7 +726,7 @@ public class Circuit {
 	} // end of getHighlighted method
 
 	/**
-	 * Load circuit from file.
+	 * Load circuit from file. The caller holds {@link #LOAD_LOCK}.
 	 *
 	 * @param input
 	 *            A scanner to read with.
@@ -971,6 +1076,7 @@ public class Circuit {
 
 	/**
 	 * Load an element by reading all of its instance variable values.
+	 * The caller holds {@link #LOAD_LOCK}.
 	 *
 	 * @param el
 	 *            An empty object to load.
@@ -1350,6 +1456,7 @@ public class Circuit {
 				elements.add(end);
 				ends.add(end);
 			}
+			membership += 1;
 
 			// partition ends into wire nets
 			while (!ends.isEmpty()) {
@@ -0,0 +1,198 @@
+package jls;
+
+import java.awt.Component;
+import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
+
+import org.jspecify.annotations.Nullable;
+
+import jls.edit.CheckpointJournal;
+
+/**
+ * Opening a circuit file without blocking the editor. The file is
+ * decoded and its text parsed on a background virtual thread, behind a
+ * progress dialog with a Cancel button that appears only if the open
+ * takes a while. The circuit is handed to the event thread when it has
+ * been read; references are still resolved at its first paint, which
+ * needs the editor's text metrics.
+ *
+ * A read holds {@link Circuit#LOAD_LOCK}, as every load does: the load
+ * error and line count the parser reports through are shared.
+ *
+ * A checkpoint ({@code .jls~}) is recovered with the edits its journal
+ * holds.
+ */
+final class CircuitOpen {
+
+	/**
+	 * The outcome of reading a circuit file.
+	 *
+	 * @param circuit The circuit, or null if it could not be read.
+	 * @param error Why not, for the user, or null if it was read (or
+	 *        the reading was cancelled).
+	 */
+	record Result(@Nullable Circuit circuit, @Nullable String error) {
+	} // end of Result record
+
+	/**
+	 * Takes a circuit that has been read. Called on the event thread.
+	 */
+	interface Opened {
+
+		/**
+		 * Use a circuit that has been read.
+		 *
+		 * @param circ The circuit, loaded but not finished.
+		 */
+		void opened(Circuit circ);
+
+	} // end of Opened interface
+
+	/**
+	 * Not instantiable.
+	 */
+	private CircuitOpen() {
+	} // end of constructor
+
+	/**
+	 * Read a circuit file, on any thread.
+	 *
+	 * @param filePath The file.
+	 * @param cname The circuit's name.
+	 * @param dir The directory the circuit is in.
+	 * @param progress Told of the reading, and may cancel it; or null.
+	 *
+	 * @return the circuit, or why it could not be read.
+	 *
+	 * @jls.testedby jls.CircuitOpenTest#progressIsReportedToTheEnd()
+	 * @jls.testedby jls.CircuitOpenTest#aCancelledReadOpensNothing()
+	 * @jls.testedby jls.CircuitOpenTest#aCancelStopsTheInflating()
+	 * @jls.testedby jls.CircuitOpenTest#anUnreadableFileSaysWhy()
+	 * @jls.testedby jls.CircuitOpenTest#aReadWaitsForALoadOnAnotherThread()
+	 */
+	static Result read(String filePath, String cname, String dir,
+			FileAbstractor.@Nullable ReadProgress progress) {
+
+		synchronized (Circuit.LOAD_LOCK) {
+			Scanner input = FileAbstractor.openCircuit(filePath, progress);
+			if (input == null) {
+				return new Result(null,
+						"can't open " + filePath + ": " + JLSInfo.loadError);
+			}
+
+			// create new circuit
+			Circuit circ = new Circuit(cname);
+			circ.setDirectory(dir);
+
+			// read circuit from file
+			boolean loadOK = circ.load(input);
+			if (loadOK && input.hasNext()) {
+				// file shouldn't have anything after ENDCIRCUIT; without
+				// a message the failure would be reported blank (#58)
+				loadOK = false;
+				JLSInfo.setLoadError(LoadError.of(
+						LoadError.Category.MALFORMED,
+						"there is extra content after the ENDCIRCUIT trailer",
+						"The file may contain more than one circuit or "
+								+ "trailing garbage; re-save it from JLS."));
+			}
+			boolean cancelled = input.ioException()
+					instanceof java.io.InterruptedIOException;
+			input.close();
+			if (cancelled)
+				return new Result(null, null);
+			if (!loadOK) {
+				return new Result(null,
+						// the message carries the line number itself (#58)
+						filePath + " is not a valid circuit file: " + JLSInfo.loadError);
+			}
+
+			// a checkpoint's journal replays the edits made after it
+			if (filePath.endsWith(".jls~"))
+				circ = CheckpointJournal.recover(circ, filePath);
+			return new Result(circ, null);
+		}
+	} // end of read method
+
+	/**
+	 * Start reading a circuit file in the background, showing progress
+	 * over a component. Call on the event thread.
+	 *
+	 * @param parent The component the progress dialog and any error
+	 *        are shown over.
+	 * @param filePath The file.
+	 * @param cname The circuit's name.
+	 * @param dir The directory the circuit is in.
+	 * @param opened Takes the circuit if it is read, not cancelled.
+	 *
+	 * @return the background thread.
+	 */
+	static Thread start(final Component parent, final String filePath,
+			final String cname, final String dir, final Opened opened) {
+
+		final ProgressMonitor monitor = new ProgressMonitor(parent,
+				"Opening " + cname, null, 0, 1000);
+		monitor.setMillisToDecideToPopup(200);
+		monitor.setMillisToPopup(500);
+		final AtomicBoolean cancelled = new AtomicBoolean();
+		final AtomicInteger shown = new AtomicInteger(-1);
+		final FileAbstractor.ReadProgress progress =
+				new FileAbstractor.ReadProgress() {
+			/**
+			 * Post the progress to the dialog when it moves a step, and
+			 * pick up a Cancel.
+			 */
+			@Override
+			public boolean read(long done, long total) {
+				final int permille = total <= 0 ? 1000 : (int)(done * 1000 / total);
+				if (shown.getAndSet(permille) != permille) {
+					SwingUtilities.invokeLater(new Runnable() {
+						/**
+						 * Show the step, unless the user cancelled.
+						 */
+						@Override
+						public void run() {
+							if (monitor.isCanceled())
+								cancelled.set(true);
+							else if (permille < 1000)
+								monitor.setProgress(permille);
+						}
+					});
+				}
+				return !cancelled.get();
+			}
+		};
+		return Thread.ofVirtual().name("open " + cname).start(new Runnable() {
+			/**
+			 * Read the file, then hand the outcome to the event thread.
+			 */
+			@Override
+			public void run() {
+				final Result result = read(filePath, cname, dir, progress);
+				SwingUtilities.invokeLater(new Runnable() {
+					/**
+					 * Close the dialog and open the circuit or say why not.
+					 */
+					@Override
+					public void run() {
+						boolean gone = cancelled.get() || monitor.isCanceled();
+						monitor.close();
+						if (gone)
+							return;
+						Circuit circ = result.circuit();
+						String error = result.error();
+						if (circ != null)
+							opened.opened(circ);
+						else if (error != null)
+							TellUser.error(parent, error, "Error");
+					}
+				});
+			}
+		});
+	} // end of start method
+
+} // end of CircuitOpen class
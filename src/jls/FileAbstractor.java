@@ -2,10 +2,13 @@ package jls;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
@@ -13,11 +16,13 @@ import java.nio.file.StandardCopyOption;
 import java.util.Scanner;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
 import org.jspecify.annotations.Nullable;
 import org.tukaani.xz.LZMA2Options;
 import org.tukaani.xz.SeekableFileInputStream;
 import org.tukaani.xz.SeekableXZInputStream;
+import org.tukaani.xz.XZInputStream;
 import org.tukaani.xz.XZOutputStream;
 
 /**
@@ -56,6 +61,29 @@ public final class FileAbstractor {
 		PLAIN_TEXT
 	}
 
+	/**
+	 * Follows, and may cancel, the reading of a circuit file as a Scanner
+	 * consumes it. A compressed file is inflated as the Scanner reads, so
+	 * its progress is of the file's bytes; a plain text file's is of its
+	 * characters.
+	 */
+	public interface ReadProgress {
+
+		/**
+		 * Note how far reading has got. Called on the reading thread.
+		 *
+		 * @param done The bytes of the file, or characters of text, read
+		 *        so far.
+		 * @param total The bytes of the file, or characters of text, in
+		 *        all.
+		 *
+		 * @return false to cancel: the Scanner then sees an I/O error
+		 *         where the rest of the text would be.
+		 */
+		boolean read(long done, long total);
+
+	} // end of ReadProgress interface
+
 	/**
 	 * Upper bound on the circuit text a container may expand to. Circuit
 	 * files are shared between students and instructors by design, so a
@@ -98,6 +126,30 @@ public final class FileAbstractor {
 	 */
 	public static @Nullable Scanner openCircuit(String filePath) {
 
+		return openCircuit(filePath, null);
+	}
+
+	/**
+	 * Open a circuit file for reading, whatever its container format,
+	 * following the reading. With a progress, a compressed container is
+	 * inflated as the Scanner reads it rather than before this returns,
+	 * so a cancel stops the inflating too, and the file stays open until
+	 * the Scanner is closed. Without one, this is
+	 * {@link #openCircuit(String)}.
+	 *
+	 * @param filePath Path to a .jls or .jls~ file.
+	 * @param progress Told of the reading, or null.
+	 *
+	 * @return a Scanner over the circuit text, or null with
+	 *         JLSInfo.loadError describing why every format probe failed.
+	 *
+	 * @jls.testedby jls.CircuitOpenTest#progressIsReportedToTheEnd()
+	 * @jls.testedby jls.CircuitOpenTest#aCancelledReadOpensNothing()
+	 * @jls.testedby jls.CircuitOpenTest#aCancelStopsTheInflating()
+	 */
+	public static @Nullable Scanner openCircuit(String filePath,
+			@Nullable ReadProgress progress) {
+
 		String name = filePath.replaceAll("\\.jls~$", "");
 		name = name.replaceAll("\\.jls$", "");
 		if (Util.isValidFileName(name) == null) {
@@ -122,21 +174,21 @@ public final class FileAbstractor {
 		StringBuilder reasons = new StringBuilder();
 		boolean overLimit = false;
 		try {
-			return readXZ(file);
+			return readXZ(file, progress);
 		}
 		catch (IOException ex) {
 			overLimit |= isOverLimit(ex);
 			reasons.append("not XZ (").append(reason(ex)).append(")");
 		}
 		try {
-			return readZip(file);
+			return readZip(file, progress);
 		}
 		catch (IOException ex) {
 			overLimit |= isOverLimit(ex);
 			reasons.append("; not zip (").append(reason(ex)).append(")");
 		}
 		try {
-			return readText(file);
+			return readText(file, progress);
 		}
 		catch (IOException ex) {
 			overLimit |= isOverLimit(ex);
@@ -251,6 +303,37 @@ public final class FileAbstractor {
 	 */
 	static Scanner readXZ(File file) throws IOException {
 
+		return readXZ(file, null);
+	}
+
+	/**
+	 * Read the file as XZ-compressed circuit text, following the reading.
+	 *
+	 * @param file The file to read.
+	 * @param progress Told of the reading, or null.
+	 * @return a Scanner over the circuit text.
+	 * @throws IOException if the file is not XZ, is empty, or expands
+	 *         past the circuit size limit.
+	 */
+	private static Scanner readXZ(File file, @Nullable ReadProgress progress)
+			throws IOException {
+
+		if (progress != null) {
+			// follow the compressed bytes into the inflater: the Scanner
+			// drives the inflating, so progress and cancel cover it
+			ProgressInputStream raw = new ProgressInputStream(
+					new FileInputStream(file), file.length(), progress);
+			try {
+				XZInputStream xz = new XZInputStream(raw);
+				raw.follow();
+				return scan(new BoundedInputStream(xz));
+			}
+			catch (IOException | RuntimeException ex) {
+				raw.close();
+				throw ex;
+			}
+		}
+
 		// the XZ constructor throws by design for every legacy zip or
 		// plain-text file in the sniffing cascade; the raw stream must
 		// not leak a file descriptor each time (issue #38)
@@ -275,8 +358,7 @@ public final class FileAbstractor {
 		try (BoundedInputStream bounded = new BoundedInputStream(xz)) {
 			contents = bounded.readAllBytes();
 		}
-		return nonEmpty(new Scanner(new ByteArrayInputStream(contents),
-				StandardCharsets.UTF_8));
+		return scan(new ByteArrayInputStream(contents));
 	}
 
 	/**
@@ -294,6 +376,44 @@ public final class FileAbstractor {
 	 */
 	static Scanner readZip(File file) throws IOException {
 
+		return readZip(file, null);
+	}
+
+	/**
+	 * Read the file as a zip archive holding the circuit text, following
+	 * the reading.
+	 *
+	 * @param file The file to read.
+	 * @param progress Told of the reading, or null.
+	 * @return a Scanner over the circuit text.
+	 * @throws IOException if the file is not such an archive, is empty,
+	 *         or expands past the circuit size limit.
+	 */
+	private static Scanner readZip(File file, @Nullable ReadProgress progress)
+			throws IOException {
+
+		if (progress != null) {
+			// as for XZ: follow the compressed bytes into the inflater
+			ProgressInputStream raw = new ProgressInputStream(
+					new FileInputStream(file), file.length(), progress);
+			try {
+				ZipInputStream archive = new ZipInputStream(raw);
+				ZipEntry entry = archive.getNextEntry();
+				while (entry != null && !entry.getName().equals("JLSCircuit")
+						&& !entry.getName().equals("JLSCheckpoint")) {
+					entry = archive.getNextEntry();
+				}
+				if (entry == null)
+					throw new IOException("zip archive has no JLSCircuit entry");
+				raw.follow();
+				return scan(new BoundedInputStream(archive));
+			}
+			catch (IOException | RuntimeException ex) {
+				raw.close();
+				throw ex;
+			}
+		}
+
 		try (ZipFile archive = new ZipFile(file)) {
 			ZipEntry entry = archive.getEntry("JLSCircuit");
 			if (entry == null)
@@ -309,7 +429,7 @@ public final class FileAbstractor {
 						+ (MAX_CIRCUIT_TEXT_BYTES >> 20)
 						+ " MiB circuit size limit");
 			}
-			return nonEmpty(new Scanner(new ByteArrayInputStream(contents), StandardCharsets.UTF_8));
+			return scan(new ByteArrayInputStream(contents));
 		}
 	}
 
@@ -322,6 +442,20 @@ public final class FileAbstractor {
 	 */
 	static Scanner readText(File file) throws IOException {
 
+		return readText(file, null);
+	}
+
+	/**
+	 * Read the file as plain circuit text, following the reading.
+	 *
+	 * @param file The file to read.
+	 * @param progress Told of the reading, or null.
+	 * @return a Scanner over the circuit text.
+	 * @throws IOException if the file cannot be read or is empty.
+	 */
+	private static Scanner readText(File file, @Nullable ReadProgress progress)
+			throws IOException {
+
 		if (file.length() > MAX_CIRCUIT_TEXT_BYTES) {
 			throw new IOException("file exceeds the "
 					+ (MAX_CIRCUIT_TEXT_BYTES >> 20)
@@ -330,16 +464,137 @@ public final class FileAbstractor {
 		// read into memory rather than scanning the file directly, so no
 		// handle stays open behind the returned Scanner (issue #111);
 		// decode strictly, as Scanner(File) did - the text probe is what
-		// rejects binary non-circuit files in the sniffing cascade
+		// rejects binary non-circuit files in the sniffing cascade - and
+		// scan the decoded text rather than decoding it a second time
 		byte[] contents = Files.readAllBytes(file.toPath());
-		String text;
+		CharBuffer text;
 		try {
 			text = StandardCharsets.UTF_8.newDecoder()
-					.decode(java.nio.ByteBuffer.wrap(contents)).toString();
+					.decode(java.nio.ByteBuffer.wrap(contents));
 		} catch (java.nio.charset.CharacterCodingException ex) {
 			throw new IOException("not UTF-8 text");
 		}
-		return nonEmpty(new Scanner(text));
+		if (progress == null)
+			return nonEmpty(new Scanner(text));
+		long total = text.length();
+		return nonEmpty(new Scanner(new Readable() {
+
+			/**
+			 * Read text into the Scanner's buffer and tell the progress.
+			 *
+			 * @param into The Scanner's buffer.
+			 * @return the characters read, or -1 at the end of the text.
+			 * @throws IOException if the progress cancels the reading.
+			 */
+			@Override
+			public int read(CharBuffer into) throws IOException {
+
+				int n = text.read(into);
+				if (!progress.read(total - text.remaining(), total))
+					throw new InterruptedIOException("reading cancelled");
+				return n;
+			}
+		}));
+	}
+
+	/**
+	 * A Scanner over a stream of UTF-8 circuit text.
+	 *
+	 * @param in The stream.
+	 * @return the scanner.
+	 * @throws IOException if the text is empty or cannot be read.
+	 */
+	private static Scanner scan(java.io.InputStream in) throws IOException {
+
+		return nonEmpty(new Scanner(in, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * A stream of a circuit file that tells a progress how much of it has
+	 * been read, and fails the read once the progress cancels it. It is
+	 * silent until {@link #follow} is called, so a format probe that
+	 * reads a header and rejects the file tells nothing.
+	 */
+	private static final class ProgressInputStream extends java.io.FilterInputStream {
+
+		/** The bytes in the whole stream. */
+		private final long total;
+		/** Told of the reading. */
+		private final ReadProgress progress;
+		/** The bytes read so far. */
+		private long done = 0;
+		/** Whether the progress is told yet. */
+		private boolean following = false;
+
+		/**
+		 * Follow the reading of a stream.
+		 *
+		 * @param in The stream.
+		 * @param total The bytes in it.
+		 * @param progress Told of the reading.
+		 */
+		ProgressInputStream(java.io.InputStream in, long total,
+				ReadProgress progress) {
+
+			super(in);
+			this.total = total;
+			this.progress = progress;
+		}
+
+		/**
+		 * Read one byte and tell the progress.
+		 *
+		 * @return the byte read, or -1 at end of stream.
+		 * @throws IOException if reading fails or is cancelled.
+		 */
+		@Override
+		public int read() throws IOException {
+
+			int b = super.read();
+			if (b >= 0)
+				done += 1;
+			tell();
+			return b;
+		}
+
+		/**
+		 * Read into a buffer and tell the progress.
+		 *
+		 * @param b The destination buffer.
+		 * @param off The offset in b to write the first byte at.
+		 * @param len The maximum number of bytes to read.
+		 * @return the number of bytes read, or -1 at end of stream.
+		 * @throws IOException if reading fails or is cancelled.
+		 */
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+
+			int n = super.read(b, off, len);
+			if (n > 0)
+				done += n;
+			tell();
+			return n;
+		}
+
+		/**
+		 * Start telling the progress, once the file is known to be in
+		 * the container being read.
+		 */
+		void follow() {
+
+			following = true;
+		}
+
+		/**
+		 * Tell the progress how far reading has got.
+		 *
+		 * @throws InterruptedIOException if it cancels the reading.
+		 */
+		private void tell() throws InterruptedIOException {
+
+			if (following && !progress.read(done, total))
+				throw new InterruptedIOException("reading cancelled");
+		}
 	}
 
 	/**
@@ -414,16 +669,22 @@ public final class FileAbstractor {
 	 * Guard against a container that decoded but held no circuit text,
 	 * so an empty file is rejected rather than returned as a valid Scanner.
 	 *
+	 * A read cancelled before the first token is returned as it is, for
+	 * the caller to find the cancel in its {@code ioException()}.
+	 *
 	 * @param scanner A Scanner over the decoded container contents.
-	 * @return the same scanner when it has content.
-	 * @throws IOException if the scanner has no tokens (the file is empty);
-	 *         the scanner is closed first.
+	 * @return the same scanner when it has content or was cancelled.
+	 * @throws IOException if the scanner has no tokens (the file is empty,
+	 *         or could not be read); the scanner is closed first.
 	 */
 	private static Scanner nonEmpty(Scanner scanner) throws IOException {
 
 		if (!scanner.hasNext()) {
+			IOException failed = scanner.ioException();
+			if (failed instanceof InterruptedIOException)
+				return scanner;
 			scanner.close();
-			throw new IOException("no content");
+			throw failed != null ? failed : new IOException("no content");
 		}
 		return scanner;
 	}
@@ -83,6 +83,21 @@ public final class JLSInfo {
 	public static boolean batch = false;				// batch mode
 	/** True when a signal trace should be printed. */
 	public static boolean printTrace = false;			// print signal trace
+	/**
+	 * Hierarchical glob patterns (-trace) selecting nets to write to
+	 * the VCD file as well as the watched elements, empty for none.
+	 */
+	public static java.util.List<String> tracePatterns = java.util.List.of();
+	/**
+	 * The file (-vcdmap) mapping the variables of a VCD test file onto
+	 * input pins, or null to map them by name.
+	 */
+	public static @Nullable String vcdMapFile = null;
+	/**
+	 * The directory (-memlog) batch runs write an access log of every
+	 * Memory and RegisterFile to, or null for none.
+	 */
+	public static @Nullable String memLogDir = null;
 	/** True when exporting an image from the command line. */
 	public static boolean imgexport = false;			// export image from command line
 	/** True when exporting HDL from the command line (issue #60). */
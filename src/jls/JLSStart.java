@@ -25,6 +25,7 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -55,6 +56,7 @@ import javax.swing.event.ChangeListener;
 
 import org.jspecify.annotations.Nullable;
 
+import jls.edit.CheckpointJournal;
 import jls.edit.CircuitRenderer;
 import jls.edit.EditOp;
 import jls.edit.Editor;
@@ -67,6 +69,7 @@ import jls.elem.OutputPin;
 import jls.elem.Register;
 import jls.elem.SubCircuit;
 import jls.elem.Timed;
+import jls.elem.VectorFile;
 import jls.elem.Watchable;
 import jls.hdl.HdlEmitter;
 import jls.hdl.HdlExportException;
@@ -79,6 +82,9 @@ import jls.hdl.board.Boards;
 import jls.hdl.board.PcfEmitter;
 import jls.hdl.board.PinBindings;
 import jls.sim.BatchSimulator;
+import jls.sim.DelayModel;
+import jls.sim.MemoryLog;
+import jls.sim.WaveFile;
 
 
 /**
@@ -106,6 +112,32 @@ public class JLSStart extends JFrame implements ChangeListener {
 	private static @Nullable String imageFile = null;
 	/** VCD waveform output file name (-vcd flag), or null if none given. */
 	private static @Nullable String vcdFile = null;
+	/** Element delay model for batch runs (-delay flag), configured delays by default. */
+	private static DelayModel delayModel = DelayModel.CONFIGURED;
+	/** Failed test-file expectations that stop a batch run (-maxfail flag). */
+	private static int maxFail = BatchJob.DEFAULT_MAX_FAIL;
+	/** Result cache directory (-cache flag), or null to run without one. */
+	private static @Nullable String cacheDir = null;
+	/** How batch runs use the result cache (-cachemode flag), or null if not given. */
+	private static ResultCache.@Nullable Mode cacheMode = null;
+	/** Binary test-vector output file name (-packtest flag), or null if none given. */
+	private static @Nullable String packFile = null;
+	/** Waveform file to convert to the -vcd file (-wavetovcd flag), or null if none given. */
+	private static @Nullable String waveFile = null;
+	/** The memory access log to print (-memfilter), or null. */
+	private static @Nullable String memFilterFile = null;
+	/** The address range {low, high} -memaddr keeps, or null for all. */
+	private static long @Nullable [] memAddress = null;
+	/** The time window {from, to} -memtime keeps, or null for all. */
+	private static long @Nullable [] memTime = null;
+	/** Multi-job manifest file name (-jobs flag), or null for a single run. */
+	private static @Nullable String jobsFile = null;
+	/** Sweep list file name (-sweep flag), or null if not sweeping one circuit. */
+	private static @Nullable String sweepList = null;
+	/** Warm-server address (-serve flag): a loopback port or a Unix socket path, or null. */
+	private static @Nullable String serveAddress = null;
+	/** Worker threads for a multi-job run or server (-threads flag), 0 for one per processor. */
+	private static int threads = 0;
 	/** HDL export output file name (-export flag), or null if none given. */
 	private static @Nullable String exportFile = null;
 	/** Target board for -export pin constraints (-board flag, issue #213), lower-case, or null if none given. */
@@ -170,112 +202,140 @@ public class JLSStart extends JFrame implements ChangeListener {
 			// from Zack, for MAC's?
 			System.setProperty("java.awt.headless", "true");
 
-			if (startFile == null) {
-				System.err.println("jls: error: batch mode requires a circuit file");
-				System.exit(1);
+			// converting a test file needs no circuit
+			if (packFile != null && testFile != null) {
+				try {
+					VectorFile.pack(Path.of(testFile), Path.of(packFile));
+				} catch (IOException | InvalidPathException e) {
+					System.err.println("jls: error: can't convert " + testFile
+							+ " to " + packFile + ": " + e.getMessage());
+					System.exit(1);
+				} catch (IllegalArgumentException e) {
+					System.err.println("jls: error: in test file " + testFile
+							+ ": " + e.getMessage());
+					System.exit(1);
+				}
 				return;
 			}
 
-			// open file and create scanner
-			String name = "";
-			if (startFile.endsWith(".jls~")) {
-				name = startFile.replaceAll("\\.jls~$","");
-			} else {
-				name = startFile.replaceAll("\\.jls$","");
+			// so does converting a waveform file
+			if (waveFile != null && vcdFile != null) {
+				try {
+					WaveFile.toVcd(Path.of(waveFile), Path.of(vcdFile));
+				} catch (IOException | InvalidPathException e) {
+					System.err.println("jls: error: can't convert " + waveFile
+							+ " to " + vcdFile + ": " + e.getMessage());
+					System.exit(1);
+				}
+				return;
 			}
-			String cname = Util.isValidFileName(name);
-			if (cname == null) {
-				System.err.println("jls: error: " + startFile
-						+ " is not a valid circuit file name");
-				System.exit(1);
+
+			// and printing a memory access log
+			if (memFilterFile != null) {
+				long[] address = memAddress == null
+						? new long[] { 0, 0xffff_ffffL } : memAddress;
+				long[] time = memTime == null
+						? new long[] { 0, Long.MAX_VALUE } : memTime;
+				try {
+					MemoryLog.print(Path.of(memFilterFile), address[0],
+							address[1], time[0], time[1], System.out);
+				} catch (IOException | InvalidPathException e) {
+					System.err.println("jls: error: can't read " + memFilterFile
+							+ ": " + e.getMessage());
+					System.exit(1);
+				}
+				System.out.flush();
 				return;
 			}
 
-			Scanner input = FileAbstractor.openCircuit(startFile);
-			if (input == null) {
-				System.err.println("jls: error: can't open " + startFile
-						+ ": " + JLSInfo.loadError);
-				System.exit(1);
+			// a warm server answers jobs on a local socket until killed
+			if (serveAddress != null) {
+				int status = BatchServer.run(serveAddress, threads,
+						timeLimit, delayModel, maxFail);
+				if (status != 0) {
+					System.exit(status);
+				}
 				return;
 			}
 
-			// create new circuit
-			Circuit circ = new Circuit(cname);
+			// identical earlier runs answer from the result cache
+			ResultCache cache = null;
+			if (cacheDir != null) {
+				try {
+					cache = new ResultCache(Path.of(cacheDir),
+							ResultCache.DEFAULT_MAX_BYTES,
+							cacheMode == null ? ResultCache.Mode.USE
+									: cacheMode);
+				} catch (IOException | InvalidPathException e) {
+					System.err.println("jls: error: can't open result cache "
+							+ cacheDir + ": " + e.getMessage());
+					System.exit(1);
+					return;
+				}
+			}
 
-			// read circuit from file
-			boolean loadOK = circ.load(input);
-			if (loadOK && input.hasNext()) {
-				// file shouldn't have anything after ENDCIRCUIT; without
-				// a message the failure would be reported blank (#58)
-				loadOK = false;
-				JLSInfo.setLoadError(LoadError.of(
-						LoadError.Category.MALFORMED,
-						"there is extra content after the ENDCIRCUIT trailer",
-						"The file may contain more than one circuit or "
-								+ "trailing garbage; re-save it from JLS."));
+			// a manifest runs many jobs in this one JVM
+			if (jobsFile != null) {
+				int status = BatchJobs.run(jobsFile, threads, timeLimit,
+						delayModel, maxFail, cache);
+				if (status != 0) {
+					System.exit(status);
+				}
+				return;
 			}
-			input.close();
-			if (!loadOK) {
-				System.err.println("jls: error: " + startFile
-						+ " is not a valid circuit file: " + JLSInfo.loadError);
+
+			if (sweepList != null && startFile != null) {
+				int status = BatchJobs.runSweep(startFile, sweepList,
+						threads, timeLimit, delayModel, maxFail, cache);
+				if (status != 0) {
+					System.exit(status);
+				}
+				return;
+			}
+
+			if (startFile == null) {
+				System.err.println("jls: error: batch mode requires a circuit file");
 				System.exit(1);
+				return;
 			}
 
-			// finish up load
-			try {
-				if (!circ.finishLoad(null)) {
-					System.err.println("jls: error: " + startFile
-							+ " is not a valid circuit file: " + JLSInfo.loadError);
-					System.exit(1);
+			// load, simulate and report; each step prints its own
+			// diagnostic before ending the run with a failure status
+			BatchJob job = new BatchJob(startFile, testFile, paramFile,
+					timeLimit, delayModel, vcdFile, maxFail);
+			if (cache != null) {
+				int status = cache.run(job);
+				if (status != 0) {
+					System.exit(status);
 				}
-			} catch (Exception e) {
-				e.printStackTrace();
-				System.err.println("jls: error: " + startFile
-						+ " is not a valid circuit file: " + JLSInfo.loadError);
-				System.exit(1);
+				return;
 			}
+			try {
+				Circuit circ = job.load();
 
-			// save circuit for trace (hopefully not needed!)
-			exHandler.setCircuit(circ);
+				// save circuit for trace (hopefully not needed!)
+				exHandler.setCircuit(circ);
 
-			// process parameter file
-			if (paramFile != null)
-				processParamFile(paramFile,circ);
-
-			// set up simulator
-			BatchSimulator batchSim = new BatchSimulator();
-			JLSInfo.sim = batchSim;
-			batchSim.setCircuit(circ);
-			batchSim.setTimeLimit(timeLimit);
-			batchSim.setTestFile(testFile);
-			batchSim.addTestGen();
-			// enable trace accumulation for VCD export before the run
-			// (issue #72)
-			batchSim.setVcdFile(vcdFile);
-
-			// run simulator
-			batchSim.runSim();
-
-			// display results
-			batchSim.displayOutcome();
-			displayResults(circ,"");
-
-			// print trace if requested (the AWT print surface lives
-			// GUI-side, outside the headless core - issue #77)
-			if (JLSInfo.printTrace) {
-				BatchTracePrinter.printTrace(
-						batchSim.getTraceSamples(),printer);
-			}
+				BatchSimulator batchSim = job.simulate(circ);
+				JLSInfo.sim = batchSim;
 
-			// write VCD waveform file if requested (issue #72)
-			if (vcdFile != null) {
-				try {
-					batchSim.writeVcd();
-				} catch (IOException e) {
-					System.err.println("jls: error: can't write VCD file "
-							+ vcdFile + ": " + e.getMessage());
-					System.exit(1);
+				// print trace if requested (the AWT print surface lives
+				// GUI-side, outside the headless core - issue #77)
+				if (JLSInfo.printTrace) {
+					BatchTracePrinter.printTrace(
+							batchSim.getTraceSamples(),printer);
+				}
+
+				// write VCD waveform file if requested (issue #72)
+				job.writeVcd(batchSim);
+				job.writeMemLogs(batchSim);
+
+				// a failed or unreached expectation has its own status
+				if (!batchSim.expectationsPassed()) {
+					System.exit(BatchJob.EXPECTATIONS_FAILED);
 				}
+			} catch (BatchAbortException e) {
+				System.exit(e.getStatus());
 			}
 		}
 
@@ -304,48 +364,52 @@ public class JLSStart extends JFrame implements ChangeListener {
 				System.exit(1);
 				return;
 			}
-			Scanner input = FileAbstractor.openCircuit(startFile);
-			if (input == null) {
-				System.err.println("jls: error: can't open " + startFile
-						+ ": " + JLSInfo.loadError);
-				System.exit(1);
-				return;
-			}
-
 			// create new circuit
 			Circuit circ = new Circuit(cname);
 
-			// read circuit from file
-			boolean loadOK = circ.load(input);
-			if (loadOK && input.hasNext()) {
-				// file shouldn't have anything after ENDCIRCUIT; without
-				// a message the failure would be reported blank (#58)
-				loadOK = false;
-				JLSInfo.setLoadError(LoadError.of(
-						LoadError.Category.MALFORMED,
-						"there is extra content after the ENDCIRCUIT trailer",
-						"The file may contain more than one circuit or "
-								+ "trailing garbage; re-save it from JLS."));
-			}
-			input.close();
-			if (!loadOK) {
-				System.err.println("jls: error: " + startFile
-						+ " is not a valid circuit file: " + JLSInfo.loadError);
-				System.exit(1);
-			}
+			synchronized (Circuit.LOAD_LOCK) {
+				Scanner input = FileAbstractor.openCircuit(startFile);
+				if (input == null) {
+					System.err.println("jls: error: can't open " + startFile
+							+ ": " + JLSInfo.loadError);
+					System.exit(1);
+					return;
+				}
 
-			// finish up load
-			try {
-				if (!circ.finishLoad(null)) {
+				// read circuit from file
+				boolean loadOK = circ.load(input);
+				if (loadOK && input.hasNext()) {
+					// file shouldn't have anything after ENDCIRCUIT; without
+					// a message the failure would be reported blank (#58)
+					loadOK = false;
+					JLSInfo.setLoadError(LoadError.of(
+							LoadError.Category.MALFORMED,
+							"there is extra content after the ENDCIRCUIT trailer",
+							"The file may contain more than one circuit or "
+									+ "trailing garbage; re-save it from JLS."));
+				}
+				input.close();
+				if (!loadOK) {
 					System.err.println("jls: error: " + startFile
 							+ " is not a valid circuit file: " + JLSInfo.loadError);
 					System.exit(1);
 				}
-			} catch (Exception e) {
-				e.printStackTrace();
-				System.err.println("jls: error: " + startFile
-						+ " is not a valid circuit file: " + JLSInfo.loadError);
-				System.exit(1);
+
+				// finish up load
+				try {
+					if (!circ.finishLoad(null)) {
+						System.err.println("jls: error: " + startFile
+								+ " is not a valid circuit file: " + JLSInfo.loadError);
+						System.exit(1);
+					}
+				} catch (Exception e) {
+					e.printStackTrace();
+					System.err.println("jls: error: " + startFile
+							+ " is not a valid circuit file: " + JLSInfo.loadError);
+					System.exit(1);
+				}
+				if (startFile.endsWith(".jls~"))
+					CheckpointJournal.replay(circ, startFile);
 			}
 			// export to the caller-chosen path, or PNG named after the
 			// circuit by default; the format follows the file extension
@@ -574,44 +638,50 @@ public class JLSStart extends JFrame implements ChangeListener {
 			throw new AssertionError("unreachable after System.exit");
 		}
 
-		Scanner input = FileAbstractor.openCircuit(file);
-		if (input == null) {
-			System.err.println("jls: error: can't open " + file
-					+ ": " + JLSInfo.loadError);
-			System.exit(1);
-			throw new AssertionError("unreachable after System.exit");
-		}
-
 		Circuit circ = new Circuit(cname);
-		boolean loadOK = circ.load(input);
-		if (loadOK && input.hasNext()) {
-			// file shouldn't have anything after ENDCIRCUIT; without
-			// a message the failure would be reported blank (#58)
-			loadOK = false;
-			JLSInfo.setLoadError(LoadError.of(
-					LoadError.Category.MALFORMED,
-					"there is extra content after the ENDCIRCUIT trailer",
-					"The file may contain more than one circuit or "
-							+ "trailing garbage; re-save it from JLS."));
-		}
-		input.close();
-		if (!loadOK) {
-			System.err.println("jls: error: " + file
-					+ " is not a valid circuit file: " + JLSInfo.loadError);
-			System.exit(1);
-		}
+		synchronized (Circuit.LOAD_LOCK) {
+			Scanner input = FileAbstractor.openCircuit(file);
+			if (input == null) {
+				System.err.println("jls: error: can't open " + file
+						+ ": " + JLSInfo.loadError);
+				System.exit(1);
+				throw new AssertionError("unreachable after System.exit");
+			}
 
-		try {
-			if (!circ.finishLoad(null)) {
+			boolean loadOK = circ.load(input);
+			if (loadOK && input.hasNext()) {
+				// file shouldn't have anything after ENDCIRCUIT; without
+				// a message the failure would be reported blank (#58)
+				loadOK = false;
+				JLSInfo.setLoadError(LoadError.of(
+						LoadError.Category.MALFORMED,
+						"there is extra content after the ENDCIRCUIT trailer",
+						"The file may contain more than one circuit or "
+								+ "trailing garbage; re-save it from JLS."));
+			}
+			input.close();
+			if (!loadOK) {
 				System.err.println("jls: error: " + file
 						+ " is not a valid circuit file: " + JLSInfo.loadError);
 				System.exit(1);
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
-			System.err.println("jls: error: " + file
-					+ " is not a valid circuit file: " + JLSInfo.loadError);
-			System.exit(1);
+
+			try {
+				if (!circ.finishLoad(null)) {
+					System.err.println("jls: error: " + file
+							+ " is not a valid circuit file: " + JLSInfo.loadError);
+					System.exit(1);
+				}
+			} catch (Exception e) {
+				e.printStackTrace();
+				System.err.println("jls: error: " + file
+						+ " is not a valid circuit file: " + JLSInfo.loadError);
+				System.exit(1);
+			}
+
+			// a checkpoint's journal replays the edits made after it
+			if (file.endsWith(".jls~"))
+				CheckpointJournal.replay(circ, file);
 		}
 		return circ;
 	} // end of loadCircuitHeadless method
@@ -767,6 +837,10 @@ public class JLSStart extends JFrame implements ChangeListener {
 				"startup parameter file"),
 		new FlagSpec("t", Arity.REQUIRED, "file", "a test file",
 				"test input file"),
+		new FlagSpec("packtest", Arity.REQUIRED, "file", "an output file",
+				"with -t and no circuit: write the test file in the binary vector format to the named file and exit"),
+		new FlagSpec("vcdmap", Arity.REQUIRED, "file", "a mapping file",
+				"with a VCD -t file: map its variables onto input pins as listed in the named file instead of by name"),
 		new FlagSpec("d", Arity.REQUIRED, "time", "a time limit",
 				"set simulation time limit (a positive integer)"),
 		new FlagSpec("p", Arity.REQUIRED, "printer", "a printer name",
@@ -776,7 +850,35 @@ public class JLSStart extends JFrame implements ChangeListener {
 		new FlagSpec("r", Arity.REQUIRED, "printer", "a printer name",
 				"print the signal trace to the named printer"),
 		new FlagSpec("vcd", Arity.REQUIRED, "file", "a VCD output file",
-				"write watched-signal waveforms to the named VCD file (batch mode)"),
+				"write watched-signal waveforms to the named VCD file (batch mode); a name ending in .jlsw writes the block-compressed waveform format"),
+		new FlagSpec("trace", Arity.REQUIRED, "patterns", "net patterns",
+				"with -vcd: also write every net whose hierarchical name matches one of the comma-separated glob patterns (cpu.alu.*, *.pc)"),
+		new FlagSpec("wavetovcd", Arity.REQUIRED, "file", "a waveform file",
+				"with -vcd and no circuit: convert the named .jlsw waveform file to the -vcd file and exit"),
+		new FlagSpec("memlog", Arity.REQUIRED, "dir", "a directory",
+				"batch mode: write a binary log of every read and write of each memory and register file to the named directory"),
+		new FlagSpec("memfilter", Arity.REQUIRED, "file", "a memory access log",
+				"with no circuit: print the accesses in the named memory access log and exit"),
+		new FlagSpec("memaddr", Arity.REQUIRED, "range", "an address range",
+				"with -memfilter: print only accesses to addresses low:high (or one address)"),
+		new FlagSpec("memtime", Arity.REQUIRED, "range", "a time window",
+				"with -memfilter: print only accesses at times from:to (or one time)"),
+		new FlagSpec("delay", Arity.REQUIRED, "model", "a delay model",
+				"element delay model for batch simulation: configured (default), unit or zero"),
+		new FlagSpec("maxfail", Arity.REQUIRED, "n", "a mismatch count",
+				"stop a batch run at the n-th failed test-file expectation (default 1)"),
+		new FlagSpec("cache", Arity.REQUIRED, "dir", "a cache directory",
+				"batch mode: answer a run identical to an earlier one from the result cache in dir, storing new results there"),
+		new FlagSpec("cachemode", Arity.REQUIRED, "mode", "a cache mode",
+				"with -cache: use (default), refresh (always simulate and replace) or verify (always simulate and fail on a differing entry)"),
+		new FlagSpec("jobs", Arity.REQUIRED, "manifest", "a manifest file",
+				"batch-run every job listed in the manifest in this one JVM (replaces the circuit file, -t and -s)"),
+		new FlagSpec("threads", Arity.REQUIRED, "n", "a thread count",
+				"with -jobs, -sweep or -serve: run at most n jobs at once (default one per processor)"),
+		new FlagSpec("sweep", Arity.REQUIRED, "list", "a sweep list file",
+				"batch-run the circuit once per line of the list (test file, parameter file, limit, output), loading it only once"),
+		new FlagSpec("serve", Arity.REQUIRED, "address", "a port or socket path",
+				"serve batch jobs on a loopback TCP port (digits, 0 for any) or a Unix socket path until killed"),
 		new FlagSpec("export", Arity.REQUIRED, "file", "an output file",
 				"export the circuit as Verilog-2005 (.v) or VHDL (.vhd/.vhdl), chosen by the file extension"),
 		new FlagSpec("board", Arity.REQUIRED, "name", "a board name",
@@ -915,6 +1017,126 @@ public class JLSStart extends JFrame implements ChangeListener {
 		if ((boardName == null) != (pinsFile == null)) {
 			usageError("options -board and -pins must be used together");
 		}
+
+		// packing converts the -t file alone
+		if (packFile != null) {
+			if (testFile == null) {
+				usageError("option -packtest requires -t");
+			}
+			if (startFile != null || jobsFile != null || sweepList != null
+					|| serveAddress != null || cacheDir != null) {
+				usageError("option -packtest converts a test file and cannot"
+						+ " be combined with a circuit file, -jobs, -sweep,"
+						+ " -serve or -cache");
+			}
+		}
+
+		// the mapping file applies to the -t file
+		if (JLSInfo.vcdMapFile != null && testFile == null
+				&& jobsFile == null && serveAddress == null) {
+			usageError("option -vcdmap requires a test file: -t, -jobs"
+					+ " or -serve");
+		}
+
+		// selected nets are written to the -vcd file
+		if (!JLSInfo.tracePatterns.isEmpty() && vcdFile == null) {
+			usageError("option -trace requires -vcd");
+		}
+
+		// converting writes the -vcd file from the waveform file alone
+		if (waveFile != null) {
+			if (vcdFile == null || WaveFile.isWaveFileName(vcdFile)) {
+				usageError("option -wavetovcd requires a -vcd file not"
+						+ " ending in " + WaveFile.EXTENSION);
+			}
+			if (startFile != null || testFile != null || packFile != null
+					|| jobsFile != null || sweepList != null
+					|| serveAddress != null || cacheDir != null) {
+				usageError("option -wavetovcd converts a waveform file and"
+						+ " cannot be combined with a circuit file, -t,"
+						+ " -packtest, -jobs, -sweep, -serve or -cache");
+			}
+		}
+
+		// access logs are written by one run, and read without a circuit
+		if (JLSInfo.memLogDir != null && (jobsFile != null
+				|| sweepList != null || serveAddress != null
+				|| cacheDir != null)) {
+			usageError("option -memlog cannot be combined with -jobs, -sweep,"
+					+ " -serve or -cache");
+		}
+		if ((memAddress != null || memTime != null) && memFilterFile == null) {
+			usageError("options -memaddr and -memtime require -memfilter");
+		}
+		if (memFilterFile != null && (startFile != null || testFile != null
+				|| jobsFile != null || sweepList != null
+				|| serveAddress != null || JLSInfo.memLogDir != null)) {
+			usageError("option -memfilter prints a memory access log and"
+					+ " cannot be combined with a circuit file, -t, -jobs,"
+					+ " -sweep, -serve or -memlog");
+		}
+
+		// a manifest names each job's circuit, test and parameter file,
+		// and a job has nowhere to print a trace to
+		if (jobsFile != null) {
+			if (startFile != null) {
+				usageError("a circuit file is not allowed with -jobs: "
+						+ startFile);
+			}
+			if (testFile != null || paramFile != null || vcdFile != null
+					|| JLSInfo.printTrace) {
+				usageError("options -t, -s, -vcd and -r cannot be combined"
+						+ " with -jobs; the manifest names each job's test"
+						+ " and parameter file");
+			}
+		}
+		// a sweep list names each job's test and parameter file
+		if (sweepList != null) {
+			if (jobsFile != null || serveAddress != null) {
+				usageError("option -sweep cannot be combined with -jobs"
+						+ " or -serve");
+			}
+			if (testFile != null || paramFile != null || vcdFile != null
+					|| JLSInfo.printTrace) {
+				usageError("options -t, -s, -vcd and -r cannot be combined"
+						+ " with -sweep; the list names each job's test"
+						+ " and parameter file");
+			}
+		}
+
+		// a server's requests carry their own circuit, test and
+		// parameter files
+		if (serveAddress != null) {
+			if (jobsFile != null) {
+				usageError("options -serve and -jobs cannot be combined");
+			}
+			if (startFile != null) {
+				usageError("a circuit file is not allowed with -serve: "
+						+ startFile);
+			}
+			if (testFile != null || paramFile != null || vcdFile != null
+					|| JLSInfo.printTrace) {
+				usageError("options -t, -s, -vcd and -r cannot be combined"
+						+ " with -serve; each request carries its own files");
+			}
+		}
+		// the cache stores what a run prints, and a trace is printed
+		// to a printer
+		if (cacheDir != null) {
+			if (!JLSInfo.batch || serveAddress != null) {
+				usageError("option -cache requires -b, -jobs or -sweep");
+			}
+			if (JLSInfo.printTrace) {
+				usageError("options -cache and -r cannot be combined");
+			}
+		}
+		if (cacheMode != null && cacheDir == null) {
+			usageError("option -cachemode requires -cache");
+		}
+		if (threads != 0 && jobsFile == null && sweepList == null
+				&& serveAddress == null) {
+			usageError("option -threads requires -jobs, -sweep or -serve");
+		}
 	} // end of parseCommandLine method
 
 	/**
@@ -1078,6 +1300,113 @@ public class JLSStart extends JFrame implements ChangeListener {
 		case "vcd":
 			vcdFile = opnd;
 			break;
+		case "vcdmap":
+			JLSInfo.vcdMapFile = opnd;
+			break;
+		case "trace":
+			List<String> patterns = new ArrayList<String>();
+			for (String pattern : (opnd == null ? "" : opnd).split(",", -1)) {
+				if (pattern.isBlank()) {
+					usageError("option -trace requires comma-separated"
+							+ " patterns, got " + opnd);
+				}
+				patterns.add(pattern.strip());
+			}
+			JLSInfo.tracePatterns = List.copyOf(patterns);
+			break;
+		case "memlog":
+			JLSInfo.memLogDir = opnd;
+			break;
+		case "memfilter":
+			JLSInfo.batch = true;
+			memFilterFile = opnd;
+			break;
+		case "memaddr":
+			memAddress = range("-memaddr", opnd, 0xffff_ffffL);
+			break;
+		case "memtime":
+			memTime = range("-memtime", opnd, Long.MAX_VALUE);
+			break;
+		case "packtest":
+			JLSInfo.batch = true;
+			packFile = opnd;
+			break;
+		case "wavetovcd":
+			JLSInfo.batch = true;
+			waveFile = opnd;
+			break;
+		case "jobs":
+			JLSInfo.batch = true;
+			jobsFile = opnd;
+			break;
+		case "sweep":
+			JLSInfo.batch = true;
+			sweepList = opnd;
+			break;
+		case "serve":
+			JLSInfo.batch = true;
+			serveAddress = opnd;
+			if (opnd != null && !opnd.isEmpty()
+					&& opnd.chars().allMatch(Character::isDigit)
+					&& (opnd.length() > 5 || Integer.parseInt(opnd) > 65535)) {
+				usageError("option -serve port must be 0..65535, got "
+						+ opnd);
+			}
+			break;
+		case "threads":
+			int count = 0;
+			try {
+				count = Integer.parseInt(opnd == null ? "" : opnd);
+			}
+			catch (NumberFormatException ex) {
+				usageError("thread count not an integer: " + opnd);
+			}
+			if (count <= 0) {
+				usageError("option -threads requires a positive integer, got "
+						+ opnd);
+			}
+			threads = count;
+			break;
+		case "cache":
+			cacheDir = opnd;
+			break;
+		case "cachemode":
+			ResultCache.Mode mode =
+					ResultCache.Mode.byName(opnd == null ? "" : opnd);
+			if (mode == null) {
+				usageError("option -cachemode requires use, refresh or verify: "
+						+ opnd);
+			}
+			else {
+				cacheMode = mode;
+			}
+			break;
+		case "maxfail":
+			int fails = 0;
+			try {
+				fails = Integer.parseInt(opnd == null ? "" : opnd);
+			}
+			catch (NumberFormatException ex) {
+				usageError("mismatch count not an integer: " + opnd);
+			}
+			if (fails <= 0) {
+				usageError("option -maxfail requires a positive integer, got "
+						+ opnd);
+			}
+			maxFail = fails;
+			break;
+		case "delay":
+			// -delay is Arity.REQUIRED so opnd cannot be null here; the
+			// guard keeps that invariant locally checkable
+			DelayModel model = DelayModel.byName(opnd == null ? "" : opnd);
+			if (model == null) {
+				usageError("option -delay requires configured, unit or zero: "
+						+ opnd);
+			}
+			else {
+				delayModel = model;
+			}
+			break;
 		case "export":
 			// the extension selects the emitter: .v is Verilog-2005,
 			// .vhd/.vhdl is VHDL (#60).
@@ -1146,6 +1475,35 @@ public class JLSStart extends JFrame implements ChangeListener {
 		System.exit(2);
 	} // end of usageError method
 
+	/**
+	 * Parse a range operand, {@code low:high} or one value, each
+	 * decimal or 0x hex, or give a usage error.
+	 *
+	 * @param flag The flag, for the error message.
+	 * @param opnd The operand.
+	 * @param max The largest value allowed.
+	 *
+	 * @return {low, high}.
+	 */
+	private static long[] range(String flag, @Nullable String opnd,
+			long max) {
+
+		String text = opnd == null ? "" : opnd;
+		int colon = text.indexOf(':');
+		try {
+			long low = Long.decode(colon < 0 ? text : text.substring(0, colon));
+			long high = colon < 0 ? low : Long.decode(text.substring(colon + 1));
+			if (low >= 0 && low <= high && high <= max) {
+				return new long[] { low, high };
+			}
+		} catch (NumberFormatException e) {
+			// reported below
+		}
+		usageError("option " + flag + " requires a range low:high of"
+				+ " non-negative integers, got " + opnd);
+		return new long[] { 0, max };
+	} // end of range method
+
 	/**
 	 * The operand of a flag, or a usage error if it is missing. The
 	 * previous parser read args[pos+1] unchecked and crashed on a
@@ -2275,48 +2633,33 @@ public class JLSStart extends JFrame implements ChangeListener {
 			dir = prevOpenDir;
 		}
 
-		Scanner input = FileAbstractor.openCircuit(filePath);
-		if (input == null) {
-			TellUser.error(this,
-					"can't open " + filePath + ": " + JLSInfo.loadError, "Error");
-			return;
-		}
-
 		String cname;
 		cname = file.getName().replaceAll("\\.jls~$", "");
 		cname = cname.replaceAll("\\.jls$", "");
 
-		// create new circuit
-		Circuit circ = new Circuit(cname);
-		circ.setDirectory(dir);
-
-		// read circuit from file
-		boolean loadOK = circ.load(input);
-		if (loadOK && input.hasNext()) {
-			// file shouldn't have anything after ENDCIRCUIT; without
-			// a message the failure would be reported blank (#58)
-			loadOK = false;
-			JLSInfo.setLoadError(LoadError.of(
-					LoadError.Category.MALFORMED,
-					"there is extra content after the ENDCIRCUIT trailer",
-					"The file may contain more than one circuit or "
-							+ "trailing garbage; re-save it from JLS."));
-		}
-		input.close();
-		if (!loadOK) {
-			TellUser.error(this,
-					// the message carries the line number itself (#58)
-					filePath + " is not a valid circuit file: " + JLSInfo.loadError, "Error");
-			return;
-		}
+		// read the circuit in the background, then set up its editor
+		final String circDir = dir;
+		final String circName = cname;
+		CircuitOpen.start(this, filePath, cname, dir, new CircuitOpen.Opened() {
+			/**
+			 * Set up the editor of a circuit that has been read.
+			 *
+			 * @param circ The circuit.
+			 */
+			@Override
+			public void opened(Circuit circ) {
 
-		// delete checkpoint file if there is one (beside the opened file)
-		new File(dir, cname + ".jls~").delete();
+				// delete checkpoint file and its journal if there is one
+				// (beside the opened file)
+				new File(circDir, circName + ".jls~").delete();
+				new File(circDir, circName + ".jls~" + CheckpointJournal.SUFFIX).delete();
 
-		// create editor
-		if (exHandler != null)
-			exHandler.setCircuit(circ);
-		setupEditor(circ,cname);
+				// create editor
+				if (exHandler != null)
+					exHandler.setCircuit(circ);
+				setupEditor(circ,circName);
+			}
+		});
 	} // end of open method
 
 	/**
@@ -2507,46 +2850,50 @@ public class JLSStart extends JFrame implements ChangeListener {
 		if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION)
 			return;
 
-		Scanner input = FileAbstractor.openCircuit(chooser.getSelectedFile().getAbsolutePath());
-		if (input == null) {
-			TellUser.error(this,
-					"can't open " + chooser.getSelectedFile().getName() + ": " + JLSInfo.loadError, "Error");
-			return;
-		}
-
 		// create new circuit
 		Circuit circ = new Circuit(chooser.getSelectedFile().getName().trim().replaceAll("\\.jls$",""));
 
-		// read circuit from file
-		boolean loadOK = circ.load(input);
-		if (loadOK && input.hasNext()) {
-			// file shouldn't have anything after ENDCIRCUIT; without
-			// a message the failure would be reported blank (#58)
-			loadOK = false;
-			JLSInfo.setLoadError(LoadError.of(
-					LoadError.Category.MALFORMED,
-					"there is extra content after the ENDCIRCUIT trailer",
-					"The file may contain more than one circuit or "
-							+ "trailing garbage; re-save it from JLS."));
-		}
-		input.close();
-		if (!loadOK) {
-			TellUser.error(this,
-					circ.getName() + " is not a valid circuit file: "
-							+ JLSInfo.loadError, "Error");
-			return;
-		}
-		try {
-			if (!circ.finishLoad(null)) {
-				TellUser.error(this,
-						"can't import " + circ.getName() + ": "
-								+ JLSInfo.loadError, "Error");
-				return;
+		// the message is shown once the lock is let go, so a load on
+		// another thread does not wait for the dialog to be dismissed
+		String failure = null;
+		synchronized (Circuit.LOAD_LOCK) {
+			Scanner input = FileAbstractor.openCircuit(chooser.getSelectedFile().getAbsolutePath());
+			if (input == null) {
+				failure = "can't open " + chooser.getSelectedFile().getName() + ": " + JLSInfo.loadError;
 			}
-		} catch (Exception ex) {
-			TellUser.error(this,
-					"can't import " + circ.getName() + ": " + ex.getMessage(),
-					"Error");
+			else {
+
+				// read circuit from file
+				boolean loadOK = circ.load(input);
+				if (loadOK && input.hasNext()) {
+					// file shouldn't have anything after ENDCIRCUIT; without
+					// a message the failure would be reported blank (#58)
+					loadOK = false;
+					JLSInfo.setLoadError(LoadError.of(
+							LoadError.Category.MALFORMED,
+							"there is extra content after the ENDCIRCUIT trailer",
+							"The file may contain more than one circuit or "
+									+ "trailing garbage; re-save it from JLS."));
+				}
+				input.close();
+				if (!loadOK) {
+					failure = circ.getName() + " is not a valid circuit file: "
+							+ JLSInfo.loadError;
+				}
+				else {
+					try {
+						if (!circ.finishLoad(null)) {
+							failure = "can't import " + circ.getName() + ": "
+									+ JLSInfo.loadError;
+						}
+					} catch (Exception ex) {
+						failure = "can't import " + circ.getName() + ": " + ex.getMessage();
+					}
+				}
+			}
+		}
+		if (failure != null) {
+			TellUser.error(this, failure, "Error");
 			return;
 		}
 
@@ -2558,6 +2905,9 @@ public class JLSStart extends JFrame implements ChangeListener {
 	 *
 	 * @param paramFile The name of the file containing JLS parameters.
 	 * @param circuit The circuit to apply the parameters too.
+	 *
+	 * @throws BatchAbortException after printing the problem, if the
+	 *         file is malformed.
 	 */
 	public static void processParamFile(String paramFile, Circuit circuit) {
 
@@ -2580,7 +2930,7 @@ public class JLSStart extends JFrame implements ChangeListener {
 					if (!scan.hasNext()) {
 						System.out.print(paramFile + ": expected element type,");
 						System.out.println(" got end of file");
-						System.exit(1);
+						throw new BatchAbortException(1);
 					}
 					String type = scan.next();
 					try {
@@ -2589,40 +2939,39 @@ public class JLSStart extends JFrame implements ChangeListener {
 					catch (ClassNotFoundException ex) {
 						System.out.print(paramFile + ": expected element type,");
 						System.out.println(" got \"" + type + "\"");
-						System.exit(1);
-						return;
+						throw new BatchAbortException(1);
 					}
 					if (!LogicElement.class.isAssignableFrom(cl)) {
 						// e.g. TYPE Wire used to crash on an unguarded
 						// cast in setPropDelays (issue #38)
 						System.out.print(paramFile + ": " + type);
 						System.out.println(" is not a simulated element type");
-						System.exit(1);
+						throw new BatchAbortException(1);
 					}
 
 					// get PROPDELAY
 					if (!scan.hasNext()) {
 						System.out.print(paramFile + ": expected PROPDELAY,");
 						System.out.println(" got end of file");
-						System.exit(1);
+						throw new BatchAbortException(1);
 					}
 					String word = scan.next();
 					if (!word.equals("PROPDELAY")) {
 						System.out.print(paramFile + ": expected PROPDELAY,");
 						System.out.println(" got \"" + word + "\"");
-						System.exit(1);
+						throw new BatchAbortException(1);
 					}
 
 					// get propagation delay value
 					if (!scan.hasNext()) {
 						System.out.print(paramFile + ": expected propagation delay,");
 						System.out.println(" got end of file");
-						System.exit(1);
+						throw new BatchAbortException(1);
 					}
 					if (!scan.hasNextInt()) {
 						System.out.print(paramFile + ": expected propagation delay,");
 						System.out.println(" got \"" + scan.next() + "\"");
-						System.exit(1);
+						throw new BatchAbortException(1);
 					}
 
 					// get delay value for this type
@@ -2630,7 +2979,7 @@ public class JLSStart extends JFrame implements ChangeListener {
 					if (delay < 1) {
 						System.out.print(paramFile + ": expected propagation delay > 0,");
 						System.out.println(" got \"" + delay + "\"");
-						System.exit(1);
+						throw new BatchAbortException(1);
 					}
 
 					// send to all elements of this type
@@ -2645,14 +2994,13 @@ public class JLSStart extends JFrame implements ChangeListener {
 					if (!scan.hasNext()) {
 						System.out.print(paramFile + ": expected element name,");
 						System.out.println(" got end of file");
-						System.exit(1);
+						throw new BatchAbortException(1);
 					}
 					String name = scan.next();
 					Vector<String> qualifiedName = parseName(name);
 					if (qualifiedName == null) {
 						System.out.println(paramFile + ": invalid element name " + name);
-						System.exit(1);
-						return;
+						throw new BatchAbortException(1);
 					}
 
 					// run down into subcircuits
@@ -2671,8 +3019,7 @@ public class JLSStart extends JFrame implements ChangeListener {
 							}
 							if (next == null) {
 								System.out.println(paramFile + ": no such element name " + name);
-								System.exit(1);
-								return;
+								throw new BatchAbortException(1);
 							}
 							circ = next;
 						}
@@ -2691,13 +3038,12 @@ public class JLSStart extends JFrame implements ChangeListener {
 					if (element == null) {
 						System.out.print(paramFile + ": no such element named");
 						System.out.println(" \"" + name + "\"");
-						System.exit(1);
-						return;
+						throw new BatchAbortException(1);
 					}
 					if (!scan.hasNext()) {
 						System.out.print(paramFile + ": expected element property,");
 						System.out.println(" got end of file");
-						System.exit(1);
+						throw new BatchAbortException(1);
 					}
 
 					// get element property to change
@@ -2708,7 +3054,7 @@ public class JLSStart extends JFrame implements ChangeListener {
 						if (!scan.hasNext()) {
 							System.out.print(paramFile + ": expected true or false,");
 							System.out.println(" got end of file");
-							System.exit(1);
+							throw new BatchAbortException(1);
 						}
 						String tf = scan.next();
 						if (tf.equals("true") || tf.equals("false")) {
@@ -2723,7 +3069,7 @@ public class JLSStart extends JFrame implements ChangeListener {
 						else {
 							System.out.print(paramFile + ": expected true or false,");
 							System.out.println(" got \"" + tf + "\"");
-							System.exit(1);
+							throw new BatchAbortException(1);
 						}
 					}
 
@@ -2733,18 +3079,18 @@ public class JLSStart extends JFrame implements ChangeListener {
 						if (!scan.hasNext()) {
 							System.out.print(paramFile + ": expected prop delay value,");
 							System.out.println(" got end of file");
-							System.exit(1);
+							throw new BatchAbortException(1);
 						}
 						if (!scan.hasNextInt()) {
 							System.out.print(paramFile + ": expected prop delay value,");
 							System.out.println(" got \"" + scan.next() + "\"");
-							System.exit(1);
+							throw new BatchAbortException(1);
 						}
 						int delay = scan.nextInt();
 						if (delay < 1) {
 							System.out.print(paramFile + ": expected prop delay > 0,");
 							System.out.println(" got \"" + delay + "\"");
-							System.exit(1);
+							throw new BatchAbortException(1);
 						}
 						if (element instanceof Timed timed) {
 							timed.setDelay(delay);
@@ -2755,12 +3101,12 @@ public class JLSStart extends JFrame implements ChangeListener {
 					else if (prop.equals("INITIALLY")) {
 						if (!(element instanceof Register)) {
 							System.out.println(name + " is not a Register element");
-							System.exit(1);
+							throw new BatchAbortException(1);
 						}
 						if (!scan.hasNextBigInteger()) {
 							System.out.print(paramFile + ": expected initial value,");
 							System.out.println(" got end of file");
-							System.exit(1);
+							throw new BatchAbortException(1);
 						}
 						BigInteger init = scan.nextBigInteger();
 						Register reg = (Register)element;
@@ -2771,12 +3117,12 @@ public class JLSStart extends JFrame implements ChangeListener {
 					else if (prop.equals("FILENAME")) {
 						if (!(element instanceof Memory)) {
 							System.out.println(name + " is not a Memory element");
-							System.exit(1);
+							throw new BatchAbortException(1);
 						}
 						if (!scan.hasNext()) {
 							System.out.print(paramFile + ": expected memory file name,");
 							System.out.println(" got end of file");
-							System.exit(1);
+							throw new BatchAbortException(1);
 						}
 						String file = scan.next();
 						Memory mem = (Memory)element;
@@ -2787,7 +3133,7 @@ public class JLSStart extends JFrame implements ChangeListener {
 					else {
 						System.out.print(paramFile + ": expected element property,");
 						System.out.println(" got \"" + prop + "\"");
-						System.exit(1);
+						throw new BatchAbortException(1);
 					}
 				}
 
@@ -2796,13 +3142,13 @@ public class JLSStart extends JFrame implements ChangeListener {
 					if (!scan.hasNext()) {
 						System.out.print(paramFile + ": expected WATCHES or PROBES,");
 						System.out.println(" got end of file");
-						System.exit(1);
+						throw new BatchAbortException(1);
 					}
 					String word = scan.next();
 					if (!word.equals("WATCHES") && !word.equals("PROBES")) {
 						System.out.print(paramFile + ": expected WATCHES or PROBES,");
 						System.out.println(" got \"" + word + "\"");
-						System.exit(1);
+						throw new BatchAbortException(1);
 					}
 
 					if (word.equals("WATCHES")) {
@@ -2823,7 +3169,7 @@ public class JLSStart extends JFrame implements ChangeListener {
 					if (!scan.hasNext()) {
 						System.out.print(paramFile + ": expected PROPDELAYS,");
 						System.out.println(" got end of file");
-						System.exit(1);
+						throw new BatchAbortException(1);
 					}
 					String word = scan.next();
 					if (word.equals("PROPDELAYS")) {
@@ -2834,14 +3180,14 @@ public class JLSStart extends JFrame implements ChangeListener {
 					else {
 						System.out.print(paramFile + ": expected PROPDELAYS,");
 						System.out.println(" got " + word);
-						System.exit(1);
+						throw new BatchAbortException(1);
 					}
 				}
 
 				// else an invalid command
 				else {
 					System.out.println(paramFile + ": invalid command [" + key + "]");
-					System.exit(1);
+					throw new BatchAbortException(1);
 				}
 
 			}
@@ -2897,42 +3243,48 @@ public class JLSStart extends JFrame implements ChangeListener {
 		// open and load the named file through the standard sniffing
 		// loader, as batch mode does - this path used to print an empty
 		// circuit because it never read the file at all (issue #48)
-		Scanner input = FileAbstractor.openCircuit(startFile);
-		if (input == null) {
-			System.err.println("can't open " + startFile
-					+ ": " + JLSInfo.loadError);
-			System.exit(1);
-			return;
-		}
 		Circuit circ = new Circuit(name);
-		boolean loadOK = circ.load(input);
-		if (loadOK && input.hasNext()) {
-			// file shouldn't have anything after ENDCIRCUIT; without
-			// a message the failure would be reported blank (#58)
-			loadOK = false;
-			JLSInfo.setLoadError(LoadError.of(
-					LoadError.Category.MALFORMED,
-					"there is extra content after the ENDCIRCUIT trailer",
-					"The file may contain more than one circuit or "
-							+ "trailing garbage; re-save it from JLS."));
-		}
-		input.close();
-		if (!loadOK) {
-			System.err.println(startFile + " is not a valid circuit file: "
-					+ JLSInfo.loadError);
-			System.exit(1);
-		}
-		try {
-			if (!circ.finishLoad(null)) {
+		synchronized (Circuit.LOAD_LOCK) {
+			Scanner input = FileAbstractor.openCircuit(startFile);
+			if (input == null) {
+				System.err.println("can't open " + startFile
+						+ ": " + JLSInfo.loadError);
+				System.exit(1);
+				return;
+			}
+			boolean loadOK = circ.load(input);
+			if (loadOK && input.hasNext()) {
+				// file shouldn't have anything after ENDCIRCUIT; without
+				// a message the failure would be reported blank (#58)
+				loadOK = false;
+				JLSInfo.setLoadError(LoadError.of(
+						LoadError.Category.MALFORMED,
+						"there is extra content after the ENDCIRCUIT trailer",
+						"The file may contain more than one circuit or "
+								+ "trailing garbage; re-save it from JLS."));
+			}
+			input.close();
+			if (!loadOK) {
 				System.err.println(startFile + " is not a valid circuit file: "
 						+ JLSInfo.loadError);
 				System.exit(1);
 			}
-		} catch (Exception e) {
-			System.err.println(startFile + " is not a valid circuit file: "
-					+ e.getMessage());
-			e.printStackTrace();
-			System.exit(1);
+			try {
+				if (!circ.finishLoad(null)) {
+					System.err.println(startFile + " is not a valid circuit file: "
+							+ JLSInfo.loadError);
+					System.exit(1);
+				}
+			} catch (Exception e) {
+				System.err.println(startFile + " is not a valid circuit file: "
+						+ e.getMessage());
+				e.printStackTrace();
+				System.exit(1);
+			}
+
+			// a checkpoint's journal replays the edits made after it
+			if (startFile.endsWith(".jls~"))
+				CheckpointJournal.replay(circ, startFile);
 		}
 
 		// set up printer job
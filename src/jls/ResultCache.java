@@ -0,0 +1,603 @@
+package jls;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jspecify.annotations.Nullable;
+
+import jls.elem.Element;
+import jls.elem.Memory;
+import jls.elem.SubCircuit;
+import jls.sim.WaveFile;
+
+/**
+ * The on-disk result cache of batch runs ({@code jls -cache dir},
+ * docs/batch-interface.md section 9). A batch run is a pure function
+ * of its inputs, so a job whose circuit, test file, parameter file,
+ * memory initialization files and settings all match an earlier one
+ * can be answered with that run's stdout, stderr, exit status and VCD
+ * file without simulating it again. Graders re-running unchanged
+ * submissions are the common case.
+ *
+ * An entry is keyed by the SHA-256 of everything the report depends
+ * on: the JLS version, {@link Circuit#stateHash()} of the loaded
+ * circuit (parameter file applied), the bytes of the test, parameter
+ * and memory files, the time limit, delay model and -maxfail count,
+ * and whether a VCD file was requested. Each entry is one file named
+ * by its key. The directory is bounded in size: after every store the
+ * least recently used entries (by file modification time, which a hit
+ * refreshes) are removed until it fits. Entries are written to a
+ * temporary file and renamed into place, so concurrent jobs and
+ * processes sharing a directory never read half an entry; an entry
+ * that does not parse is treated as a miss and removed.
+ */
+public final class ResultCache {
+
+	/** The default size bound of a cache directory (256 MiB). */
+	public static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+	/** The first line of every entry file and of every key's input. */
+	private static final String MAGIC = "JLS-RESULT-CACHE 1";
+
+	/** The file name extension of entries. */
+	private static final String SUFFIX = ".jlsr";
+
+	/**
+	 * How a job uses the cache (-cachemode).
+	 */
+	public enum Mode {
+
+		/** Answer from a stored entry if there is one, else run and store. */
+		USE,
+		/** Always run, replacing any stored entry. */
+		REFRESH,
+		/** Always run, and fail if a stored entry reports differently. */
+		VERIFY;
+
+		/**
+		 * Look up a mode by its lower-case name.
+		 *
+		 * @param name The name: use, refresh or verify, in any case.
+		 *
+		 * @return the mode, or null if the name is not one.
+		 */
+		public static @Nullable Mode byName(String name) {
+
+			for (Mode mode : values()) {
+				if (mode.name().equalsIgnoreCase(name)) {
+					return mode;
+				}
+			}
+			return null;
+		} // end of byName method
+
+	} // end of Mode enum
+
+	/**
+	 * Everything a batch run reports.
+	 *
+	 * @param status The exit status.
+	 * @param stdout The bytes it wrote to stdout.
+	 * @param stderr The bytes it wrote to stderr.
+	 * @param vcd The VCD file it wrote, or null if none was requested
+	 *        or written.
+	 */
+	record Result(int status, byte[] stdout, byte[] stderr,
+			byte @Nullable [] vcd) {
+
+		/**
+		 * Whether two results report identically, byte for byte.
+		 *
+		 * @param other The other result.
+		 *
+		 * @return true if every part is equal.
+		 */
+		boolean sameAs(Result other) {
+
+			return status == other.status
+					&& Arrays.equals(stdout, other.stdout)
+					&& Arrays.equals(stderr, other.stderr)
+					&& Arrays.equals(vcd, other.vcd);
+		} // end of sameAs method
+
+	} // end of Result record
+
+	/** The cache directory. */
+	private final Path dir;
+	/** The size the directory is trimmed to after each store. */
+	private final long maxBytes;
+	/** How jobs use the cache. */
+	private final Mode mode;
+	/** Jobs answered from a stored entry. */
+	private final AtomicInteger hits = new AtomicInteger();
+
+	/**
+	 * Create a cache on a directory, which is created if it does not
+	 * exist.
+	 *
+	 * @param dir The cache directory.
+	 * @param maxBytes The size bound of the directory's entries.
+	 * @param mode How jobs use the cache.
+	 *
+	 * @throws IOException if the directory cannot be created.
+	 */
+	public ResultCache(Path dir, long maxBytes, Mode mode)
+			throws IOException {
+
+		Files.createDirectories(dir);
+		this.dir = dir;
+		this.maxBytes = maxBytes;
+		this.mode = mode;
+	} // end of constructor
+
+	/**
+	 * The number of jobs answered from a stored entry so far.
+	 *
+	 * @return the hit count.
+	 */
+	public int hits() {
+
+		return hits.get();
+	} // end of hits method
+
+	/**
+	 * Run a job through the cache: load its circuit, then answer it
+	 * from a stored entry or run it and store the result. What the job
+	 * prints is exactly what {@link BatchJob#run()} prints.
+	 *
+	 * @param job The job.
+	 *
+	 * @return its exit status.
+	 *
+	 * @jls.testedby jls.ResultCacheTest#aRepeatedJobIsAnsweredWithoutSimulating()
+	 */
+	public int run(BatchJob job) {
+
+		Circuit circ;
+		try {
+			circ = job.load();
+		} catch (BatchAbortException e) {
+			return e.getStatus();
+		}
+		return run(job, circ);
+	} // end of run method
+
+	/**
+	 * Run a job on its loaded circuit through the cache, as
+	 * {@link BatchJob#run(Circuit)} would without it.
+	 *
+	 * @param job The job.
+	 * @param circ The circuit, as {@link BatchJob#load()} returns it.
+	 *
+	 * @return its exit status: 1 if verifying found a stored entry that
+	 *         differs from the fresh run.
+	 *
+	 * @jls.testedby jls.ResultCacheTest#verifyCatchesAStaleEntry()
+	 */
+	public int run(BatchJob job, Circuit circ) {
+
+		String key = key(job, circ);
+		Result stored = mode == Mode.REFRESH ? null : get(key);
+		if (stored != null && mode == Mode.USE) {
+			hits.incrementAndGet();
+			return replay(job, stored);
+		}
+
+		BatchJobs.Console.Output output =
+				BatchJobs.Console.capture(() -> job.run(circ));
+		byte[] vcd = null;
+		String vcdFile = job.vcdFile();
+		if (vcdFile != null) {
+			try {
+				vcd = Files.readAllBytes(Path.of(vcdFile));
+			} catch (IOException e) {
+				// the run reported why it wrote no VCD file
+			}
+		}
+		Result fresh = new Result(output.status(), output.stdout(),
+				output.stderr(), vcd);
+		System.out.write(fresh.stdout(), 0, fresh.stdout().length);
+		System.out.flush();
+		System.err.write(fresh.stderr(), 0, fresh.stderr().length);
+		System.err.flush();
+
+		if (stored != null && !stored.sameAs(fresh)) {
+			System.err.println("jls: error: the cached result of "
+					+ job.circuitFile() + " differs from a fresh run;"
+					+ " the entry was replaced");
+			store(key, fresh);
+			return 1;
+		}
+		store(key, fresh);
+		return fresh.status();
+	} // end of run method
+
+	/**
+	 * Print a stored result as the run would have, and write its VCD
+	 * file.
+	 *
+	 * @param job The job.
+	 * @param result The stored result.
+	 *
+	 * @return the stored exit status, or 1 if the VCD file cannot be
+	 *         written.
+	 */
+	private static int replay(BatchJob job, Result result) {
+
+		System.out.write(result.stdout(), 0, result.stdout().length);
+		System.out.flush();
+		System.err.write(result.stderr(), 0, result.stderr().length);
+		System.err.flush();
+		String vcdFile = job.vcdFile();
+		byte[] vcd = result.vcd();
+		if (vcdFile != null && vcd != null) {
+			try {
+				Files.write(Path.of(vcdFile), vcd);
+			} catch (IOException e) {
+				System.err.println("jls: error: can't write VCD file "
+						+ vcdFile + ": " + e.getMessage());
+				return 1;
+			}
+		}
+		return result.status();
+	} // end of replay method
+
+	/**
+	 * Store a result, reporting a failure as a warning: the run itself
+	 * succeeded, only its reuse is lost.
+	 *
+	 * @param key The entry's key.
+	 * @param result The result.
+	 */
+	private void store(String key, Result result) {
+
+		try {
+			put(key, result);
+		} catch (IOException e) {
+			System.err.println("jls: warning: can't write result cache "
+					+ dir + ": " + e.getMessage());
+		}
+	} // end of store method
+
+	/**
+	 * The cache key of a job: the SHA-256, in lower-case hex, of every
+	 * input its report depends on. A file that cannot be read
+	 * contributes a marker rather than failing, so the run reports the
+	 * problem as it would without the cache.
+	 *
+	 * @param job The job.
+	 * @param circ Its loaded circuit, parameter file applied.
+	 *
+	 * @return the key.
+	 *
+	 * @jls.testedby jls.ResultCacheTest#theKeyCoversEveryInput()
+	 */
+	static String key(BatchJob job, Circuit circ) {
+
+		MessageDigest sha;
+		try {
+			sha = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			// every JRE ships SHA-256 (it is required by the platform spec)
+			throw new AssertionError(ex);
+		}
+		field(sha, MAGIC);
+		field(sha, JLSInfo.versionString);
+		field(sha, circ.stateHash());
+		file(sha, job.testFile());
+		file(sha, job.paramFile());
+		Set<String> memoryFiles = new TreeSet<String>();
+		memoryFiles(circ, memoryFiles);
+		field(sha, Integer.toString(memoryFiles.size()));
+		for (String name : memoryFiles) {
+			field(sha, name);
+			file(sha, name);
+		}
+		field(sha, Long.toString(job.timeLimit()));
+		field(sha, job.delayModel().name());
+		field(sha, Integer.toString(job.maxFail()));
+		String vcdFile = job.vcdFile();
+		field(sha, vcdFile == null ? "novcd"
+				: WaveFile.isWaveFileName(vcdFile) ? "wave" : "vcd");
+		if (vcdFile != null && !JLSInfo.tracePatterns.isEmpty()) {
+			field(sha, "trace " + String.join(",", JLSInfo.tracePatterns));
+		}
+		if (JLSInfo.vcdMapFile != null) {
+			field(sha, "vcdmap");
+			file(sha, JLSInfo.vcdMapFile);
+		}
+		return hex(sha.digest());
+	} // end of key method
+
+	/**
+	 * Add one length-prefixed text field to a digest, so no two
+	 * sequences of fields digest the same bytes.
+	 *
+	 * @param sha The digest.
+	 * @param text The field.
+	 */
+	private static void field(MessageDigest sha, String text) {
+
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		sha.update((bytes.length + ":").getBytes(StandardCharsets.US_ASCII));
+		sha.update(bytes);
+	} // end of field method
+
+	/**
+	 * Add a file's contents to a digest as one field.
+	 *
+	 * @param sha The digest.
+	 * @param name The file name, or null for no file.
+	 */
+	private static void file(MessageDigest sha, @Nullable String name) {
+
+		if (name == null) {
+			field(sha, "-");
+			return;
+		}
+		// streamed, so a gigabyte stimulus file is never held whole;
+		// the digest is that of the length prefix and the bytes
+		try (InputStream in = Files.newInputStream(Path.of(name))) {
+			long size = Files.size(Path.of(name));
+			sha.update(("file " + size + ":")
+					.getBytes(StandardCharsets.US_ASCII));
+			byte[] buffer = new byte[1 << 16];
+			for (int n; (n = in.read(buffer)) > 0; ) {
+				sha.update(buffer, 0, n);
+			}
+		} catch (IOException | RuntimeException e) {
+			field(sha, "unreadable");
+		}
+	} // end of file method
+
+	/**
+	 * Collect the initialization file names of every memory in a
+	 * circuit, subcircuits included.
+	 *
+	 * @param circ The circuit.
+	 * @param names Where to add the names.
+	 */
+	private static void memoryFiles(Circuit circ, Set<String> names) {
+
+		for (Element el : circ.getElements()) {
+			if (el instanceof Memory mem && !mem.getFileName().isEmpty()) {
+				names.add(mem.getFileName());
+			}
+			else if (el instanceof SubCircuit sub) {
+				memoryFiles(sub.getSubCircuit(), names);
+			}
+		}
+	} // end of memoryFiles method
+
+	/**
+	 * Lower-case hex of a digest.
+	 *
+	 * @param digest The digest bytes.
+	 *
+	 * @return the hex string.
+	 */
+	private static String hex(byte[] digest) {
+
+		StringBuilder hex = new StringBuilder(digest.length * 2);
+		for (byte b : digest) {
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+			hex.append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	} // end of hex method
+
+	/**
+	 * Look up a stored result, marking it most recently used.
+	 *
+	 * @param key The key.
+	 *
+	 * @return the result, or null if there is none or it does not parse.
+	 *
+	 * @jls.testedby jls.ResultCacheTest#theCacheEvictsLeastRecentlyUsedFirst()
+	 */
+	@Nullable Result get(String key) {
+
+		Path entry = dir.resolve(key + SUFFIX);
+		byte[] bytes;
+		try {
+			bytes = Files.readAllBytes(entry);
+		} catch (IOException e) {
+			return null;
+		}
+		Result result = decode(key, bytes);
+		try {
+			if (result == null) {
+				Files.deleteIfExists(entry);
+			}
+			else {
+				Files.setLastModifiedTime(entry,
+						FileTime.fromMillis(System.currentTimeMillis()));
+			}
+		} catch (IOException e) {
+			// another process evicted or replaced it meanwhile
+		}
+		return result;
+	} // end of get method
+
+	/**
+	 * Store a result, then trim the directory to its size bound.
+	 *
+	 * @param key The key.
+	 * @param result The result.
+	 *
+	 * @throws IOException if the entry cannot be written.
+	 */
+	void put(String key, Result result) throws IOException {
+
+		Path temp = Files.createTempFile(dir, key, ".tmp");
+		try {
+			Files.write(temp, encode(key, result));
+			try {
+				Files.move(temp, dir.resolve(key + SUFFIX),
+						StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, dir.resolve(key + SUFFIX),
+						StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+		evict();
+	} // end of put method
+
+	/**
+	 * Remove least recently used entries until the directory's entries
+	 * fit the size bound.
+	 *
+	 * @throws IOException if the directory cannot be listed.
+	 */
+	private void evict() throws IOException {
+
+		record Stored(Path path, long size, long used) {
+		}
+		List<Stored> entries = new ArrayList<Stored>();
+		long total = 0;
+		try (DirectoryStream<Path> files =
+				Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+			for (Path path : files) {
+				try {
+					long size = Files.size(path);
+					entries.add(new Stored(path, size,
+							Files.getLastModifiedTime(path).toMillis()));
+					total += size;
+				} catch (NoSuchFileException gone) {
+					// evicted by another process while listing
+				}
+			}
+		}
+		entries.sort(Comparator.comparingLong(Stored::used));
+		for (Stored entry : entries) {
+			if (total <= maxBytes) {
+				break;
+			}
+			Files.deleteIfExists(entry.path());
+			total -= entry.size();
+		}
+	} // end of evict method
+
+	/**
+	 * The bytes of an entry file.
+	 *
+	 * @param key The key, repeated in the entry to catch a misnamed file.
+	 * @param result The result.
+	 *
+	 * @return the encoded entry.
+	 */
+	private static byte[] encode(String key, Result result) {
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeUTF(MAGIC);
+			out.writeUTF(key);
+			out.writeInt(result.status());
+			blob(out, result.stdout());
+			blob(out, result.stderr());
+			blob(out, result.vcd());
+		} catch (IOException e) {
+			// a ByteArrayOutputStream never fails
+			throw new AssertionError(e);
+		}
+		return bytes.toByteArray();
+	} // end of encode method
+
+	/**
+	 * Write one length-prefixed byte array, -1 standing for null.
+	 *
+	 * @param out The stream.
+	 * @param blob The bytes, or null.
+	 *
+	 * @throws IOException never, for a byte array stream.
+	 */
+	private static void blob(DataOutputStream out, byte @Nullable [] blob)
+			throws IOException {
+
+		if (blob == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(blob.length);
+		out.write(blob);
+	} // end of blob method
+
+	/**
+	 * Parse an entry file, checking every length against what is left
+	 * before allocating.
+	 *
+	 * @param key The key the entry is stored under.
+	 * @param bytes The file's bytes.
+	 *
+	 * @return the result, or null if the bytes are not a complete entry
+	 *         for this key.
+	 */
+	private static @Nullable Result decode(String key, byte[] bytes) {
+
+		try (DataInputStream in =
+				new DataInputStream(new ByteArrayInputStream(bytes))) {
+			if (!in.readUTF().equals(MAGIC) || !in.readUTF().equals(key)) {
+				return null;
+			}
+			int status = in.readInt();
+			byte[] stdout = readBlob(in);
+			byte[] stderr = readBlob(in);
+			byte[] vcd = readBlob(in);
+			if (stdout == null || stderr == null || in.available() != 0) {
+				return null;
+			}
+			return new Result(status, stdout, stderr, vcd);
+		} catch (IOException e) {
+			return null;
+		}
+	} // end of decode method
+
+	/**
+	 * Read one length-prefixed byte array.
+	 *
+	 * @param in The stream.
+	 *
+	 * @return the bytes, or null for the null marker.
+	 *
+	 * @throws IOException if the length is invalid or the stream ends.
+	 */
+	private static byte @Nullable [] readBlob(DataInputStream in)
+			throws IOException {
+
+		int length = in.readInt();
+		if (length == -1) {
+			return null;
+		}
+		if (length < 0 || length > in.available()) {
+			throw new IOException("bad entry length " + length);
+		}
+		byte[] blob = new byte[length];
+		in.readFully(blob);
+		return blob;
+	} // end of readBlob method
+
+} // end of ResultCache class
@@ -52,6 +52,8 @@ public final class SpatialIndex {
 	private final Map<Element, Bounds> indexed = new HashMap<Element, Bounds>();
 	/** True when the index is stale and must be rebuilt before answering queries. */
 	private boolean dirty = true;
+	/** The number of changes made to the index, rebuilds and marks included. */
+	private long changes = 0;
 
 	/**
 	 * Create an empty index. It starts dirty, so the first query pays
@@ -90,8 +92,23 @@ public final class SpatialIndex {
 	public void invalidate() {
 
 		dirty = true;
+		changes += 1;
 	} // end of invalidate method
 
+	/**
+	 * Get the number of changes made to the index: a cache of anything
+	 * drawn from the elements it holds is current while this stays the
+	 * same.
+	 *
+	 * @return the count.
+	 *
+	 * @jls.testedby jls.SpatialIndexTest#staysExactAfterMovesAndInvalidation()
+	 */
+	public long changes() {
+
+		return changes;
+	} // end of changes method
+
 	/**
 	 * Rebuild the index from scratch over the given elements.
 	 *
@@ -116,6 +133,7 @@ public final class SpatialIndex {
 
 		Bounds b = el.getIndexBounds();
 		indexed.put(el, b);
+		changes += 1;
 		int cx1 = Math.floorDiv(b.x(), CELL);
 		int cy1 = Math.floorDiv(b.y(), CELL);
 		int cx2 = Math.floorDiv(b.x() + Math.max(b.width(), 0), CELL);
@@ -145,6 +163,7 @@ public final class SpatialIndex {
 		if (b == null) {
 			return;
 		}
+		changes += 1;
 		int cx1 = Math.floorDiv(b.x(), CELL);
 		int cy1 = Math.floorDiv(b.y(), CELL);
 		int cx2 = Math.floorDiv(b.x() + Math.max(b.width(), 0), CELL);
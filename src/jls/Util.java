@@ -38,6 +38,26 @@ public final class Util {
 	 */
 	public static Point copy(Set<Element> from, Circuit to) {
 
+		return copy(from, to, null);
+	} // end of copy method
+
+	/**
+	 * Copy elements from one set to another circuit, recording which
+	 * copy each original became - subcircuit contents included - so the
+	 * caller can carry state over that a plain copy does not keep.
+	 *
+	 * @param from A set of elements.
+	 * @param to A circuit.
+	 * @param copies Receives each copied element (wires and wire ends
+	 *        included) mapped to its copy, or null to record nothing.
+	 *
+	 * @return the point of minimum x,y coordinates of all elements.
+	 *
+	 * @jls.testedby jls.BatchJobsTest#aSweepCopyKeepsTheSimulationSeedOrder()
+	 */
+	public static Point copy(Set<Element> from, Circuit to,
+			@Nullable Map<Element,Element> copies) {
+
 		// create set of copied ends (includes attached
 		// wire ends that won't be in the selected set)
 		Set<WireEnd>ends = new HashSet<WireEnd>();
@@ -62,7 +82,11 @@ public final class Util {
 				miny = y;
 			// every non-wire element (wires/ends are skipped above and
 			// copied separately) produces a non-null copy
-			to.addElement(Objects.requireNonNull(el.copy()));
+			Element copy = el instanceof SubCircuit sub && copies != null
+					? sub.copyRecording(copies) : Objects.requireNonNull(el.copy());
+			to.addElement(copy);
+			if (copies != null)
+				copies.put(el, copy);
 
 			// copy all attached wire ends (since they don't show up in
 			// the selected set)
@@ -73,6 +97,8 @@ public final class Util {
 						"attached put has no wire end");
 				WireEnd newEnd = oldEnd.copy();
 				to.addElement(newEnd);
+				if (copies != null)
+					copies.put(oldEnd, newEnd);
 				newEnd.setPut(p.getCopy());
 				p.getCopy().setAttached(newEnd);
 				ends.add(oldEnd); // for wire check later
@@ -94,7 +120,10 @@ public final class Util {
 				minx = x;
 			if (y < miny)
 				miny = y;
-			to.addElement(end.copy());
+			WireEnd newEnd = end.copy();
+			to.addElement(newEnd);
+			if (copies != null)
+				copies.put(end, newEnd);
 			ends.add(end);
 		}
 
@@ -118,6 +147,8 @@ public final class Util {
 			end1.getCopy().addWire(newWire);
 			end2.getCopy().addWire(newWire);
 			to.addElement(newWire);
+			if (copies != null)
+				copies.put(wire, newWire);
 		}
 
 		// get rid of all wire ends with no wires
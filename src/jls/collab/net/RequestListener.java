@@ -0,0 +1,435 @@
+package jls.collab.net;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * The local endpoint of the warm simulation server ({@code jls -serve},
+ * docs/batch-interface.md section 8): a request/response listener on a
+ * Unix domain socket or a loopback TCP port. Like {@link
+ * SessionListener} it is bound only after an explicit gesture - the
+ * {@code -serve} flag - and, like the rest of this package, it carries
+ * no circuit semantics: a request and its response are opaque byte
+ * frames, and what they mean is the {@link Handler}'s business.
+ *
+ * <p>Local-only by construction: there is no way to bind anything but
+ * a filesystem socket or the loopback address. Where the filesystem
+ * supports POSIX permissions a Unix socket is bound inside a fresh
+ * owner-only directory (mode 700), made owner-only itself (mode 600)
+ * and only then moved to its path, so it is never reachable by another
+ * user, not even for the moment after binding. A loopback port is
+ * reachable by every local user; the server has no authentication, so
+ * the socket is the safer choice on a shared host.</p>
+ *
+ * <p>Wire format, both directions: a 4-byte big-endian length, then
+ * that many payload bytes. A connection carries any number of
+ * request/response exchanges in turn and ends when the client closes
+ * it. Following the #38 hostile-input discipline, a length outside
+ * {@code 0..}{@link #MAX_FRAME} is checked before anything is
+ * allocated and ends the connection, never the server. So does a client
+ * that sends or takes nothing for {@link #IDLE_TIMEOUT_MILLIS} while a
+ * frame is awaited or written, so idle clients cannot hold every worker
+ * thread.</p>
+ */
+public final class RequestListener implements Closeable {
+
+	/** The largest request or response payload, in bytes (64 MiB). */
+	public static final int MAX_FRAME = 64 << 20;
+
+	/** Queued connections the operating system holds before accept. */
+	private static final int BACKLOG = 64;
+
+	/**
+	 * The default idle timeout, in milliseconds: how long a connection
+	 * may go without completing the frame being read or written before
+	 * it is closed. Channel streams ignore a socket read timeout, so the
+	 * connection is closed from {@link #WATCHDOG} instead.
+	 */
+	public static final int IDLE_TIMEOUT_MILLIS = 30_000;
+
+	/** Closes the connections whose idle timeout runs out. */
+	private static final ScheduledExecutorService WATCHDOG =
+			Executors.newSingleThreadScheduledExecutor(task -> {
+				Thread thread = new Thread(task, "jls-serve-idle");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+	/**
+	 * Turns one request payload into its response payload. Called on
+	 * the server's worker threads, concurrently for different
+	 * connections.
+	 */
+	@FunctionalInterface
+	public interface Handler {
+
+		/**
+		 * Answer one request.
+		 *
+		 * @param request The request payload.
+		 *
+		 * @return the response payload, at most {@link #MAX_FRAME} bytes.
+		 */
+		byte[] handle(byte[] request);
+
+	} // end of Handler interface
+
+	/** The bound server channel this listener owns and closes. */
+	private final ServerSocketChannel server;
+	/** The socket file to remove on close, or null for a TCP port. */
+	private final @Nullable Path socketFile;
+	/** The idle timeout of each connection, in milliseconds. */
+	private volatile int idleMillis = IDLE_TIMEOUT_MILLIS;
+
+	/**
+	 * Wrap a bound server channel. Private: the bind methods are the
+	 * only constructor path.
+	 *
+	 * @param server The already-bound channel.
+	 * @param socketFile The Unix socket file, or null for a TCP port.
+	 */
+	private RequestListener(ServerSocketChannel server,
+			@Nullable Path socketFile) {
+
+		this.server = server;
+		this.socketFile = socketFile;
+	} // end of constructor
+
+	/**
+	 * Bind a listener to a Unix domain socket file, which must not
+	 * already exist.
+	 *
+	 * @param file The socket file to create.
+	 *
+	 * @return the bound listener.
+	 *
+	 * @throws IOException if the socket cannot be bound.
+	 *
+	 * @jls.testedby jls.BatchServerTest#unixSocketIsOwnerOnly()
+	 */
+	public static RequestListener bindUnix(Path file) throws IOException {
+
+		Path parent = file.toAbsolutePath().getParent();
+		Path hidden = null;
+		if (parent != null) {
+			try {
+				hidden = Files.createTempDirectory(parent, ".jls-serve",
+						PosixFilePermissions.asFileAttribute(
+								PosixFilePermissions.fromString("rwx------")));
+			} catch (UnsupportedOperationException notPosix) {
+				// no POSIX permissions here: the directory's access
+				// control is all there is, so bind in place
+			}
+		}
+		Path bound = hidden == null ? file : hidden.resolve("s");
+		ServerSocketChannel server =
+				ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+		try {
+			server.bind(UnixDomainSocketAddress.of(bound), BACKLOG);
+			if (hidden != null) {
+				Files.setPosixFilePermissions(bound,
+						PosixFilePermissions.fromString("rw-------"));
+				// fails rather than replaces if the path exists
+				Files.move(bound, file);
+			}
+		} catch (IOException | RuntimeException failed) {
+			SocketSession.closeQuietly(server);
+			if (hidden != null) {
+				Files.deleteIfExists(bound);
+			}
+			throw failed;
+		} finally {
+			if (hidden != null) {
+				Files.deleteIfExists(hidden);
+			}
+		}
+		return new RequestListener(server, file);
+	} // end of bindUnix method
+
+	/**
+	 * Bind a listener to a loopback TCP port. A port of zero asks the
+	 * system for an ephemeral port, which {@link #address()} reports.
+	 *
+	 * @param port The port to bind, or zero for a system-chosen one.
+	 *
+	 * @return the bound listener.
+	 *
+	 * @throws IOException if the port cannot be bound.
+	 */
+	public static RequestListener bindLoopback(int port) throws IOException {
+
+		ServerSocketChannel server = ServerSocketChannel.open();
+		try {
+			server.bind(new InetSocketAddress(
+					InetAddress.getLoopbackAddress(), port), BACKLOG);
+		} catch (IOException | RuntimeException failed) {
+			SocketSession.closeQuietly(server);
+			throw failed;
+		}
+		return new RequestListener(server, null);
+	} // end of bindLoopback method
+
+	/**
+	 * The address this listener is bound to: the socket file, or the
+	 * loopback address and (possibly system-chosen) port.
+	 *
+	 * @return the bound local address.
+	 *
+	 * @throws IOException if the listener is closed.
+	 */
+	public SocketAddress address() throws IOException {
+
+		SocketAddress bound = server.getLocalAddress();
+		if (bound == null) {
+			throw new ClosedChannelException();
+		}
+		// a socket bound in a private directory was moved from there
+		return socketFile != null ? UnixDomainSocketAddress.of(socketFile)
+				: bound;
+	} // end of address method
+
+	/**
+	 * The bound address in the form a startup message prints: the
+	 * socket file's path, or {@code host:port}.
+	 *
+	 * @return the printable address.
+	 *
+	 * @throws IOException if the listener is closed.
+	 */
+	public String describe() throws IOException {
+
+		SocketAddress bound = address();
+		if (bound instanceof UnixDomainSocketAddress unix) {
+			return unix.getPath().toString();
+		}
+		if (bound instanceof InetSocketAddress inet) {
+			return inet.getAddress().getHostAddress() + ":" + inet.getPort();
+		}
+		return bound.toString();
+	} // end of describe method
+
+	/**
+	 * Set how long a connection may go without completing the frame
+	 * being read or written before it is closed. Applies to connections
+	 * accepted afterwards.
+	 *
+	 * @param millis The idle timeout, in milliseconds; positive.
+	 *
+	 * @jls.testedby jls.BatchServerTest#anIdleClientIsDisconnected()
+	 */
+	public void setIdleTimeout(int millis) {
+
+		if (millis <= 0) {
+			throw new IllegalArgumentException("idle timeout " + millis
+					+ " is not positive");
+		}
+		idleMillis = millis;
+	} // end of setIdleTimeout method
+
+	/**
+	 * Accept connections until the listener is closed, serving each on
+	 * the given executor. Returns normally once {@link #close()} has been
+	 * called, from any thread.
+	 *
+	 * @param handler Answers each request.
+	 * @param workers Runs one task per connection.
+	 *
+	 * @throws IOException if accepting fails for any reason but close.
+	 */
+	public void serve(Handler handler, ExecutorService workers)
+			throws IOException {
+
+		while (true) {
+			SocketChannel client;
+			try {
+				client = server.accept();
+			} catch (ClosedChannelException closed) {
+				return;
+			}
+			workers.execute(() -> converse(client, handler, idleMillis));
+		}
+	} // end of serve method
+
+	/**
+	 * Answer requests on one connection until the client closes it,
+	 * sends a frame this listener rejects, or stays idle too long.
+	 *
+	 * @param client The accepted connection, closed on return.
+	 * @param handler Answers each request.
+	 * @param idleMillis The idle timeout, in milliseconds.
+	 */
+	private static void converse(SocketChannel client, Handler handler,
+			int idleMillis) {
+
+		try (client;
+				DataInputStream in = new DataInputStream(
+						Channels.newInputStream(client));
+				DataOutputStream out = new DataOutputStream(
+						Channels.newOutputStream(client))) {
+			while (true) {
+				byte[] request;
+				Future<?> idle = closeAfter(client, idleMillis);
+				try {
+					request = readFrame(in);
+				} finally {
+					idle.cancel(false);
+				}
+				if (request == null) {
+					return;
+				}
+				byte[] response = handler.handle(request);
+				idle = closeAfter(client, idleMillis);
+				try {
+					writeFrame(out, response);
+				} finally {
+					idle.cancel(false);
+				}
+			}
+		} catch (IOException | FrameRejected dropped) {
+			// one bad, idle or vanished client ends its own connection only
+		}
+	} // end of converse method
+
+	/**
+	 * Close a connection once a timeout runs out, unless cancelled
+	 * first; a read or write blocked on it then fails.
+	 *
+	 * @param client The connection.
+	 * @param millis The timeout, in milliseconds.
+	 *
+	 * @return the pending close, to cancel once the frame is done.
+	 */
+	private static Future<?> closeAfter(SocketChannel client, int millis) {
+
+		return WATCHDOG.schedule(() -> SocketSession.closeQuietly(client),
+				millis, TimeUnit.MILLISECONDS);
+	} // end of closeAfter method
+
+	/**
+	 * Send one request to a listener and wait for its response: the
+	 * client side of the protocol, for scripts and editor plugins
+	 * written in Java and for the tests.
+	 *
+	 * @param address The listener's address (a {@link
+	 *            UnixDomainSocketAddress} or a loopback address).
+	 * @param request The request payload.
+	 *
+	 * @return the response payload.
+	 *
+	 * @throws IOException if the connection fails or the server closes
+	 *             it without answering.
+	 * @throws FrameRejected if the response frame is over the cap.
+	 */
+	public static byte[] exchange(SocketAddress address, byte[] request)
+			throws IOException, FrameRejected {
+
+		try (SocketChannel channel = SocketChannel.open(address);
+				DataInputStream in = new DataInputStream(
+						Channels.newInputStream(channel));
+				DataOutputStream out = new DataOutputStream(
+						Channels.newOutputStream(channel))) {
+			writeFrame(out, request);
+			byte[] response = readFrame(in);
+			if (response == null) {
+				throw new EOFException("server closed the connection");
+			}
+			return response;
+		}
+	} // end of exchange method
+
+	/**
+	 * Read one length-prefixed frame, checking the length before
+	 * allocating.
+	 *
+	 * @param in The stream to read.
+	 *
+	 * @return the payload, or null on a clean end of stream.
+	 *
+	 * @throws IOException if the stream fails or ends mid-frame.
+	 * @throws FrameRejected if the length is negative or over the cap.
+	 */
+	private static byte @Nullable [] readFrame(InputStream in)
+			throws IOException, FrameRejected {
+
+		int first = in.read();
+		if (first < 0) {
+			return null;
+		}
+		byte[] rest = in.readNBytes(3);
+		if (rest.length < 3) {
+			throw new EOFException("truncated frame length");
+		}
+		int length = (first << 24) | ((rest[0] & 0xff) << 16)
+				| ((rest[1] & 0xff) << 8) | (rest[2] & 0xff);
+		if (length < 0 || length > MAX_FRAME) {
+			throw new FrameRejected("frame length " + length
+					+ " outside 0.." + MAX_FRAME);
+		}
+		byte[] payload = in.readNBytes(length);
+		if (payload.length < length) {
+			throw new EOFException("truncated frame");
+		}
+		return payload;
+	} // end of readFrame method
+
+	/**
+	 * Write one length-prefixed frame and flush it.
+	 *
+	 * @param out The stream to write.
+	 * @param payload The payload.
+	 *
+	 * @throws IOException if the stream fails or the payload is over
+	 *             the cap.
+	 */
+	private static void writeFrame(DataOutputStream out, byte[] payload)
+			throws IOException {
+
+		if (payload.length > MAX_FRAME) {
+			throw new IOException("frame of " + payload.length
+					+ " bytes is over the " + MAX_FRAME + "-byte cap");
+		}
+		out.writeInt(payload.length);
+		out.write(payload);
+		out.flush();
+	} // end of writeFrame method
+
+	/**
+	 * Stop accepting and release the address: a Unix socket file is
+	 * removed. Connections already being served finish their current
+	 * exchange. Idempotent.
+	 *
+	 * @throws IOException if closing fails.
+	 */
+	@Override
+	public void close() throws IOException {
+
+		server.close();
+		if (socketFile != null) {
+			Files.deleteIfExists(socketFile);
+		}
+	} // end of close method
+
+} // end of RequestListener class
@@ -28,6 +28,10 @@
  * that binds a server socket, and only after an explicit Share
  * gesture; binding is separate from accepting so the join string shows
  * before any peer connects.</li>
+ * <li>{@link jls.collab.net.RequestListener} - the warm batch
+ * server's local endpoint ({@code jls -serve}): a Unix socket or
+ * loopback port carrying length-capped request/response frames, bound
+ * only by that flag.</li>
  * <li>{@link jls.collab.net.SocketSession} - a live TCP session: it
  * drives the handshake over a socket's byte streams, then carries
  * {@link jls.collab.net.SecureLink} frames in both directions with one
@@ -50,7 +54,8 @@
  * shell that moves its bytes. Socket construction lives only here (the
  * socket-confinement ratchet {@code jls.SocketConfinementRatchetTest}
  * and {@code jls.ArchitectureRulesTest} pin that), so a default GUI
- * start and batch mode - which construct no listener - open no port.
+ * start and batch mode - which construct no listener - open no port;
+ * only {@code -serve} or a Share gesture binds one.
  * The join/verify and key-change dialogs are the following #168 slice,
  * under {@code jls.collab.ui}. No Swing is imported here (enforced by
  * {@code jls.ArchitectureRulesTest}) and no Java object serialization
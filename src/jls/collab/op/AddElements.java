@@ -7,6 +7,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.jspecify.annotations.Nullable;
+
 import jls.Circuit;
 import jls.edit.SwingTextMetrics;
 import jls.elem.Element;
@@ -48,7 +50,7 @@ public record AddElements(List<String> blocks) implements CircuitOp {
 	} // end of compact constructor
 
 	@Override
-	public void apply(Circuit circuit, Graphics g) throws OpRejected {
+	public void apply(Circuit circuit, @Nullable Graphics g) throws OpRejected {
 
 		validate(circuit);
 
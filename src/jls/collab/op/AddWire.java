@@ -108,7 +108,7 @@ public record AddWire(List<ElementId> attach, List<String> blocks)
 	} // end of Plan record
 
 	@Override
-	public void apply(Circuit circuit, Graphics g) throws OpRejected {
+	public void apply(Circuit circuit, @Nullable Graphics g) throws OpRejected {
 
 		Plan plan = validate(circuit);
 		int base = attach.size();
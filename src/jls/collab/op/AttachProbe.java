@@ -3,6 +3,8 @@ package jls.collab.op;
 import java.awt.Graphics;
 import java.io.PrintWriter;
 
+import org.jspecify.annotations.Nullable;
+
 import jls.Circuit;
 import jls.elem.Element;
 import jls.elem.ElementId;
@@ -19,7 +21,7 @@ import jls.elem.Wire;
 public record AttachProbe(ElementId id, String name) implements CircuitOp {
 
 	@Override
-	public void apply(Circuit circuit, Graphics g) throws OpRejected {
+	public void apply(Circuit circuit, @Nullable Graphics g) throws OpRejected {
 
 		Wire wire = resolveWire(circuit, id);
 		if (name == null || name.isEmpty()) {
@@ -3,6 +3,8 @@ package jls.collab.op;
 import java.awt.Graphics;
 import java.io.PrintWriter;
 
+import org.jspecify.annotations.Nullable;
+
 import jls.Circuit;
 
 /**
@@ -48,7 +50,7 @@ public sealed interface CircuitOp
 	 * @throws OpRejected if the op does not validate against this
 	 *             circuit; the circuit is unchanged.
 	 */
-	void apply(Circuit circuit, Graphics g) throws OpRejected;
+	void apply(Circuit circuit, @Nullable Graphics g) throws OpRejected;
 
 	/**
 	 * The op that undoes this one, computed from the circuit as it is
@@ -122,11 +122,13 @@ final class ElementBlocks {
 		}
 		Element el = descriptor.create(owner);
 		Circuit loader = new Circuit("");
-		if (!loader.loadElement(el, in)) {
-			LoadError err = JLSInfo.lastLoadError;
-			throw new OpRejected("the block for element type '" + type
-					+ "' does not load"
-					+ (err == null ? "" : ": " + err.detail()));
+		synchronized (Circuit.LOAD_LOCK) {
+			if (!loader.loadElement(el, in)) {
+				LoadError err = JLSInfo.lastLoadError;
+				throw new OpRejected("the block for element type '" + type
+						+ "' does not load"
+						+ (err == null ? "" : ": " + err.detail()));
+			}
 		}
 		if (in.hasNext()) {
 			throw new OpRejected("the block for element type '" + type
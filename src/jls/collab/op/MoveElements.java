@@ -7,6 +7,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.jspecify.annotations.Nullable;
+
 import jls.Circuit;
 import jls.elem.Element;
 import jls.elem.ElementId;
@@ -37,7 +39,7 @@ public record MoveElements(List<ElementId> ids, int dx, int dy)
 	} // end of compact constructor
 
 	@Override
-	public void apply(Circuit circuit, Graphics g) throws OpRejected {
+	public void apply(Circuit circuit, @Nullable Graphics g) throws OpRejected {
 
 		if (ids.isEmpty()) {
 			throw new OpRejected("a move needs at least one element");
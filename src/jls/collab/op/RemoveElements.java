@@ -8,6 +8,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.jspecify.annotations.Nullable;
+
 import jls.Circuit;
 import jls.elem.Element;
 import jls.elem.ElementId;
@@ -51,7 +53,7 @@ public record RemoveElements(List<ElementId> ids) implements CircuitOp {
 	} // end of compact constructor
 
 	@Override
-	public void apply(Circuit circuit, Graphics g) throws OpRejected {
+	public void apply(Circuit circuit, @Nullable Graphics g) throws OpRejected {
 
 		List<Element> targets = validate(circuit);
 
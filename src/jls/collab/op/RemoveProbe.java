@@ -3,6 +3,8 @@ package jls.collab.op;
 import java.awt.Graphics;
 import java.io.PrintWriter;
 
+import org.jspecify.annotations.Nullable;
+
 import jls.Circuit;
 import jls.elem.ElementId;
 import jls.elem.Wire;
@@ -16,7 +18,7 @@ import jls.elem.Wire;
 public record RemoveProbe(ElementId id) implements CircuitOp {
 
 	@Override
-	public void apply(Circuit circuit, Graphics g) throws OpRejected {
+	public void apply(Circuit circuit, @Nullable Graphics g) throws OpRejected {
 
 		Wire wire = AttachProbe.resolveWire(circuit, id);
 		if (!wire.hasProbe()) {
@@ -8,6 +8,8 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.jspecify.annotations.Nullable;
+
 import jls.Circuit;
 import jls.elem.Element;
 import jls.elem.ElementId;
@@ -43,7 +45,7 @@ import jls.elem.WireEnd;
 public record RemoveWire(ElementId id) implements CircuitOp {
 
 	@Override
-	public void apply(Circuit circuit, Graphics g) throws OpRejected {
+	public void apply(Circuit circuit, @Nullable Graphics g) throws OpRejected {
 
 		List<WireEnd> ends = validate(circuit);
 
@@ -3,6 +3,8 @@ package jls.collab.op;
 import java.awt.Graphics;
 import java.io.PrintWriter;
 
+import org.jspecify.annotations.Nullable;
+
 import jls.Circuit;
 import jls.core.Orientation;
 import jls.edit.SwingTextMetrics;
@@ -21,7 +23,7 @@ public record RotateElement(ElementId id, boolean clockwise)
 		implements CircuitOp {
 
 	@Override
-	public void apply(Circuit circuit, Graphics g) throws OpRejected {
+	public void apply(Circuit circuit, @Nullable Graphics g) throws OpRejected {
 
 		Element el = Ops.resolve(circuit, id);
 		if (!(el instanceof Rotatable rot) || !rot.canRotate()) {
@@ -52,7 +52,7 @@ public record SetElementConfig(ElementId id, String block)
 		implements CircuitOp {
 
 	@Override
-	public void apply(Circuit circuit, Graphics g) throws OpRejected {
+	public void apply(Circuit circuit, @Nullable Graphics g) throws OpRejected {
 
 		Element old = validate(circuit, g);
 
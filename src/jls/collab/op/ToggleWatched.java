@@ -3,6 +3,8 @@ package jls.collab.op;
 import java.awt.Graphics;
 import java.io.PrintWriter;
 
+import org.jspecify.annotations.Nullable;
+
 import jls.Circuit;
 import jls.elem.Element;
 import jls.elem.ElementId;
@@ -17,7 +19,7 @@ import jls.elem.Watchable;
 public record ToggleWatched(ElementId id) implements CircuitOp {
 
 	@Override
-	public void apply(Circuit circuit, Graphics g) throws OpRejected {
+	public void apply(Circuit circuit, @Nullable Graphics g) throws OpRejected {
 
 		Element el = Ops.resolve(circuit, id);
 		if (!(el instanceof Watchable watchable)) {
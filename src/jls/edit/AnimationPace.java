@@ -0,0 +1,100 @@
+package jls.edit;
+
+/**
+ * Paces an animated run in real time: simulated time is let advance at
+ * a fixed rate of time units per second of wall time, measured from
+ * when the animation started. Events due by the wall clock run as one
+ * batch without reading it again; the simulator waits only for an event
+ * that is not due yet. A run that cannot keep up goes as fast as it
+ * can, and lagging more than {@link #MAX_LAG_NANOS} restarts the pacing
+ * from where it is rather than racing to catch up later.
+ *
+ * Sim thread only.
+ */
+final class AnimationPace {
+
+	/** The most wall time a run may lag its pace before it is restarted. */
+	static final long MAX_LAG_NANOS = 250_000_000L;
+
+	/** Simulated time units per second of wall time. */
+	private final long rate;
+	/** The simulated time the pace runs from. */
+	private long fromTime;
+	/** The System.nanoTime the pace runs from. */
+	private long fromNanos;
+	/** The simulated time the wall clock allowed when last read. */
+	private long until;
+
+	/**
+	 * Start pacing.
+	 *
+	 * @param rate Simulated time units per second, at least 1.
+	 * @param time The simulated time now.
+	 * @param nanos The System.nanoTime now.
+	 *
+	 * @jls.testedby jls.edit.AnimationPaceTest#eventsRunWhenTheWallClockReachesThem()
+	 */
+	AnimationPace(long rate, long time, long nanos) {
+
+		this.rate = Math.max(1, rate);
+		fromTime = time;
+		fromNanos = nanos;
+		until = time;
+	} // end of constructor
+
+	/**
+	 * Say whether an event is due without reading the wall clock: it is
+	 * no later than the time the clock allowed when last read.
+	 *
+	 * @param when The event's simulated time.
+	 *
+	 * @return true if the event may run now.
+	 *
+	 * @jls.testedby jls.edit.AnimationPaceTest#eventsRunWhenTheWallClockReachesThem()
+	 */
+	boolean admits(long when) {
+
+		return when <= until;
+	} // end of admits method
+
+	/**
+	 * Read the wall clock and get how long to wait before an event is
+	 * due. A run lagging its pace by more than {@link #MAX_LAG_NANOS}
+	 * is paced from this event on.
+	 *
+	 * @param when The event's simulated time.
+	 * @param nanos The System.nanoTime now.
+	 *
+	 * @return the nanoseconds to wait, or 0 if the event is due.
+	 *
+	 * @jls.testedby jls.edit.AnimationPaceTest#eventsRunWhenTheWallClockReachesThem()
+	 * @jls.testedby jls.edit.AnimationPaceTest#aLaggingRunIsNotRushedToCatchUp()
+	 */
+	long wait(long when, long nanos) {
+
+		long due = fromNanos + (long)((when - fromTime) * 1e9 / rate);
+		if (nanos - due > MAX_LAG_NANOS) {
+			fromTime = when;
+			fromNanos = nanos;
+			due = nanos;
+		}
+		until = fromTime + (long)((nanos - fromNanos) / 1e9 * rate);
+		if (until >= when)
+			return 0;
+		return Math.max(1, due - nanos);
+	} // end of wait method
+
+	/**
+	 * Get the simulated time the wall clock allowed when last read,
+	 * which the run's clock may show while it waits for an event.
+	 *
+	 * @return the time.
+	 *
+	 * @jls.testedby jls.edit.AnimationPaceTest#eventsRunWhenTheWallClockReachesThem()
+	 */
+	long until() {
+
+		return until;
+	} // end of until method
+
+} // end of AnimationPace class
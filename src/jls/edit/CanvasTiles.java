@@ -0,0 +1,260 @@
+package jls.edit;
+
+import java.awt.AlphaComposite;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A cache of a canvas layer drawn once into fixed tiles of the
+ * component, then copied to the screen on every repaint. SimpleEditor
+ * keeps the elements a simulation run cannot change in it while the
+ * editor is idle with nothing selected, and copies it over the wires
+ * and under the displays, so a repaint, a scroll or a frame of a run
+ * copies tiles instead of redrawing the circuit around the values.
+ *
+ * Tiles are transparent where the layer draws nothing, so what is drawn
+ * before them shows through. They are {@link VolatileImage}s where the
+ * component has a graphics configuration, and are redrawn if their
+ * contents are lost; elsewhere (headless, or not yet shown) they are
+ * plain images. A tile holds its part of the component at the device
+ * scale of the graphics it is copied to, so a HiDPI or fractionally
+ * scaled screen copies it pixel for pixel rather than enlarging it.
+ * Tiles are keyed by their place in the component, and all of them are
+ * dropped when the view transform (the zoom), the device scale or the
+ * caller's content stamp changes. At most {@link #MAX_TILES} are kept,
+ * the least recently drawn dropped first.
+ *
+ * EDT only.
+ */
+final class CanvasTiles {
+
+	/** A tile's edge, in component coordinates. */
+	static final int TILE = 256;
+
+	/** The most tiles kept: a 4K view's worth, 40MB of 32-bit pixels at scale 1. */
+	static final int MAX_TILES = 160;
+
+	/**
+	 * Draws the cached layer.
+	 */
+	interface Layer {
+
+		/**
+		 * Draw the layer within the graphics' clip.
+		 *
+		 * @param g The graphics, in component coordinates, clipped to
+		 *        one tile, over a transparent tile.
+		 */
+		void draw(Graphics2D g);
+
+	} // end of Layer interface
+
+	/** The component the tiles are of. */
+	private final Component owner;
+	/** The tiles, by packed tile coordinates, least recently drawn first. */
+	private final Map<Long,Image> tiles = new LinkedHashMap<Long,Image>(
+			16, 0.75f, true);
+	/** The view transform the tiles were drawn under. */
+	private @Nullable AffineTransform transform = null;
+	/** The content stamp the tiles were drawn at. */
+	private long stamp = 0;
+	/** The horizontal device scale the tiles were drawn at. */
+	private double scaleX = 1;
+	/** The vertical device scale the tiles were drawn at. */
+	private double scaleY = 1;
+
+	/**
+	 * Create an empty cache.
+	 *
+	 * @param owner The component the tiles are of.
+	 */
+	CanvasTiles(Component owner) {
+
+		this.owner = owner;
+	} // end of constructor
+
+	/**
+	 * Copy the tiles covering a region to the screen, drawing any not
+	 * cached.
+	 *
+	 * @param g The component's graphics, in component coordinates; any
+	 *        scale it has is the device's.
+	 * @param region The region to cover, in component coordinates.
+	 * @param view The view transform the layer is drawn under.
+	 * @param content A stamp that changes whenever the layer's content
+	 *        may have.
+	 * @param layer Draws the layer.
+	 *
+	 * @jls.testedby jls.edit.CanvasTilesTest#tiledRenderMatchesTheDirectRender()
+	 * @jls.testedby jls.edit.CanvasTilesTest#tilesAreDrawnAtTheDeviceScale()
+	 * @jls.testedby jls.edit.CanvasTilesTest#tilesAreDrawnOnceUntilTheViewOrContentChanges()
+	 */
+	void paint(Graphics2D g, Rectangle region, AffineTransform view,
+			long content, Layer layer) {
+
+		AffineTransform device = g.getTransform();
+		double sx = Math.abs(device.getScaleX());
+		double sy = Math.abs(device.getScaleY());
+		if (!view.equals(transform) || content != stamp
+				|| sx != scaleX || sy != scaleY) {
+			clear();
+			transform = new AffineTransform(view);
+			stamp = content;
+			scaleX = sx;
+			scaleY = sy;
+		}
+		int tx0 = Math.floorDiv(region.x, TILE);
+		int ty0 = Math.floorDiv(region.y, TILE);
+		int tx1 = Math.floorDiv(region.x + region.width - 1, TILE);
+		int ty1 = Math.floorDiv(region.y + region.height - 1, TILE);
+		for (int ty = ty0; ty <= ty1; ty += 1) {
+			for (int tx = tx0; tx <= tx1; tx += 1) {
+				Image tile = tile(tx, ty, layer);
+				g.drawImage(tile, tx * TILE, ty * TILE, TILE, TILE, null);
+				if (tile instanceof VolatileImage v && v.contentsLost()) {
+					// drawn from lost contents: redraw it next time
+					tiles.remove(key(tx, ty));
+				}
+			}
+		}
+	} // end of paint method
+
+	/**
+	 * Drop every tile.
+	 */
+	void clear() {
+
+		for (Image tile : tiles.values()) {
+			tile.flush();
+		}
+		tiles.clear();
+	} // end of clear method
+
+	/**
+	 * Get the number of tiles cached.
+	 *
+	 * @return the count.
+	 */
+	int size() {
+
+		return tiles.size();
+	} // end of size method
+
+	/**
+	 * Get a tile, drawing it if it is not cached or its contents were
+	 * lost.
+	 *
+	 * @param tx The tile's column.
+	 * @param ty The tile's row.
+	 * @param layer Draws the layer.
+	 *
+	 * @return the tile.
+	 */
+	private Image tile(int tx, int ty, Layer layer) {
+
+		long key = key(tx, ty);
+		Image tile = tiles.get(key);
+		GraphicsConfiguration gc = owner.getGraphicsConfiguration();
+		if (tile instanceof VolatileImage v && gc != null) {
+			int state = v.validate(gc);
+			if (state == VolatileImage.IMAGE_OK)
+				return tile;
+			if (state == VolatileImage.IMAGE_RESTORED) {
+				draw(tile, tx, ty, layer);
+				return tile;
+			}
+			tile.flush();
+			tile = null;
+		}
+		if (tile != null)
+			return tile;
+		int w = pixels(scaleX);
+		int h = pixels(scaleY);
+		tile = gc == null ? null
+				: gc.createCompatibleVolatileImage(w, h, Transparency.TRANSLUCENT);
+		if (tile == null)
+			tile = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+		draw(tile, tx, ty, layer);
+		tiles.put(key, tile);
+		if (tiles.size() > MAX_TILES) {
+			Long eldest = tiles.keySet().iterator().next();
+			Image dropped = tiles.remove(eldest);
+			if (dropped != null)
+				dropped.flush();
+		}
+		return tile;
+	} // end of tile method
+
+	/**
+	 * Draw the layer into a tile.
+	 *
+	 * @param tile The tile.
+	 * @param tx The tile's column.
+	 * @param ty The tile's row.
+	 * @param layer Draws the layer.
+	 */
+	private void draw(Image tile, int tx, int ty, Layer layer) {
+
+		Graphics2D g = (Graphics2D)tile.getGraphics();
+		try {
+			g.setComposite(AlphaComposite.Clear);
+			g.fillRect(0, 0, tile.getWidth(null), tile.getHeight(null));
+			g.setComposite(AlphaComposite.SrcOver);
+			g.setFont(owner.getFont());
+			g.scale(scaleX, scaleY);
+			g.translate(-tx * TILE, -ty * TILE);
+			g.clipRect(tx * TILE, ty * TILE, TILE, TILE);
+			layer.draw(g);
+		} finally {
+			g.dispose();
+		}
+	} // end of draw method
+
+	/**
+	 * The pixels along a tile's edge at a device scale.
+	 *
+	 * @param scale The scale.
+	 *
+	 * @return the pixels.
+	 */
+	private static int pixels(double scale) {
+
+		return Math.max(1, (int)Math.ceil(TILE * scale));
+	} // end of pixels method
+
+	/**
+	 * Get the pixel size of the tiles cached, as a dimension. Test seam.
+	 *
+	 * @return the width and height of a tile in pixels.
+	 */
+	Dimension tilePixels() {
+
+		return new Dimension(pixels(scaleX), pixels(scaleY));
+	} // end of tilePixels method
+
+	/**
+	 * Pack tile coordinates into a map key.
+	 *
+	 * @param tx The tile's column.
+	 * @param ty The tile's row.
+	 *
+	 * @return the key.
+	 */
+	private static long key(int tx, int ty) {
+
+		return ((long) tx << 32) ^ (ty & 0xffffffffL);
+	} // end of key method
+
+} // end of CanvasTiles class
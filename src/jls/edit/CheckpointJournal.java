@@ -0,0 +1,267 @@
+package jls.edit;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Scanner;
+import java.util.zip.CRC32;
+
+import jls.Circuit;
+import jls.FileAbstractor;
+import jls.collab.op.CircuitOp;
+import jls.collab.op.CircuitOpReader;
+import jls.collab.op.OpRejected;
+
+/**
+ * The journal of a crash checkpoint. The {@code .jls~} checkpoint is a
+ * whole save of the circuit, its base; edits made through ops after it
+ * are appended to a journal beside it, {@code .jls~journal}, in the op
+ * save format (issue #167), rather than the whole circuit being saved
+ * and compressed again. The journal's first line names the base it
+ * follows by a checksum of the base's text, so a journal left over from
+ * an older base is never replayed onto a newer one.
+ *
+ * Recovery opens the {@code .jls~} as before and replays the journal
+ * onto it, stopping at the first op that is incomplete - the tail of a
+ * write cut short by the crash - or does not apply.
+ *
+ * Only the checkpoint writer thread in {@code SimpleEditor} writes
+ * journals.
+ */
+public final class CheckpointJournal {
+
+	/** Appended to the checkpoint file name to name its journal. */
+	public static final String SUFFIX = "journal";
+
+	/**
+	 * Journal text after which the checkpoint is compacted: a new base is
+	 * written and the journal started again.
+	 */
+	static final int COMPACT_CHARS = 64 * 1024;
+
+	/** The longest journal read on recovery; anything longer is not one of ours. */
+	private static final long MAX_JOURNAL_BYTES = 64L << 20;
+
+	/** Starts the first line of a journal, before the base's checksum. */
+	private static final String HEADER = "JOURNAL ";
+
+	/**
+	 * Not instantiable.
+	 */
+	private CheckpointJournal() {
+	} // end of constructor
+
+	/**
+	 * The journal of a checkpoint file.
+	 *
+	 * @param checkpoint The path of the {@code .jls~} file.
+	 *
+	 * @return the path of its journal.
+	 */
+	public static String journalPath(String checkpoint) {
+
+		return checkpoint + SUFFIX;
+	} // end of journalPath method
+
+	/**
+	 * Serialize ops for the journal.
+	 *
+	 * @param ops The ops, in order.
+	 *
+	 * @return their text.
+	 */
+	static String text(List<CircuitOp> ops) {
+
+		StringWriter text = new StringWriter();
+		try (PrintWriter output = new PrintWriter(text)) {
+			for (CircuitOp op : ops) {
+				op.save(output);
+			}
+		}
+		return text.toString();
+	} // end of text method
+
+	/**
+	 * Start a checkpoint's journal after its base has been written,
+	 * replacing any journal of an earlier base, and force it to disk.
+	 *
+	 * @param journal The journal file.
+	 * @param base The text of the base.
+	 * @param ops Op text following the base already, or empty.
+	 *
+	 * @throws IOException if the journal could not be written.
+	 *
+	 * @jls.testedby jls.edit.CheckpointJournalTest#journaledOpsAreReplayedOntoTheBase()
+	 */
+	static void start(File journal, String base, String ops) throws IOException {
+
+		write(journal.toPath(), HEADER + fingerprint(new Scanner(base)) + "\n" + ops,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+	} // end of start method
+
+	/**
+	 * Append op text to a checkpoint's journal and force it to disk.
+	 *
+	 * @param journal The journal file, which must have been started.
+	 * @param ops The op text.
+	 *
+	 * @throws IOException if there is no journal or it could not be
+	 *             written.
+	 *
+	 * @jls.testedby jls.edit.CheckpointJournalTest#journaledOpsAreReplayedOntoTheBase()
+	 */
+	static void append(File journal, String ops) throws IOException {
+
+		write(journal.toPath(), ops, StandardOpenOption.APPEND);
+	} // end of append method
+
+	/**
+	 * Write text to a file and force it to disk.
+	 *
+	 * @param path The file.
+	 * @param text The text.
+	 * @param options How the file is opened, besides for writing.
+	 *
+	 * @throws IOException if the file could not be written.
+	 */
+	private static void write(Path path, String text, StandardOpenOption... options)
+			throws IOException {
+
+		ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+		StandardOpenOption[] open = new StandardOpenOption[options.length + 1];
+		open[0] = StandardOpenOption.WRITE;
+		System.arraycopy(options, 0, open, 1, options.length);
+		try (FileChannel channel = FileChannel.open(path, open)) {
+			while (bytes.hasRemaining()) {
+				channel.write(bytes);
+			}
+			channel.force(false);
+		}
+	} // end of write method
+
+	/**
+	 * The checksum a journal names its base by: of the base's lines, each
+	 * ended by a newline as the save format writes them.
+	 *
+	 * @param lines The base's text.
+	 *
+	 * @return the checksum, in hex.
+	 */
+	private static String fingerprint(Scanner lines) {
+
+		CRC32 crc = new CRC32();
+		while (lines.hasNextLine()) {
+			crc.update((lines.nextLine() + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+		lines.close();
+		return Long.toHexString(crc.getValue());
+	} // end of fingerprint method
+
+	/**
+	 * Replay a checkpoint's journal onto the circuit loaded from the
+	 * checkpoint. Nothing is replayed if there is no journal or it
+	 * follows another base.
+	 *
+	 * @param circuit The circuit loaded from the checkpoint, its load
+	 *        finished.
+	 * @param checkpoint The path of the {@code .jls~} file.
+	 *
+	 * @return the number of ops replayed.
+	 *
+	 * @jls.testedby jls.edit.CheckpointJournalTest#journaledOpsAreReplayedOntoTheBase()
+	 * @jls.testedby jls.edit.CheckpointJournalTest#aTornOrStaleJournalIsNotReplayed()
+	 * @jls.testedby jls.edit.CheckpointJournalTest#aBatchRunReplaysTheJournal()
+	 */
+	public static int replay(Circuit circuit, String checkpoint) {
+
+		Path journal = Path.of(journalPath(checkpoint));
+		String text;
+		try {
+			if (!Files.isRegularFile(journal) || Files.size(journal) > MAX_JOURNAL_BYTES)
+				return 0;
+			// a write cut short may end in a partial character; decoding
+			// replaces it rather than failing the whole journal
+			text = new String(Files.readAllBytes(journal), StandardCharsets.UTF_8);
+		}
+		catch (IOException ex) {
+			return 0;
+		}
+		Scanner input = new Scanner(text);
+		if (!input.hasNextLine())
+			return 0;
+		String header = input.nextLine();
+		Scanner base = FileAbstractor.openCircuit(checkpoint);
+		if (base == null || !header.equals(HEADER + fingerprint(base)))
+			return 0;
+
+		int replayed = 0;
+		while (input.hasNextLine()) {
+			try {
+				CircuitOpReader.read(input).apply(circuit, null);
+			}
+			catch (OpRejected ex) {
+				break;
+			}
+			replayed += 1;
+		}
+		return replayed;
+	} // end of replay method
+
+	/**
+	 * Recover a circuit read from a checkpoint for the editor, whose load
+	 * is finished at its first paint. If the checkpoint has a journal to
+	 * replay, the checkpoint is read again, finished, and the journal
+	 * replayed onto it, and the result is loaded afresh; otherwise the
+	 * circuit is returned as it was read.
+	 *
+	 * @param loaded The circuit read from the checkpoint, not finished.
+	 * @param checkpoint The path of the {@code .jls~} file.
+	 *
+	 * @return the recovered circuit, not finished.
+	 *
+	 * @jls.testedby jls.edit.CheckpointJournalTest#journaledOpsAreReplayedOntoTheBase()
+	 */
+	public static Circuit recover(Circuit loaded, String checkpoint) {
+
+		if (!new File(journalPath(checkpoint)).isFile())
+			return loaded;
+		synchronized (Circuit.LOAD_LOCK) {
+			Scanner input = FileAbstractor.openCircuit(checkpoint);
+			if (input == null)
+				return loaded;
+			Circuit replayed = new Circuit(loaded.getName());
+			replayed.setDirectory(loaded.getDirectory());
+			try {
+				if (!replayed.load(input) || !replayed.finishLoad(null))
+					return loaded;
+			}
+			catch (Exception ex) {
+				return loaded;
+			}
+			finally {
+				input.close();
+			}
+			if (replay(replayed, checkpoint) == 0)
+				return loaded;
+
+			StringWriter text = new StringWriter();
+			try (PrintWriter output = new PrintWriter(text)) {
+				replayed.save(output);
+			}
+			Circuit recovered = new Circuit(loaded.getName());
+			recovered.setDirectory(loaded.getDirectory());
+			if (!recovered.load(new Scanner(text.toString())))
+				return loaded;
+			return recovered;
+		}
+	} // end of recover method
+
+} // end of CheckpointJournal class
@@ -24,6 +24,7 @@ import org.jspecify.annotations.Nullable;
 
 import jls.Circuit;
 import jls.core.Geometry;
+import jls.elem.Display;
 import jls.elem.Element;
 import jls.elem.StateMachine;
 import jls.elem.SubCircuit;
@@ -106,53 +107,138 @@ public final class CircuitRenderer implements Printable {
 
 		// partition into draw layers in one pass instead of four full
 		// scans (#27 S3): wires under non-wires, the second (selected)
-		// set on top of both. Elements far outside the clip cannot be
-		// visible and are skipped, so a scrolled view pays for what it
-		// shows, not for the whole circuit (#17). The candidates come
-		// from the spatial index, not a full scan, so a dirty-region
-		// repaint during a drag costs O(visible), not O(circuit); the
-		// query pads the clip by the same margin mayBeVisible allows
-		// for labels, so its exact check below accepts the same
-		// elements a full scan would. That parity is machine-checked:
-		// THEOREM 2 (culling-parity) in
-		// proofs/SpatialIndexCorrectness.agda, with the margin/grow/
-		// intersects assumptions pinned by jls.ProofBridgeTest.
-		Rectangle clip = g.getClipBounds();
-		Collection<Element> candidates;
-		if (clip == null) {
-			candidates = circuit.getElements();
-		} else {
-			Rectangle query = new Rectangle(clip);
-			query.grow(DRAW_MARGIN, DRAW_MARGIN);
-			candidates = circuit.elementsNear(AwtGeom.bounds(query));
-		}
+		// set on top of both.
 		List<Element> wires = new ArrayList<Element>();
 		List<Element> parts = new ArrayList<Element>();
 		List<Element> secondWires = new ArrayList<Element>();
 		List<Element> secondParts = new ArrayList<Element>();
-		for (Element el : candidates) {
-			if (clip != null && !mayBeVisible(el, clip)) {
-				continue;
-			}
+		for (Element el : visible(g)) {
 			if (el instanceof Wire) {
 				(second.contains(el) ? secondWires : wires).add(el);
 			} else {
 				(second.contains(el) ? secondParts : parts).add(el);
 			}
 		}
-		for (Element el : wires) {
-			ElementRenderers.draw(g, el);
+
+		// while a run goes, every element shows the same published frame
+		// of values, not whatever the sim thread has reached
+		ValueSnapshot.beginPaint();
+		try {
+			for (Element el : wires) {
+				ElementRenderers.draw(g, el);
+			}
+			for (Element el : parts) {
+				ElementRenderers.draw(g, el);
+			}
+			for (Element el : secondWires) {
+				ElementRenderers.draw(g, el);
+			}
+			for (Element el : secondParts) {
+				ElementRenderers.draw(g, el);
+			}
+		} finally {
+			ValueSnapshot.endPaint();
+		}
+	} // end of draw method
+
+	/**
+	 * Draw the elements whose look a simulation run cannot change: every
+	 * visible element but the wires and displays. SimpleEditor caches
+	 * this layer in tiles while the editor is idle, and
+	 * {@link #drawValues} puts it between the wires and the displays.
+	 *
+	 * @param g The graphics object to draw with.
+	 *
+	 * @jls.testedby jls.edit.CanvasTilesTest#tiledRenderMatchesTheDirectRender()
+	 */
+	public void drawStatic(Graphics g) {
+
+		for (Element el : visible(g)) {
+			if (!showsValue(el)) {
+				ElementRenderers.draw(g, el);
+			}
 		}
-		for (Element el : parts) {
-			ElementRenderers.draw(g, el);
+	} // end of drawStatic method
+
+	/**
+	 * Draw the circuit in the order {@link #draw} does, with the elements
+	 * that show no values drawn by the caller: the wires, then the
+	 * static layer, then the displays over it. With no selection, and
+	 * no display overlapping another element, this paints what
+	 * {@code draw} paints.
+	 *
+	 * @param g The graphics object to draw with.
+	 * @param parts Draws the layer {@link #drawStatic} draws, over the
+	 *        wires.
+	 *
+	 * @jls.testedby jls.edit.CanvasTilesTest#tiledRenderMatchesTheDirectRender()
+	 */
+	public void drawValues(Graphics g, Runnable parts) {
+
+		List<Element> displays = new ArrayList<Element>();
+		ValueSnapshot.beginPaint();
+		try {
+			for (Element el : visible(g)) {
+				if (el instanceof Wire) {
+					ElementRenderers.draw(g, el);
+				} else if (showsValue(el)) {
+					displays.add(el);
+				}
+			}
+			parts.run();
+			for (Element el : displays) {
+				ElementRenderers.draw(g, el);
+			}
+		} finally {
+			ValueSnapshot.endPaint();
 		}
-		for (Element el : secondWires) {
-			ElementRenderers.draw(g, el);
+	} // end of drawValues method
+
+	/**
+	 * Whether an element's look follows the simulated values: a wire's
+	 * color and stroke, a display's number.
+	 *
+	 * @param el The element.
+	 *
+	 * @return true for wires and displays.
+	 */
+	private static boolean showsValue(Element el) {
+
+		return el instanceof Wire || el instanceof Display;
+	} // end of showsValue method
+
+	/**
+	 * The elements that may draw inside the clip. Elements far outside it
+	 * cannot be visible and are skipped, so a scrolled view pays for what
+	 * it shows, not for the whole circuit (#17). The candidates come from
+	 * the spatial index, not a full scan, so a dirty-region repaint during
+	 * a drag costs O(visible), not O(circuit); the query pads the clip by
+	 * the same margin mayBeVisible allows for labels, so its exact check
+	 * accepts the same elements a full scan would. That parity is
+	 * machine-checked: THEOREM 2 (culling-parity) in
+	 * proofs/SpatialIndexCorrectness.agda, with the margin/grow/
+	 * intersects assumptions pinned by jls.ProofBridgeTest.
+	 *
+	 * @param g The graphics object whose clip to use.
+	 *
+	 * @return the elements, all of them if there is no clip.
+	 */
+	private Collection<Element> visible(Graphics g) {
+
+		Rectangle clip = g.getClipBounds();
+		if (clip == null) {
+			return circuit.getElements();
 		}
-		for (Element el : secondParts) {
-			ElementRenderers.draw(g, el);
+		Rectangle query = new Rectangle(clip);
+		query.grow(DRAW_MARGIN, DRAW_MARGIN);
+		List<Element> visible = new ArrayList<Element>();
+		for (Element el : circuit.elementsNear(AwtGeom.bounds(query))) {
+			if (mayBeVisible(el, clip)) {
+				visible.add(el);
+			}
 		}
-	} // end of draw method
+		return visible;
+	} // end of visible method
 
 	/**
 	 * Whether an element could draw inside the clip. The margin generously
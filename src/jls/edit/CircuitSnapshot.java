@@ -86,20 +86,22 @@ public final class CircuitSnapshot {
 
 		String text = new String(inflate(deflated), StandardCharsets.UTF_8);
 		Circuit restored = new Circuit(name);
-		try {
-			if (!restored.load(new Scanner(text)) || !restored.finishLoad(SwingTextMetrics.forGraphics(g))) {
+		synchronized (Circuit.LOAD_LOCK) {
+			try {
+				if (!restored.load(new Scanner(text)) || !restored.finishLoad(SwingTextMetrics.forGraphics(g))) {
+					return null;
+				}
+			} catch (Exception ex) {
+				ex.printStackTrace();
+				JLSInfo.setLoadError(jls.LoadError.of(
+						jls.LoadError.Category.MALFORMED,
+						"snapshot restore failed"
+								+ (ex.getMessage() == null ? ""
+										: ": " + ex.getMessage()),
+						"Undo/redo state may be inconsistent - save your "
+								+ "work under a new name and reopen it."));
 				return null;
 			}
-		} catch (Exception ex) {
-			ex.printStackTrace();
-			JLSInfo.setLoadError(jls.LoadError.of(
-					jls.LoadError.Category.MALFORMED,
-					"snapshot restore failed"
-							+ (ex.getMessage() == null ? ""
-									: ": " + ex.getMessage()),
-					"Undo/redo state may be inconsistent - save your "
-							+ "work under a new name and reopen it."));
-			return null;
 		}
 		return restored;
 	} // end of restore method
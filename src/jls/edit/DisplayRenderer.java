@@ -42,7 +42,7 @@ public final class DisplayRenderer implements ElementRenderer {
 		int height = d.getHeight();
 		int base = d.getBase();
 		int bits = d.getBits();
-		BitSet currentValue = d.getCurrentValue();
+		BitSet currentValue = ValueSnapshot.valueOf(d);
 
 		// draw context
 		ElementRenderSupport.drawHighlight(g, d);
@@ -3,8 +3,12 @@ package jls.edit;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.print.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.swing.*;
 import javax.swing.text.AbstractDocument;
@@ -28,9 +32,9 @@ public final class InteractiveSimulator extends Simulator {
 	/** The trace window's minimum height in pixels. */
 	private final int SHEIGHT = 70;
 
-	// control state shared between the EDT, the animation timer thread,
-	// and the sim thread: volatile so Stop/Pause/Step cannot be missed
-	// under JIT hoisting (issue #49, finding H7)
+	// control state shared between the EDT and the sim thread:
+	// volatile so Stop/Pause/Step cannot be missed under JIT
+	// hoisting (issue #49, finding H7)
 	/** How many time units one Step press advances. */
 	private volatile int stepAmount = 1;
 	/** The simulation time the current step run pauses at, or -1. */
@@ -66,6 +70,8 @@ public final class InteractiveSimulator extends Simulator {
 	private JButton stop = new JButton("Stop");
 	/** Prints the traces. */
 	private JButton print = new JButton("Print");
+	/** Chooses a waveform file to record runs to, or stops recording. */
+	private JButton record = new JButton("Record...");
 	/** Opens the simulator help topic. */
 	private JButton help = new JButton("Help");
 	/** The content pane the trace rows live in. */
@@ -84,8 +90,54 @@ public final class InteractiveSimulator extends Simulator {
 	private JLabel statusClock = new JLabel();
 
 	// for animation
-	/** The animation timer; null unless animating (issue #93). */
-	volatile java.util.@Nullable Timer timer;
+	/** Simulated time units per second to animate at; 0 unless animating. */
+	private volatile long animateRate = 0;
+	/** The animation's pacing, made by the sim thread; null unless animating. */
+	private @Nullable AnimationPace pace = null;
+	/** The least wall time the achieved animation rate is measured over. */
+	private static final long RATE_NANOS = 500_000_000L;
+	/** The simulation time the achieved rate is measured from. */
+	private long rateFromTime = 0;
+	/** The System.nanoTime the achieved rate is measured from, or 0. */
+	private long rateFromNanos = 0;
+
+	// what the sim thread publishes for the EDT to show: it never posts
+	// to the EDT per event, the frame timer polls these instead
+	/** The least events between looks at the clock for a frame. */
+	private static final int FRAME_CHECK_EVENTS = 64;
+	/**
+	 * The copies of the running circuit's values the canvas paints from,
+	 * or null outside a run or in a background one.
+	 */
+	private volatile @Nullable ValueSnapshot snapshot = null;
+	/** The running circuit's editor, looked up once per run. */
+	private volatile @Nullable Editor runEditor = null;
+	/** The simulation time last published. */
+	private volatile long shownTime = 0;
+	/** The times the sim thread has parked (paused or ended a step). */
+	private volatile int parks = 0;
+	/** Set by a Pause element for the EDT to show the paused buttons. */
+	private volatile boolean pauseButtons = false;
+	/** Events since the sim thread last looked at the clock. */
+	private int sinceFrameCheck = 0;
+	/** The System.nanoTime of the last published frame. */
+	private long lastFrame = 0;
+	/** The parks the EDT has shown. */
+	private int parksShown = 0;
+	/** The published frames the EDT has painted. */
+	private int framesShown = 0;
+	/** Shows what the sim thread published, up to 60 times a second. */
+	private final javax.swing.Timer frameTimer = new javax.swing.Timer(
+			(int)(ValueSnapshot.FRAME_NANOS / 1_000_000),
+			new ActionListener() {
+				/**
+				 * Show the latest published frame on the EDT.
+				 */
+				@Override
+				public void actionPerformed(ActionEvent event) {
+					showFrame();
+				}
+			});
 
 	// for showing traces in interactive mode
 	/** The container of all trace rows. */
@@ -101,6 +153,16 @@ public final class InteractiveSimulator extends Simulator {
 	/** The numeric base trace values are labeled in (2, 10, or 16). */
 	private int displayBase = 10;
 
+	// for recording a waveform file
+	/** The waveform file each run records to, or null for none. */
+	private volatile @Nullable String waveFileName = null;
+	/** The running recording; null outside a run or when not recording. */
+	private @Nullable WaveRecorder recorder = null;
+	/** Per recorded watched element, its signal index. */
+	private Map<Element,Integer> recordedElements = new HashMap<Element,Integer>();
+	/** Per recorded probed wire, its signal index. */
+	private Map<Wire,Integer> recordedProbes = new HashMap<Wire,Integer>();
+
 	/**
 	 * Create a new Simulator object.
 	 *
@@ -133,7 +195,7 @@ public final class InteractiveSimulator extends Simulator {
 		action.add(step);
 
 		animate.setBackground(Color.cyan);
-		animate.setToolTipText("repeat step every second");
+		animate.setToolTipText("run step amount of time per second");
 		action.add(animate);
 
 		end.setBackground(Color.pink);
@@ -177,6 +239,11 @@ public final class InteractiveSimulator extends Simulator {
 		d.setDocumentFilter(tlFilter);
 		simParams.add(tlimit);
 
+		// waveform recording
+		record.setToolTipText("record the traced signals of each run to a"
+				+ " waveform file (" + WaveFile.EXTENSION + " or .vcd)");
+		simParams.add(record);
+
 		toolBar.add(simParams,BorderLayout.EAST);
 
 		// show trace buttton
@@ -369,8 +436,8 @@ public final class InteractiveSimulator extends Simulator {
 		animate.addActionListener(
 				new ActionListener() {
 					/**
-					 * Begin repeating a step every second when the Animate
-					 * button is pushed.
+					 * Begin running the step amount of simulated time per
+					 * second when the Animate button is pushed.
 					 */
 					@Override
 					public void actionPerformed(ActionEvent event) {
@@ -388,45 +455,17 @@ public final class InteractiveSimulator extends Simulator {
 								1,stepAmount,"Step amount");
 						setMaxTime();
 
-						// create step object (TimerTask)
-						TimerTask tc = new TimerTask() {
-
-							/**
-							 * Perform one animation step, cancelling the timer
-							 * at the time limit.
-							 */
-							@Override
-							public void run() {
-
-								if (now >= maxTime) {
-									java.util.Timer t = timer;
-									if (t != null)
-										t.cancel();
-								}
-
-								// do a step
-								if (sim == null) {
-									stepEnd = stepAmount;
-									runSim();
-								}
-								else {
-									if (!paused) {
-										return;
-									}
-									// step target before the wakeup (#49)
-									if (stepEnd < 0)
-										stepEnd = stepAmount;
-									else
-										stepEnd += stepAmount;
-									paused = false;
-									pauseSem.release();
-								}
-							}
-						}; // end of TimerTask class
-
-						// run timer task every second
-						timer = new java.util.Timer();
-						timer.scheduleAtFixedRate(tc, 0, 1000);
+						// the sim thread paces itself from here on
+						animateRate = stepAmount;
+						rateFromNanos = 0;
+						stepEnd = -1;
+						if (sim == null) {
+							runSim();
+						}
+						else if (paused) {
+							paused = false;
+							pauseSem.release();
+						}
 					}
 				}
 		);
@@ -440,17 +479,14 @@ public final class InteractiveSimulator extends Simulator {
 					@Override
 					public void actionPerformed(ActionEvent event) {
 						action.removeAll();
-						action.add(animate);
 						action.add(resume);
+						action.add(step);
+						action.add(animate);
 						action.add(stop);
 						action.add(print);
 						action.add(help);
 						action.validate();
-						if (timer != null) {
-							timer.cancel();
-							timer = null;
-						}
-						step.doClick();
+						endAnimation();
 					}
 				}
 		);
@@ -523,6 +559,19 @@ public final class InteractiveSimulator extends Simulator {
 				}
 		);
 
+		record.addActionListener(
+				new ActionListener() {
+					/**
+					 * Choose a waveform file to record to, or stop
+					 * recording if one is chosen.
+					 */
+					@Override
+					public void actionPerformed(ActionEvent event) {
+						chooseWaveFile();
+					}
+				}
+		);
+
 		// set up panel
 		window.setMinimumSize(new Dimension(SWIDTH,SHEIGHT));
 
@@ -598,7 +647,6 @@ public final class InteractiveSimulator extends Simulator {
 		// from a previous run's stop() made the first Pause fall
 		// through once (issue #49, finding M9)
 		paused = false;
-		runningMsgShown = false;
 		pauseSem.drainPermits();
 		initSimulation();
 
@@ -607,6 +655,25 @@ public final class InteractiveSimulator extends Simulator {
 			gen.initSim(this);
 		}
 
+		// start the waveform file with the initial values
+		openRecorder(circ);
+
+		// the canvas paints the run from published frames, the first of
+		// them the initial values
+		ValueSnapshot values = null;
+		if (!isQuiet()) {
+			values = new ValueSnapshot(circ);
+			values.publish();
+		}
+		snapshot = values;
+		ValueSnapshot.show(values);
+		shownTime = now;
+		sinceFrameCheck = 0;
+		lastFrame = System.nanoTime();
+		pauseButtons = false;
+		parksShown = parks;
+		framesShown = 0;
+
 		// find all probes and watched elements (if not batch/background)
 		// and set up trace window
 		if (!isQuiet()) {
@@ -634,19 +701,24 @@ public final class InteractiveSimulator extends Simulator {
 
 				// disable circuit editor (if one)
 				Editor ed = Editors.of(circ);
+				runEditor = ed;
 				if (ed != null)
 					ed.enableEditor(false); // turn off listeners
 
 				// run the shared event loop; pausing, stepping, and
-				// tracing happen in the hooks below (#25)
-				runEventLoop();
-
-				// kill timer if there is one
-				java.util.Timer t = timer;
-				if (t != null) {
-					t.cancel();
+				// tracing happen in the hooks below (#25); a run that
+				// fails leaves no partial waveform file
+				try {
+					runEventLoop();
+				} catch (RuntimeException | Error e) {
+					abandonRecorder();
+					throw e;
 				}
 
+				// no animation outlives its run
+				animateRate = 0;
+				pace = null;
+
 				// determine reason for stopping BEFORE padding the clock,
 				// or a completed run can misreport as a time-limit stop
 				// (issue #51 low item)
@@ -661,6 +733,7 @@ public final class InteractiveSimulator extends Simulator {
 				else
 					reason = "Simulation Complete";
 				stopping = true;
+				final IOException recordError = closeRecorder(stopTime);
 
 				// leave a little extra room at the end
 				now += 10L * scaleFactor;
@@ -671,6 +744,9 @@ public final class InteractiveSimulator extends Simulator {
 
 				if (JLSInfo.batch && JLSInfo.frame == null) {
 					System.out.println(reason + " at " + stopTime);
+					if (recordError != null)
+						System.err.println("Waveform file not written: "
+								+ recordError.getMessage());
 				}
 
 				// UI epilogue on the EDT, not the sim thread (issue #49,
@@ -684,6 +760,9 @@ public final class InteractiveSimulator extends Simulator {
 					 */
 					@Override
 					public void run() {
+						frameTimer.stop();
+						snapshot = null;
+						ValueSnapshot.show(null);
 						if (!isQuiet()) {
 							showClock.setText("Time: "+stopTime);
 							window.validate();
@@ -694,8 +773,13 @@ public final class InteractiveSimulator extends Simulator {
 						}
 						if (edRef != null)
 							edRef.repaint();
-						if (!(JLSInfo.batch && JLSInfo.frame == null))
+						if (!(JLSInfo.batch && JLSInfo.frame == null)) {
 							msg.setText(reasonText);
+							if (recordError != null)
+								TellUser.error(window,
+										"Waveform file not written: "
+										+ recordError.getMessage(), "Error");
+						}
 						updateStatusBar();
 						action.removeAll();
 						action.add(start);
@@ -708,18 +792,23 @@ public final class InteractiveSimulator extends Simulator {
 				});
 
 				// clear up for next simulation
+				runEditor = null;
 				sim = null;
 			} // end of run method
 
 		}; // end of sim Thread class
 
-		// start up the simulator
-		if (!JLSInfo.batch || JLSInfo.frame != null)
+		// start up the simulator; the thread clears sim as it ends, so
+		// it is joined through its own reference
+		Thread runner = sim;
+		if (!JLSInfo.batch || JLSInfo.frame != null) {
 			msg.setText("Simulation Running");
-		sim.start();
+			frameTimer.start();
+		}
+		runner.start();
 		if (JLSInfo.batch && JLSInfo.frame == null) {
 			try {
-				sim.join();
+				runner.join();
 			}
 			catch(InterruptedException ex) {}
 		}
@@ -728,6 +817,7 @@ public final class InteractiveSimulator extends Simulator {
 
 	/**
 	 * Handle pausing and stepping before the next event is dequeued.
+	 * The EDT learns of a park from the frame timer, not from a post.
 	 *
 	 * @return true to proceed with the next event, false to re-check the
 	 *         loop conditions.
@@ -735,31 +825,18 @@ public final class InteractiveSimulator extends Simulator {
 	@Override
 	protected boolean beforeEvent() {
 
-		Editor ed = Editors.of(circuit());
-
 		// check for being paused
 		if (paused) {
 			stepEnd = now;
-			final long pausedAt = now;
-			// UI updates on the EDT, not the sim thread (#49, H8)
-			SwingUtilities.invokeLater(new Runnable() {
-				/**
-				 * Refresh the trace display and message on the EDT while
-				 * paused.
-				 */
-				@Override
-				public void run() {
-					if (!isQuiet()) {
-						showClock.setText("Time: "+pausedAt);
-						traces.draw();
-						for (MemTrace mtr : memTraces) {
-							mtr.update();
-						}
-						msg.setText("Simulation Paused");
-						updateStatusBar();
-					}
-				}
-			});
+			Editor ed = runEditor;
+			ValueSnapshot values = snapshot;
+
+			// nothing changes while parked, so the canvas may read the
+			// live values, edits included
+			shownTime = now;
+			if (values != null)
+				values.setLive(true);
+			parks += 1;
 			if (ed != null)
 				ed.enableEditor(true);
 			try {
@@ -768,6 +845,11 @@ public final class InteractiveSimulator extends Simulator {
 			catch (InterruptedException ex) {}
 			if (ed != null)
 				ed.enableEditor(false);
+			if (values != null) {
+				values.publish();
+				values.setLive(false);
+			}
+			pace = null; // the wall clock ran on while parked
 			return false;
 		}
 
@@ -776,100 +858,135 @@ public final class InteractiveSimulator extends Simulator {
 		SimEvent event = eventQueue.peek();
 		long when = event.getTime();
 
-		// if after step end time ... (can't happen in quiet mode)
-		if (stepEnd != -1 && when > stepEnd) {
-
-			// update current time
-			now = stepEnd;
-			final long steppedTo = now;
-			final Editor edRef = ed;
-			SwingUtilities.invokeLater(new Runnable() {
-				/**
-				 * Advance the clock and traces on the EDT at the end of a
-				 * step.
-				 */
-				@Override
-				public void run() {
-					showClock.setText("Time: "+steppedTo);
-					traces.draw();
-					for (MemTrace mtr : memTraces) {
-						mtr.update();
-					}
-					if (edRef != null)
-						edRef.repaint();
+		// when animating, wait for the event to fall due, showing the
+		// clock run on meanwhile; events already due run as one batch
+		long rate = animateRate;
+		if (rate <= 0) {
+			pace = null;
+		}
+		else {
+			AnimationPace p = pace;
+			if (p == null)
+				pace = p = new AnimationPace(rate, now, System.nanoTime());
+			long target = Math.min(when, maxTime);
+			if (!p.admits(target)) {
+				long wait = p.wait(target, System.nanoTime());
+				if (wait > 0) {
+					now = Math.max(now, p.until());
+					shownTime = now;
+					LockSupport.parkNanos(this,
+							Math.min(wait, (long)ValueSnapshot.FRAME_NANOS));
+					return false;
 				}
-			});
+			}
+		}
 
+		// if after step end time, park there (can't happen in quiet mode)
+		if (stepEnd != -1 && when > stepEnd) {
+			now = stepEnd;
 			paused = true;
 			return false;
 		}
 
-		if (!isQuiet())
-			setMsgOnceRunning();
 		return true;
 	} // end of beforeEvent method
 
 	/**
-	 * Whether the running message is already up: "Simulation Running"
-	 * only needs to be set once per run, not per event from the sim
-	 * thread (#49, H8).
-	 */
-	private volatile boolean runningMsgShown = false;
-
-	/**
-	 * Post the "Simulation Running" message once per run, on the EDT
-	 * (issue #49, finding H8).
-	 */
-	private void setMsgOnceRunning() {
-
-		if (runningMsgShown)
-			return;
-		runningMsgShown = true;
-		SwingUtilities.invokeLater(new Runnable() {
-			/**
-			 * Set the running message on the EDT.
-			 */
-			@Override
-			public void run() {
-				msg.setText("Simulation Running");
-			}
-		});
-	} // end of setMsgOnceRunning method
-
-	/**
-	 * Update the clock display before the event reacts, at a bounded
-	 * rate: the per-event setText+validate was both an EDT violation and
-	 * a real slowdown (issue #49, finding H8).
-	 */
-	private volatile long lastClockUpdate = 0;
-
-	/**
-	 * Update the clock display at a bounded rate before an event reacts,
-	 * dispatching the label change to the EDT (issue #49, finding H8).
+	 * Publish the clock and a frame of values before an event reacts, at
+	 * most every {@link ValueSnapshot#FRAME_NANOS}. The clock is only
+	 * read every {@link #FRAME_CHECK_EVENTS} events, and nothing is
+	 * posted to the EDT: the frame timer picks the frame up.
 	 */
 	@Override
 	protected void beforeReact() {
 
 		if (JLSInfo.batch && JLSInfo.frame == null)
 			return;
-		long nowMillis = System.currentTimeMillis();
-		if (nowMillis - lastClockUpdate < 50)
+		sinceFrameCheck += 1;
+		if (sinceFrameCheck < FRAME_CHECK_EVENTS)
 			return;
-		lastClockUpdate = nowMillis;
-		final long simTime = now;
-		SwingUtilities.invokeLater(new Runnable() {
-			/**
-			 * Push the current time and status bar to the EDT.
-			 */
-			@Override
-			public void run() {
-				showClock.setText("Time: "+simTime);
-				// keeps the status bar live for background runs too
-				updateStatusBar();
-			}
-		});
+		sinceFrameCheck = 0;
+		long nanos = System.nanoTime();
+		if (nanos - lastFrame < ValueSnapshot.FRAME_NANOS)
+			return;
+		ValueSnapshot values = snapshot;
+		if (values != null && !values.publish())
+			return; // the EDT is painting the other frame: try again soon
+		lastFrame = nanos;
+		shownTime = now;
 	} // end of beforeReact method
 
+	/**
+	 * Show what the sim thread last published: the clock, the paused
+	 * buttons a Pause element asked for, the traces after a park, and
+	 * the canvas where a frame changed values since the last tick (all
+	 * of it after a park, when the live values are shown). Runs on the
+	 * EDT from the frame timer.
+	 */
+	private void showFrame() {
+
+		showClock.setText("Time: "+shownTime);
+		// keeps the status bar live for background runs too
+		updateStatusBar();
+		if (pauseButtons) {
+			pauseButtons = false;
+			action.removeAll();
+			action.add(resume);
+			action.add(step);
+			action.add(animate);
+			action.add(stop);
+			action.add(print);
+			action.add(help);
+			action.validate();
+		}
+		long rate = animateRate;
+		if (rate > 0 && !isQuiet()) {
+			long nanos = System.nanoTime();
+			long time = shownTime;
+			if (rateFromNanos == 0) {
+				rateFromNanos = nanos;
+				rateFromTime = time;
+				msg.setText("Animating at " + rate + " per second");
+			}
+			else if (nanos - rateFromNanos >= RATE_NANOS) {
+				long achieved = Math.round((time - rateFromTime) * 1e9
+						/ (nanos - rateFromNanos));
+				msg.setText("Animating at " + achieved + " of " + rate
+						+ " per second");
+				rateFromNanos = nanos;
+				rateFromTime = time;
+			}
+		}
+		boolean repaint = false;
+		int parked = parks;
+		if (parked != parksShown) {
+			parksShown = parked;
+			repaint = true;
+			if (!isQuiet()) {
+				traces.draw();
+				for (MemTrace mtr : memTraces) {
+					mtr.update();
+				}
+				msg.setText("Simulation Paused");
+			}
+		}
+		Editor ed = runEditor;
+		ValueSnapshot values = snapshot;
+		int published = values == null ? framesShown : values.published();
+		if (values != null && published != framesShown && !repaint) {
+
+			// only where the values changed since the last frame painted
+			Circuit circ = circuit;
+			if (ed != null && circ != null && framesShown > 0)
+				ed.repaintRegions(values.changedSince(framesShown, circ));
+			else
+				repaint = true;
+		}
+		framesShown = published;
+		if (repaint && ed != null)
+			ed.repaint();
+	} // end of showFrame method
+
 	/**
 	 * Record traces and probes after the event has reacted.
 	 *
@@ -878,6 +995,18 @@ public final class InteractiveSimulator extends Simulator {
 	@Override
 	protected void afterEvent(SimEvent event) {
 
+		// record to the waveform file, shown or not
+		WaveRecorder rec = recorder;
+		if (rec != null) {
+			LogicElement el = (LogicElement)event.getCallBack();
+			Integer signal = recordedElements.get(el);
+			if (signal != null)
+				rec.record(signal,now,el.getCurrentValue());
+			for (Map.Entry<Wire,Integer> probe : recordedProbes.entrySet()) {
+				rec.record(probe.getValue(),now,probe.getKey().getValue());
+			}
+		}
+
 		if (!isQuiet()) {
 
 			// handle watched elements
@@ -917,25 +1046,9 @@ public final class InteractiveSimulator extends Simulator {
 
 		if (sim != null) {
 			// called from inside react() on the sim thread (the Pause
-			// element); route the button swap to the EDT (#49, H8)
-			SwingUtilities.invokeLater(new Runnable() {
-				/**
-				 * Swap the toolbar to the paused button set on the EDT.
-				 */
-				@Override
-				public void run() {
-					action.removeAll();
-					action.add(resume);
-					action.add(step);
-					action.add(animate);
-					action.add(stop);
-					action.add(print);
-					action.add(help);
-					action.validate();
-				}
-			});
-			if (timer != null)
-				timer.cancel();
+			// element); the frame timer swaps the buttons on the EDT
+			pauseButtons = true;
+			animateRate = 0;
 			paused = which;
 			stepEnd = -1; // kill any stepping
 		}
@@ -960,9 +1073,32 @@ public final class InteractiveSimulator extends Simulator {
 			stopping = true;
 			stepEnd = -1; // kill any stepping
 			pauseSem.release();
+			wakeSim();
 		}
 	} // end of stop method
 
+	/**
+	 * Stop animating, parking the run where it is for the step controls.
+	 */
+	private void endAnimation() {
+
+		animateRate = 0;
+		stepEnd = -1;
+		paused = true;
+		wakeSim();
+	} // end of endAnimation method
+
+	/**
+	 * Wake the sim thread if it is waiting for an animated event to fall
+	 * due, so it sees a change of plan at once.
+	 */
+	private void wakeSim() {
+
+		Thread running = sim;
+		if (running != null)
+			LockSupport.unpark(running);
+	} // end of wakeSim method
+
 	/**
 	 * Find all probes and watched elements, add them to Traces window.
 	 * If an element is not watched, reset its trace position.
@@ -1018,6 +1154,166 @@ public final class InteractiveSimulator extends Simulator {
 		}
 	} // end of findTraces method
 
+	/**
+	 * Set the waveform file each run records its watched elements and
+	 * probed wires to, or null to record none. A name ending in
+	 * {@link WaveFile#EXTENSION} records the block-compressed waveform
+	 * format, any other name VCD text. Takes effect at the next run.
+	 *
+	 * @param fileName The file to write, or null.
+	 *
+	 * @jls.testedby jls.sim.WaveFileTest#anInteractiveRunRecordsWhatABatchRunWrites()
+	 */
+	public void setWaveFile(@Nullable String fileName) {
+
+		waveFileName = fileName;
+		if (JLSInfo.batch)
+			return;
+		if (fileName == null) {
+			record.setText("Record...");
+			record.setToolTipText("record the traced signals of each run"
+					+ " to a waveform file (" + WaveFile.EXTENSION + " or .vcd)");
+		}
+		else {
+			record.setText("Stop Recording");
+			record.setToolTipText("recording to " + fileName);
+		}
+	} // end of setWaveFile method
+
+	/**
+	 * Ask for a waveform file to record to, or stop recording if there
+	 * is one. A name with neither waveform extension gets
+	 * {@link WaveFile#EXTENSION}.
+	 */
+	private void chooseWaveFile() {
+
+		if (waveFileName != null) {
+			setWaveFile(null);
+			return;
+		}
+		JFileChooser chooser = new JFileChooser(Util.defaultDirectory());
+		chooser.setDialogTitle("Record Waveform");
+		if (chooser.showSaveDialog(window) != JFileChooser.APPROVE_OPTION)
+			return;
+		File chosen = chooser.getSelectedFile();
+		String fileName = chosen.getPath();
+		if (!WaveFile.isWaveFileName(fileName) && !fileName.endsWith(".vcd"))
+			fileName = fileName + WaveFile.EXTENSION;
+		setWaveFile(fileName);
+	} // end of chooseWaveFile method
+
+	/**
+	 * Start recording a run to the waveform file, if one is set: number
+	 * the watched elements and probed wires in name order, as the
+	 * trace window names them, and write their initial values. A file
+	 * that cannot be created is reported and the run goes ahead
+	 * without it.
+	 *
+	 * @param circ The circuit about to run.
+	 */
+	private void openRecorder(Circuit circ) {
+
+		recorder = null;
+		recordedElements.clear();
+		recordedProbes.clear();
+		String fileName = waveFileName;
+		if (fileName == null)
+			return;
+
+		// two signals with one name would be one: the first found is kept
+		TreeMap<String,Object> signals = new TreeMap<String,Object>();
+		findSignals(circ,signals);
+		java.util.List<String> names = new ArrayList<String>(signals.keySet());
+		int[] bits = new int[names.size()];
+		@Nullable BitSet[] initial = new BitSet[names.size()];
+		for (int s = 0; s < names.size(); s += 1) {
+			Object traced = signals.get(names.get(s));
+			if (traced instanceof Wire wire) {
+				bits[s] = wire.getBits();
+				initial[s] = wire.getValue();
+				recordedProbes.put(wire,s);
+			}
+			else if (traced instanceof LogicElement el) {
+				bits[s] = el.getBits();
+				initial[s] = el.getCurrentValue();
+				recordedElements.put(el,s);
+			}
+		}
+		try {
+			recorder = new WaveRecorder(Path.of(fileName),circ.getName(),
+					names,bits,initial);
+		}
+		catch (IOException | RuntimeException ex) {
+			recordedElements.clear();
+			recordedProbes.clear();
+			String text = "Can't record to " + fileName + ": " + ex.getMessage();
+			if (isQuiet() && JLSInfo.frame == null)
+				System.err.println(text);
+			else
+				TellUser.error(window,text,"Error");
+		}
+	} // end of openRecorder method
+
+	/**
+	 * Find the watched elements and probed wires of a circuit and the
+	 * circuits nested in it, by the names their traces are shown under.
+	 *
+	 * @param circ The circuit.
+	 * @param signals Per name, its element or wire; added to.
+	 */
+	private static void findSignals(Circuit circ, Map<String,Object> signals) {
+
+		for (Element element : circ.getElements()) {
+			if (element instanceof Wire wire) {
+				if (wire.hasProbe())
+					signals.putIfAbsent(wire.getEnd().getFullName()
+							+ wire.getProbe(),wire);
+			}
+			else if (element instanceof SubCircuit sub) {
+				findSignals(sub.getSubCircuit(),signals);
+			}
+			else if (element instanceof LogicElement el
+					&& el instanceof Watchable watchable
+					&& watchable.isWatched()) {
+				signals.putIfAbsent(el.getFullName(),el);
+			}
+		}
+	} // end of findSignals method
+
+	/**
+	 * Finish the waveform file of a run that ended.
+	 *
+	 * @param stopTime The time the run ended.
+	 *
+	 * @return the first failure writing the file, or null.
+	 */
+	private @Nullable IOException closeRecorder(long stopTime) {
+
+		WaveRecorder rec = recorder;
+		recorder = null;
+		if (rec == null)
+			return null;
+		rec.finish(stopTime);
+		return rec.error();
+	} // end of closeRecorder method
+
+	/**
+	 * Remove the waveform file of a run that failed.
+	 */
+	private void abandonRecorder() {
+
+		WaveRecorder rec = recorder;
+		recorder = null;
+		if (rec == null)
+			return;
+		try {
+			rec.close();
+		}
+		catch (IOException ex) {
+			// nothing more to do: the run failed anyway
+		}
+	} // end of abandonRecorder method
+
 	/**
 	 * Get the status bar (containing message and clock).
 	 *
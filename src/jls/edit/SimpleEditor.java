@@ -21,6 +21,7 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
+import java.awt.geom.AffineTransform;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -60,6 +61,7 @@ import javax.swing.JTabbedPane;
 import javax.swing.JViewport;
 import javax.swing.KeyStroke;
 import javax.swing.SwingConstants;
+import javax.swing.Timer;
 
 import org.jspecify.annotations.Nullable;
 
@@ -102,6 +104,7 @@ import jls.elem.Watchable;
 import jls.elem.Wire;
 import jls.elem.WireEnd;
 import jls.elem.WireNet;
+import jls.sim.Elaboration;
 import jls.sim.Simulator;
 
 /**
@@ -124,6 +127,12 @@ public abstract class SimpleEditor extends JPanel {
 	 * handlers (issue #49, finding H7).
 	 */
 	protected volatile boolean enabled = true;
+	/**
+	 * Set when the editor is unlocked, so the tiles cached while it was
+	 * locked are dropped before they are used again. Volatile like
+	 * enabled, which it follows.
+	 */
+	private volatile boolean tilesStale = false;
 	/** The tabbed pane the editor is in. */
 	protected JTabbedPane tabbedParent;
 	/** The scroll pane the editor is in. */
@@ -162,13 +171,47 @@ public abstract class SimpleEditor extends JPanel {
 	private Map<String,Circuit> circMap = new HashMap<String,Circuit>();
 
 	/**
-	 * Checkpoint writing happens off the event thread (#19): the latest
-	 * serialized circuit per checkpoint file waits here, and a single
-	 * writer thread drains it. If edits outrun the disk, intermediate
-	 * checkpoints are superseded before being written (coalescing).
+	 * What waits to be written to one checkpoint file: a new base, op
+	 * text for its journal, or both. Changed only while holding it.
 	 */
-	private static final ConcurrentHashMap<String,String> pendingCheckpoints =
-			new ConcurrentHashMap<String,String>();
+	private static final class PendingCheckpoint {
+
+		/** The serialized circuit to write as the new base, or null. */
+		@Nullable String base;
+
+		/** Op text to journal after the base on disk (or the new one). */
+		final StringBuilder ops = new StringBuilder();
+
+		/** Whether a writer task is queued to write this. */
+		boolean queued;
+
+		/**
+		 * Whether ops may be journaled: a base has been queued since the
+		 * checkpoint was cancelled, a change was not journaled, or a
+		 * write failed.
+		 */
+		boolean journaling;
+
+		/** Op text journaled since the last base, in characters. */
+		long journaled;
+
+		/**
+		 * Nothing pending yet.
+		 */
+		PendingCheckpoint() {
+		} // end of constructor
+
+	} // end of PendingCheckpoint class
+
+	/**
+	 * Checkpoint writing happens off the event thread (#19): what is to
+	 * be written to each checkpoint file waits here, and a single writer
+	 * thread drains it. If edits outrun the disk, a newer base supersedes
+	 * an older one before it is written (coalescing), and journal text
+	 * queued meanwhile is written, and forced to disk, as one batch.
+	 */
+	private static final ConcurrentHashMap<String,PendingCheckpoint> pendingCheckpoints =
+			new ConcurrentHashMap<String,PendingCheckpoint>();
 	/** The single background thread that drains pendingCheckpoints. */
 	private static final ExecutorService checkpointWriter =
 			Executors.newSingleThreadExecutor(new ThreadFactory() {
@@ -190,7 +233,8 @@ public abstract class SimpleEditor extends JPanel {
 	 * Queue a checkpoint for background writing. The newest text for a
 	 * given file always wins; the write itself is atomic (temp file +
 	 * rename via FileAbstractor), so a crash at any moment leaves the
-	 * previous complete checkpoint in place.
+	 * previous complete checkpoint in place. The checkpoint becomes the
+	 * base of a new journal.
 	 *
 	 * @param fileName Absolute path of the .jls~ checkpoint file.
 	 * @param circuitText The serialized circuit.
@@ -201,48 +245,177 @@ public abstract class SimpleEditor extends JPanel {
 	 */
 	static void writeCheckpointInBackground(final String fileName, String circuitText) {
 
-		if (pendingCheckpoints.put(fileName, circuitText) != null)
-			return;	// a queued task will pick up this newer text
+		PendingCheckpoint pending = pendingCheckpoints.computeIfAbsent(fileName,
+				k -> new PendingCheckpoint());
+		synchronized (pending) {
+			pending.base = circuitText;
+			pending.ops.setLength(0);
+			pending.journaling = true;
+			pending.journaled = 0;
+			if (pending.queued)
+				return;	// a queued task will pick up this newer text
+			pending.queued = true;
+		}
+		queueCheckpoint(fileName);
+	} // end of writeCheckpointInBackground method
+
+	/**
+	 * Queue ops for the journal of a checkpoint. If there is no base to
+	 * journal after, or the journal has grown past
+	 * {@link CheckpointJournal#COMPACT_CHARS}, the circuit is saved as a
+	 * new base instead, which includes the ops.
+	 *
+	 * @param fileName Absolute path of the .jls~ checkpoint file.
+	 * @param opsText The ops, serialized.
+	 * @param circ The top-level circuit, with the ops applied.
+	 *
+	 * @jls.testedby jls.edit.CheckpointJournalTest#journaledOpsAreReplayedOntoTheBase()
+	 * @jls.testedby jls.edit.CheckpointJournalTest#aLongJournalIsCompactedIntoANewBase()
+	 */
+	static void journalInBackground(String fileName, String opsText, Circuit circ) {
+
+		PendingCheckpoint pending = pendingCheckpoints.get(fileName);
+		if (pending != null) {
+			synchronized (pending) {
+				if (pending.journaling
+						&& pending.journaled + opsText.length()
+								<= CheckpointJournal.COMPACT_CHARS) {
+					pending.ops.append(opsText);
+					pending.journaled += opsText.length();
+					if (pending.queued)
+						return;
+					pending.queued = true;
+				}
+				else {
+					pending = null;
+				}
+			}
+		}
+		if (pending != null)
+			queueCheckpoint(fileName);
+		else
+			writeCheckpointInBackground(fileName, saveText(circ));
+	} // end of journalInBackground method
+
+	/**
+	 * Stop journaling to a checkpoint after a change that was not
+	 * journaled, until a new base is written. What was journaled before
+	 * the change is still written.
+	 *
+	 * @param fileName Absolute path of the .jls~ checkpoint file.
+	 */
+	static void breakJournal(String fileName) {
+
+		PendingCheckpoint pending = pendingCheckpoints.get(fileName);
+		if (pending != null) {
+			synchronized (pending) {
+				pending.journaling = false;
+			}
+		}
+	} // end of breakJournal method
+
+	/**
+	 * Queue a writer task for a checkpoint file.
+	 *
+	 * @param fileName Absolute path of the .jls~ checkpoint file.
+	 */
+	private static void queueCheckpoint(final String fileName) {
+
 		checkpointWriter.execute(new Runnable() {
 			/**
-			 * Write the newest pending checkpoint text for the queued file.
+			 * Write what is pending for the queued file.
 			 */
 			@Override
 			public void run() {
-				String content = pendingCheckpoints.remove(fileName);
-				if (content == null)
-					return;
-				try {
-					FileAbstractor.writeCircuit(new File(fileName), content);
-				}
-				catch (IOException ex) {
-					// checkpoints are best-effort; the previous one survives
-				}
+				drainCheckpoint(fileName);
 			}
 		});
-	} // end of writeCheckpointInBackground method
+	} // end of queueCheckpoint method
+
+	/**
+	 * Write what is pending for a checkpoint file: the new base, then
+	 * the journal started after it, or just the journal text appended.
+	 * Runs on the writer thread.
+	 *
+	 * @param fileName Absolute path of the .jls~ checkpoint file.
+	 */
+	private static void drainCheckpoint(String fileName) {
+
+		PendingCheckpoint pending = pendingCheckpoints.get(fileName);
+		if (pending == null)
+			return;
+		String base;
+		String ops;
+		synchronized (pending) {
+			base = pending.base;
+			ops = pending.ops.toString();
+			pending.base = null;
+			pending.ops.setLength(0);
+			pending.queued = false;
+		}
+		File journal = new File(CheckpointJournal.journalPath(fileName));
+		try {
+			if (base != null) {
+				FileAbstractor.writeCircuit(new File(fileName), base);
+				CheckpointJournal.start(journal, base, ops);
+			}
+			else if (!ops.isEmpty()) {
+				CheckpointJournal.append(journal, ops);
+			}
+		}
+		catch (IOException ex) {
+			// checkpoints are best-effort; the previous one survives, and
+			// ops are not journaled again until a base is written, as they
+			// may not follow the one on disk
+			synchronized (pending) {
+				pending.journaling = false;
+				if (pending.base == null)
+					pending.ops.setLength(0);
+			}
+		}
+	} // end of drainCheckpoint method
+
+	/**
+	 * Serialize a circuit in the save format.
+	 *
+	 * @param circ The circuit.
+	 *
+	 * @return its text.
+	 */
+	private static String saveText(Circuit circ) {
+
+		StringWriter text = new StringWriter();
+		try (PrintWriter output = new PrintWriter(text)) {
+			circ.save(output);
+		}
+		return text.toString();
+	} // end of saveText method
 
 	/**
 	 * Supersede any pending checkpoint for a file and delete the checkpoint
-	 * file itself. The delete runs on the writer thread, so it is ordered
-	 * after any write already in flight — a checkpoint queued before a save
-	 * can never resurrect the file afterwards. Waits briefly for the delete
-	 * so quitting right after a save cannot leave a stale checkpoint behind.
+	 * file and its journal. The delete runs on the writer thread, so it is
+	 * ordered after any write already in flight — a checkpoint queued before
+	 * a save can never resurrect the file afterwards. Waits briefly for the
+	 * delete so quitting right after a save cannot leave a stale checkpoint
+	 * behind.
 	 *
 	 * @param fileName Absolute path of the .jls~ checkpoint file.
 	 * @jls.testedby jls.edit.CheckpointWriterTest#cancelSupersedesQueuedCheckpointAndDeletesFile()
 	 * @jls.testedby jls.edit.CheckpointWriterTest#checkpointAfterCancelIsStillWritten()
+	 * @jls.testedby jls.edit.CheckpointJournalTest#journaledOpsAreReplayedOntoTheBase()
 	 */
 	static void cancelCheckpoint(final String fileName) {
 
 		pendingCheckpoints.remove(fileName);
 		Future<?> deleted = checkpointWriter.submit(new Runnable() {
 			/**
-			 * Delete the checkpoint file, ordered after any in-flight write.
+			 * Delete the checkpoint file and its journal, ordered after any
+			 * in-flight write.
 			 */
 			@Override
 			public void run() {
 				new File(fileName).delete();
+				new File(CheckpointJournal.journalPath(fileName)).delete();
 			}
 		});
 		try {
@@ -253,6 +426,25 @@ public abstract class SimpleEditor extends JPanel {
 		}
 	} // end of cancelCheckpoint method
 
+	/**
+	 * Wait until every checkpoint queued so far has been written. Test
+	 * seam: the writer thread is otherwise only observable through the
+	 * files it leaves.
+	 *
+	 * @throws Exception if the wait fails or times out.
+	 */
+	static void awaitCheckpoints() throws Exception {
+
+		checkpointWriter.submit(new Runnable() {
+			/**
+			 * Nothing: runs after every task queued before it.
+			 */
+			@Override
+			public void run() {
+			}
+		}).get(10, TimeUnit.SECONDS);
+	} // end of awaitCheckpoints method
+
 	/**
 	 * See if attaching a wire end to a put of a bundle (Group) would mix
 	 * tri-state and normal connections, which bundles cannot have.
@@ -705,8 +897,30 @@ public abstract class SimpleEditor extends JPanel {
 	public void enableEditor(boolean which) {
 
 		enabled = which;
+		if (which)
+			tilesStale = true; // edits may follow
 	} // end of enableEditor method
 
+	/**
+	 * Paint only the parts of the canvas a simulation run changed, each
+	 * padded for the thick stroke of a non-zero wire. The regions are
+	 * painted at once, one by one, rather than through repaint, whose
+	 * manager would merge them all into their bounding box. The redraw
+	 * of each region costs what the spatial index finds near it, so a
+	 * frame costs what changed, not the whole circuit; a frame that
+	 * changes many scattered values paints their bounding box once. EDT
+	 * only.
+	 *
+	 * @param modelRects The changed regions, in model units.
+	 */
+	void repaintRegions(List<Rectangle> modelRects) {
+
+		for (Rectangle r : ValueSnapshot.paintRegions(modelRects,
+				Geometry.SPACING)) {
+			ew.paintModelNow(r);
+		}
+	} // end of repaintRegions method
+
 	/**
 	 * Disable this editor because the named subcircuit is being edited
 	 * in its own tab, and show a prominent banner saying so (issue #86
@@ -1132,6 +1346,38 @@ public abstract class SimpleEditor extends JPanel {
 			 */
 			private final Viewport viewport = new Viewport();
 
+			/**
+			 * The elements that show no values, cached while the editor
+			 * is idle with nothing selected.
+			 */
+			private final CanvasTiles tiles = new CanvasTiles(this);
+
+			/** The circuit the tiles were drawn from. */
+			private @Nullable Circuit tiledCircuit = null;
+
+			/**
+			 * Elaborates the circuit for the next run in the background
+			 * once loading or an edit has settled for half a second.
+			 */
+			private final Timer elaborate = new Timer(500,
+					new ActionListener() {
+						/**
+						 * Elaborate the top-level circuit of this editor's
+						 * circuit.
+						 */
+						@Override
+						public void actionPerformed(ActionEvent event) {
+							Circuit circ = circuit;
+							while (circ.isImported()) {
+								SubCircuit se = circ.getSubElement();
+								if (se == null)
+									return;
+								circ = se.getCircuit();
+							}
+							Elaboration.start(circ);
+						}
+					});
+
 			/**
 			 * The logical size of the drawing area in model units. The
 			 * component's preferred size is this scaled by the current zoom.
@@ -2107,6 +2353,18 @@ public abstract class SimpleEditor extends JPanel {
 				repaint(viewport.toScreen(modelRect));
 			} // end of repaintModel method
 
+			/**
+			 * Paint a region expressed in model coordinates now, through
+			 * the view transform, instead of queuing it to be merged with
+			 * every other dirty region of this component. EDT only.
+			 *
+			 * @param modelRect The region in model units.
+			 */
+			private void paintModelNow(Rectangle modelRect) {
+
+				paintImmediately(viewport.toScreen(modelRect));
+			} // end of paintModelNow method
+
 			/**
 			 * The center of the currently visible canvas, in this
 			 * component's coordinates - the anchor keyboard zoom holds fixed
@@ -2450,52 +2708,60 @@ public abstract class SimpleEditor extends JPanel {
 				super.paintComponent(g);
 				Graphics2D gg = (Graphics2D)g;
 
-				// apply the view transform (issue #74): from here on the
-				// Graphics is in model coordinates, so the grid, the circuit,
-				// and the selection rectangles all draw with model-space
-				// numbers and are scaled once here. Panning is the scroll
-				// pane's job, so the transform is scale-only (translate 0).
-				gg.transform(viewport.createTransform());
-
-				// draw background grid, but only across the visible (clipped)
-				// model region so a large zoomed-out canvas does not draw
-				// thousands of off-screen lines
-				gg.setColor(JLSInfo.Palette.gridColor);
-				Rectangle clip = gg.getClipBounds();
-				int mx0 = clip == null ? 0 : Math.max(0,clip.x);
-				int my0 = clip == null ? 0 : Math.max(0,clip.y);
-				int mx1 = clip == null ? modelSize.width
-						: Math.min(modelSize.width,clip.x + clip.width);
-				int my1 = clip == null ? modelSize.height
-						: Math.min(modelSize.height,clip.y + clip.height);
-				int firstR = (my0/Geometry.SPACING)*Geometry.SPACING;
-				for (int r=firstR; r<=my1; r+=Geometry.SPACING) {
-					gg.drawLine(mx0,r,mx1,r);
-				}
-				int firstC = (mx0/Geometry.SPACING)*Geometry.SPACING;
-				for (int c=firstC; c<=mx1; c+=Geometry.SPACING) {
-					gg.drawLine(c,my0,c,my1);
+				// with nothing selected or being dragged, only the values
+				// and edits change the canvas: draw the grid and the wires,
+				// copy the elements from cached tiles over them, and draw
+				// the displays on top, in the order the circuit is drawn
+				// in below
+				if (useTiles()) {
+					final Graphics2D plain = (Graphics2D)gg.create();
+					try {
+						gg.transform(viewport.createTransform());
+						drawGrid(gg);
+						CircuitRenderer.of(circuit).drawValues(g, new Runnable() {
+							/**
+							 * Copy the elements that show no values.
+							 */
+							@Override
+							public void run() {
+								paintTiles(plain);
+							}
+						});
+					} finally {
+						plain.dispose();
+					}
 				}
+				else {
 
-				// draw selection rectangle if elements selected
-				if (currentState == State.selected && selRect != null) {
-					gg.setColor(JLSInfo.Palette.selectionColor);
-					gg.fill(selRect);
-				}
+					// apply the view transform (issue #74): from here on the
+					// Graphics is in model coordinates, so the grid, the
+					// circuit, and the selection rectangles all draw with
+					// model-space numbers and are scaled once here. Panning
+					// is the scroll pane's job, so the transform is
+					// scale-only (translate 0).
+					gg.transform(viewport.createTransform());
+					drawGrid(gg);
+
+					// draw selection rectangle if elements selected
+					if (currentState == State.selected && selRect != null) {
+						gg.setColor(JLSInfo.Palette.selectionColor);
+						gg.fill(selRect);
+					}
 
-				// draw all elements, selected ones last
-				try {
-					CircuitRenderer.of(circuit).draw(g,selected,me);
-				} catch (Exception e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
-				}
+					// draw all elements, selected ones last
+					try {
+						CircuitRenderer.of(circuit).draw(g,selected,me);
+					} catch (Exception e) {
+						// TODO Auto-generated catch block
+						e.printStackTrace();
+					}
 
-				// draw selecting rectangle if necessary
-				if (currentState == State.selecting) {
-					gg.setColor(Color.lightGray);
-					if (selRect != null)
-						gg.draw(selRect);
+					// draw selecting rectangle if necessary
+					if (currentState == State.selecting) {
+						gg.setColor(Color.lightGray);
+						if (selRect != null)
+							gg.draw(selRect);
+					}
 				}
 
 				// draw the keyboard construction caret (issue #75): a small
@@ -2519,10 +2785,103 @@ public abstract class SimpleEditor extends JPanel {
 				if (firstDraw) {
 					this.pushCopy();
 					firstDraw = false;
+					elaborateSoon();
 				}
 
 			} // end of paintComponent method
 
+			/**
+			 * (Re)start the wait before the circuit is elaborated for the
+			 * next run, so a burst of edits elaborates once.
+			 */
+			private void elaborateSoon() {
+
+				elaborate.setRepeats(false);
+				elaborate.restart();
+			} // end of elaborateSoon method
+
+			/**
+			 * Draw the background grid, but only across the visible
+			 * (clipped) model region so a large zoomed-out canvas does not
+			 * draw thousands of off-screen lines.
+			 *
+			 * @param gg The graphics, in model coordinates.
+			 */
+			private void drawGrid(Graphics2D gg) {
+
+				gg.setColor(JLSInfo.Palette.gridColor);
+				Rectangle clip = gg.getClipBounds();
+				int mx0 = clip == null ? 0 : Math.max(0,clip.x);
+				int my0 = clip == null ? 0 : Math.max(0,clip.y);
+				int mx1 = clip == null ? modelSize.width
+						: Math.min(modelSize.width,clip.x + clip.width);
+				int my1 = clip == null ? modelSize.height
+						: Math.min(modelSize.height,clip.y + clip.height);
+				int firstR = (my0/Geometry.SPACING)*Geometry.SPACING;
+				for (int r=firstR; r<=my1; r+=Geometry.SPACING) {
+					gg.drawLine(mx0,r,mx1,r);
+				}
+				int firstC = (mx0/Geometry.SPACING)*Geometry.SPACING;
+				for (int c=firstC; c<=mx1; c+=Geometry.SPACING) {
+					gg.drawLine(c,my0,c,my1);
+				}
+			} // end of drawGrid method
+
+			/**
+			 * Whether this repaint copies the elements that show no values
+			 * from the tile cache: a repaint of an idle editor, running or
+			 * not, with nothing selected, touched or highlighted. An edit
+			 * drops the tiles through the spatial index's change count; so
+			 * does any repaint of the whole canvas, which a gesture in
+			 * progress or a selection needs, and replacing the circuit,
+			 * as undo may.
+			 *
+			 * @return true if the tiles are used, false if the whole
+			 *         canvas must be drawn.
+			 */
+			private boolean useTiles() {
+
+				if (firstDraw || currentState != State.idle
+						|| !selected.isEmpty()
+						|| !touchedElements.isEmpty()
+						|| circuit.isLoadPending()
+						|| !circuit.getHighlighted().isEmpty()) {
+					tilesStale = true;
+					return false;
+				}
+				if (tilesStale || circuit != tiledCircuit) {
+					tilesStale = false;
+					tiledCircuit = circuit;
+					tiles.clear();
+				}
+				return true;
+			} // end of useTiles method
+
+			/**
+			 * Copy the elements that show no values from the tile cache,
+			 * drawing the tiles that are not cached.
+			 *
+			 * @param gg The graphics, in component coordinates.
+			 */
+			private void paintTiles(Graphics2D gg) {
+
+				Rectangle clip = gg.getClipBounds();
+				if (clip == null)
+					clip = new Rectangle(0,0,getWidth(),getHeight());
+				final AffineTransform view = viewport.createTransform();
+				tiles.paint(gg,clip,view,circuit.getIndexChanges(),
+						new CanvasTiles.Layer() {
+							/**
+							 * Draw the elements that show no values.
+							 */
+							@Override
+							public void draw(Graphics2D tg) {
+								tg.transform(view);
+								CircuitRenderer.of(circuit).drawStatic(tg);
+							}
+						});
+			} // end of paintTiles method
+
 			/**
 			 * React to the one popup item still wired through the
 			 * ActionListener: matchJump. Every other editing operation now
@@ -4930,7 +5289,7 @@ public abstract class SimpleEditor extends JPanel {
 					 * op plan - including clipped nets, which travel as
 					 * RemoveWire of the whole net plus AddWire per
 					 * surviving component - it is submitted as one
-					 * batch (one undo snapshot); the few selections the
+					 * batch (one undo entry); the few selections the
 					 * vocabulary cannot yet express - subcircuits,
 					 * in-progress wiring - fall back to the inline
 					 * removal below, still under snapshot undo.
@@ -5502,71 +5861,134 @@ public abstract class SimpleEditor extends JPanel {
 						// push a copy for undo
 						pushCopy();
 
+						afterChange(null);
+					} // end of markChanged method
+
+					/**
+					 * Mark the editted circuit as changed by ops, record
+					 * them for undo, and checkpoint file if it is time.
+					 * Undo keeps the ops and their inverses rather than a
+					 * copy of the circuit.
+					 *
+					 * @param ops The ops applied, in order.
+					 * @param inverses The inverse of each op, computed
+					 *        before it was applied.
+					 */
+					private void markChanged(List<CircuitOp> ops,
+							List<CircuitOp> inverses) {
+
+						// mark the circuit
+						circuit.markChanged();
+
+						// record the edit for undo
+						undoManager.record(ops, inverses, this::snapshot);
+
+						afterChange(ops);
+					} // end of markChanged method
+
+					/**
+					 * The bookkeeping after every edit once undo has it:
+					 * clear redos, elaborate, and checkpoint.
+					 *
+					 * @param ops The ops the edit was made by, or null for
+					 *        a direct change.
+					 */
+					private void afterChange(@Nullable List<CircuitOp> ops) {
+
 						// clear redos
 						undoManager.clearRedos();
 
+						// elaborate for the next run once edits settle
+						elaborateSoon();
+
+						checkpoint(ops);
+					} // end of afterChange method
+
+					/**
+					 * Checkpoint a change. Ops made on the top-level
+					 * circuit are journaled after the last checkpoint; any
+					 * other change stops the journal, and the whole
+					 * circuit is checkpointed if it is time.
+					 *
+					 * @param ops The ops the change was made by, or null
+					 *        for a direct change.
+					 */
+					private void checkpoint(@Nullable List<CircuitOp> ops) {
+
+						// get top level circuit
+						Circuit circ = circuit;
+						while (circ.isImported()) {
+							SubCircuit se = circ.getSubElement();
+							if (se == null)
+								throw new IllegalStateException("imported circuit has no sub-element");
+							circ = se.getCircuit();
+						}
+
+						// checkpoint the top-level circuit, matching the file
+						// it is written to: saving a subcircuit under the
+						// top-level name would leave an unrecoverable checkpoint
+						String fileName = circ.getDirectory() + "/" + circ.getName() + ".jls~";
+
+						// ops replay onto the circuit they were made on, so
+						// only the top level's are journaled
+						if (ops != null && circ == circuit) {
+							journalInBackground(fileName,
+									CheckpointJournal.text(ops), circ);
+							return;
+						}
+						breakJournal(fileName);
+
 						// save checkpoint file (if it is time)
 						check += 1;
 						if (check > JLSInfo.checkPointFreq) {
 							check = 1;
 
-							// get top level circuit
-							Circuit circ = circuit;
-							while (circ.isImported()) {
-								SubCircuit se = circ.getSubElement();
-								if (se == null)
-									throw new IllegalStateException("imported circuit has no sub-element");
-								circ = se.getCircuit();
-							}
-
 							// Serialize in memory here (cheap relative to disk
 							// I/O), then hand the text to the background checkpoint
 							// writer so the write never stalls the event thread (#19).
-							// checkpoint the top-level circuit, matching the file
-							// it is written to: saving a subcircuit under the
-							// top-level name would leave an unrecoverable checkpoint
-							String fileName = circ.getDirectory() + "/" + circ.getName() + ".jls~";
-							StringWriter text = new StringWriter();
-							try (PrintWriter output = new PrintWriter(text)) {
-								circ.save(output);
-							}
-							writeCheckpointInBackground(fileName, text.toString());
+							writeCheckpointInBackground(fileName, saveText(circ));
 						}
 
-					} // end of markChanged method
+					} // end of checkpoint method
 
 					/**
 					 * The single mutation entry point (issue #167, collab
 					 * Stage 0b): validate the op, apply it to the circuit,
-					 * then do the existing change bookkeeping (undo
-					 * snapshot, checkpoint, changed flag). The
-					 * collaboration layer (issue #163) will observe this
-					 * same entry point; gestures migrate to it one at a
-					 * time under the snapshot-undo safety net.
+					 * then do the existing change bookkeeping (undo,
+					 * checkpoint, changed flag). Undo records the op and
+					 * its inverse, taken before the op is applied, rather
+					 * than a copy of the circuit. The collaboration layer
+					 * (issue #163) will observe this same entry point;
+					 * gestures migrate to it one at a time, the rest
+					 * keeping snapshot undo.
 					 */
 					private final OpSink opSink = new OpSink() {
 						@Override
 						public void submit(CircuitOp op) throws OpRejected {
 
+							CircuitOp inverse = op.invert(circuit);
 							op.apply(circuit, getGraphics());
-							markChanged();
+							markChanged(List.of(op), List.of(inverse));
 						}
 
 						/**
 						 * A multi-op gesture records exactly once:
 						 * apply every op, then one markChanged(), so a
-						 * wired delete stays a single undo snapshot
+						 * wired delete stays a single undo entry
 						 * instead of fragmenting into one entry per op
-						 * (issue #167).
+						 * (issue #167). Each inverse is taken against
+						 * the circuit as that op finds it.
 						 */
 						@Override
 						public void submitAll(List<CircuitOp> ops)
 								throws OpRejected {
 
+							List<CircuitOp> inverses = new ArrayList<CircuitOp>(ops.size());
 							for (CircuitOp op : ops) {
+								inverses.add(op.invert(circuit));
 								op.apply(circuit, getGraphics());
 							}
-							markChanged();
+							markChanged(ops, inverses);
 						}
 					};
 
@@ -5596,7 +6018,7 @@ public abstract class SimpleEditor extends JPanel {
 
 					/**
 					 * Submit a gesture's committed op plan as one batch
-					 * (one undo snapshot), reporting a rejection to the
+					 * (one undo entry), reporting a rejection to the
 					 * user. As with {@link #submitOp}, rejections cannot
 					 * happen from correctly guarded gestures - the plan
 					 * builder vets everything the ops validate - so a
@@ -5628,9 +6050,20 @@ public abstract class SimpleEditor extends JPanel {
 					 */
 					public void pushCopy() {
 
-						undoManager.push(CircuitSnapshot.capture(circuit));
+						undoManager.push(snapshot());
 					} // end of pushCopy method
 
+					/**
+					 * Capture the circuit being edited in the save format
+					 * (#18), for the undo history.
+					 *
+					 * @return the snapshot.
+					 */
+					private CircuitSnapshot snapshot() {
+
+						return CircuitSnapshot.capture(circuit);
+					} // end of snapshot method
+
 					/**
 					 * Do undo. An in-flight gesture is cancelled first,
 					 * exactly as Esc would, so the restore always runs
@@ -5641,7 +6074,8 @@ public abstract class SimpleEditor extends JPanel {
 					public void undo() {
 
 						cancelGesture();
-						undoManager.undo(this::finishDo);
+						undoManager.undo(this::finishDo, this::applyDo);
+						elaborateSoon();
 					} // end of undo method
 
 					/**
@@ -5652,9 +6086,32 @@ public abstract class SimpleEditor extends JPanel {
 					public void redo() {
 
 						cancelGesture();
-						undoManager.redo(this::finishDo);
+						undoManager.redo(this::finishDo, this::applyDo);
+						elaborateSoon();
 					} // end of redo method
 
+					/**
+					 * Apply an op for undo or redo to the edited circuit
+					 * in place, with the bookkeeping an edit gets: the
+					 * circuit is marked changed, the jump start and names
+					 * lists follow elements that came or went, and the op
+					 * is checkpointed.
+					 *
+					 * @param op The op.
+					 *
+					 * @throws OpRejected if the op does not apply; the
+					 *             circuit is unchanged.
+					 */
+					private void applyDo(CircuitOp op) throws OpRejected {
+
+						op.apply(circuit, getGraphics());
+						circuit.markChanged();
+						updateJumpStarts(circuit);
+						updateNamesUsed(circuit);
+						checkpoint(List.of(op));
+						repaint();
+					} // end of applyDo method
+
 					/**
 					 * Cancel any in-flight gesture, exactly as Esc or a
 					 * right-click cancel would, without touching the
@@ -5772,6 +6229,9 @@ public abstract class SimpleEditor extends JPanel {
 						// update names used list
 						updateNamesUsed(circuit);
 
+						// the checkpoint's journal does not lead here
+						checkpoint(null);
+
 						// if not imported, point simulator at it
 						if (!circuit.isImported()) {
 							Simulator sim = JLSInfo.sim;
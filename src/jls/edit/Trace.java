@@ -26,8 +26,8 @@ public class Trace extends JPanel implements MouseListener, MouseMotionListener
 	/**
 	 * How many changes each trace retains for scrollback (issue #121).
 	 * This is the display-side bound (distinct from #20's simulation
-	 * state bounds): at ~136 bytes per change (Change object + cloned
-	 * BitSet + linked-list node) it caps a trace at roughly 14 MB.
+	 * state bounds). Only the newest TraceStore.HOT of them are on the
+	 * heap; the rest are in the trace's memory-mapped spill file.
 	 */
 	static final int MAX_RETAINED_CHANGES = 100_000;
 
@@ -48,7 +48,7 @@ public class Trace extends JPanel implements MouseListener, MouseMotionListener
 	 * @param value The value taking effect (HiZ as the off marker).
 	 * @param when The simulation time it took effect.
 	 */
-	private record Change(BitSet value, long when) {}
+	record Change(BitSet value, long when) {}
 
 	// properties
 	/** The traced signal's display name. */
@@ -58,20 +58,18 @@ public class Trace extends JPanel implements MouseListener, MouseMotionListener
 	/** The trace-window container this trace row belongs to. */
 	protected InteractiveSimulator.Traces parent;
 	/**
-	 * Changes recorded but not yet committed to the display.  Written
-	 * by the sim thread and copied by the EDT at commit; both methods
-	 * are synchronized and the committed list is replaced, never
-	 * mutated, so drawing iterates a stable snapshot (issue #49,
-	 * finding M9).
+	 * Every change recorded, committed or not, oldest first: the newest
+	 * on the heap, older ones spilled to disk.  Written by the sim
+	 * thread and read by the EDT; the store synchronizes each access.
 	 */
-	private LinkedList<Change> pendingChanges = new LinkedList<Change>();
+	private final TraceStore store;
 	/**
-	 * The committed changes drawing reads, newest first.  ArrayList:
-	 * paintComponent indexes into this list per change, which was
-	 * O(n^2) on a LinkedList (issue #43).
+	 * The committed changes drawing reads, newest first: a view of the
+	 * store up to the last commit, replaced (never extended) by each
+	 * commit, so drawing iterates a stable range (issue #49, finding
+	 * M9).  Indexed per change by paintComponent (issue #43).
 	 */
-	private volatile java.util.ArrayList<Change> changes =
-			new java.util.ArrayList<Change>();
+	private volatile TraceStore.View changes;
 	/** The latest committed simulation time. */
 	protected long now = 0;
 	/** Horizontal scale: simulation time units per pixel. */
@@ -124,6 +122,8 @@ public class Trace extends JPanel implements MouseListener, MouseMotionListener
 		addMouseListener(this);
 		addMouseMotionListener(this);
 		me = this;
+		store = new TraceStore(bits);
+		changes = store.newestFirst(0);
 		off = new BitSet(bits+1);
 		off.set(bits);
 		begin = new BitSet(bits+1);
@@ -165,7 +165,7 @@ public class Trace extends JPanel implements MouseListener, MouseMotionListener
 	} // end of setScaleFactor method
 
 	/**
-	 * Add a value/time to the front of the pending changes list.
+	 * Record a value/time as the newest change, not yet committed.
 	 *
 	 * @param value The value to add to the list, or null for HiZ.
 	 * @param when The time at which the value occurred.
@@ -186,16 +186,14 @@ public class Trace extends JPanel implements MouseListener, MouseMotionListener
 		if (value.equals(previousValue))
 			return;
 
-		Change ch = new Change((BitSet)value.clone(),when);
 		previousValue = (BitSet)value.clone();
-		pendingChanges.add(0,ch);
 
 		// retain a bounded scrollback history (issue #121): the cap
 		// used to be the panel width, which discarded everything a
 		// finished run could no longer display; the panel now grows
-		// with the run, so retention is a documented count instead
-		if (pendingChanges.size() > MAX_RETAINED_CHANGES)
-			pendingChanges.removeLast();
+		// with the run, so retention is a documented count instead,
+		// kept by the store
+		store.add(when,(BitSet)value.clone());
 	} // end of addValue method
 
 	/**
@@ -214,7 +212,7 @@ public class Trace extends JPanel implements MouseListener, MouseMotionListener
 	public synchronized void commit(long time) {
 
 		now = time;
-		changes = new java.util.ArrayList<Change>(pendingChanges);
+		changes = store.newestFirst(store.count());
 	} // end of commit method
 
 	/**
@@ -244,7 +242,7 @@ public class Trace extends JPanel implements MouseListener, MouseMotionListener
 
 		// take one snapshot of the committed changes so every phase
 		// below sees the same list even if a commit lands mid-paint
-		java.util.ArrayList<Change> snapshot = changes;
+		TraceStore.View snapshot = changes;
 
 		// set up for loop
 		int top = HEIGHT/2-10;
@@ -392,6 +390,28 @@ public class Trace extends JPanel implements MouseListener, MouseMotionListener
 			pos = width-(double)(now-change.when())/scaleFactor;
 			when = change.when();
 			ch += 1;
+
+			// the changes after this one in its pixel column are drawn
+			// as one bar spanning every level they reach, read from the
+			// store's level-of-detail pyramid: a far zoom then costs a
+			// step per column, not per change.  Columns hold at most one
+			// change when zoomed in, which draws exactly as before.
+			int column = (int)Math.round(pos);
+			if (ch < snapshot.size()
+					&& column(snapshot.get(ch).when()) == column) {
+				int last = lastInColumn(snapshot,ch,column);
+				int levels = snapshot.levels(ch-1,last);
+				int from = (levels & TraceStore.TOP) != 0 ? top
+						: (levels & TraceStore.MIDDLE) != 0 ? middle : bottom;
+				int to = (levels & TraceStore.BOTTOM) != 0 ? bottom
+						: (levels & TraceStore.MIDDLE) != 0 ? middle : top;
+				g.drawLine(column,from,column,to);
+				Change end = snapshot.get(last);
+				previousVal = end.value();
+				pos = width-(double)(now-end.when())/scaleFactor;
+				when = end.when();
+				ch = last+1;
+			}
 		}
 
 		// draw slider
@@ -443,7 +463,7 @@ public class Trace extends JPanel implements MouseListener, MouseMotionListener
 	 *         time, or list.size() if every change is later.
 	 */
 	private static int firstChangeAtOrBefore(
-			java.util.ArrayList<Change> list, long time) {
+			java.util.List<Change> list, long time) {
 
 		int lo = 0;
 		int hi = list.size();
@@ -457,6 +477,44 @@ public class Trace extends JPanel implements MouseListener, MouseMotionListener
 		return lo;
 	} // end of firstChangeAtOrBefore method
 
+	/**
+	 * Get the pixel column a time is drawn at, as paintComponent
+	 * rounds it.
+	 *
+	 * @param time The simulation time.
+	 *
+	 * @return the column.
+	 */
+	private int column(long time) {
+
+		return (int)Math.round(width-(double)(now-time)/scaleFactor);
+	} // end of column method
+
+	/**
+	 * Find the oldest committed change drawn in the same pixel column as
+	 * a given one.  Columns only move left going back in time, so a
+	 * binary search finds it.
+	 *
+	 * @param list The committed changes, newest first.
+	 * @param from The index of a change in the column.
+	 * @param column The column.
+	 *
+	 * @return the largest index whose change is in the column.
+	 */
+	private int lastInColumn(TraceStore.View list, int from, int column) {
+
+		int lo = from;
+		int hi = list.size()-1;
+		while (lo < hi) {
+			int mid = (lo+hi+1) >>> 1;
+			if (column(list.get(mid).when()) == column)
+				lo = mid;
+			else
+				hi = mid-1;
+		}
+		return lo;
+	} // end of lastInColumn method
+
 	/**
 	 * Test seam for the search over the committed snapshot (issue
 	 * #121): package-private, used by TraceWindowingTest.
@@ -0,0 +1,342 @@
+package jls.edit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.BitSet;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * The recorded changes of one interactive trace, oldest first. Only the
+ * newest {@link #HOT} changes are kept on the heap; older ones spill, as
+ * the run passes them, to fixed-size records in a memory-mapped
+ * temporary file, so scrolling back reads them through the page cache
+ * and a long session's heap stays bounded whatever its length.
+ *
+ * Changes are numbered from 0 in the order added. The file is a ring
+ * holding the spilled part of the newest {@code cap} changes, so older
+ * ones drop out as the cap of {@link Trace#MAX_RETAINED_CHANGES} always
+ * made them. It is created on the first spill and deleted as soon as it
+ * is mapped; the mapping lives as long as the store. Without a usable
+ * temporary directory the ring is kept on the heap instead.
+ *
+ * Beside the changes the store keeps a level-of-detail pyramid: for
+ * each aligned block of 2^k consecutive changes, the trace levels
+ * ({@link #TOP}, {@link #MIDDLE}, {@link #BOTTOM}) their values are
+ * drawn at. {@link #levels} answers for any run of changes in O(log n),
+ * so Trace can draw a pixel column holding thousands of changes as one
+ * bar.
+ *
+ * Each method is synchronized: the sim thread adds while the EDT reads.
+ */
+final class TraceStore {
+
+	/** The changes kept on the heap, the newest ones. */
+	static final int HOT = 4096;
+
+	/** The level a 1 bit, or a multi-bit value's upper edge, is drawn at. */
+	static final int TOP = 1;
+	/** The level a HiZ value is drawn at. */
+	static final int MIDDLE = 2;
+	/** The level a 0 bit, or a multi-bit value's lower edge, is drawn at. */
+	static final int BOTTOM = 4;
+
+	/** The traced signal's bit width. */
+	private final int bits;
+	/** Longs per value: the value bits and the HiZ flag bit. */
+	private final int words;
+	/** Bytes per spilled change: the time, then the value's longs. */
+	private final int record;
+	/** The changes kept on the heap. */
+	private final int hot;
+	/** The spilled changes the ring holds. */
+	private final int ring;
+	/** Per hot slot, its change's time. */
+	private final long[] hotWhen;
+	/** Per hot slot, its change's value. */
+	private final BitSet[] hotValue;
+	/** The spilled changes, or null until the first spill. */
+	private @Nullable ByteBuffer cold = null;
+	/** The number of changes ever added. */
+	private long count = 0;
+	/**
+	 * Per k, per block of 2^k changes (a ring, by block number), the
+	 * levels the block's values are drawn at.
+	 */
+	private final byte[][] pyramid;
+
+	/**
+	 * Create an empty store with the default heap window and cap.
+	 *
+	 * @param bits The traced signal's bit width.
+	 */
+	TraceStore(int bits) {
+
+		this(bits, HOT, Trace.MAX_RETAINED_CHANGES);
+	} // end of constructor
+
+	/**
+	 * Create an empty store.
+	 *
+	 * @param bits The traced signal's bit width.
+	 * @param hot The changes to keep on the heap, positive.
+	 * @param cap The changes to retain in all, at least hot.
+	 *
+	 * @jls.testedby jls.edit.TraceStoreTest#spilledChangesReadBackAsAdded()
+	 * @jls.testedby jls.edit.TraceStoreTest#theOldestChangesDropOutAtTheCap()
+	 */
+	TraceStore(int bits, int hot, int cap) {
+
+		if (hot <= 0 || cap < hot)
+			throw new IllegalArgumentException(
+					"need 0 < hot <= cap, got " + hot + " and " + cap);
+		this.bits = bits;
+		this.words = (bits + 64) / 64;
+		this.record = 8 * (1 + words);
+		this.hot = hot;
+		// a mapping is at most 2GB; only a very wide signal retains less
+		this.ring = Math.min(cap - hot, Integer.MAX_VALUE / record);
+		hotWhen = new long[hot];
+		hotValue = new BitSet[hot];
+
+		// a block's slot is reused only once every change in it has
+		// dropped out: each ring spans the retained changes plus two
+		// blocks
+		int retained = hot + ring;
+		pyramid = new byte[64 - Long.numberOfLeadingZeros(retained)][];
+		for (int k = 0; k < pyramid.length; k += 1) {
+			pyramid[k] = new byte[(retained >>> k) + 2];
+		}
+	} // end of constructor
+
+	/**
+	 * Add the newest change, spilling the oldest hot one if the heap
+	 * window is full.
+	 *
+	 * @param when Its time, not before the last change's.
+	 * @param value Its value, HiZ as the off marker; kept, so the
+	 *        caller must not change it afterwards.
+	 */
+	synchronized void add(long when, BitSet value) {
+
+		int slot = (int) (count % hot);
+		if (count >= hot && ring > 0) {
+			ByteBuffer buffer = cold();
+			int at = (int) ((count - hot) % ring) * record;
+			buffer.putLong(at, hotWhen[slot]);
+
+			// each long gathered from the value's set bits, so nothing
+			// is allocated per spill; a reused record is overwritten
+			BitSet spilled = hotValue[slot];
+			int next = spilled.nextSetBit(0);
+			for (int w = 0; w < words; w += 1) {
+				long word = 0;
+				while (next >= 0 && next < 64 * (w + 1)) {
+					word |= 1L << (next & 63);
+					next = spilled.nextSetBit(next + 1);
+				}
+				buffer.putLong(at + 8 + 8 * w, word);
+			}
+		}
+		hotWhen[slot] = when;
+		hotValue[slot] = value;
+
+		// fold the value's levels into every block holding it
+		byte levels = (byte) levels(value);
+		for (int k = 0; k < pyramid.length; k += 1) {
+			byte[] row = pyramid[k];
+			int block = (int) ((count >>> k) % row.length);
+			if ((count & ((1L << k) - 1)) == 0) {
+				row[block] = levels;
+			}
+			else {
+				row[block] |= levels;
+			}
+		}
+		count += 1;
+	} // end of add method
+
+	/**
+	 * Get the number of changes ever added, retained or not.
+	 *
+	 * @return the count.
+	 */
+	synchronized long count() {
+
+		return count;
+	} // end of count method
+
+	/**
+	 * Get the number of the oldest change still retained.
+	 *
+	 * @return its number.
+	 */
+	synchronized long first() {
+
+		return Math.max(0, count - hot - ring);
+	} // end of first method
+
+	/**
+	 * Read one change back. A change that has dropped out since the
+	 * caller looked (a commit landing mid-paint) reads as the oldest
+	 * one retained.
+	 *
+	 * @param number The change's number, below count().
+	 *
+	 * @return the change.
+	 */
+	synchronized Trace.Change get(long number) {
+
+		number = Math.max(number, first());
+		if (number >= count - hot) {
+			int slot = (int) (number % hot);
+			return new Trace.Change(hotValue[slot], hotWhen[slot]);
+		}
+		ByteBuffer buffer = cold();
+		int at = (int) (number % ring) * record;
+		long[] bits = new long[words];
+		for (int w = 0; w < words; w += 1) {
+			bits[w] = buffer.getLong(at + 8 + 8 * w);
+		}
+		return new Trace.Change(BitSet.valueOf(bits), buffer.getLong(at));
+	} // end of get method
+
+	/**
+	 * Get the levels a run of changes' values are drawn at, from the
+	 * largest aligned blocks that tile it.
+	 *
+	 * @param from The number of the run's oldest change.
+	 * @param to The number of its newest change, below count().
+	 *
+	 * @return the levels, {@link #TOP}, {@link #MIDDLE} and
+	 *         {@link #BOTTOM} or'd together.
+	 *
+	 * @jls.testedby jls.edit.TraceStoreTest#levelsMatchTheChangesInAnyRun()
+	 */
+	synchronized int levels(long from, long to) {
+
+		from = Math.max(from, first());
+		long end = to + 1;
+		int levels = 0;
+		while (from < end) {
+			int k = Math.min(pyramid.length - 1,
+					63 - Long.numberOfLeadingZeros(end - from));
+			if (from != 0) {
+				k = Math.min(k, Long.numberOfTrailingZeros(from));
+			}
+			byte[] row = pyramid[k];
+			levels |= row[(int) ((from >>> k) % row.length)];
+			from += 1L << k;
+		}
+		return levels;
+	} // end of levels method
+
+	/**
+	 * Get the levels one value is drawn at: the middle for HiZ, the top
+	 * or bottom for a 1-bit value, both edges of a multi-bit one.
+	 *
+	 * @param value The value, HiZ as the off marker.
+	 *
+	 * @return the levels.
+	 */
+	private int levels(BitSet value) {
+
+		if (value.get(bits)) {
+			return MIDDLE;
+		}
+		if (bits == 1) {
+			return value.get(0) ? TOP : BOTTOM;
+		}
+		return TOP | BOTTOM;
+	} // end of levels method
+
+	/**
+	 * A read-only view of the changes before a given number, newest
+	 * first, as Trace draws them. Its size shrinks if older changes
+	 * drop out while it is in use.
+	 *
+	 * @param end The number of the first change not in the view.
+	 *
+	 * @return the view.
+	 */
+	View newestFirst(long end) {
+
+		return new View(end);
+	} // end of newestFirst method
+
+	/**
+	 * The changes before a given number, newest first.
+	 */
+	final class View extends AbstractList<Trace.Change> {
+
+		/** The number of the first change not in the view. */
+		private final long end;
+
+		/**
+		 * Create the view.
+		 *
+		 * @param end The number of the first change not in it.
+		 */
+		private View(long end) {
+
+			this.end = end;
+		} // end of constructor
+
+		@Override
+		public Trace.Change get(int index) {
+
+			return TraceStore.this.get(end - 1 - index);
+		} // end of get method
+
+		@Override
+		public int size() {
+
+			return (int) Math.max(0, end - first());
+		} // end of size method
+
+		/**
+		 * Get the levels a run of the view's changes are drawn at.
+		 *
+		 * @param newer The index of the run's newest change.
+		 * @param older The index of its oldest change, not below newer.
+		 *
+		 * @return the levels, as {@link TraceStore#levels(long,long)}.
+		 */
+		int levels(int newer, int older) {
+
+			return TraceStore.this.levels(end - 1 - older, end - 1 - newer);
+		} // end of levels method
+
+	} // end of View class
+
+	/**
+	 * The ring of spilled changes, mapping its file on first use.
+	 *
+	 * @return the ring.
+	 */
+	private ByteBuffer cold() {
+
+		ByteBuffer buffer = cold;
+		if (buffer != null)
+			return buffer;
+		int size = ring * record;
+		try {
+			Path file = Files.createTempFile("jls-trace", ".bin");
+			try (FileChannel channel = FileChannel.open(file,
+					StandardOpenOption.READ, StandardOpenOption.WRITE,
+					StandardOpenOption.DELETE_ON_CLOSE)) {
+				buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			}
+		} catch (IOException | UnsupportedOperationException e) {
+			buffer = ByteBuffer.allocate(size);
+		}
+		cold = buffer;
+		return buffer;
+	} // end of cold method
+
+} // end of TraceStore class
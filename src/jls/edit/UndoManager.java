@@ -1,38 +1,68 @@
 package jls.edit;
 
-import java.util.Stack;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+import org.jspecify.annotations.Nullable;
 
 import jls.JLSInfo;
+import jls.collab.op.CircuitOp;
+import jls.collab.op.OpRejected;
 
 /**
  * The undo/redo bookkeeping extracted from {@code SimpleEditor} (issue
- * #84, finding U7): the two snapshot stacks, the no-op-drop and
- * depth-bound push policy, and the pop/push transitions of undo and redo.
+ * #84, finding U7): the history of edits, the no-op-drop and
+ * depth-bound push policy, and the transitions of undo and redo.
+ *
+ * An edit made through the op vocabulary (issue #167) is recorded as a
+ * delta - its ops and their inverses - which costs the size of the edit
+ * rather than of the circuit: undo applies the inverses in reverse and
+ * redo applies the ops again, in place, through an injected
+ * {@link Applier}. A whole-circuit snapshot is captured only as an
+ * anchor every {@link #ANCHOR_EVERY} deltas, and for gestures that still
+ * mutate the circuit directly, whose history entry is the snapshot
+ * after them. Undoing past such an entry rebuilds the state below it
+ * from the nearest snapshot under it and replays the deltas since; so
+ * does an in-place undo or redo whose op no longer applies.
  *
- * The manager owns only stack policy. Actually restoring a snapshot -
+ * The manager owns only history policy. Actually restoring a snapshot -
  * rebuilding the circuit through the load path, relinking subcircuits,
  * pointing the simulator at the new instance - stays in the editor and is
  * injected per call as a {@link Restorer}, so the transition rules are
  * unit-testable headless (the surefire JVM runs with
  * {@code java.awt.headless=true}, where the editor itself cannot be
  * constructed) while the editor keeps its Swing-bound restore. A restore
- * can fail (the snapshot no longer loads); the stacks are only touched
- * after the restorer reports success, exactly as the pre-extraction code
- * behaved.
+ * can fail (the snapshot no longer loads); the history is only touched
+ * once the edited circuit has reached the state undo or redo moves to.
  *
- * Capacity (U7 decision on issue #84): whole-circuit snapshots are kept -
- * measured cheap at classroom scale ({@code CircuitSnapshotTest}
- * bounds them under 100 bytes/element) - and the depth bound is read
- * through an injected supplier so issue #76 can turn it into a live
- * preference without touching this class; until then it degrades to
- * {@link JLSInfo#undoStackDepth}.
+ * Capacity: deltas are not bounded - they are small, so edits made
+ * through ops can be undone back to the first paint. Anchors are: only
+ * the newest {@link #MAX_ANCHORS} keep their snapshot, since a rebuild
+ * needs only the nearest snapshot under the state it rebuilds, and the
+ * bottom of the history always holds one; undoing further back than
+ * the oldest kept anchor replays the deltas from the bottom. The depth
+ * bound,
+ * read through an injected supplier from the issue #76 preference
+ * {@link JLSInfo#undoStackDepth}, limits the snapshot entries of
+ * direct-mutation gestures, which hold a whole circuit each
+ * ({@code CircuitSnapshotTest} bounds them under 100 bytes/element).
  */
 final class UndoManager {
 
+	/** Deltas recorded between anchor snapshots. */
+	static final int ANCHOR_EVERY = 32;
+
+	/**
+	 * Anchor snapshots kept above the bottom of the undo history; the
+	 * snapshots of older anchors are dropped, their deltas kept.
+	 */
+	static final int MAX_ANCHORS = 8;
+
 	/**
 	 * How the editor restores a snapshot when undo or redo needs it
-	 * installed as the edited circuit. Injected per call so the stack
+	 * installed as the edited circuit. Injected per call so the history
 	 * transitions can be tested without a display.
 	 */
 	interface Restorer {
@@ -49,15 +79,64 @@ final class UndoManager {
 		boolean restore(CircuitSnapshot snap);
 	} // end of Restorer interface
 
-	/** Undone-to states, bottom is oldest; the base snapshot sits at the bottom. */
-	private final Stack<CircuitSnapshot> undos = new Stack<CircuitSnapshot>();
+	/**
+	 * How the editor applies a recorded op to the edited circuit when
+	 * undo or redo replays a delta. Injected per call, like the
+	 * {@link Restorer}.
+	 */
+	interface Applier {
+
+		/**
+		 * Apply an op to the edited circuit.
+		 *
+		 * @param op The op.
+		 *
+		 * @throws OpRejected if the op does not apply; the circuit is
+		 *             unchanged.
+		 */
+		void apply(CircuitOp op) throws OpRejected;
+	} // end of Applier interface
+
+	/**
+	 * One step of the history.
+	 *
+	 * @param ops The ops of a delta, in order; empty for a gesture that
+	 *        mutated the circuit directly.
+	 * @param inverses The inverse of each op, in the same order.
+	 * @param after The whole circuit after the step: always present for a
+	 *        direct gesture, and on a delta only when it is an anchor.
+	 */
+	private record Entry(List<CircuitOp> ops, List<CircuitOp> inverses,
+			@Nullable CircuitSnapshot after) {
 
-	/** States undone away from, top is the next redo. */
-	private final Stack<CircuitSnapshot> redos = new Stack<CircuitSnapshot>();
+		/**
+		 * Whether this step is a delta of ops.
+		 *
+		 * @return true for a delta.
+		 */
+		boolean isDelta() {
 
-	/** Where the depth bound is read from on each push. */
+			return !ops.isEmpty();
+		} // end of isDelta method
+	} // end of Entry record
+
+	/** An applier for histories with no deltas: it rejects every op. */
+	private static final Applier NO_OPS = op -> {
+		throw new OpRejected("no circuit to apply ops to");
+	};
+
+	/** Undone-to states, bottom is oldest; the bottom always holds a snapshot. */
+	private final List<Entry> undos = new ArrayList<Entry>();
+
+	/** States undone away from, last is the next redo. */
+	private final List<Entry> redos = new ArrayList<Entry>();
+
+	/** Where the depth bound is read from whenever the history grows. */
 	private final IntSupplier depth;
 
+	/** Deltas on top of the undo history since the last snapshot. */
+	private int sinceAnchor = 0;
+
 	/**
 	 * Create a manager whose depth bound is
 	 * {@link JLSInfo#undoStackDepth}, the pre-#76 hardcoded default.
@@ -68,15 +147,14 @@ final class UndoManager {
 	} // end of constructor
 
 	/**
-	 * Create a manager with an injected depth bound, read afresh on every
-	 * push - the seam issue #76 turns into a preference, and what the
-	 * unit tests use to exercise the bound cheaply.
+	 * Create a manager with an injected depth bound, read afresh whenever
+	 * the history grows - the seam issue #76 turns into a preference, and
+	 * what the unit tests use to exercise the bound cheaply.
 	 *
-	 * @param depth Supplies the maximum number of undoable states; the
-	 *              undo stack holds at most depth + 1 snapshots (the
-	 *              base state plus depth undoable ones - preserved
-	 *              exactly from the pre-extraction code so undo capacity
-	 *              does not change).
+	 * @param depth Supplies the maximum number of undoable direct
+	 *              gestures; the history holds at most depth + 1 of
+	 *              their snapshots (the base state plus depth undoable
+	 *              ones - the capacity the pre-extraction code had).
 	 *
 	 * @jls.testedby jls.edit.UndoManagerTest#pushClampsToTheConfiguredDepth()
 	 */
@@ -86,10 +164,11 @@ final class UndoManager {
 	} // end of constructor
 
 	/**
-	 * Push a snapshot of the current state. A snapshot identical to the
-	 * top of the stack is dropped - aborted dialogs and cancelled
-	 * gestures serialize identically, so no-op edits never spend an undo
-	 * slot - and when the stack is full the oldest snapshot is discarded
+	 * Push a snapshot of the state a direct-mutation gesture left. A
+	 * snapshot identical to the one on top of the history is dropped -
+	 * aborted dialogs and cancelled gestures serialize identically, so
+	 * no-op edits never spend an undo slot - and when the history holds
+	 * more such snapshots than the depth bound the oldest are discarded
 	 * from the bottom.
 	 *
 	 * @param snap The snapshot to push.
@@ -101,20 +180,89 @@ final class UndoManager {
 
 		// an aborted or no-op change serializes identically to the top
 		// of the stack and is not pushed again (#18)
-		if (!undos.isEmpty() && undos.peek().sameAs(snap)) {
+		if (!undos.isEmpty()) {
+			CircuitSnapshot top = undos.get(undos.size() - 1).after();
+			if (top != null && top.sameAs(snap)) {
+				return;
+			}
+		}
+
+		// save for undo
+		undos.add(new Entry(List.of(), List.of(), snap));
+		sinceAnchor = 0;
+		prune();
+	} // end of push method
+
+	/**
+	 * Record an edit made through ops, at the cost of the ops: a
+	 * snapshot is taken only when the edit is the first thing recorded,
+	 * or completes a run of {@link #ANCHOR_EVERY} deltas. An edit of no
+	 * ops is not recorded.
+	 *
+	 * @param ops The ops applied, in order.
+	 * @param inverses The inverse of each op, computed before it was
+	 *        applied, in the same order.
+	 * @param anchor Captures the circuit as it is now, if an anchor is
+	 *        due.
+	 *
+	 * @jls.testedby jls.edit.UndoManagerTest#deltasUndoAndRedoInPlace()
+	 * @jls.testedby jls.edit.UndoManagerTest#deltasTakeSnapshotsOnlyAsAnchors()
+	 * @jls.testedby jls.edit.UndoManagerTest#anchorsStayBoundedOverManyOpEdits()
+	 */
+	public void record(List<CircuitOp> ops, List<CircuitOp> inverses,
+			Supplier<CircuitSnapshot> anchor) {
+
+		if (ops.isEmpty()) {
 			return;
 		}
+		if (ops.size() != inverses.size()) {
+			throw new IllegalArgumentException(ops.size() + " ops but "
+					+ inverses.size() + " inverses");
+		}
+		sinceAnchor += 1;
+		CircuitSnapshot after = null;
+		if (undos.isEmpty() || sinceAnchor >= ANCHOR_EVERY) {
+			after = anchor.get();
+			sinceAnchor = 0;
+		}
+		undos.add(new Entry(List.copyOf(ops), List.copyOf(inverses), after));
+		if (after != null) {
+			prune();
+		}
+	} // end of record method
+
+	/**
+	 * Bring the undo history within its bounds after an entry was added:
+	 * discard the oldest direct snapshots beyond the depth bound from
+	 * the bottom, then drop the snapshots of all but the newest
+	 * {@link #MAX_ANCHORS} anchors.
+	 */
+	private void prune() {
 
-		// see if undo stack is full
-		if (undos.size() > depth.getAsInt()) {
+		// see if the history holds all the direct snapshots it may
+		while (directCount() > depth.getAsInt() + 1) {
 
-			// delete bottom of stack
+			// delete the bottom, and the deltas that have no snapshot
+			// to be rebuilt from without it
 			undos.remove(0);
+			while (!undos.isEmpty() && undos.get(0).after() == null) {
+				undos.remove(0);
+			}
 		}
 
-		// save for undo
-		undos.push(snap);
-	} // end of push method
+		// the bottom keeps its snapshot, whatever it is; above it the
+		// newest anchors are kept and older ones fall back on it
+		int anchors = 0;
+		for (int i = undos.size() - 1; i > 0; i -= 1) {
+			Entry entry = undos.get(i);
+			if (entry.isDelta() && entry.after() != null) {
+				anchors += 1;
+				if (anchors > MAX_ANCHORS) {
+					undos.set(i, new Entry(entry.ops(), entry.inverses(), null));
+				}
+			}
+		}
+	} // end of prune method
 
 	/**
 	 * Discard all redo states. Called when a new edit is made: the
@@ -128,8 +276,8 @@ final class UndoManager {
 	} // end of clearRedos method
 
 	/**
-	 * Whether undo has anywhere to go. The bottom snapshot is the base
-	 * state pushed on first paint, so one snapshot means nothing to undo.
+	 * Whether undo has anywhere to go. The bottom entry is the base
+	 * state recorded on first paint, so one entry means nothing to undo.
 	 *
 	 * @return true if a call to {@link #undo} can restore a prior state.
 	 *
@@ -153,73 +301,142 @@ final class UndoManager {
 	} // end of canRedo method
 
 	/**
-	 * Undo: restore the previous snapshot, then move the current one to
-	 * the redo stack. Only a successful restore may touch the stacks -
-	 * on failure both stacks are exactly as before.
+	 * Undo a history of snapshots only: restore the previous snapshot,
+	 * then move the current one to the redo stack.
 	 *
 	 * @param restorer Installs the snapshot as the edited circuit.
 	 *
 	 * @return true if a state was restored, false if there was nothing
 	 *         to undo or the restore failed.
 	 *
+	 * @see #undo(Restorer, Applier)
+	 *
 	 * @jls.testedby jls.edit.UndoManagerTest#undoRestoresThePreviousSnapshotAndEnablesRedo()
 	 * @jls.testedby jls.edit.UndoManagerTest#failedRestoreLeavesTheStacksUntouched()
 	 */
 	public boolean undo(Restorer restorer) {
 
-		// no undo left if stack only has a copy of the original circuit
+		return undo(restorer, NO_OPS);
+	} // end of undo method
+
+	/**
+	 * Undo: bring the edited circuit to the state below the top of the
+	 * history, then move the top to the redo stack. A delta is undone in
+	 * place by applying its inverses in reverse; a snapshot entry, or a
+	 * delta whose inverse no longer applies, by rebuilding the state
+	 * below from the nearest snapshot under it. The history is touched
+	 * only once the state is reached - on failure it is exactly as
+	 * before, and the circuit is returned to its top as far as it can be.
+	 *
+	 * @param restorer Installs a snapshot as the edited circuit.
+	 * @param applier Applies an op to the edited circuit.
+	 *
+	 * @return true if a state was restored, false if there was nothing
+	 *         to undo or it could not be reached.
+	 *
+	 * @jls.testedby jls.edit.UndoManagerTest#deltasUndoAndRedoInPlace()
+	 * @jls.testedby jls.edit.UndoManagerTest#undoPastASnapshotReplaysTheDeltasBelowIt()
+	 * @jls.testedby jls.edit.UndoManagerTest#aRejectedInverseFallsBackToTheSnapshots()
+	 */
+	public boolean undo(Restorer restorer, Applier applier) {
+
+		// no undo left if only the original circuit is recorded
 		if (!canUndo()) {
 			return false;
 		}
 
-		// restore the previous snapshot first; only a successful
-		// restore may touch the stacks
-		CircuitSnapshot current = undos.get(undos.size() - 1);
-		CircuitSnapshot previous = undos.get(undos.size() - 2);
-		if (!restorer.restore(previous)) {
-			return false;
+		// a delta is undone where it stands; anything else is rebuilt
+		int top = undos.size() - 1;
+		Entry current = undos.get(top);
+		int applied = 0;
+		if (current.isDelta()) {
+			applied = applyAll(current.inverses().reversed(), applier);
+		}
+		if (applied < current.inverses().size() || !current.isDelta()) {
+			Outcome outcome = rebuild(top - 1, restorer, applier);
+			if (outcome != Outcome.REACHED) {
+				if (applied > 0 || outcome == Outcome.CHANGED) {
+					rebuild(top, restorer, applier);
+				}
+				return false;
+			}
 		}
-		undos.pop();
-		redos.push(current);
+		undos.remove(top);
+		redos.add(current);
+		recount();
 		return true;
 	} // end of undo method
 
 	/**
-	 * Redo: restore the most recently undone snapshot, then move it back
-	 * to the undo stack. Only a successful restore may touch the stacks.
+	 * Redo a history of snapshots only: restore the most recently
+	 * undone snapshot, then move it back to the undo stack.
 	 *
 	 * @param restorer Installs the snapshot as the edited circuit.
 	 *
 	 * @return true if a state was restored, false if there was nothing
 	 *         to redo or the restore failed.
 	 *
+	 * @see #redo(Restorer, Applier)
+	 *
 	 * @jls.testedby jls.edit.UndoManagerTest#redoReappliesTheUndoneSnapshot()
 	 * @jls.testedby jls.edit.UndoManagerTest#redoWithNothingUndoneDoesNothing()
 	 */
 	public boolean redo(Restorer restorer) {
 
+		return redo(restorer, NO_OPS);
+	} // end of redo method
+
+	/**
+	 * Redo: bring the edited circuit to the most recently undone state,
+	 * then move it back to the undo history. A delta is redone in place
+	 * by applying its ops again; a snapshot entry, or a delta whose op no
+	 * longer applies, by rebuilding. As with undo, the history is only
+	 * touched once the state is reached.
+	 *
+	 * @param restorer Installs a snapshot as the edited circuit.
+	 * @param applier Applies an op to the edited circuit.
+	 *
+	 * @return true if a state was restored, false if there was nothing
+	 *         to redo or it could not be reached.
+	 *
+	 * @jls.testedby jls.edit.UndoManagerTest#deltasUndoAndRedoInPlace()
+	 */
+	public boolean redo(Restorer restorer, Applier applier) {
+
 		// if nothing on the redo stack, then there is nothing to do
 		if (redos.isEmpty()) {
 			return false;
 		}
 
-		// restore the snapshot first; only a successful restore may
-		// touch the stacks
-		CircuitSnapshot next = redos.peek();
-		if (!restorer.restore(next)) {
-			return false;
+		// a delta is redone where it stands; anything else is rebuilt
+		Entry next = redos.get(redos.size() - 1);
+		int applied = 0;
+		if (next.isDelta()) {
+			applied = applyAll(next.ops(), applier);
 		}
-		redos.pop();
-		undos.push(next);
+		undos.add(next);
+		if (applied < next.ops().size() || !next.isDelta()) {
+			int top = undos.size() - 1;
+			Outcome outcome = rebuild(top, restorer, applier);
+			if (outcome != Outcome.REACHED) {
+				undos.remove(top);
+				if (applied > 0 || outcome == Outcome.CHANGED) {
+					rebuild(top - 1, restorer, applier);
+				}
+				return false;
+			}
+		}
+		redos.remove(redos.size() - 1);
+		recount();
 		return true;
 	} // end of redo method
 
 	/**
-	 * The number of snapshots on the undo stack, base state included.
+	 * The number of entries in the undo history, base state included.
 	 * Test and future-UI seam (the tracker notes undo availability has
 	 * no UI indication today).
 	 *
-	 * @return the undo stack size.
+	 * @return the undo history size.
 	 */
 	public int undoCount() {
 
@@ -227,7 +444,7 @@ final class UndoManager {
 	} // end of undoCount method
 
 	/**
-	 * The number of snapshots on the redo stack.
+	 * The number of entries on the redo stack.
 	 *
 	 * @return the redo stack size.
 	 */
@@ -236,4 +453,126 @@ final class UndoManager {
 		return redos.size();
 	} // end of redoCount method
 
+	/**
+	 * The number of whole-circuit snapshots held, anchors and redo
+	 * entries included - what the history costs beyond its deltas.
+	 *
+	 * @return the snapshot count.
+	 */
+	public int snapshotCount() {
+
+		int count = 0;
+		for (List<Entry> list : List.of(undos, redos)) {
+			for (Entry entry : list) {
+				if (entry.after() != null) {
+					count += 1;
+				}
+			}
+		}
+		return count;
+	} // end of snapshotCount method
+
+	/**
+	 * What an attempt to rebuild a state did to the edited circuit.
+	 */
+	private enum Outcome {
+
+		/** The circuit is in the state asked for. */
+		REACHED,
+
+		/** The snapshot did not restore; the circuit is untouched. */
+		UNTOUCHED,
+
+		/** A replayed op was rejected part way; the circuit changed. */
+		CHANGED
+
+	} // end of Outcome enum
+
+	/**
+	 * Rebuild the state after a history entry: restore the nearest
+	 * snapshot at or below it, then replay the deltas above that.
+	 *
+	 * @param index The entry.
+	 * @param restorer Installs a snapshot as the edited circuit.
+	 * @param applier Applies an op to the edited circuit.
+	 *
+	 * @return what was done to the circuit.
+	 */
+	private Outcome rebuild(int index, Restorer restorer, Applier applier) {
+
+		// the bottom entry always holds a snapshot
+		int base = index;
+		CircuitSnapshot snap = undos.get(base).after();
+		while (snap == null) {
+			base -= 1;
+			snap = undos.get(base).after();
+		}
+		if (!restorer.restore(snap)) {
+			return Outcome.UNTOUCHED;
+		}
+		for (int i = base + 1; i <= index; i += 1) {
+			List<CircuitOp> ops = undos.get(i).ops();
+			if (applyAll(ops, applier) < ops.size()) {
+				return Outcome.CHANGED;
+			}
+		}
+		return Outcome.REACHED;
+	} // end of rebuild method
+
+	/**
+	 * Apply ops in order, stopping at the first one rejected.
+	 *
+	 * @param ops The ops.
+	 * @param applier Applies an op to the edited circuit.
+	 *
+	 * @return the number of ops applied.
+	 */
+	private static int applyAll(List<CircuitOp> ops, Applier applier) {
+
+		int applied = 0;
+		for (CircuitOp op : ops) {
+			try {
+				applier.apply(op);
+			}
+			catch (OpRejected ex) {
+				break;
+			}
+			applied += 1;
+		}
+		return applied;
+	} // end of applyAll method
+
+	/**
+	 * The number of snapshot entries of direct-mutation gestures in the
+	 * undo history, the base state included - what the depth bound
+	 * limits.
+	 *
+	 * @return the count.
+	 */
+	private int directCount() {
+
+		int count = 0;
+		for (Entry entry : undos) {
+			if (!entry.isDelta()) {
+				count += 1;
+			}
+		}
+		return count;
+	} // end of directCount method
+
+	/**
+	 * Count the deltas on top of the undo history since the last entry
+	 * holding a snapshot, after the top has changed.
+	 */
+	private void recount() {
+
+		sinceAnchor = 0;
+		for (int i = undos.size() - 1; i >= 0; i -= 1) {
+			if (undos.get(i).after() != null) {
+				break;
+			}
+			sinceAnchor += 1;
+		}
+	} // end of recount method
+
 } // end of UndoManager class
@@ -0,0 +1,522 @@
+package jls.edit;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jspecify.annotations.Nullable;
+
+import jls.Circuit;
+import jls.elem.Display;
+import jls.elem.Element;
+import jls.elem.SubCircuit;
+import jls.elem.Wire;
+import jls.elem.WireNet;
+
+/**
+ * The net and display values an interactive run shows, copied out of the
+ * running circuit a frame at a time so the canvas never paints from
+ * values the sim thread is changing under it.
+ *
+ * The sim thread {@link #publish}es a frame at most every
+ * {@link #FRAME_NANOS}: into the one of two preallocated frames the EDT
+ * is not showing, copying only the values that changed since that frame
+ * was last filled, then making it the front one. The EDT holds the front
+ * frame for the length of a paint pass; if it still holds the other one
+ * when the sim thread comes to fill it, that publish is skipped rather
+ * than waited for, so the run neither blocks on nor allocates for Swing.
+ *
+ * Each publish also notes which values differ from the frame shown
+ * before it, so the canvas can repaint just where they are drawn
+ * ({@link #changedSince}).
+ *
+ * While the run is parked (paused, or at the end of a step) nothing
+ * changes, and the canvas reads the live values instead ({@link #setLive}),
+ * so an edit made while paused shows at once.
+ *
+ * The static methods are the renderers' side, and are EDT only: the
+ * snapshot {@link #show}n is the one a paint pass between
+ * {@link #beginPaint} and {@link #endPaint} reads, through
+ * {@link #valueOf(Wire)} and {@link #valueOf(Display)}.
+ */
+final class ValueSnapshot {
+
+	/** The least time between published frames: 60 a second. */
+	static final long FRAME_NANOS = 1_000_000_000L / 60;
+
+	/** The most regions a frame paints one by one. */
+	static final int MAX_REGIONS = 8;
+
+	/**
+	 * The most changed regions grouped pairwise; beyond it the pairing
+	 * costs more than painting their bounding box.
+	 */
+	private static final int MERGE_LIMIT = 64;
+
+	/** Marks a display slot no value has been copied into. */
+	private static final Object UNSEEN = new Object();
+	/** Marks a display slot last copied from a HiZ value. */
+	private static final Object HIZ = new Object();
+
+	/**
+	 * One copy of every value.
+	 */
+	static final class Frame {
+
+		/** Per slot, its value; cleared for HiZ. */
+		private final BitSet[] values;
+		/** Per slot, whether its value is HiZ. */
+		private final boolean[] hiZ;
+		/** Per net slot, the net's version when its value was copied. */
+		private final int[] versions;
+		/** Per display slot, the value object last copied, HIZ or UNSEEN. */
+		private final Object[] seen;
+		/** The paint passes holding this frame. */
+		private final AtomicInteger readers = new AtomicInteger();
+
+		/**
+		 * Create a frame with nothing copied yet.
+		 *
+		 * @param widths Per slot, the value's width in bits.
+		 * @param nets The number of net slots, which come first.
+		 */
+		private Frame(int[] widths, int nets) {
+
+			values = new BitSet[widths.length];
+			for (int i = 0; i < widths.length; i += 1) {
+				values[i] = new BitSet(widths[i]);
+			}
+			hiZ = new boolean[widths.length];
+			versions = new int[nets];
+			Arrays.fill(versions, -1);
+			seen = new Object[widths.length - nets];
+			Arrays.fill(seen, UNSEEN);
+		} // end of constructor
+
+		/**
+		 * Get a slot's value.
+		 *
+		 * @param slot The slot.
+		 *
+		 * @return the value, not to be changed, or null for HiZ.
+		 */
+		@Nullable BitSet value(int slot) {
+
+			return hiZ[slot] ? null : values[slot];
+		} // end of value method
+
+	} // end of Frame class
+
+	/** The snapshot paint passes read, or null outside a run. */
+	private static @Nullable ValueSnapshot shown = null;
+	/** The frame the paint pass under way holds, or null for live values. */
+	private static @Nullable Frame held = null;
+	/** The snapshot the held frame is from. */
+	private static @Nullable ValueSnapshot heldFrom = null;
+	/** The paint passes under way, nested. */
+	private static int painting = 0;
+
+	/** The nets copied, by slot. */
+	private final WireNet[] nets;
+	/** The displays copied, by slot less the number of nets. */
+	private final Display[] displays;
+	/** Per slot, the elements that draw its value: a net's wires, a display. */
+	private final Element[][] drawers;
+	/**
+	 * Per slot, the number of the frame its value last changed in. Only
+	 * the sim thread writes it; the EDT reads the entries of frames it
+	 * has seen published.
+	 */
+	private final int[] changedIn;
+	/** Per net and display, its slot. */
+	private final Map<Object,Integer> slots = new IdentityHashMap<Object,Integer>();
+	/** The two frames. */
+	private final Frame[] frames = new Frame[2];
+	/** The frame last published, or null before the first. */
+	private volatile @Nullable Frame front = null;
+	/** The number of frames published. */
+	private volatile int published = 0;
+	/** Whether the run is parked, so the live values may be read. */
+	private volatile boolean live = false;
+
+	/**
+	 * Create a snapshot of a circuit's nets and displays, subcircuits
+	 * included.
+	 *
+	 * @param circuit The circuit.
+	 *
+	 * @jls.testedby jls.edit.ValueSnapshotTest#publishedFramesHoldTheValuesAtTheirTime()
+	 */
+	ValueSnapshot(Circuit circuit) {
+
+		List<WireNet> netList = new ArrayList<WireNet>();
+		List<List<Element>> wireLists = new ArrayList<List<Element>>();
+		List<Display> displayList = new ArrayList<Display>();
+		collect(circuit, netList, wireLists, displayList);
+		nets = netList.toArray(new WireNet[0]);
+		displays = displayList.toArray(new Display[0]);
+		int[] widths = new int[nets.length + displays.length];
+		drawers = new Element[widths.length][];
+		for (int i = 0; i < nets.length; i += 1) {
+			widths[i] = nets[i].getBits();
+			drawers[i] = wireLists.get(i).toArray(new Element[0]);
+		}
+		for (int i = 0; i < displays.length; i += 1) {
+			widths[nets.length + i] = displays[i].getBits();
+			slots.put(displays[i], nets.length + i);
+			drawers[nets.length + i] = new Element[] { displays[i] };
+		}
+		changedIn = new int[widths.length];
+		frames[0] = new Frame(widths, nets.length);
+		frames[1] = new Frame(widths, nets.length);
+	} // end of constructor
+
+	/**
+	 * Find the nets and displays of a circuit and its subcircuits, giving
+	 * each net its slot.
+	 *
+	 * @param circuit The circuit.
+	 * @param netList The nets found so far, each once.
+	 * @param wireLists Per net found, its wires.
+	 * @param displayList The displays found so far.
+	 */
+	private void collect(Circuit circuit, List<WireNet> netList,
+			List<List<Element>> wireLists, List<Display> displayList) {
+
+		for (Element el : circuit.getElements()) {
+			if (el instanceof Wire wire) {
+				WireNet net = wire.getNet();
+				if (net == null)
+					continue;
+				Integer slot = slots.get(net);
+				if (slot == null) {
+					slot = netList.size();
+					slots.put(net, slot);
+					netList.add(net);
+					wireLists.add(new ArrayList<Element>());
+				}
+				wireLists.get(slot).add(wire);
+			}
+			else if (el instanceof SubCircuit sub) {
+				collect(sub.getSubCircuit(), netList, wireLists, displayList);
+			}
+			else if (el instanceof Display display) {
+				displayList.add(display);
+			}
+		}
+	} // end of collect method
+
+	/**
+	 * Copy the values that changed into the frame not shown and make it
+	 * the front one, unless a paint pass still holds it. Called by the
+	 * thread running the simulation only.
+	 *
+	 * @return true if the frame was published, false if it was skipped.
+	 *
+	 * @jls.testedby jls.edit.ValueSnapshotTest#eachFrameCatchesUpOnTheChangesItMissed()
+	 * @jls.testedby jls.edit.ValueSnapshotTest#aHeldFrameIsNeverOverwritten()
+	 */
+	boolean publish() {
+
+		Frame shown = front;
+		Frame back = shown == frames[0] ? frames[1] : frames[0];
+		if (back.readers.get() != 0)
+			return false;
+
+		// a value is copied if it changed since this frame was filled, and
+		// marked changed if it differs from the frame shown now
+		int number = published + 1;
+		for (int i = 0; i < nets.length; i += 1) {
+			int version = nets[i].getVersion();
+			if (version != back.versions[i]) {
+				back.hiZ[i] = !nets[i].copyValue(back.values[i]);
+				back.versions[i] = version;
+			}
+			if (shown == null || version != shown.versions[i])
+				changedIn[i] = number;
+		}
+		for (int i = 0; i < displays.length; i += 1) {
+			BitSet value = displays[i].getCurrentValue();
+			Object seen = value == null ? HIZ : value;
+			int slot = nets.length + i;
+			if (seen != back.seen[i]) {
+				BitSet into = back.values[slot];
+				into.clear();
+				if (value != null)
+					into.or(value);
+				back.hiZ[slot] = value == null;
+				back.seen[i] = seen;
+			}
+			if (shown == null || seen != shown.seen[i])
+				changedIn[slot] = number;
+		}
+		front = back;
+		published = number;
+		return true;
+	} // end of publish method
+
+	/**
+	 * Get the number of frames published so far.
+	 *
+	 * @return the count.
+	 */
+	int published() {
+
+		return published;
+	} // end of published method
+
+	/**
+	 * Find where the values that changed after a frame are drawn in one
+	 * circuit: the bounds, in model units, of the wires of each changed
+	 * net and of each changed display. EDT only.
+	 *
+	 * @param seen The number of the last frame already painted; 0 for
+	 *        none, which finds every value.
+	 * @param circuit The circuit whose elements to find.
+	 *
+	 * @return the bounds, one per element, of frames up to the one last
+	 *         published.
+	 *
+	 * @jls.testedby jls.edit.ValueSnapshotTest#onlyChangedValuesAreRepainted()
+	 */
+	List<Rectangle> changedSince(int seen, Circuit circuit) {
+
+		List<Rectangle> regions = new ArrayList<Rectangle>();
+		for (int i = 0; i < changedIn.length; i += 1) {
+			if (changedIn[i] <= seen)
+				continue;
+			for (Element el : drawers[i]) {
+				if (el.getCircuit() == circuit)
+					regions.add(AwtGeom.awt(el.getRect()));
+			}
+		}
+		return regions;
+	} // end of changedSince method
+
+	/**
+	 * Group changed regions into the few rectangles to paint one by one.
+	 * Swing's repaint manager merges every dirty region of a component
+	 * into their bounding box, so two values changing in opposite
+	 * corners would repaint the whole canvas between them; the canvas
+	 * paints each of these itself instead. Regions that overlap once
+	 * padded are merged, as are two whose bounding box costs no more to
+	 * paint than they do apart. When too many remain for separate paints
+	 * to be cheaper, their bounding box is the one region.
+	 *
+	 * @param changed The changed regions, in model units; not changed.
+	 * @param pad How much to grow each region on every side, for strokes
+	 *        drawn past an element's bounds.
+	 *
+	 * @return at most {@link #MAX_REGIONS} rectangles covering every
+	 *         padded region; empty if none changed.
+	 *
+	 * @jls.testedby jls.edit.ValueSnapshotTest#farApartRegionsArePaintedApart()
+	 */
+	static List<Rectangle> paintRegions(List<Rectangle> changed, int pad) {
+
+		List<Rectangle> regions = new ArrayList<Rectangle>(changed.size());
+		Rectangle bounds = null;
+		for (Rectangle r : changed) {
+			Rectangle padded = new Rectangle(r);
+			padded.grow(pad, pad);
+			regions.add(padded);
+			bounds = bounds == null ? new Rectangle(padded) : bounds.union(padded);
+		}
+		if (bounds == null)
+			return regions;
+		if (regions.size() > MERGE_LIMIT)
+			return List.of(bounds);
+
+		// merge pairs until no merge saves painting
+		boolean merged = true;
+		while (merged) {
+			merged = false;
+			for (int i = 0; i < regions.size() && !merged; i += 1) {
+				Rectangle a = regions.get(i);
+				for (int j = i + 1; j < regions.size(); j += 1) {
+					Rectangle b = regions.get(j);
+					Rectangle both = a.union(b);
+					if (a.intersects(b) || area(both) <= area(a) + area(b)) {
+						regions.set(i, both);
+						regions.remove(j);
+						merged = true;
+						break;
+					}
+				}
+			}
+		}
+		return regions.size() > MAX_REGIONS ? List.of(bounds) : regions;
+	} // end of paintRegions method
+
+	/**
+	 * The area of a rectangle, without overflow.
+	 *
+	 * @param r The rectangle.
+	 *
+	 * @return its width times its height.
+	 */
+	private static long area(Rectangle r) {
+
+		return (long)r.width * r.height;
+	} // end of area method
+
+	/**
+	 * Say whether the run is parked. Set by the thread running the
+	 * simulation, before it parks and after it wakes.
+	 *
+	 * @param parked True if nothing will change until it is cleared.
+	 */
+	void setLive(boolean parked) {
+
+		live = parked;
+	} // end of setLive method
+
+	/**
+	 * Hold the front frame, so it is not overwritten until released.
+	 *
+	 * @return the frame, or null before the first publish.
+	 *
+	 * @jls.testedby jls.edit.ValueSnapshotTest#aHeldFrameIsNeverOverwritten()
+	 */
+	@Nullable Frame acquire() {
+
+		while (true) {
+			Frame frame = front;
+			if (frame == null)
+				return null;
+			frame.readers.incrementAndGet();
+			// the frame is only safe if it was not taken back for filling
+			// before the hold was seen
+			if (front == frame)
+				return frame;
+			frame.readers.decrementAndGet();
+		}
+	} // end of acquire method
+
+	/**
+	 * Release a frame held by {@link #acquire}.
+	 *
+	 * @param frame The frame.
+	 */
+	void release(Frame frame) {
+
+		frame.readers.decrementAndGet();
+	} // end of release method
+
+	/**
+	 * Get the slot of a net or display.
+	 *
+	 * @param key The net or display.
+	 *
+	 * @return the slot, or -1 if it was not in the circuit when the
+	 *         snapshot was made.
+	 */
+	int slot(Object key) {
+
+		Integer slot = slots.get(key);
+		return slot == null ? -1 : slot;
+	} // end of slot method
+
+	/**
+	 * Set the snapshot paint passes read from, or null to read live
+	 * values. EDT only.
+	 *
+	 * @param snapshot The snapshot, or null.
+	 */
+	static void show(@Nullable ValueSnapshot snapshot) {
+
+		shown = snapshot;
+	} // end of show method
+
+	/**
+	 * Say whether an interactive run is showing its values. EDT only.
+	 *
+	 * @return true if a snapshot is shown.
+	 */
+	static boolean isShown() {
+
+		return shown != null;
+	} // end of isShown method
+
+	/**
+	 * Start a paint pass, holding the shown snapshot's front frame unless
+	 * the run is parked. EDT only; each call is paired with
+	 * {@link #endPaint}.
+	 */
+	static void beginPaint() {
+
+		painting += 1;
+		if (painting > 1)
+			return;
+		ValueSnapshot snapshot = shown;
+		if (snapshot != null && !snapshot.live) {
+			held = snapshot.acquire();
+			heldFrom = snapshot;
+		}
+	} // end of beginPaint method
+
+	/**
+	 * End a paint pass, releasing the frame it held. EDT only.
+	 */
+	static void endPaint() {
+
+		painting -= 1;
+		if (painting > 0)
+			return;
+		Frame frame = held;
+		ValueSnapshot snapshot = heldFrom;
+		if (frame != null && snapshot != null)
+			snapshot.release(frame);
+		held = null;
+		heldFrom = null;
+	} // end of endPaint method
+
+	/**
+	 * Get the value a wire is painted with.
+	 *
+	 * @param wire The wire.
+	 *
+	 * @return the held frame's value of its net, or its live value outside
+	 *         a run, or null for HiZ or a wire in no net.
+	 */
+	static @Nullable BitSet valueOf(Wire wire) {
+
+		WireNet net = wire.getNet();
+		if (net == null)
+			return null;
+		Frame frame = held;
+		ValueSnapshot snapshot = heldFrom;
+		if (frame != null && snapshot != null) {
+			int slot = snapshot.slot(net);
+			if (slot >= 0)
+				return frame.value(slot);
+		}
+		return net.getValue();
+	} // end of valueOf method
+
+	/**
+	 * Get the value a display is painted with.
+	 *
+	 * @param display The display.
+	 *
+	 * @return the held frame's value of it, or its live value outside a
+	 *         run, or null for HiZ.
+	 */
+	static @Nullable BitSet valueOf(Display display) {
+
+		Frame frame = held;
+		ValueSnapshot snapshot = heldFrom;
+		if (frame != null && snapshot != null) {
+			int slot = snapshot.slot(display);
+			if (slot >= 0)
+				return frame.value(slot);
+		}
+		return display.getCurrentValue();
+	} // end of valueOf method
+
+} // end of ValueSnapshot class
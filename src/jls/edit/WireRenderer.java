@@ -59,7 +59,8 @@ public final class WireRenderer implements ElementRenderer {
 
 		Wire w = (Wire) el;
 
-		BitSet value = w.hasNet() ? w.getValue() : null;
+		// the value at the last published frame while a run goes
+		BitSet value = ValueSnapshot.valueOf(w);
 		if (w.isTouching()) {
 			g.setColor(JLSInfo.Palette.touchColor);
 		}
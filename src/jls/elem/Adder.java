@@ -407,7 +407,7 @@ public final class Adder extends LogicElement implements Timed, Rotatable {
 			// the adder, then post an event
 			if (!allsum.equals(toBeValue)) {
 				toBeValue = (BitSet)allsum.clone();
-				sim.post(new SimEvent(now+propDelay,this,new NewValue(allsum)));
+				sim.post(new SimEvent(now+sim.delay(propDelay),this,new NewValue(allsum)));
 			}
 		}
 
@@ -477,7 +477,7 @@ public final class Decoder extends LogicElement implements Timed, Rotatable {
 			// the decoder, then post an event
 			if (!newValue.equals(toBeValue)) {
 				toBeValue = (BitSet)newValue.clone();
-				sim.post(new SimEvent(now+propDelay,this,new NewValue(newValue)));
+				sim.post(new SimEvent(now+sim.delay(propDelay),this,new NewValue(newValue)));
 			}
 		}
 
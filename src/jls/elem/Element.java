@@ -634,6 +634,23 @@ public abstract sealed class Element
 		return stableIdFromFile;
 	} // end of hasFileStableId method
 
+	/**
+	 * Give this copy the stable id of the element it was copied from.
+	 * An editor copy is a new element and keeps its fresh id; a copy
+	 * made to simulate the same circuit again (a batch sweep) takes the
+	 * original's, because simulation seeds in stable-id order (#181)
+	 * and must seed the copy exactly as it seeds the original.
+	 *
+	 * @param original The element this one is a copy of.
+	 *
+	 * @jls.testedby jls.BatchJobsTest#aSweepCopyKeepsTheSimulationSeedOrder()
+	 */
+	public void adoptStableId(Element original) {
+
+		stableId = original.stableId;
+		stableIdFromFile = original.stableIdFromFile;
+	} // end of adoptStableId method
+
 	/**
 	 * Replace this element's stable id with a deterministically minted
 	 * legacy id (#165). Called only by Circuit.finishLoad for elements
@@ -705,7 +705,7 @@ public abstract sealed class Gate extends LogicElement implements Rotatable
 			// this gate, then post an event
 			if (!value.equals(toBeValue)) {
 				toBeValue = (BitSet)value.clone();
-				sim.post(new SimEvent(now+propDelay,this,new NewValue(value)));
+				sim.post(new SimEvent(now+sim.delay(propDelay),this,new NewValue(value)));
 			}
 		}
 
@@ -12,6 +12,9 @@ import org.jspecify.annotations.Nullable;
  */
 public final class Input extends Put {
 
+	/** The simulation time the value last changed; -1 if unknown. */
+	private long changedAt = -1;
+
 	/**
 	 * Construct a new input point.
 	 *
@@ -59,8 +62,40 @@ public final class Input extends Put {
 	public void setValue(@Nullable BitSet value) {
 
 		currentValue = value;
+		changedAt = -1;
+	} // end of setValue method
+
+	/**
+	 * Set the value of this input as a wire net delivers it during a
+	 * run, remembering the time if the value actually changed.
+	 *
+	 * @param value The new value, or null for a high-impedance
+	 *            (tri-state) signal.
+	 * @param now The current simulation time.
+	 *
+	 * @jls.testedby jls.sim.DelayModelTest#zeroDelayWarnsWhenDataChangesWithTheEdge()
+	 */
+	public void setValue(@Nullable BitSet value, long now) {
+
+		if (!Objects.equals(currentValue, value)) {
+			changedAt = now;
+		}
+		currentValue = value;
 	} // end of setValue method
 
+	/**
+	 * Get the simulation time this input's value last changed, which
+	 * lets a clocked element tell whether its data raced its clock edge
+	 * (see Simulator.checkCapture).
+	 *
+	 * @return the time of the last change, or -1 if it has not changed
+	 *         since it was last set outside a run.
+	 */
+	public long getChangedAt() {
+
+		return changedAt;
+	} // end of getChangedAt method
+
 	/**
 	 * Get the current value of this input.
 	 *
@@ -3,7 +3,9 @@ package jls.elem;
 import java.io.*;
 import java.math.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.zip.CRC32;
 
 import org.jspecify.annotations.Nullable;
 
@@ -816,6 +818,30 @@ public final class Memory extends LogicElement
 	 */
 	public @Nullable String initOK(String str, int maxAddr, int bitsPerWord, boolean storing) {
 
+		WordStore initMem = null;
+		if (storing) {
+			initMem = this.initMem;
+			if (initMem == null) {
+				throw new IllegalStateException(
+						"initOK(storing) before initSim");
+			}
+		}
+		return scan(str,maxAddr,bitsPerWord,initMem);
+	} // end of initOK method
+
+	/**
+	 * Parse initial value text, storing the words it gives.
+	 *
+	 * @param str The initial value text.
+	 * @param maxAddr The maximum memory address.
+	 * @param bitsPerWord The number of bits per word.
+	 * @param into The store to put the words in, or null to just check.
+	 *
+	 * @return null if syntax is ok, an error message if not.
+	 */
+	private static @Nullable String scan(String str, int maxAddr,
+			int bitsPerWord, @Nullable WordStore into) {
+
 		// set up scanner
 		Scanner scan = new Scanner(str);
 		boolean scanning = true;
@@ -872,13 +898,8 @@ public final class Memory extends LogicElement
 				}
 
 				// put data in memory if storing
-				if (storing) {
-					WordStore initMem = this.initMem;
-					if (initMem == null) {
-						throw new IllegalStateException(
-								"initOK(storing) before initSim");
-					}
-					initMem.put(addr,bval);
+				if (into != null) {
+					into.put(addr,bval);
 				}
 			}
 
@@ -892,7 +913,7 @@ public final class Memory extends LogicElement
 			}
 		}
 		return null;
-	} // end of initOK method
+	} // end of scan method
 
 	/**
 	 * Print all memory locations that changed during simulation.
@@ -994,6 +1015,11 @@ public final class Memory extends LogicElement
 	 * unless {@link #syncWrite} is on.
 	 */
 	private int lastClock;
+	/**
+	 * The log every completed read and write goes to (-memlog), or
+	 * null for none.
+	 */
+	private @Nullable MemoryLog accessLog = null;
 	/**
 	 * One entry in the write history: the value written (what), the address
 	 * written to (where), and the simulation time of the write (when). Used
@@ -1224,18 +1250,171 @@ public final class Memory extends LogicElement
 	private static final int DENSE_CAPACITY_LIMIT = 1 << 22;
 
 	/**
-	 * Pick a word store sized for this memory: dense for narrow words and
+	 * Pick a word store sized for a memory: dense for narrow words and
 	 * modest capacities, sparse otherwise.
 	 *
+	 * @param bits The bits per word.
+	 * @param capacity The capacity, in words.
+	 *
 	 * @return a new, empty word store.
 	 */
-	private WordStore newWordStore() {
+	private static WordStore newWordStore(int bits, int capacity) {
 
 		if (bits <= 64 && capacity <= DENSE_CAPACITY_LIMIT)
 			return new DenseWordStore(capacity);
 		return new SparseWordStore();
 	}
 
+	/**
+	 * An initial memory image read and parsed from a memory's settings,
+	 * with the settings (and the file's size, time and checksum) it was
+	 * read from, so a run can tell whether an image read ahead of it
+	 * still applies.
+	 *
+	 * @param fileName The initialization file, or empty for none.
+	 * @param initialValue The built-in initial values, used without a file.
+	 * @param capacity The capacity, in words.
+	 * @param bits The bits per word.
+	 * @param modified The file's last-modified time, or 0.
+	 * @param length The file's length, or 0.
+	 * @param checksum The CRC-32 of the file's bytes, or 0.
+	 * @param words The initial words; never changed once made.
+	 * @param error The parse error, or null.
+	 * @param unreadable True if the file could not be read.
+	 */
+	private record InitImage(String fileName, String initialValue,
+			int capacity, int bits, long modified, long length,
+			long checksum, WordStore words, @Nullable String error, boolean unreadable) {
+
+		/**
+		 * Say whether this image was read from a memory's current
+		 * settings and, for a file, from its current contents.
+		 *
+		 * @param m The memory.
+		 *
+		 * @return true if it can be used as the memory's initial image.
+		 */
+		boolean matches(Memory m) {
+
+			if (!fileName.equals(m.fileName) || capacity != m.capacity
+					|| bits != m.bits)
+				return false;
+			if (fileName.isEmpty())
+				return initialValue.equals(m.initialValue);
+			// a rewrite within the time's resolution keeps the size and
+			// time; checking the bytes is still far cheaper than parsing
+			File file = new File(fileName);
+			if (file.lastModified() != modified || file.length() != length)
+				return false;
+			try {
+				return Memory.checksum(Files.readAllBytes(file.toPath())) == checksum;
+			}
+			catch (IOException ex) {
+				return false;
+			}
+		} // end of matches method
+
+	} // end of InitImage record
+
+	/**
+	 * The initial image read ahead of the next run by
+	 * {@link #prepareInit()}, or null.
+	 */
+	private volatile @Nullable InitImage preparedInit = null;
+
+	/**
+	 * The checksum an initial image keeps of its file.
+	 *
+	 * @param contents The file's bytes.
+	 *
+	 * @return their CRC-32.
+	 */
+	private static long checksum(byte [] contents) {
+
+		CRC32 crc = new CRC32();
+		crc.update(contents);
+		return crc.getValue();
+	} // end of checksum method
+
+	/**
+	 * Read and parse an initial memory image. Any thread: it uses only
+	 * its arguments and the file.
+	 *
+	 * @param fileName The initialization file, or empty for none.
+	 * @param initialValue The built-in initial values, used without a file.
+	 * @param capacity The capacity, in words.
+	 * @param bits The bits per word.
+	 *
+	 * @return the image.
+	 */
+	private static InitImage readInit(String fileName, String initialValue,
+			int capacity, int bits) {
+
+		WordStore words = newWordStore(bits,capacity);
+		if (fileName.isEmpty()) {
+			String msg = scan(initialValue,capacity,bits,words);
+			return new InitImage(fileName,initialValue,capacity,bits,0,0,0,
+					words,msg,false);
+		}
+
+		// stat before reading: a file changed meanwhile is read again
+		File file = new File(fileName);
+		long modified = file.lastModified();
+		long length = file.length();
+		try {
+			byte [] contents = Files.readAllBytes(file.toPath());
+			String msg = scan(new String(contents,StandardCharsets.UTF_8),
+					capacity,bits,words);
+			return new InitImage(fileName,initialValue,capacity,bits,
+					modified,length,checksum(contents),words,msg,false);
+		}
+		catch (IOException ex) {
+			return new InitImage(fileName,initialValue,capacity,bits,
+					modified,length,0,words,null,true);
+		}
+	} // end of readInit method
+
+	/**
+	 * Get a task that reads this memory's initial image ahead of a run,
+	 * from its settings as they are now. The task may run on any thread;
+	 * initSim uses its image if the settings and the file are unchanged
+	 * by then, and reads the image itself otherwise.
+	 *
+	 * @return the task.
+	 *
+	 * @jls.testedby jls.sim.ElaborationTest#preparedMemoryImagesAreUsedOnlyWhileCurrent()
+	 */
+	public Runnable prepareInit() {
+
+		final String file = fileName;
+		final String values = initialValue;
+		final int words = capacity;
+		final int width = bits;
+		return new Runnable() {
+			/**
+			 * Read the image and keep it for the next run.
+			 */
+			@Override
+			public void run() {
+				preparedInit = readInit(file,values,words,width);
+			}
+		};
+	} // end of prepareInit method
+
+	/**
+	 * Say whether an image read ahead of a run would be used by the next
+	 * initSim.
+	 *
+	 * @return true if a current image is prepared.
+	 *
+	 * @jls.testedby jls.sim.ElaborationTest#preparedMemoryImagesAreUsedOnlyWhileCurrent()
+	 */
+	public boolean hasPreparedInit() {
+
+		InitImage image = preparedInit;
+		return image != null && image.matches(this);
+	} // end of hasPreparedInit method
+
 	/**
 	 * Initialize this element.
 	 *
@@ -1244,64 +1423,35 @@ public final class Memory extends LogicElement
 	@Override
 	public void initSim(Simulator sim) {
 
-		// create initial memory array
-		WordStore initMem = newWordStore();
+		// the initial image: read ahead of the run if still current
+		InitImage image = preparedInit;
+		if (image == null || !image.matches(this))
+			image = readInit(fileName,initialValue,capacity,bits);
+		WordStore initMem = image.words().copy();
 		this.initMem = initMem;
 
-		// if there is an initialization file specified
-		if (!fileName.isEmpty()) {
-
-			// read and parse file
-			try {
-				File file = new File(fileName);
-				int length = (int)file.length();
-				FileInputStream in = new FileInputStream(file);
-				InputStreamReader input = new InputStreamReader(in, StandardCharsets.UTF_8);
-				char [] info = new char[length];
-				input.read(info,0,length);
-				input.close();
-				String msg = initOK(new String(info),capacity,bits,true);
-				if (msg != null) {
-					if (JLSInfo.noWindow()) {
-						System.out.println(msg + " in memory file " +
-								name + ", all zeros assumed");
-					}
-					else {
-						TellUser.error(null,
-								msg + "in memory file " +
-								name + ", all zeros assumed", "Error");
-					}
-				}
-
+		// report a bad image, as read
+		String msg = image.error();
+		if (image.unreadable()) {
+			if (JLSInfo.noWindow()) {
+				System.out.println("Initialization file for memory " +
+						name + " cannot be read, all zeros assumed");
 			}
-			catch (IOException ex) {
-
-				if (JLSInfo.noWindow()) {
-					System.out.println("Initialization file for memory " +
-							name + " cannot be read, all zeros assumed");
-				}
-				else {
-					TellUser.error(null,
-							"Initialization file for memory " +
-							name + " cannot be read, all zeros assumed", "Error");
-				}
+			else {
+				TellUser.error(null,
+						"Initialization file for memory " +
+						name + " cannot be read, all zeros assumed", "Error");
 			}
-
 		}
-		else {
-
-			// parse built-in values
-			String msg = initOK(initialValue,capacity,bits,true);
-			if (msg != null) {
-				if (JLSInfo.noWindow()) {
-					System.out.println(msg + " in memory file " +
-							name + ", all zeros assumed");
-				}
-				else {
-					TellUser.error(null,
-							msg + " in memory file " +
-							name + ", all zeros assumed", "Error");
-				}
+		else if (msg != null) {
+			if (JLSInfo.noWindow()) {
+				System.out.println(msg + " in memory file " +
+						name + ", all zeros assumed");
+			}
+			else {
+				TellUser.error(null,
+						msg + " in memory file " +
+						name + ", all zeros assumed", "Error");
 			}
 		}
 
@@ -1372,6 +1522,8 @@ public final class Memory extends LogicElement
 					clockb = new BitSet();
 				clock = clockb.get(0) ? 1 : 0;
 				writeGate = lastClock == 0 && clock == 1;
+				if (writeGate)
+					sim.checkCapture(this,getInput("clock"),now);
 			}
 
 			// if RAM, chip select and write enable...
@@ -1381,7 +1533,7 @@ public final class Memory extends LogicElement
 				BitSet data = (BitSet)(getInput("input").getValue());
 				if (data == null)
 					data = new BitSet();
-				sim.post(new SimEvent(now+accessTime,this,
+				sim.post(new SimEvent(now+sim.delay(accessTime),this,
 						new MemoryWrite(BitSetUtils.ToInt(addr),
 								(BitSet)(data.clone()))));
 			}
@@ -1393,13 +1545,13 @@ public final class Memory extends LogicElement
 			if (!cs && !oe) {
 
 				// do a read
-				sim.post(new SimEvent(now+accessTime,this,
+				sim.post(new SimEvent(now+sim.delay(accessTime),this,
 						new MemoryRead(BitSetUtils.ToInt(addr))));
 			}
 			else {
 
 				// turn off tristate output
-				sim.post(new SimEvent(now+accessTime,this,
+				sim.post(new SimEvent(now+sim.delay(accessTime),this,
 						new TriStateOff()));
 			}
 		}
@@ -1420,6 +1572,11 @@ public final class Memory extends LogicElement
 			if (addr >= capacity)
 				return;
 
+			MemoryLog log = accessLog;
+			if (log != null) {
+				log.write(now, addr, data);
+			}
+
 			// save in activity history (newest first, bounded)
 			WriteRecord rec = new WriteRecord();
 			rec.what = (BitSet)(data.clone());
@@ -1459,6 +1616,11 @@ public final class Memory extends LogicElement
 				value = (BitSet)stored.clone();
 			}
 
+			MemoryLog log = accessLog;
+			if (log != null) {
+				log.read(now, addr, value);
+			}
+
 			// send to output
 			getOutput("output").propagate(value,now,sim);
 
@@ -1478,6 +1640,19 @@ public final class Memory extends LogicElement
 
 	} // end of react method
 
+	/**
+	 * Set the log every completed read and write goes to, from the next
+	 * access on.
+	 *
+	 * @param log The log, or null to stop logging.
+	 *
+	 * @jls.testedby jls.sim.MemoryLogTest#aRunLogsEveryAccess()
+	 */
+	public void setAccessLog(@Nullable MemoryLog log) {
+
+		accessLog = log;
+	} // end of setAccessLog method
+
 	/**
 	 * Get a string representing the activity history of this element.
 	 *
@@ -1539,7 +1714,7 @@ public final class Memory extends LogicElement
 	public SortedSet<Integer> storedAddresses() {
 
 		if (mem == null) {
-			mem = newWordStore();
+			mem = newWordStore(bits,capacity);
 		}
 		return mem.addresses();
 	} // end of storedAddresses method
@@ -544,7 +544,7 @@ public final class Mux extends LogicElement implements Timed, Rotatable {
 			// the mux, then post an event
 			if (!newValue.equals(toBeValue)) {
 				toBeValue = (BitSet)newValue.clone();
-				sim.post(new SimEvent(now+propDelay,this,new NewValue(newValue)));
+				sim.post(new SimEvent(now+sim.delay(propDelay),this,new NewValue(newValue)));
 			}
 		}
 
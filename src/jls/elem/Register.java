@@ -758,6 +758,13 @@ public final class Register extends LogicElement
 			BitSet d = inputs.get(0).getValue();
 			if (d == null)
 				d = new BitSet();
+			boolean sampling = switch (type) {
+			case Latch -> currentC != 0 && c == 0;
+			case PosFF -> currentC == 0 && c == 1;
+			case NegFF -> currentC == 1 && c == 0;
+			};
+			if (sampling)
+				sim.checkCapture(this,inputs.get(1),now);
 			switch (type) {
 			case Latch:
 				if (c == 0)
@@ -765,7 +772,7 @@ public final class Register extends LogicElement
 				if (d.equals(toBeValue))
 					break;
 				toBeValue = (BitSet)d.clone();
-				sim.post(new SimEvent(now+propDelay,this,
+				sim.post(new SimEvent(now+sim.delay(propDelay),this,
 						new NewValue((BitSet)d.clone())));
 				break;
 			case PosFF:
@@ -776,7 +783,7 @@ public final class Register extends LogicElement
 				if (d.equals(toBeValue))
 					break;
 				toBeValue = (BitSet)d.clone();
-				sim.post(new SimEvent(now+propDelay,this,
+				sim.post(new SimEvent(now+sim.delay(propDelay),this,
 						new NewValue((BitSet)d.clone())));
 				break;
 			case NegFF:
@@ -787,7 +794,7 @@ public final class Register extends LogicElement
 				if (d.equals(toBeValue))
 					break;
 				toBeValue = (BitSet)d.clone();
-				sim.post(new SimEvent(now+propDelay,this,
+				sim.post(new SimEvent(now+sim.delay(propDelay),this,
 						new NewValue((BitSet)d.clone())));
 				break;
 			}
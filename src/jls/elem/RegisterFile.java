@@ -1,6 +1,7 @@
 package jls.elem;
 
 import java.io.PrintWriter;
+import java.util.Arrays;
 import java.util.BitSet;
 
 import org.jspecify.annotations.Nullable;
@@ -8,6 +9,7 @@ import org.jspecify.annotations.Nullable;
 import jls.BitSetUtils;
 import jls.Circuit;
 import jls.core.Geometry;
+import jls.sim.MemoryLog;
 import jls.sim.SimEvent;
 import jls.sim.SimEvent.MemoryRead;
 import jls.sim.SimEvent.MemoryWrite;
@@ -449,6 +451,15 @@ public final class RegisterFile extends LogicElement
 	private BitSet @Nullable [] words;
 	/** The most recent value seen on the shared clock input. */
 	private int currentC;
+	/**
+	 * The log every write and read goes to (-memlog), or null for none.
+	 */
+	private @Nullable MemoryLog accessLog = null;
+	/**
+	 * Per read port, the address it last read, or -1: a port is logged
+	 * as reading when its address changes or its word is written.
+	 */
+	private int @Nullable [] lastRead;
 
 	/**
 	 * Initialize this element: clear every word and drive each read-data
@@ -465,6 +476,9 @@ public final class RegisterFile extends LogicElement
 		}
 		this.words = words;
 		currentC = 0;
+		int[] lastRead = new int[readPorts];
+		Arrays.fill(lastRead, -1);
+		this.lastRead = lastRead;
 
 		for (int r = 0; r < readPorts; r += 1) {
 			getOutput("RD" + r).setValue(new BitSet(bits));
@@ -492,6 +506,20 @@ public final class RegisterFile extends LogicElement
 		return (BitSet) words[addr].clone();
 	} // end of readWord method
 
+	/**
+	 * Set the log every write and read goes to, from the next access
+	 * on. A read port counts as reading when its address changes or the
+	 * word it reads is written, not on every re-drive.
+	 *
+	 * @param log The log, or null to stop logging.
+	 *
+	 * @jls.testedby jls.sim.MemoryLogTest#aRunLogsEveryAccess()
+	 */
+	public void setAccessLog(@Nullable MemoryLog log) {
+
+		accessLog = log;
+	} // end of setAccessLog method
+
 	/**
 	 * React to an event. On a rising clock edge every enabled write
 	 * commits; every read port is then re-driven combinationally.
@@ -521,7 +549,10 @@ public final class RegisterFile extends LogicElement
 			currentC = c;
 
 			// commit enabled writes on the rising edge
+			MemoryLog log = accessLog;
+			int[] lastRead = this.lastRead;
 			if (risingEdge) {
+				sim.checkCapture(this,getInput("C"),now);
 				for (int w = 0; w < writePorts; w += 1) {
 					BitSet weVal = getInput("WE" + w).getValue();
 					if (weVal == null || !weVal.get(0)) {
@@ -547,6 +578,14 @@ public final class RegisterFile extends LogicElement
 						}
 					}
 					words[addr] = stored;
+					if (log != null && lastRead != null) {
+						log.write(now, addr, stored);
+						for (int r = 0; r < readPorts; r += 1) {
+							if (lastRead[r] == addr) {
+								lastRead[r] = -1;
+							}
+						}
+					}
 				}
 			}
 
@@ -556,7 +595,13 @@ public final class RegisterFile extends LogicElement
 				if (addrVal == null)
 					addrVal = new BitSet();
 				int addr = BitSetUtils.ToInt(addrVal);
-				getOutput("RD" + r).propagate(readWord(words, addr), now, sim);
+				BitSet value = readWord(words, addr);
+				if (log != null && lastRead != null && lastRead[r] != addr
+						&& addr >= 0 && addr < count) {
+					lastRead[r] = addr;
+					log.read(now, addr, value);
+				}
+				getOutput("RD" + r).propagate(value, now, sim);
 			}
 		}
 
@@ -708,7 +708,7 @@ public final class ShiftRegister extends LogicElement
 			// through the shifter, then post an event
 			if (!newValue.equals(toBeValue)) {
 				toBeValue = (BitSet)newValue.clone();
-				sim.post(new SimEvent(now+propDelay,this,new NewValue(newValue)));
+				sim.post(new SimEvent(now+sim.delay(propDelay),this,new NewValue(newValue)));
 			}
 		}
 
@@ -188,7 +188,7 @@ public final class SigGen extends SigSim implements Editable {
 		if (JLSInfo.noWindow()) {
 			System.out.println("error in test file");
 			System.out.println(msg);
-			System.exit(1);
+			throw new BatchAbortException(1);
 		}
 		else {
 			TellUser.error(null,"error in test file: " + msg, "Error");
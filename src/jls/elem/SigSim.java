@@ -31,19 +31,20 @@ public abstract sealed class SigSim extends LogicElement
 	//	-------------------------------------------------------------------------------
 
 	/**
-	 * Parse signal specification and post all events.
-	 * If signal generator is in an imported circuit, do nothing.
+	 * Prepare a specification for token-by-token parsing: hex values
+	 * rewritten in decimal and end-of-line comments removed, with the
+	 * lines joined by spaces.
 	 *
-	 * @param sim The simulator.
 	 * @param input A scanner for reading the specification.
+	 *
+	 * @return the tokens, space-separated.
 	 */
-	public void initSim(Simulator sim, Scanner input) {
+	static String clean(Scanner input) {
 
-		// get rid of end-of-line comments
-		String newSignals = "";
+		StringBuilder signals = new StringBuilder();
 		while (input.hasNextLine()) {
 			String line = input.nextLine();
-			String newLine = "";
+			StringBuilder newLine = new StringBuilder();
 
 			// convert hex numbers to base 10
 			Scanner hex = new Scanner(line);
@@ -51,36 +52,50 @@ public abstract sealed class SigSim extends LogicElement
 				String token = hex.next();
 				if (token.matches("-?0[xX][0-9a-fA-F]+")) {
 					BigInteger value;
-					String suffix = token.substring(2);
 					if (token.charAt(0) == '-') {
-						suffix = token.substring(3);
-						value = new BigInteger(suffix,16).negate();
+						value = new BigInteger(token.substring(3),16).negate();
 					}
 					else {
-						suffix = token.substring(2);
-						value = new BigInteger(suffix,16);
+						value = new BigInteger(token.substring(2),16);
 					}
-
-					newLine += " " + value;
+					newLine.append(' ').append(value);
 				}
 				else {
-					newLine += " " + token;
+					newLine.append(' ').append(token);
 				}
 			}
-			if (newLine.contains("#")) {
-				newSignals += newLine.substring(0,newLine.indexOf("#")) + " ";
-			}
-			else {
-				newSignals += newLine + " ";
+
+			// get rid of end-of-line comments
+			int comment = newLine.indexOf("#");
+			if (comment >= 0) {
+				newLine.setLength(comment);
 			}
+			signals.append(newLine).append(' ');
 		}
+		return signals.toString();
+	} // end of clean method
+
+	/**
+	 * Parse signal specification and post all events.
+	 * If signal generator is in an imported circuit, do nothing.
+	 *
+	 * @param sim The simulator.
+	 * @param input A scanner for reading the specification.
+	 */
+	public void initSim(Simulator sim, Scanner input) {
 
 		// read signal string
-		input = new Scanner(newSignals);
+		input = new Scanner(clean(input));
 		while (input.hasNext()) {
 
 			// get signal name and resolve to input pin
 			String signal = input.next();
+			if (signal.equals("expect")) {
+				if (!parseExpectation(sim, input)) {
+					return;
+				}
+				continue;
+			}
 			InputPin pin = null;
 			for (Element el : getCircuit().getElements()) {
 				if (!(el instanceof InputPin ip))
@@ -203,6 +218,89 @@ public abstract sealed class SigSim extends LogicElement
 		}
 	} // end of initSim method
 
+	/**
+	 * Parse one expectation clause, {@code expect name (at time value)*
+	 * end}, after its {@code expect} keyword, and register each
+	 * expected value of the named top-level output pin with the
+	 * simulator.
+	 *
+	 * @param sim The simulator.
+	 * @param input The specification, positioned after {@code expect}.
+	 *
+	 * @return false if the clause was malformed and parsing must stop.
+	 *
+	 * @jls.testedby jls.sim.ExpectationTest#malformedExpectationsAreSpecErrors()
+	 */
+	private boolean parseExpectation(Simulator sim, Scanner input) {
+
+		if (!input.hasNext()) {
+			specError("expected output pin name after expect");
+			return false;
+		}
+		String name = input.next();
+		OutputPin pin = null;
+		for (Element el : getCircuit().getElements()) {
+			if (el instanceof OutputPin op && name.equals(op.getName())) {
+				pin = op;
+			}
+		}
+		if (pin == null) {
+			specError("no output pin for expectation " + name
+					+ " - expectation ignored");
+		}
+
+		long time = -1;
+		while (true) {
+			if (!input.hasNext()) {
+				specError("expected at or end for expectation " + name);
+				return false;
+			}
+			String type = input.next();
+			if (type.equals("end")) {
+				return true;
+			}
+			if (!type.equals("at")) {
+				specError("expected at or end for expectation " + name);
+				return false;
+			}
+			if (!input.hasNextLong()) {
+				specError("missing or invalid time for expectation " + name);
+				return false;
+			}
+			long newTime = input.nextLong();
+			if (newTime <= time) {
+				specError("expectation time not greater than previous"
+						+ " time for " + name);
+				return false;
+			}
+			time = newTime;
+			if (!input.hasNextBigInteger()) {
+				specError("expected value for expectation " + name);
+				return false;
+			}
+			BigInteger value = input.nextBigInteger();
+			if (pin != null) {
+
+				// make sure the value will fit
+				int bits = pin.getBits();
+				int needed = value.signum() < 0 ? value.bitLength() + 1
+						: value.bitLength();
+				if (needed > bits) {
+					specError("value " + value
+							+ " will not fit in output pin " + name);
+					return false;
+				}
+
+				// convert negative to positive
+				if (value.signum() < 0) {
+					value = value.add(BigInteger.ONE.shiftLeft(bits));
+				}
+				sim.expect(new Expectation(time, pin,
+						BitSetUtils.Create(value)));
+			}
+		}
+	} // end of parseExpectation method
+
 	/**
 	 * Shouldn't be called.
 	 *
@@ -752,6 +752,8 @@ public final class StateMachine extends LogicElement
 				}
 			}
 
+			sim.checkCapture(this,getInput("clock"),now);
+
 			// do a transition, so figure out next state.
 			// currentState is null only for a zero-state machine, which
 			// initSim leaves permanently busy, so react returns above
@@ -786,7 +788,7 @@ public final class StateMachine extends LogicElement
 			busy = true;
 
 			// post event
-			sim.post(new SimEvent(now+propDelay,this,
+			sim.post(new SimEvent(now+sim.delay(propDelay),this,
 					new StateChanged(newState)));
 		}
 
@@ -331,6 +331,20 @@ public final class SubCircuit extends LogicElement
 	@Override
 	public Element copy() {
 
+		return copyRecording(null);
+	} // end of copy method
+
+	/**
+	 * Copy this element, recording the copy of every element of the
+	 * subcircuit (see {@link jls.Util#copy(Set, Circuit, Map)}).
+	 *
+	 * @param copies Receives each inner element mapped to its copy, or
+	 *        null to record nothing.
+	 *
+	 * @return the copy.
+	 */
+	public SubCircuit copyRecording(@Nullable Map<Element,Element> copies) {
+
 		// create infrastructure
 		SubCircuit it = new SubCircuit(getCircuit());
 		it.name = name;
@@ -348,7 +362,7 @@ public final class SubCircuit extends LogicElement
 			}
 			elements.add(el);
 		}
-		Util.copy(elements,itSub);
+		Util.copy(elements,itSub,copies);
 		Util.partition(itSub);
 
 		for (Input input : inputs) {
@@ -381,7 +395,7 @@ public final class SubCircuit extends LogicElement
 		// finish up
 		super.copy(it);
 		return it;
-	} // end of copy method
+	} // end of copyRecording method
 
 	/**
 	 * Remove this element from the circuit.
@@ -2,6 +2,8 @@ package jls.elem;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 import org.jspecify.annotations.Nullable;
@@ -22,6 +24,39 @@ public final class TestGen extends SigSim {
 	/** The name of the file to read test inputs from; null until {@link #setFile(String)} supplies one. */
 	private @Nullable String file = null;
 
+	/**
+	 * The most events of one binary column on the event queue at once:
+	 * a column is refilled by this many when the run reaches its last
+	 * queued event.
+	 */
+	static final int CHUNK = 256;
+
+	/**
+	 * A binary test file column driving an input pin. Its events carry
+	 * sequence numbers reserved when the file was opened, column after
+	 * column as the text path posts them, so same-time events on
+	 * different pins fire in the text's order whichever chunk they are
+	 * posted in.
+	 *
+	 * @param pin The input pin.
+	 * @param column The column's events.
+	 * @param first The sequence number of the column's first event.
+	 * @param count The number of events in the column.
+	 */
+	private record Feed(InputPin pin, VectorFile.Column column, long first,
+			int count) {
+	} // end of Feed record
+
+	/** The columns of a binary test file, while they have events left. */
+	private final List<Feed> feeds = new ArrayList<Feed>();
+
+	/** A VCD test file, while it has changes left. */
+	private @Nullable VcdStimulus stimulus = null;
+
+	/** The input pins each VCD identifier code drives. */
+	private final Map<String,List<InputPin>> drives =
+			new HashMap<String,List<InputPin>>();
+
 	/**
 	 * Create new element.
 	 *
@@ -72,18 +107,358 @@ public final class TestGen extends SigSim {
 		catch (FileNotFoundException ex) {
 			if (JLSInfo.batch) {
 				System.out.println("Can't open test file: " + file);
-				System.exit(1);
+				throw new BatchAbortException(1);
 			}
 			else {
 				TellUser.error(null,"Can't open test file: " + file, "Error");
 				return;
 			}
 		}
-		try (Scanner input = new Scanner(in, StandardCharsets.UTF_8)) {
+		// a binary or VCD test file is read in place, a text one parsed
+		feeds.clear();
+		stimulus = null;
+		drives.clear();
+		byte[] head;
+		try {
+			head = in.readNBytes(VectorFile.MAGIC_LENGTH);
+		}
+		catch (IOException ex) {
+			head = new byte[0];
+		}
+		if (VectorFile.isVectorFile(head) || VcdStimulus.isVcdFile(head)) {
+			try {
+				in.close();
+			}
+			catch (IOException ex) {
+				// only read from, so nothing was lost
+			}
+			Path path = Path.of(String.valueOf(file));
+			if (VectorFile.isVectorFile(head)) {
+				initBinary(sim, path);
+			}
+			else {
+				initVcd(sim, path);
+			}
+			return;
+		}
+		try (Scanner input = new Scanner(new SequenceInputStream(
+				new ByteArrayInputStream(head), in), StandardCharsets.UTF_8)) {
 			super.initSim(sim,input);
 		}
 	} // end of initSim method
 
+	/**
+	 * Start reading a binary test file (docs/batch-interface.md section
+	 * 2.6): resolve each column's pin and check that its values fit,
+	 * register the expectations, and post the first chunk of each
+	 * signal's events.
+	 *
+	 * @param sim The simulator.
+	 * @param path The binary test file.
+	 *
+	 * @jls.testedby jls.elem.VectorFileTest#aPackedFileRunsLikeItsText()
+	 * @jls.testedby jls.elem.VectorFileTest#aBinaryFileIsCheckedAgainstTheCircuit()
+	 */
+	private void initBinary(Simulator sim, Path path) {
+
+		List<VectorFile.Column> columns;
+		try {
+			columns = VectorFile.open(path);
+		}
+		catch (IOException | RuntimeException ex) {
+			specError("not a valid binary test file: " + ex.getMessage());
+			return;
+		}
+		try {
+			for (VectorFile.Column column : columns) {
+				boolean signal = column.kind == VectorFile.SIGNAL;
+				Pin pin = null;
+				for (Element el : getCircuit().getElements()) {
+					if ((signal ? el instanceof InputPin : el instanceof OutputPin)
+							&& column.name.equals(el.getName())) {
+						pin = (Pin) el;
+					}
+				}
+				String what = signal ? "signal " : "expectation ";
+				if (pin == null) {
+					specError("no " + (signal ? "input" : "output")
+							+ " pin for " + what + column.name + " - "
+							+ (signal ? "signal" : "expectation") + " ignored");
+					continue;
+				}
+				if (column.needed > pin.getBits()) {
+					specError("values of " + column.needed
+							+ " bits will not fit in " + (signal ? "signal "
+									: "output pin ") + column.name);
+					return;
+				}
+				if (pin instanceof OutputPin out) {
+					while (column.remaining > 0) {
+						long time = column.nextTime();
+						sim.expect(new Expectation(time, out,
+								column.nextValue(out.getBits())));
+					}
+				}
+				else if (pin instanceof InputPin in && column.remaining > 0) {
+					feeds.add(new Feed(in, column, 0, column.remaining));
+				}
+			}
+		}
+		catch (IOException ex) {
+			specError("not a valid binary test file: " + ex.getMessage());
+			return;
+		}
+
+		// number every event now, as if all were posted now
+		long total = 0;
+		for (Feed feed : feeds) {
+			total += feed.count();
+		}
+		long next = SimEvent.reserve(total);
+		for (ListIterator<Feed> it = feeds.listIterator(); it.hasNext(); ) {
+			Feed feed = it.next();
+			it.set(new Feed(feed.pin(), feed.column(), next, feed.count()));
+			next += feed.count();
+		}
+		refill(sim, 0);
+	} // end of initBinary method
+
+	/**
+	 * Post the next chunk of events of every binary column whose queued
+	 * events the run has used up, and schedule the next refill for when
+	 * the first column runs out again. A refill during the run posts only
+	 * events later than now, each numbered as the text path would have
+	 * numbered it, so the run is the one the text drives.
+	 *
+	 * @jls.testedby jls.elem.VectorFileTest#chunkedStimulusFiresInTheTextOrder()
+	 *
+	 * @param sim The simulator.
+	 * @param now The current simulation time.
+	 */
+	private void refill(Simulator sim, long now) {
+
+		long next = Long.MAX_VALUE;
+		try {
+			for (Iterator<Feed> it = feeds.iterator(); it.hasNext(); ) {
+				Feed feed = it.next();
+				VectorFile.Column column = feed.column();
+				if (column.time <= now) {
+					int bits = feed.pin().getBits();
+					for (int n = 0; n < CHUNK && column.remaining > 0; n += 1) {
+						long seq = feed.first() + feed.count() - column.remaining;
+						long time = column.nextTime();
+						sim.post(new SimEvent(time, feed.pin(),
+								new SimEvent.NewValue(column.nextValue(bits)), seq));
+					}
+				}
+				if (column.remaining == 0) {
+					it.remove();
+				}
+				else {
+					next = Math.min(next, column.time);
+				}
+			}
+		}
+		catch (IOException ex) {
+			specError("not a valid binary test file: " + ex.getMessage());
+			return;
+		}
+		if (next != Long.MAX_VALUE) {
+			sim.post(new SimEvent(next, this, new SimEvent.PinChanged()));
+		}
+	} // end of refill method
+
+	/**
+	 * Start reading a VCD test file (docs/batch-interface.md section
+	 * 2.7): map its variables onto top-level input pins, by the -vcdmap
+	 * file if one is given and by reference name otherwise, check that
+	 * their values fit, and post the first chunk of changes.
+	 *
+	 * @param sim The simulator.
+	 * @param path The VCD file.
+	 *
+	 * @jls.testedby jls.elem.VcdStimulusTest#aRecordedRunDrivesTheSameRun()
+	 * @jls.testedby jls.elem.VcdStimulusTest#signalsMapByNameInAnyScope()
+	 * @jls.testedby jls.elem.VcdStimulusTest#malformedFilesAreReported()
+	 */
+	private void initVcd(Simulator sim, Path path) {
+
+		VcdStimulus vcd;
+		try {
+			vcd = VcdStimulus.open(path);
+		}
+		catch (IOException | RuntimeException ex) {
+			specError("not a valid VCD file: " + ex.getMessage());
+			return;
+		}
+		Map<String,InputPin> pins = new HashMap<String,InputPin>();
+		for (Element el : getCircuit().getElements()) {
+			if (el instanceof InputPin in && in.getName() != null) {
+				pins.put(in.getName(), in);
+			}
+		}
+		Map<InputPin,VcdStimulus.Var> driven =
+				new LinkedHashMap<InputPin,VcdStimulus.Var>();
+		String map = JLSInfo.vcdMapFile;
+		if (map == null) {
+			// each pin by the first variable of its name, in any scope
+			for (VcdStimulus.Var var : vcd.vars()) {
+				InputPin pin = pins.get(var.name());
+				if (pin != null) {
+					driven.putIfAbsent(pin, var);
+				}
+			}
+			if (driven.isEmpty()) {
+				specError("no variable in the VCD file names an input pin");
+				return;
+			}
+		}
+		else {
+			List<String> lines;
+			try {
+				lines = Files.readAllLines(Path.of(map), StandardCharsets.UTF_8);
+			}
+			catch (IOException | RuntimeException ex) {
+				specError("can't read VCD mapping file " + map);
+				return;
+			}
+			for (int n = 0; n < lines.size(); n += 1) {
+				String line = lines.get(n);
+				int hash = line.indexOf('#');
+				String[] words = (hash < 0 ? line : line.substring(0, hash))
+						.trim().split("\\s+");
+				if (words.length == 1 && words[0].isEmpty()) {
+					continue;
+				}
+				if (words.length != 2) {
+					specError("line " + (n + 1) + " of " + map
+							+ ": expected a VCD variable and an input pin");
+					return;
+				}
+				VcdStimulus.Var var = variable(vcd, words[0]);
+				if (var == null) {
+					specError("line " + (n + 1) + " of " + map
+							+ ": no single VCD variable " + words[0]);
+					return;
+				}
+				InputPin pin = pins.get(words[1]);
+				if (pin == null) {
+					specError("no input pin for signal " + words[1]
+							+ " - signal ignored");
+					continue;
+				}
+				driven.put(pin, var);
+			}
+		}
+		for (Map.Entry<InputPin,VcdStimulus.Var> entry : driven.entrySet()) {
+			InputPin pin = entry.getKey();
+			VcdStimulus.Var var = entry.getValue();
+			if (var.bits() > pin.getBits()) {
+				specError("values of " + var.bits() + " bits will not fit in"
+						+ " signal " + pin.getName());
+				return;
+			}
+			drives.computeIfAbsent(var.code(),
+					code -> new ArrayList<InputPin>()).add(pin);
+		}
+		stimulus = vcd;
+		refillVcd(sim);
+	} // end of initVcd method
+
+	/**
+	 * Find the VCD variable a mapping file line names: by its dotted
+	 * scope path, or by its reference name if only one variable has it.
+	 *
+	 * @param vcd The VCD file.
+	 * @param name The path or name.
+	 *
+	 * @return the variable, or null if none or several match.
+	 */
+	private static VcdStimulus.@Nullable Var variable(VcdStimulus vcd,
+			String name) {
+
+		VcdStimulus.Var found = null;
+		int named = 0;
+		for (VcdStimulus.Var var : vcd.vars()) {
+			if (var.path().equals(name)) {
+				return var;
+			}
+			if (var.name().equals(name)) {
+				found = var;
+				named += 1;
+			}
+		}
+		return named == 1 ? found : null;
+	} // end of variable method
+
+	/**
+	 * Post the next chunk of a VCD file's changes to the pins they
+	 * drive, and schedule the next refill for the time of the last
+	 * change read. Changes to variables no pin is mapped to are read
+	 * past without counting against the chunk.
+	 *
+	 * @param sim The simulator.
+	 */
+	private void refillVcd(Simulator sim) {
+
+		VcdStimulus vcd = stimulus;
+		if (vcd == null) {
+			return;
+		}
+		try {
+			int posted = 0;
+			while (posted < CHUNK) {
+				String code = vcd.next();
+				if (code == null) {
+					stimulus = null;
+					return;
+				}
+				List<InputPin> pins = drives.get(code);
+				if (pins == null) {
+					continue;
+				}
+				BitSet value = vcd.value();
+				for (InputPin pin : pins) {
+					if (value.length() > pin.getBits()) {
+						specError("value at time " + vcd.time()
+								+ " will not fit in signal " + pin.getName());
+						return;
+					}
+					sim.post(new SimEvent(vcd.time(), pin,
+							new SimEvent.NewValue(value)));
+					posted += 1;
+				}
+			}
+		}
+		catch (IOException ex) {
+			specError("not a valid VCD file: " + ex.getMessage());
+			return;
+		}
+		sim.post(new SimEvent(vcd.time(), this, new SimEvent.PinChanged()));
+	} // end of refillVcd method
+
+	/**
+	 * React to a refill this generator scheduled for itself while
+	 * reading a binary or VCD test file.
+	 *
+	 * @param now The current simulation time.
+	 * @param sim The simulator to post events to.
+	 * @param todo The payload; only PinChanged is expected.
+	 */
+	@Override
+	public void react(long now, Simulator sim, SimEvent.Payload todo) {
+
+		if (todo instanceof SimEvent.PinChanged && !feeds.isEmpty()) {
+			refill(sim, now);
+		}
+		else if (todo instanceof SimEvent.PinChanged && stimulus != null) {
+			refillVcd(sim);
+		}
+		else {
+			super.react(now, sim, todo);
+		}
+	} // end of react method
+
 	/**
 	 * Print or display an error about the test file contents.
 	 *
@@ -95,7 +470,7 @@ public final class TestGen extends SigSim {
 		if (JLSInfo.noWindow()) {
 			System.out.println("error in test file");
 			System.out.println(msg);
-			System.exit(1);
+			throw new BatchAbortException(1);
 		}
 		else {
 			TellUser.error(null,"error in test file: " + msg, "Error");
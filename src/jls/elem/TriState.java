@@ -488,7 +488,7 @@ public final class TriState extends LogicElement implements Timed, Rotatable {
 				if (toBeValue == null)
 					return;
 				toBeValue = null;
-				sim.post(new SimEvent(now+propDelay,this,new TriStateOff()));
+				sim.post(new SimEvent(now+sim.delay(propDelay),this,new TriStateOff()));
 			}
 			else {
 
@@ -502,7 +502,7 @@ public final class TriState extends LogicElement implements Timed, Rotatable {
 				if (value.equals(toBeValue))
 					return;
 				toBeValue = (BitSet)value.clone();
-				sim.post(new SimEvent(now+propDelay,this,new NewValue(value)));
+				sim.post(new SimEvent(now+sim.delay(propDelay),this,new NewValue(value)));
 			}
 
 		}
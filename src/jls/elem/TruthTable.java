@@ -1380,7 +1380,7 @@ public final class TruthTable extends LogicElement
 				toBe[pos] = 1;
 				BitSet val = new BitSet(1);
 				val.set(0);
-				sim.post(new SimEvent(propDelay,this,
+				sim.post(new SimEvent(sim.delay(propDelay),this,
 						new TableOutput(pos,val)));
 			}
 			pos += 1;
@@ -1453,7 +1453,7 @@ public final class TruthTable extends LogicElement
 					BitSet val = new BitSet(1);
 					if (outValue == 1)
 						val.set(0);
-					sim.post(new SimEvent(now+propDelay,this,
+					sim.post(new SimEvent(now+sim.delay(propDelay),this,
 							new TableOutput(pos,val)));
 				}
 				pos += 1;
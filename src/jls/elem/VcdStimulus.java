@@ -0,0 +1,389 @@
+package jls.elem;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A VCD file read as stimulus (docs/batch-interface.md section 2.7).
+ * {@link #open} parses the header's variable declarations; the value
+ * changes after it are read one at a time by {@link #next}, through a
+ * window of at most {@link #WINDOW} bytes mapped from the file and
+ * moved along as it is used up. A TestGen asks for a chunk of changes
+ * whenever the run reaches the last one it posted, so a recording of
+ * any length drives a run with one window of it resident and no
+ * file handle held between chunks.
+ *
+ * Values are read as two-state: x and z bits are 0. Real-valued
+ * changes are rejected.
+ */
+final class VcdStimulus {
+
+	/** The most bytes mapped at once; no token may be longer. */
+	static final int WINDOW = 1 << 24;
+
+	/**
+	 * One variable declared in the header.
+	 *
+	 * @param code Its identifier code; several variables may share one.
+	 * @param name Its reference name.
+	 * @param path Its enclosing scope names and reference name, joined
+	 *        by dots.
+	 * @param bits Its declared width.
+	 */
+	record Var(String code, String name, String path, int bits) {
+	} // end of Var record
+
+	/** The file. */
+	private final Path path;
+	/** The file's size in bytes. */
+	private final long size;
+	/** The declared variables, in header order. */
+	private final List<Var> vars = new ArrayList<Var>();
+	/** The declared width of each identifier code. */
+	private final Map<String,Integer> widths = new HashMap<String,Integer>();
+	/** The mapped part of the file, positioned at the next unread byte. */
+	private ByteBuffer window = ByteBuffer.allocate(0);
+	/** The file offset the window starts at. */
+	private long base = 0;
+	/** The time of the change last read. */
+	private long time = 0;
+	/** The value of the change last read. */
+	private BitSet value = new BitSet();
+
+	/**
+	 * Create a reader positioned at the start of a file.
+	 *
+	 * @param path The file.
+	 * @param size Its size in bytes.
+	 */
+	private VcdStimulus(Path path, long size) {
+
+		this.path = path;
+		this.size = size;
+	} // end of constructor
+
+	/**
+	 * Open a VCD file and read its header.
+	 *
+	 * @param path The file.
+	 *
+	 * @return a reader positioned at the first value change.
+	 *
+	 * @throws IOException if the file cannot be read or its header is
+	 *         malformed.
+	 *
+	 * @jls.testedby jls.elem.VcdStimulusTest#aRecordedRunDrivesTheSameRun()
+	 * @jls.testedby jls.elem.VcdStimulusTest#malformedFilesAreReported()
+	 */
+	static VcdStimulus open(Path path) throws IOException {
+
+		long size;
+		try (FileChannel channel = FileChannel.open(path,
+				StandardOpenOption.READ)) {
+			size = channel.size();
+		}
+		VcdStimulus vcd = new VcdStimulus(path, size);
+		vcd.header();
+		return vcd;
+	} // end of open method
+
+	/**
+	 * Decide whether the first bytes of a file are those of a VCD file:
+	 * its first non-blank character opens a section, which a text test
+	 * file's cannot.
+	 *
+	 * @param head The first bytes.
+	 *
+	 * @return true if it is a VCD file.
+	 */
+	static boolean isVcdFile(byte[] head) {
+
+		for (byte b : head) {
+			if ((b & 0xff) > ' ') {
+				return b == '$';
+			}
+		}
+		return false;
+	} // end of isVcdFile method
+
+	/**
+	 * Get the declared variables.
+	 *
+	 * @return them, in header order.
+	 */
+	List<Var> vars() {
+
+		return Collections.unmodifiableList(vars);
+	} // end of vars method
+
+	/**
+	 * Get the time of the change last read.
+	 *
+	 * @return the time, in the file's own units.
+	 */
+	long time() {
+
+		return time;
+	} // end of time method
+
+	/**
+	 * Get the value of the change last read.
+	 *
+	 * @return the value, low bit first; the caller may keep it.
+	 */
+	BitSet value() {
+
+		return value;
+	} // end of value method
+
+	/**
+	 * Read the next value change, skipping timestamps, dump keywords
+	 * and comments.
+	 *
+	 * @return the changed variables' identifier code, or null at the
+	 *         end of the file.
+	 *
+	 * @throws IOException if the file cannot be read or is malformed.
+	 */
+	@Nullable String next() throws IOException {
+
+		while (true) {
+			String token = token();
+			if (token == null) {
+				return null;
+			}
+			switch (token.charAt(0)) {
+			case '#':
+				long when;
+				try {
+					when = Long.parseLong(token.substring(1));
+				} catch (NumberFormatException ex) {
+					throw new IOException("invalid timestamp " + token);
+				}
+				if (when < time) {
+					throw new IOException("timestamp " + token
+							+ " is before #" + time);
+				}
+				time = when;
+				break;
+			case '$':
+				if (token.equals("$comment")) {
+					section(token);
+				}
+				else if (!List.of("$dumpvars", "$dumpall", "$dumpon",
+						"$dumpoff", "$end").contains(token)) {
+					throw new IOException("unexpected " + token
+							+ " after the header");
+				}
+				break;
+			case 'b', 'B':
+				String code = token();
+				if (code == null) {
+					throw new IOException("no identifier code after " + token);
+				}
+				value = bits(token.substring(1), code);
+				return code;
+			case '0', '1', 'x', 'X', 'z', 'Z':
+				code = token.substring(1);
+				value = bits(token.substring(0, 1), code);
+				return code;
+			case 'r', 'R':
+				throw new IOException("real value " + token
+						+ " cannot drive a pin");
+			default:
+				throw new IOException("unexpected " + token);
+			}
+		}
+	} // end of next method
+
+	/**
+	 * Read the header: the variables declared in their scopes, up to
+	 * $enddefinitions. Other sections are skipped.
+	 *
+	 * @throws IOException if the file cannot be read or the header is
+	 *         malformed.
+	 */
+	private void header() throws IOException {
+
+		List<String> scopes = new ArrayList<String>();
+		while (true) {
+			String token = token();
+			if (token == null) {
+				throw new IOException("no $enddefinitions");
+			}
+			if (!token.startsWith("$")) {
+				throw new IOException("unexpected " + token + " in the header");
+			}
+			List<String> args = section(token);
+			switch (token) {
+			case "$scope":
+				if (args.size() != 2) {
+					throw new IOException("$scope needs a type and a name");
+				}
+				scopes.add(args.get(1));
+				break;
+			case "$upscope":
+				if (scopes.isEmpty()) {
+					throw new IOException("$upscope outside any scope");
+				}
+				scopes.remove(scopes.size() - 1);
+				break;
+			case "$var":
+				// type, width, code, name, and an optional bit range
+				if (args.size() < 4) {
+					throw new IOException("$var needs a type, width, code"
+							+ " and name");
+				}
+				int bits;
+				try {
+					bits = Integer.parseInt(args.get(1));
+				} catch (NumberFormatException ex) {
+					bits = 0;
+				}
+				if (bits <= 0) {
+					throw new IOException("invalid width " + args.get(1)
+							+ " of $var " + args.get(3));
+				}
+				List<String> names = new ArrayList<String>(scopes);
+				names.add(args.get(3));
+				Var var = new Var(args.get(2), args.get(3),
+						String.join(".", names), bits);
+				vars.add(var);
+				widths.merge(var.code(), bits, Math::max);
+				break;
+			case "$enddefinitions":
+				return;
+			default:
+				// $date, $version, $timescale, $comment
+				break;
+			}
+		}
+	} // end of header method
+
+	/**
+	 * Read the rest of a section, up to its $end.
+	 *
+	 * @param keyword The keyword that opened it.
+	 *
+	 * @return the tokens between the keyword and $end.
+	 *
+	 * @throws IOException if the file ends first.
+	 */
+	private List<String> section(String keyword) throws IOException {
+
+		List<String> args = new ArrayList<String>();
+		while (true) {
+			String token = token();
+			if (token == null) {
+				throw new IOException("no $end after " + keyword);
+			}
+			if (token.equals("$end")) {
+				return args;
+			}
+			args.add(token);
+		}
+	} // end of section method
+
+	/**
+	 * Convert the digits of a change to a value.
+	 *
+	 * @param digits The binary digits, high first; x and z read as 0.
+	 * @param code The changed variables' identifier code.
+	 *
+	 * @return the value.
+	 *
+	 * @throws IOException if the code is undeclared or a digit invalid.
+	 */
+	private BitSet bits(String digits, String code) throws IOException {
+
+		if (!widths.containsKey(code)) {
+			throw new IOException("undeclared identifier code " + code);
+		}
+		int n = digits.length();
+		BitSet bits = new BitSet(n);
+		for (int i = 0; i < n; i += 1) {
+			switch (digits.charAt(n - 1 - i)) {
+			case '1':
+				bits.set(i);
+				break;
+			case '0', 'x', 'X', 'z', 'Z':
+				break;
+			default:
+				throw new IOException("invalid value " + digits
+						+ " for identifier code " + code);
+			}
+		}
+		return bits;
+	} // end of bits method
+
+	/**
+	 * Read the next blank-separated token, moving the window along the
+	 * file as it is used up.
+	 *
+	 * @return the token, or null at the end of the file.
+	 *
+	 * @throws IOException if the file cannot be read or a token is
+	 *         longer than a window.
+	 */
+	private @Nullable String token() throws IOException {
+
+		while (true) {
+			ByteBuffer w = window;
+			int start = w.position();
+			int limit = w.limit();
+			while (start < limit && (w.get(start) & 0xff) <= ' ') {
+				start += 1;
+			}
+			int end = start;
+			while (end < limit && (w.get(end) & 0xff) > ' ') {
+				end += 1;
+			}
+			if (end == limit && base + limit < size) {
+				// the token may go on past the window: map it afresh
+				if (start == 0 && limit == WINDOW) {
+					throw new IOException("token longer than " + WINDOW
+							+ " bytes at byte " + base);
+				}
+				map(base + start);
+				continue;
+			}
+			w.position(end);
+			if (start == end) {
+				return null;
+			}
+			byte[] bytes = new byte[end - start];
+			w.get(start, bytes);
+			return new String(bytes, StandardCharsets.ISO_8859_1);
+		}
+	} // end of token method
+
+	/**
+	 * Map the window at a file offset. The channel is closed at once:
+	 * the mapping outlives it.
+	 *
+	 * @param offset The offset.
+	 *
+	 * @throws IOException if the file cannot be read.
+	 */
+	private void map(long offset) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(path,
+				StandardOpenOption.READ)) {
+			long length = Math.min(WINDOW, size - offset);
+			if (channel.size() < offset + length) {
+				throw new IOException("the file was cut short while read");
+			}
+			window = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+					length);
+		}
+		base = offset;
+	} // end of map method
+
+} // end of VcdStimulus class
@@ -0,0 +1,494 @@
+package jls.elem;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * The binary test-vector format (docs/batch-interface.md section 2.6):
+ * the {@code -t} text grammar packed column by column, one column per
+ * signal or expectation clause, with varint time deltas and fixed-width
+ * little-endian values. A TestGen reads it in place from a mapped file
+ * and posts each column's events a chunk at a time as the run reaches
+ * them, so a multi-million-cycle stimulus is neither parsed token by
+ * token nor held on the event queue all at once.
+ *
+ * {@link #pack} converts a text test file; {@link #open} maps a binary
+ * one for reading.
+ */
+public final class VectorFile {
+
+	/** The first bytes of every binary test file; the last is the version. */
+	private static final byte[] MAGIC = { 'J', 'L', 'S', 'V', 'E', 'C', 0, 1 };
+
+	/** A column kind: a signal driving an input pin. */
+	static final int SIGNAL = 0;
+	/** A column kind: expected values of an output pin. */
+	static final int EXPECT = 1;
+
+	/** No instances: a format holder. */
+	private VectorFile() {
+	} // end of constructor
+
+	/**
+	 * One column of a binary test file: a signal or expectation clause,
+	 * with a cursor over its events.
+	 */
+	static final class Column {
+
+		/** SIGNAL or EXPECT. */
+		final int kind;
+		/** The pin the clause names. */
+		final String name;
+		/** The most bits any value needs, by the text format's rules. */
+		final int needed;
+		/** Whether any value is negative. */
+		final boolean signed;
+		/** The events not yet read. */
+		int remaining;
+		/** The time of the event last read. */
+		long time = 0;
+		/** Whether an event has been read; a signal's first is at time 0. */
+		private boolean started = false;
+		/** The encoded events, positioned at the next one. */
+		private final ByteBuffer body;
+		/** The stored width of each value: needed, plus a sign bit if signed. */
+		private final int width;
+
+		/**
+		 * Create a column over its encoded events.
+		 *
+		 * @param kind SIGNAL or EXPECT.
+		 * @param name The pin name.
+		 * @param needed The most bits a value needs.
+		 * @param signed Whether any value is negative.
+		 * @param count The number of events.
+		 * @param body The encoded events.
+		 */
+		Column(int kind, String name, int needed, boolean signed, int count,
+				ByteBuffer body) {
+
+			this.kind = kind;
+			this.name = name;
+			this.needed = needed;
+			this.signed = signed;
+			this.remaining = count;
+			this.body = body;
+			this.width = signed ? needed + 1 : needed;
+		} // end of constructor
+
+		/**
+		 * Read the next event's time and move the cursor to its value.
+		 *
+		 * @return the time.
+		 *
+		 * @throws IOException if the column is truncated or its times
+		 *         do not increase.
+		 */
+		long nextTime() throws IOException {
+
+			long delta = readVarint(body);
+			if (started ? delta <= 0 : kind == SIGNAL && delta != 0) {
+				throw new IOException("times do not increase in column "
+						+ name);
+			}
+			started = true;
+			time += delta;
+			remaining -= 1;
+			return time;
+		} // end of nextTime method
+
+		/**
+		 * Read the value after the time just read, as a pin of the
+		 * given width holds it: negative values in two's complement.
+		 *
+		 * @param bits The pin's width, at least {@code needed}.
+		 *
+		 * @return the value.
+		 *
+		 * @throws IOException if the column is truncated.
+		 */
+		BitSet nextValue(int bits) throws IOException {
+
+			int bytes = (width + 7) / 8;
+			if (body.remaining() < bytes) {
+				throw new IOException("column " + name + " is truncated");
+			}
+			BitSet value = BitSet.valueOf(body.slice(body.position(), bytes));
+			body.position(body.position() + bytes);
+			if (signed && value.get(width - 1)) {
+				if (bits > width) {
+					value.set(width, bits);
+				}
+				else {
+					value.clear(bits, width);
+				}
+			}
+			return value;
+		} // end of nextValue method
+
+	} // end of Column class
+
+	/**
+	 * The number of bytes {@link #isVectorFile} needs to see.
+	 */
+	static final int MAGIC_LENGTH = MAGIC.length;
+
+	/**
+	 * See whether a file is a binary test file, from its first bytes.
+	 *
+	 * @param head The file's first {@link #MAGIC_LENGTH} bytes, or all
+	 *        of it if it is shorter.
+	 *
+	 * @return true if they are the binary format's magic bytes.
+	 */
+	static boolean isVectorFile(byte[] head) {
+
+		return Arrays.equals(head, MAGIC);
+	} // end of isVectorFile method
+
+	/**
+	 * Map a binary test file and read its column headers. The columns
+	 * read their events from the mapping, which the operating system
+	 * pages in as the run reaches them.
+	 *
+	 * @param file The file.
+	 *
+	 * @return its columns, in file order.
+	 *
+	 * @throws IOException if the file cannot be read or is malformed.
+	 *
+	 * @jls.testedby jls.elem.VectorFileTest#aPackedFileRunsLikeItsText()
+	 * @jls.testedby jls.elem.VectorFileTest#aDamagedFileIsRejected()
+	 */
+	static List<Column> open(Path file) throws IOException {
+
+		MappedByteBuffer map;
+		try (FileChannel channel = FileChannel.open(file,
+				StandardOpenOption.READ)) {
+			map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+		}
+		try {
+			byte[] magic = new byte[MAGIC.length];
+			map.get(magic);
+			if (!Arrays.equals(magic, MAGIC)) {
+				throw new IOException("not a binary test file"
+						+ " (or an unsupported version)");
+			}
+			record Header(int kind, String name, int needed, boolean signed,
+					int events, int length) {
+			}
+			int count = readInt(map);
+			List<Header> headers = new ArrayList<Header>();
+			for (int c = 0; c < count; c += 1) {
+				int kind = map.get();
+				if (kind != SIGNAL && kind != EXPECT) {
+					throw new IOException("unknown column kind " + kind);
+				}
+				byte[] name = new byte[readInt(map)];
+				map.get(name);
+				headers.add(new Header(kind,
+						new String(name, StandardCharsets.UTF_8), readInt(map),
+						map.get() != 0, readInt(map), readInt(map)));
+			}
+			List<Column> columns = new ArrayList<Column>();
+			int at = map.position();
+			for (Header h : headers) {
+				if (h.length() > map.limit() - at) {
+					throw new IOException("the file is truncated");
+				}
+				columns.add(new Column(h.kind(), h.name(), h.needed(),
+						h.signed(), h.events(), map.slice(at, h.length())));
+				at += h.length();
+			}
+			if (at != map.limit()) {
+				throw new IOException("there is extra content after the"
+						+ " last column");
+			}
+			return columns;
+		} catch (BufferUnderflowException e) {
+			throw new IOException("the file is truncated", e);
+		}
+	} // end of open method
+
+	/**
+	 * Convert a text test file (section 2 of docs/batch-interface.md)
+	 * to the binary format. Without a circuit the pin names and widths
+	 * are not checked; the run that reads the binary file checks them
+	 * as it would the text.
+	 *
+	 * @param text The text test file.
+	 * @param out Where to write the binary file.
+	 *
+	 * @throws IOException if a file cannot be read or written.
+	 * @throws IllegalArgumentException if the text is malformed; the
+	 *         message is the one a run of the text would report, and
+	 *         {@code for} durations must be positive.
+	 *
+	 * @jls.testedby jls.elem.VectorFileTest#aPackedFileRunsLikeItsText()
+	 * @jls.testedby jls.elem.VectorFileTest#malformedTextIsReportedAsARunWould()
+	 */
+	public static void pack(Path text, Path out) throws IOException {
+
+		String tokens;
+		try (Scanner input = new Scanner(text, StandardCharsets.UTF_8)) {
+			tokens = SigSim.clean(input);
+		}
+
+		// the first pass sizes each column's values, the second
+		// encodes them
+		List<Packer> columns = new ArrayList<Packer>();
+		parse(tokens, columns, false);
+		parse(tokens, columns, true);
+
+		try (DataOutputStream data = new DataOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(out)))) {
+			data.write(MAGIC);
+			writeVarint(data, columns.size());
+			for (Packer column : columns) {
+				data.writeByte(column.kind);
+				byte[] name = column.name.getBytes(StandardCharsets.UTF_8);
+				writeVarint(data, name.length);
+				data.write(name);
+				writeVarint(data, column.needed);
+				data.writeByte(column.signed ? 1 : 0);
+				writeVarint(data, column.count);
+				writeVarint(data, column.body.size());
+			}
+			for (Packer column : columns) {
+				column.body.writeTo(data);
+			}
+		}
+	} // end of pack method
+
+	/** One column being converted. */
+	private static final class Packer {
+
+		/** SIGNAL or EXPECT. */
+		final int kind;
+		/** The pin name. */
+		final String name;
+		/** The most bits any value needs. */
+		int needed = 0;
+		/** Whether any value is negative. */
+		boolean signed = false;
+		/** The number of events. */
+		int count = 0;
+		/** The encoded events (second pass). */
+		final ByteArrayOutputStream body = new ByteArrayOutputStream();
+		/** The time of the last event encoded (second pass). */
+		long last = 0;
+
+		/**
+		 * Create an empty column.
+		 *
+		 * @param kind SIGNAL or EXPECT.
+		 * @param name The pin name.
+		 */
+		Packer(int kind, String name) {
+
+			this.kind = kind;
+			this.name = name;
+		} // end of constructor
+
+		/**
+		 * Add one event: size it on the first pass, encode it on the
+		 * second.
+		 *
+		 * @param time The event time.
+		 * @param value The value, as written.
+		 * @param encode True on the second pass.
+		 */
+		void add(long time, BigInteger value, boolean encode) {
+
+			if (!encode) {
+				count += 1;
+				needed = Math.max(needed, value.signum() < 0
+						? value.bitLength() + 1 : value.bitLength());
+				signed |= value.signum() < 0;
+				return;
+			}
+			writeVarint(body, time - last);
+			last = time;
+			int width = signed ? needed + 1 : needed;
+			byte[] bytes = new byte[(width + 7) / 8];
+			BigInteger stored = value.signum() < 0
+					? value.add(BigInteger.ONE.shiftLeft(width)) : value;
+			for (int i = 0; i < bytes.length; i += 1) {
+				bytes[i] = stored.shiftRight(8 * i).byteValue();
+			}
+			body.writeBytes(bytes);
+		} // end of add method
+
+	} // end of Packer class
+
+	/**
+	 * Walk the cleaned tokens of a text test file, collecting (first
+	 * pass) or encoding (second pass) each clause's events. Error
+	 * messages match SigSim's, since the same text would fail the same
+	 * way in a run.
+	 *
+	 * @param tokens The tokens, as SigSim.clean leaves them.
+	 * @param columns The columns, added on the first pass.
+	 * @param encode True on the second pass.
+	 */
+	private static void parse(String tokens, List<Packer> columns,
+			boolean encode) {
+
+		Scanner input = new Scanner(tokens);
+		int index = 0;
+		while (input.hasNext()) {
+			String name = input.next();
+			boolean expect = name.equals("expect");
+			if (expect) {
+				if (!input.hasNext()) {
+					throw new IllegalArgumentException(
+							"expected output pin name after expect");
+				}
+				name = input.next();
+			}
+			if (!encode) {
+				columns.add(new Packer(expect ? EXPECT : SIGNAL, name));
+			}
+			Packer column = columns.get(index);
+			index += 1;
+
+			long time;
+			if (expect) {
+				time = -1;
+			}
+			else {
+				if (!input.hasNextBigInteger()) {
+					throw new IllegalArgumentException(
+							"missing or invalid initial value for signal "
+									+ name);
+				}
+				time = 0;
+				column.add(0, input.nextBigInteger(), encode);
+			}
+			String what = expect ? "expectation " : "signal ";
+			while (true) {
+				if (!input.hasNext()) {
+					throw new IllegalArgumentException("expected "
+							+ (expect ? "at" : "for, until") + " or end for "
+							+ what + name);
+				}
+				String type = input.next();
+				if (type.equals("end")) {
+					break;
+				}
+				long newTime;
+				if (type.equals("for") && !expect) {
+					if (!input.hasNextLong()) {
+						throw new IllegalArgumentException(
+								"missing or invalid duration for signal "
+										+ name);
+					}
+					long duration = input.nextLong();
+					if (duration <= 0) {
+						throw new IllegalArgumentException("duration "
+								+ duration + " is not positive for signal "
+								+ name);
+					}
+					newTime = time + duration;
+				}
+				else if (type.equals(expect ? "at" : "until")) {
+					if (!input.hasNextLong()) {
+						throw new IllegalArgumentException("missing or invalid "
+								+ (expect ? "time" : "until time") + " for "
+								+ what + name);
+					}
+					newTime = input.nextLong();
+					if (newTime <= time) {
+						throw new IllegalArgumentException(expect
+								? "expectation time not greater than previous"
+										+ " time for " + name
+								: "until time not greater than previous time"
+										+ " for signal " + name);
+					}
+				}
+				else {
+					throw new IllegalArgumentException("expected "
+							+ (expect ? "at" : "for, until") + " or end for "
+							+ what + name);
+				}
+				if (!input.hasNextBigInteger()) {
+					throw new IllegalArgumentException("expected value for "
+							+ what + name);
+				}
+				column.add(newTime, input.nextBigInteger(), encode);
+				time = newTime;
+			}
+		}
+	} // end of parse method
+
+	/**
+	 * Write an unsigned LEB128 varint.
+	 *
+	 * @param out Where to write it.
+	 * @param value The value, treated as unsigned.
+	 */
+	private static void writeVarint(OutputStream out, long value) {
+
+		try {
+			while ((value & ~0x7fL) != 0) {
+				out.write((int) (value & 0x7f) | 0x80);
+				value >>>= 7;
+			}
+			out.write((int) value);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	} // end of writeVarint method
+
+	/**
+	 * Read an unsigned LEB128 varint.
+	 *
+	 * @param in The buffer, positioned at the varint.
+	 *
+	 * @return the value.
+	 *
+	 * @throws IOException if the varint is truncated or too long.
+	 */
+	static long readVarint(ByteBuffer in) throws IOException {
+
+		long value = 0;
+		for (int shift = 0; shift < Long.SIZE; shift += 7) {
+			if (!in.hasRemaining()) {
+				throw new IOException("the file is truncated");
+			}
+			int b = in.get();
+			value |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("a varint is too long");
+	} // end of readVarint method
+
+	/**
+	 * Read a varint that must fit a non-negative int.
+	 *
+	 * @param in The buffer, positioned at the varint.
+	 *
+	 * @return the value.
+	 *
+	 * @throws IOException if it is truncated or out of range.
+	 */
+	private static int readInt(ByteBuffer in) throws IOException {
+
+		long value = readVarint(in);
+		if (value < 0 || value > Integer.MAX_VALUE) {
+			throw new IOException("a count is out of range");
+		}
+		return (int) value;
+	} // end of readInt method
+
+} // end of VectorFile class
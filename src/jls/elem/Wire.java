@@ -147,6 +147,16 @@ public final class Wire extends Element {
 		return net != null;
 	} // end of hasNet method
 
+	/**
+	 * Get the wire net this wire is in, if it is in one yet.
+	 *
+	 * @return the wire net, or null.
+	 */
+	public @Nullable WireNet getNet() {
+
+		return net;
+	} // end of getNet method
+
 	/**
 	 * Get the wire net this wire is in, requiring that it is in one. A wire
 	 * being drawn while a net is (re)built may have no net; the net-dependent
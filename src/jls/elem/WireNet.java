@@ -405,6 +405,18 @@ public class WireNet {
 	private @Nullable BitSet value = new BitSet(1);
 	/** True once a bus conflict has been reported, until it clears. */
 	private boolean conflictReported = false;	// bus-conflict warned already? (#98, S1)
+	/**
+	 * The trace signals this net feeds, or null if none: its probe names
+	 * and the names -trace selected it under, resolved once by the batch
+	 * simulator before a run, so an untraced net costs propagate nothing.
+	 */
+	private String @Nullable [] traceNames = null;
+	/**
+	 * Bumped whenever the value is replaced, so the interactive display's
+	 * value snapshots (jls.edit.ValueSnapshot) can tell a net changed
+	 * without comparing its value.
+	 */
+	private int version = 0;
 
 	/**
 	 * Set the value on this net.
@@ -418,6 +430,7 @@ public class WireNet {
 			this.value = null;
 		else
 			this.value = (BitSet)value.clone();
+		version += 1;
 	} // end of setValue method
 
 	/**
@@ -433,6 +446,87 @@ public class WireNet {
 			return (BitSet)value.clone();
 	} // end of getValue method
 
+	/**
+	 * See whether this net is undriven, without copying its value.
+	 *
+	 * @return true if the net's value is high-impedance (tri-state).
+	 *
+	 * @jls.testedby jls.sim.TestbenchTest#triStateNetsReadAsHighImpedance()
+	 */
+	public boolean isHighImpedance() {
+
+		return value == null;
+	} // end of isHighImpedance method
+
+	/**
+	 * Get the low 64 bits of the current value without copying it, for
+	 * callers that read a net after every step (jls.sim.Testbench).
+	 *
+	 * @return the value's low 64 bits, or 0 for a high-impedance value.
+	 *
+	 * @jls.testedby jls.sim.TestbenchTest#aCounterStepsEdgeByEdge()
+	 */
+	public long getLong() {
+
+		BitSet current = value;
+		if (current == null)
+			return 0;
+		long result = 0;
+		for (int i = current.nextSetBit(0); i >= 0 && i < Long.SIZE;
+				i = current.nextSetBit(i + 1)) {
+			result |= 1L << i;
+		}
+		return result;
+	} // end of getLong method
+
+	/**
+	 * Get the number of times the value has been replaced. Two reads
+	 * that agree saw the same value.
+	 *
+	 * @return the count, wrapping past Integer.MAX_VALUE.
+	 *
+	 * @jls.testedby jls.edit.ValueSnapshotTest#eachFrameCatchesUpOnTheChangesItMissed()
+	 */
+	public int getVersion() {
+
+		return version;
+	} // end of getVersion method
+
+	/**
+	 * Copy the current value into a caller's set without allocating, for
+	 * a reader that samples the net repeatedly (jls.edit.ValueSnapshot).
+	 *
+	 * @param into The set to overwrite; cleared for a high-impedance
+	 *        value.
+	 *
+	 * @return false for a high-impedance (tri-state) value, true
+	 *         otherwise.
+	 *
+	 * @jls.testedby jls.edit.ValueSnapshotTest#publishedFramesHoldTheValuesAtTheirTime()
+	 */
+	public boolean copyValue(BitSet into) {
+
+		BitSet current = value;
+		into.clear();
+		if (current == null)
+			return false;
+		into.or(current);
+		return true;
+	} // end of copyValue method
+
+	/**
+	 * Set the trace signals this net's value changes are reported to
+	 * (Simulator.probeSample), replacing any set for an earlier run.
+	 *
+	 * @param names The signal names, or null to report to none.
+	 *
+	 * @jls.testedby jls.sim.NetTraceTest#selectedNetsTraceAndOthersDoNot()
+	 */
+	public void setTraceNames(String @Nullable [] names) {
+
+		traceNames = names;
+	} // end of setTraceNames method
+
 	/**
 	 * Send a copy of the value to all inputs this net is connected to.
 	 *
@@ -499,7 +593,7 @@ public class WireNet {
 
 			// send it to the input
 			Input inp = (Input)p;
-			inp.setValue(newValue);
+			inp.setValue(newValue, now);
 			// the invisible-input sentinel has no owning element to
 			// notify, so there is nothing to react
 			LogicElement element = p.getElement();
@@ -514,15 +608,16 @@ public class WireNet {
 			this.value = null;
 		else
 			this.value = (BitSet)value.clone();
-
-		// feed probed nets to the batch VCD trace (issue #200): a probe
-		// names this net, so its value history is the net's. This is a
-		// no-op in the interactive engine (Simulator.probeSample is
-		// empty) and cheap otherwise - one field check per wire.
-		for (Wire wire : wires) {
-			String probe = wire.getProbe();
-			if (probe != null) {
-				sim.probeSample(probe, bits, now, this.value);
+		version += 1;
+
+		// feed probed and -trace selected nets to the batch VCD trace
+		// (issue #200): a probe names this net, so its value history is
+		// the net's. The batch simulator resolves the names before the
+		// run; every other net pays one field check.
+		String[] names = traceNames;
+		if (names != null) {
+			for (String name : names) {
+				sim.probeSample(name, bits, now, this.value);
 			}
 		}
 
@@ -1,6 +1,16 @@
 package jls.sim;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.regex.Pattern;
 
 import org.jspecify.annotations.Nullable;
 
@@ -20,28 +30,77 @@ import jls.elem.*;
  */
 public class BatchSimulator extends Simulator {
 
-	/** Per watched element, its recorded samples in time order. */
-	private Map<LogicElement,List<TraceSample>> eventTrace =
-		new HashMap<LogicElement,List<TraceSample>>();
+	/**
+	 * Per watched element, its recorded samples in time order, kept only
+	 * for the -r printer (JLSInfo.printTrace); VCD export streams to its
+	 * file instead (issue #72). Each trace is packed into primitive
+	 * arrays, a few bytes per sample.
+	 */
+	private Map<LogicElement,TraceBuffer> eventTrace =
+		new HashMap<LogicElement,TraceBuffer>();
+
+	/**
+	 * One traced signal: a watched element, a probed net (issue #200) or
+	 * a net selected by -trace, with its bit width and its value at
+	 * time 0.
+	 *
+	 * @param bits The signal's bit width.
+	 * @param initial Its time-0 value, HiZ as the marker BitSet.
+	 */
+	private record Signal(int bits, BitSet initial) { }
 
+	/** Per watched element, its signal, in the order found. */
+	private final Map<LogicElement,Signal> watchedSignals =
+		new LinkedHashMap<LogicElement,Signal>();
 	/**
-	 * Per probed net (keyed by probe name), its recorded samples in time
-	 * order (issue #200). Probes name a wire net rather than an element,
-	 * so they trace through a parallel map fed by
-	 * {@link #probeSample} and merged into the VCD by {@link #toVcd}.
+	 * Per probe name (issue #200) or -trace selected net name, its
+	 * signal, in name order.
 	 */
-	private final Map<String,List<TraceSample>> probeTrace =
-		new HashMap<String,List<TraceSample>>();
-	/** Per probed net, its bit width (issue #200). */
-	private final Map<String,Integer> probeBits =
+	private final Map<String,Signal> probeSignals =
+		new TreeMap<String,Signal>();
+	/** Per probed or selected net, the names it is traced under. */
+	private final Map<WireNet,Set<String>> netNames =
+		new LinkedHashMap<WireNet,Set<String>>();
+	/**
+	 * Per watched element, its signal's index: its place in the VCD, or
+	 * past the VCD's signals for an element whose full name an earlier
+	 * one already has, traced for the -r printer only.
+	 */
+	private final Map<LogicElement,Integer> watchedIndex =
+		new HashMap<LogicElement,Integer>();
+	/** Per probe or selected net name, its signal's index in the VCD. */
+	private final Map<String,Integer> probeIndex =
 		new HashMap<String,Integer>();
+	/** Per signal index, its VCD name. */
+	private List<String> signalNames = new ArrayList<String>();
+	/** Per signal index, its bit width. */
+	private int[] signalBits = new int[0];
+	/** Per signal index, the last value recorded. */
+	private BitSet[] lastValue = new BitSet[0];
+	/** Per signal index, its HiZ marker value, shared by every sample. */
+	private BitSet[] hiZ = new BitSet[0];
 
 	/**
 	 * VCD export (issue #72): the file to write, or null for no export.
-	 * A non-null value enables trace accumulation in afterEvent even
-	 * when the -r printer flag (JLSInfo.printTrace) is off.
+	 * A non-null value enables tracing in afterEvent even when the -r
+	 * printer flag (JLSInfo.printTrace) is off.
 	 */
 	private @Nullable String vcdFileName = null;
+	/** The channel the VCD streams to during runSim. */
+	private @Nullable FileChannel vcdChannel = null;
+	/**
+	 * The writer streaming the VCD during runSim: VCD text, or a
+	 * block-compressed waveform file if the name ends in
+	 * {@link WaveFile#EXTENSION}.
+	 */
+	private @Nullable TraceWriter vcd = null;
+	/** The first failure writing the VCD, reported by writeVcd. */
+	private @Nullable IOException vcdError = null;
+	/** The memory access logs being written (-memlog), by element. */
+	private final Map<LogicElement,MemoryLog> memLogs =
+		new LinkedHashMap<LogicElement,MemoryLog>();
+	/** The first failure to write a memory access log, or null. */
+	private @Nullable IOException memLogError = null;
 
 	/**
 	 * Create a new Simulator object.
@@ -117,16 +176,40 @@ public class BatchSimulator extends Simulator {
 		// find watched elements and set up trace map
 		findWatched(circuit());
 
-		// register probed nets so they trace into the VCD alongside
-		// watched elements (issue #200); only when a trace consumer is
-		// active, matching afterEvent's gate
-		if (JLSInfo.printTrace || vcdFileName != null) {
-			findProbes(circuit());
-		}
+		// register probed nets, and the nets -trace selects, so they
+		// trace into the VCD alongside watched elements (issue #200);
+		// only when a trace consumer is active, matching afterEvent's
+		// gate. Every net's hook is reset, so one left by an earlier
+		// run traces nothing.
+		boolean tracing = JLSInfo.printTrace || vcdFileName != null;
+		Pattern select = vcdFileName != null && !JLSInfo.tracePatterns.isEmpty()
+				? globPattern(JLSInfo.tracePatterns) : null;
+		findNets(circuit(), tracing, select, new HashSet<WireNet>());
+
+		// start the VCD: the header and time-0 values go out now, later
+		// changes as the run passes each timestamp
+		declareSignals();
+		hookNets();
+		openVcd();
+		openMemLogs();
 
 		// run the shared event loop (tracing happens in afterEvent and,
 		// for probed nets, in probeSample via WireNet.propagate)
-		runEventLoop();
+		try {
+			runEventLoop();
+
+			// expectations due after the last event are checked against
+			// the final values
+			finishExpectations();
+		} catch (RuntimeException | Error e) {
+			// an aborted run leaves no partial VCD behind; the memory
+			// logs keep what it did
+			closeVcd(false);
+			closeMemLogs();
+			throw e;
+		}
+		closeVcd(true);
+		closeMemLogs();
 
 	} // end of runSim
 
@@ -139,8 +222,8 @@ public class BatchSimulator extends Simulator {
 	@Override
 	protected void afterEvent(SimEvent event) {
 
-		// accumulate when any trace consumer is active: the -r printer
-		// or the -vcd exporter (issue #72)
+		// trace when any trace consumer is active: the -r printer or the
+		// -vcd exporter (issue #72)
 		if (!JLSInfo.printTrace && vcdFileName == null)
 			return;
 
@@ -148,37 +231,59 @@ public class BatchSimulator extends Simulator {
 		LogicElement el = (LogicElement)event.getCallBack();
 		if (el instanceof Watchable watchable && watchable.isWatched()) {
 
-			// get the event trace for this element,
-			// or create one if none yet
-			// findWatched registered every watched element with a time-0
-			// entry before the event loop started, so an element without
-			// one has no trace to extend (issue #93)
-			List<TraceSample> events = eventTrace.get(el);
-			if (events == null)
+			// findWatched registered every watched element before the
+			// event loop started, so an element without a signal has no
+			// trace to extend (issue #93)
+			Integer index = watchedIndex.get(el);
+			if (index == null)
 				return;
 
-			// create bitset for HiZ
-			BitSet off = new BitSet(el.getBits()+1);
-			off.set(el.getBits());
-
 			// normalize a HiZ (null) value to the marker BitSet before
 			// comparing, so a value that stays HiZ is not recorded as a
 			// change on every react (issue #72)
 			BitSet current = el.getCurrentValue();
-			if (current == null)
-				current = off;
-
-			// add an event to the end of the event list
-			// (but not if the same value)
-			TraceSample prev = events.getLast();
-			if (!prev.value().equals(current)) {
+			if (current == null) {
+				current = hiZ[index];
+			}
 
-				// add only if different
-				events.add(new TraceSample(event.getTime(),current));
+			// record only if different
+			if (record(index, event.getTime(), current)) {
+				TraceBuffer events = eventTrace.get(el);
+				if (events != null) {
+					events.add(event.getTime(),current);
+				}
 			}
 		}
 	} // end of afterEvent method
 
+	/**
+	 * Record a signal's value if it differs from the last one recorded,
+	 * streaming it to the VCD if one is being written.
+	 *
+	 * @param index The signal's index.
+	 * @param time The simulation time.
+	 * @param value The value, HiZ as the marker BitSet; not modified
+	 *        afterwards.
+	 *
+	 * @return true if the value was a change.
+	 */
+	private boolean record(int index, long time, BitSet value) {
+
+		if (lastValue[index].equals(value)) {
+			return false;
+		}
+		lastValue[index] = value;
+		TraceWriter writer = vcd;
+		if (writer != null && index < signalNames.size()) {
+			try {
+				writer.change(index, time, value);
+			} catch (IOException e) {
+				failVcd(e);
+			}
+		}
+		return true;
+	} // end of record method
+
 	/**
 	 * Create and add TestGen element to circuit.
 	 * Remove any SigGen's in the circuit.
@@ -212,8 +317,9 @@ public class BatchSimulator extends Simulator {
 	} // end of addTestGen method
 
 	/**
-	 * Find all watched elements and add entries to batch trace map.
-	 * Recursively checks all subcircuits.
+	 * Find all watched elements, register each as a signal with its
+	 * time-0 value, and start its entry in the batch trace map if the
+	 * -r printer is on. Recursively checks all subcircuits.
 	 *
 	 * @param circ The circuit (or subcircuit) to look in.
 	 */
@@ -225,66 +331,261 @@ public class BatchSimulator extends Simulator {
 			}
 			else if (el instanceof Watchable watchable && watchable.isWatched()) {
 				LogicElement lel = (LogicElement)el;
-				List<TraceSample> events = new LinkedList<TraceSample>();
 				BitSet value = lel.getCurrentValue();
 				if (value == null) {
 					value = new BitSet(lel.getBits()+1);
 					value.set(lel.getBits());
 				}
-				events.add(new TraceSample(0,value));
-				eventTrace.put(lel,events);
+				if (JLSInfo.printTrace) {
+					TraceBuffer events = new TraceBuffer(lel.getBits());
+					events.add(0,value);
+					eventTrace.put(lel,events);
+				}
+				watchedSignals.put(lel, new Signal(lel.getBits(), value));
 			}
 		}
 	} // end of findWatched method
 
 	/**
-	 * Find all probed nets and seed each with a time-0 sample, so every
-	 * probe has a VCD $dumpvars baseline and appears even if its value
-	 * never changes (issue #200). Recurses into subcircuits. Wires are
-	 * elements of the circuit (Circuit.getElements includes them), and a
-	 * probe is attached to a wire; several wire segments of one net may
-	 * carry the same probe name, so the first registration wins.
+	 * Find all probed nets, and the nets the -trace patterns select, and
+	 * register each with its time-0 value, so every one has a VCD
+	 * $dumpvars baseline and appears even if its value never changes
+	 * (issue #200). Recurses into subcircuits. Wires are elements of the
+	 * circuit (Circuit.getElements includes them), and a probe is
+	 * attached to a wire; several wire segments of one net may carry the
+	 * same probe name, so the first registration wins. Each net found
+	 * has the hook left by an earlier run cleared.
 	 *
 	 * @param circ The circuit (or subcircuit) to look in.
+	 * @param tracing True if a trace consumer is active.
+	 * @param select The -trace patterns, or null for none.
+	 * @param seen The nets already looked at.
 	 */
-	private void findProbes(Circuit circ) {
+	private void findNets(Circuit circ, boolean tracing,
+			@Nullable Pattern select, Set<WireNet> seen) {
 
 		for (Element el : circ.getElements()) {
 			if (el instanceof SubCircuit sub) {
-				findProbes(sub.getSubCircuit());
+				findNets(sub.getSubCircuit(), tracing, select, seen);
 			}
-			else if (el instanceof Wire wire && wire.hasProbe()) {
-				String name = wire.getProbe();
-				if (probeTrace.containsKey(name)) {
-					continue;
+			else if (el instanceof Wire wire && wire.hasNet()) {
+				WireNet net = wire.getEnd().getNet();
+				String probe = wire.getProbe();
+				if (tracing && probe != null) {
+					traceNet(probe, net);
 				}
-				int bits = wire.getBits();
-				BitSet value = wire.getValue();
-				BitSet sample;
-				if (value == null) {
-					sample = new BitSet(bits + 1);
-					sample.set(bits);
+				// a net's drivers are looked at with its first wire
+				if (seen.add(net)) {
+					net.setTraceNames(null);
+					if (select != null) {
+						selectNet(net, select);
+					}
+				}
+			}
+		}
+	} // end of findNets method
+
+	/**
+	 * Trace a net under the name of each of its drivers that a -trace
+	 * pattern matches, either as the net's name or as its driving
+	 * element's name (docs/batch-interface.md section 4.1).
+	 *
+	 * @param net The net.
+	 * @param select The -trace patterns.
+	 */
+	private void selectNet(WireNet net, Pattern select) {
+
+		for (WireEnd end : net.getAllEnds()) {
+			if (!(end.getPut() instanceof Output out)) {
+				continue;
+			}
+			LogicElement driver = out.getElement();
+			if (driver == null) {
+				continue;
+			}
+			String element = driverName(driver);
+			String output = out.getName();
+			String name = output == null ? element : element + "." + output;
+			if (select.matcher(name).matches()
+					|| select.matcher(element).matches()) {
+				traceNet(name, net);
+			}
+		}
+	} // end of selectNet method
+
+	/**
+	 * Register a net's signal under a name, if the name is new, and add
+	 * the name to those the net reports to.
+	 *
+	 * @param name The probe or net name.
+	 * @param net The net.
+	 */
+	private void traceNet(String name, WireNet net) {
+
+		if (!probeSignals.containsKey(name)) {
+			int bits = net.getBits();
+			BitSet value = net.getValue();
+			BitSet sample;
+			if (value == null) {
+				sample = new BitSet(bits + 1);
+				sample.set(bits);
+			}
+			else {
+				sample = value;
+			}
+			probeSignals.put(name, new Signal(bits, sample));
+		}
+		netNames.computeIfAbsent(net, n -> new LinkedHashSet<String>())
+				.add(name);
+	} // end of traceNet method
+
+	/**
+	 * Give each probed or selected net its names, the hook through
+	 * which WireNet.propagate reports its changes to probeSample.
+	 */
+	private void hookNets() {
+
+		for (Map.Entry<WireNet,Set<String>> e : netNames.entrySet()) {
+			e.getKey().setTraceNames(e.getValue().toArray(new String[0]));
+		}
+	} // end of hookNets method
+
+	/**
+	 * The hierarchical name of an element driving a net: its full name,
+	 * or for an unnamed element (a gate, say) the path of the subcircuit
+	 * it is in followed by its kind and id, as in
+	 * {@code cpu.alu.AndGate_12}.
+	 *
+	 * @param el The element.
+	 *
+	 * @return the name.
+	 */
+	static String driverName(LogicElement el) {
+
+		String name = el.getName();
+		if (name == null || name.isEmpty()) {
+			return el.getFullName() + el.getClass().getSimpleName() + "_"
+					+ el.getID();
+		}
+		return el.getFullName();
+	} // end of driverName method
+
+	/**
+	 * Compile -trace glob patterns into one regular expression matching
+	 * a name any of them matches: {@code *} matches any run of
+	 * characters, dots included, {@code ?} any one character, and every
+	 * other character itself.
+	 *
+	 * @param globs The patterns.
+	 *
+	 * @return the expression.
+	 *
+	 * @jls.testedby jls.sim.NetTraceTest#globsMatchHierarchicalNames()
+	 */
+	static Pattern globPattern(List<String> globs) {
+
+		StringBuilder regex = new StringBuilder();
+		for (String glob : globs) {
+			if (regex.length() > 0) {
+				regex.append('|');
+			}
+			for (int i = 0; i < glob.length(); i += 1) {
+				char c = glob.charAt(i);
+				if (c == '*') {
+					regex.append(".*");
+				}
+				else if (c == '?') {
+					regex.append('.');
+				}
+				else if (Character.isLetterOrDigit(c)) {
+					regex.append(c);
 				}
 				else {
-					sample = (BitSet) value.clone();
+					regex.append('\\').append(c);
 				}
-				List<TraceSample> events = new LinkedList<TraceSample>();
-				events.add(new TraceSample(0, sample));
-				probeTrace.put(name, events);
-				probeBits.put(name, bits);
 			}
 		}
-	} // end of findProbes method
+		return Pattern.compile(regex.toString());
+	} // end of globPattern method
+
+	/**
+	 * Number the watched elements and probed nets as one signal set,
+	 * in full-name order, which fixes the VCD's header, identifier codes
+	 * and per-timestamp change order. A probe name that collides with an
+	 * element's full name is disambiguated so neither signal is silently
+	 * dropped.
+	 */
+	private void declareSignals() {
+
+		// two elements with one full name would be one VCD signal: the
+		// first found is in the VCD, the others are traced after it
+		TreeMap<String,Signal> all = new TreeMap<String,Signal>();
+		Map<String,LogicElement> named = new HashMap<String,LogicElement>();
+		for (Map.Entry<LogicElement,Signal> e : watchedSignals.entrySet()) {
+			String name = e.getKey().getFullName();
+			if (named.putIfAbsent(name, e.getKey()) == null) {
+				all.put(name, e.getValue());
+			}
+		}
+		Map<String,String> probeKeys = new HashMap<String,String>();
+		for (Map.Entry<String,Signal> e : probeSignals.entrySet()) {
+			String key = e.getKey();
+			while (all.containsKey(key)) {
+				key = key + "_probe";
+			}
+			all.put(key, e.getValue());
+			probeKeys.put(key, e.getKey());
+		}
+		Map<String,Integer> order = new HashMap<String,Integer>();
+		int count = all.size() + watchedSignals.size() - named.size();
+		signalBits = new int[count];
+		lastValue = new BitSet[count];
+		hiZ = new BitSet[count];
+		for (Map.Entry<String,Signal> e : all.entrySet()) {
+			String probe = probeKeys.get(e.getKey());
+			if (probe != null) {
+				probeIndex.put(probe, order.size());
+			}
+			declare(order.size(), e.getValue());
+			order.put(e.getKey(), order.size());
+		}
+		int extra = all.size();
+		for (Map.Entry<LogicElement,Signal> e : watchedSignals.entrySet()) {
+			LogicElement el = e.getKey();
+			Integer index = order.get(el.getFullName());
+			if (index == null || named.get(el.getFullName()) != el) {
+				index = extra;
+				declare(extra, e.getValue());
+				extra += 1;
+			}
+			watchedIndex.put(el, index);
+		}
+		signalNames = new ArrayList<String>(all.keySet());
+	} // end of declareSignals method
+
+	/**
+	 * Fill in one signal's slot.
+	 *
+	 * @param index The signal's index.
+	 * @param signal Its width and time-0 value.
+	 */
+	private void declare(int index, Signal signal) {
+
+		signalBits[index] = signal.bits();
+		lastValue[index] = signal.initial();
+		hiZ[index] = new BitSet(signal.bits() + 1);
+		hiZ[index].set(signal.bits());
+	} // end of declare method
 
 	/**
 	 * Record a probed net's value change (issue #200), mirroring
-	 * {@link #afterEvent}'s dedup: extend the probe's sample list only
-	 * when the value differs from the previous one, and normalize HiZ to
-	 * the marker BitSet so a net that stays undriven is not re-recorded
-	 * on every propagate. A probe not registered by {@link #findProbes}
-	 * (tracing off) is ignored.
+	 * {@link #afterEvent}'s dedup: record the value only when it differs
+	 * from the previous one, and normalize HiZ to the marker BitSet so a
+	 * net that stays undriven is not re-recorded on every propagate. A
+	 * name not registered by {@link #findNets} (tracing off) is ignored.
+	 * Nets selected by -trace report here the same way.
 	 *
-	 * @param name  The probe name.
+	 * @param name  The probe or selected net name.
 	 * @param bits  The net's bit width.
 	 * @param time  The simulation time of the change.
 	 * @param value The net's new value, or null for HiZ.
@@ -298,17 +599,21 @@ public class BatchSimulator extends Simulator {
 		if (!JLSInfo.printTrace && vcdFileName == null) {
 			return;
 		}
-		List<TraceSample> events = probeTrace.get(name);
-		if (events == null) {
+		Integer index = probeIndex.get(name);
+		if (index == null) {
 			return;
 		}
-		BitSet off = new BitSet(bits + 1);
-		off.set(bits);
-		BitSet current = (value == null) ? off : (BitSet) value.clone();
-		TraceSample prev = events.getLast();
-		if (!prev.value().equals(current)) {
-			events.add(new TraceSample(time, current));
+		BitSet current;
+		if (value == null) {
+			current = hiZ[index];
 		}
+		else if (value.equals(lastValue[index])) {
+			return;
+		}
+		else {
+			current = (BitSet) value.clone();
+		}
+		record(index, time, current);
 	} // end of probeSample method
 
 	/**
@@ -318,8 +623,8 @@ public class BatchSimulator extends Simulator {
 	 * time-0 sample (findWatched guarantees it), with HiZ values
 	 * encoded as the marker BitSet described in {@link TraceSample}.
 	 *
-	 * Traces accumulate only when a consumer was enabled before runSim
-	 * (the -r printer flag or a VCD file).
+	 * Traces accumulate only when the -r printer flag was on before
+	 * runSim; a VCD file is written as the run goes and keeps no trace.
 	 *
 	 * @return a read-only view of the trace map.
 	 *
@@ -328,13 +633,18 @@ public class BatchSimulator extends Simulator {
 	 */
 	public Map<LogicElement,List<TraceSample>> getTraceSamples() {
 
-		return Collections.unmodifiableMap(eventTrace);
+		Map<LogicElement,List<TraceSample>> views =
+			new HashMap<LogicElement,List<TraceSample>>();
+		for (Map.Entry<LogicElement,TraceBuffer> e : eventTrace.entrySet()) {
+			views.put(e.getKey(), e.getValue().asList());
+		}
+		return Collections.unmodifiableMap(views);
 	} // end of getTraceSamples method
 
 	/**
 	 * Set the VCD output file name, or null for no VCD export.
-	 * Must be called before runSim so that afterEvent accumulates the
-	 * trace (issue #72).
+	 * Must be called before runSim, which writes the file as it runs
+	 * (issue #72).
 	 *
 	 * @param fileName The VCD file to write, or null.
 	 *
@@ -347,212 +657,229 @@ public class BatchSimulator extends Simulator {
 	} // end of setVcdFile method
 
 	/**
-	 * Write the accumulated trace of all watched elements to the file
-	 * given to setVcdFile, as IEEE 1364-2001 (section 18) VCD.
+	 * Open the VCD file, if one was set, and write its header and
+	 * time-0 values. A file that cannot be opened is reported by
+	 * writeVcd after the run, which goes ahead without it.
+	 */
+	private void openVcd() {
+
+		String fileName = vcdFileName;
+		if (fileName == null) {
+			return;
+		}
+		try {
+			FileChannel channel = FileChannel.open(Paths.get(fileName),
+					StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING);
+			vcdChannel = channel;
+			if (WaveFile.isWaveFileName(fileName)) {
+				vcd = new WaveFile.Writer(channel, circuit().getName(),
+						signalNames, signalBits, lastValue);
+			}
+			else {
+				vcd = new VcdWriter(channel, circuit().getName(),
+						signalNames, signalBits, lastValue);
+			}
+		} catch (IOException e) {
+			failVcd(e);
+		}
+	} // end of openVcd method
+
+	/**
+	 * Finish or abandon the VCD file: a completed run gets its closing
+	 * timestamp, an aborted one has its partial file removed.
+	 *
+	 * @param complete True if the run completed.
+	 */
+	private void closeVcd(boolean complete) {
+
+		FileChannel channel = vcdChannel;
+		TraceWriter writer = vcd;
+		vcd = null;
+		vcdChannel = null;
+		if (channel == null) {
+			return;
+		}
+		try (channel) {
+			if (complete && writer != null) {
+				writer.finish(now);
+			}
+		} catch (IOException e) {
+			failVcd(e);
+		}
+		String fileName = vcdFileName;
+		if (!complete && fileName != null) {
+			try {
+				Files.deleteIfExists(Paths.get(fileName));
+			} catch (IOException e) {
+				// nothing more to do: the run failed anyway
+			}
+		}
+	} // end of closeVcd method
+
+	/**
+	 * Note a VCD write failure and stop writing; the run goes on and
+	 * writeVcd reports the first failure.
+	 *
+	 * @param e The failure.
+	 */
+	private void failVcd(IOException e) {
+
+		if (vcdError == null) {
+			vcdError = e;
+		}
+		vcd = null;
+	} // end of failVcd method
+
+	/**
+	 * Report how writing the VCD file given to setVcdFile went. runSim
+	 * writes the file as it runs, as IEEE 1364-2001 (section 18) VCD,
+	 * so all that is left is to report a failure.
 	 *
-	 * @throws java.io.IOException if the file cannot be written.
+	 * @throws IOException if the file could not be written.
 	 * @throws IllegalStateException if setVcdFile has not been called
 	 *         with a non-null file name.
 	 *
 	 * @jls.testedby jls.VcdExportGoldenTest#clockedRegisterVcdMatchesGoldenByteForByte()
 	 */
-	public void writeVcd() throws java.io.IOException {
+	public void writeVcd() throws IOException {
 
-		String fileName = vcdFileName;
-		if (fileName == null) {
+		if (vcdFileName == null) {
 			throw new IllegalStateException(
 					"setVcdFile was not called before writeVcd");
 		}
-		java.nio.file.Files.write(
-				java.nio.file.Paths.get(fileName),
-				toVcd().getBytes(java.nio.charset.StandardCharsets.UTF_8));
+		IOException error = vcdError;
+		if (error != null) {
+			throw error;
+		}
 	} // end of writeVcd method
 
 	/**
-	 * Render the accumulated trace of all watched elements as an IEEE
-	 * 1364-2001 (section 18) Value Change Dump. The exact format is a
-	 * compatibility contract documented in docs/batch-interface.md
-	 * (issue #72). Deterministic by construction: signals are declared
-	 * and dumped in full-name order, no $date/$version headers, one
-	 * JLS simulation time unit per VCD time unit (timescale 1 ns).
+	 * Start an access log for every Memory and RegisterFile, if -memlog
+	 * names a directory: one file per element, named by its
+	 * hierarchical name. A log that cannot be created is reported by
+	 * writeMemLogs after the run, which goes ahead without it.
+	 */
+	private void openMemLogs() {
+
+		memLogError = null;
+		String dirName = JLSInfo.memLogDir;
+		if (dirName == null) {
+			return;
+		}
+		try {
+			Path dir = Paths.get(dirName);
+			Files.createDirectories(dir);
+			openMemLogs(circuit(), dir);
+		} catch (IOException | RuntimeException e) {
+			if (memLogError == null) {
+				memLogError = e instanceof IOException io ? io
+						: new IOException(e.getMessage(), e);
+			}
+		}
+	} // end of openMemLogs method
+
+	/**
+	 * Start the access logs of the memories in a circuit and its
+	 * subcircuits.
 	 *
-	 * @return the complete VCD text.
+	 * @param circ The circuit (or subcircuit) to look in.
+	 * @param dir The directory to write them in.
 	 *
-	 * @jls.testedby jls.VcdExportGoldenTest#clockedRegisterVcdMatchesGoldenByteForByte()
-	 * @jls.testedby jls.VcdExportGoldenTest#testVectorStimulusVcdMatchesGoldenAndCoversHiZ()
+	 * @throws IOException if a log cannot be created.
 	 */
-	public String toVcd() {
-
-		StringBuilder out = new StringBuilder();
-
-		// unify watched elements and probed nets (issue #200) into one
-		// signal set, keyed by full name for a deterministic header,
-		// identifier assignment, and per-timestamp change order. Each
-		// signal carries its bit width and its folded time -> value
-		// history; the change times accumulate into a shared set.
-		record Sig(int bits, TreeMap<Long,BitSet> byTime) { }
-		TreeMap<String,Sig> signals = new TreeMap<String,Sig>();
-		TreeSet<Long> times = new TreeSet<Long>();
-		for (Map.Entry<LogicElement,List<TraceSample>> e
-				: eventTrace.entrySet()) {
-			signals.put(e.getKey().getFullName(),
-					new Sig(e.getKey().getBits(), fold(e.getValue(), times)));
-		}
-		for (Map.Entry<String,List<TraceSample>> e : probeTrace.entrySet()) {
-			// a probe name that collides with an element's full name is
-			// disambiguated so neither signal is silently dropped
-			String key = e.getKey();
-			while (signals.containsKey(key)) {
-				key = key + "_probe";
-			}
-			signals.put(key, new Sig(
-					Objects.requireNonNull(probeBits.get(e.getKey())),
-					fold(e.getValue(), times)));
-		}
-
-		Map<String,String> codes = new HashMap<String,String>();
-		int next = 0;
-		for (String name : signals.keySet()) {
-			codes.put(name, vcdId(next));
-			next += 1;
-		}
-
-		// header: no $date/$version sections (both optional in the
-		// standard) so the same run always produces the same bytes
-		out.append("$comment JLS batch simulation trace $end\n");
-		out.append("$timescale 1 ns $end\n");
-		out.append("$scope module ").append(circuit().getName())
-			.append(" $end\n");
-		for (Map.Entry<String,Sig> e : signals.entrySet()) {
-			int bits = e.getValue().bits();
-			out.append("$var wire ").append(bits).append(' ')
-				.append(codes.get(e.getKey())).append(' ')
-				.append(e.getKey());
-			if (bits > 1) {
-				out.append(" [").append(bits - 1).append(":0]");
-			}
-			out.append(" $end\n");
-		}
-		out.append("$upscope $end\n");
-		out.append("$enddefinitions $end\n");
-
-		// initial values (findWatched/findProbes guarantee a time-0 entry
-		// for every watched element and probed net)
-		out.append("#0\n");
-		out.append("$dumpvars\n");
-		for (Map.Entry<String,Sig> e : signals.entrySet()) {
-			BitSet value = Objects.requireNonNull(
-					e.getValue().byTime().get(0L));
-			out.append(vcdValue(e.getValue().bits(), value,
-					Objects.requireNonNull(codes.get(e.getKey()))))
-				.append('\n');
-		}
-		out.append("$end\n");
-
-		// subsequent changes, grouped by ascending time, signals in
-		// name order within each timestamp
-		long last = 0;
-		for (long t : times) {
-			if (t == 0) {
-				continue;
+	private void openMemLogs(Circuit circ, Path dir) throws IOException {
+
+		for (Element el : circ.getElements()) {
+			if (el instanceof SubCircuit sub) {
+				openMemLogs(sub.getSubCircuit(), dir);
 			}
-			out.append('#').append(t).append('\n');
-			for (Map.Entry<String,Sig> e : signals.entrySet()) {
-				BitSet value = e.getValue().byTime().get(t);
-				if (value != null) {
-					out.append(vcdValue(e.getValue().bits(), value,
-							Objects.requireNonNull(codes.get(e.getKey()))))
-						.append('\n');
+			else if (el instanceof Memory || el instanceof RegisterFile) {
+				LogicElement lel = (LogicElement) el;
+				MemoryLog log = new MemoryLog(
+						dir.resolve(driverName(lel) + MemoryLog.EXTENSION),
+						lel.getBits(), MemoryLog.DEFAULT_CAPACITY);
+				memLogs.put(lel, log);
+				if (el instanceof Memory mem) {
+					mem.setAccessLog(log);
+				}
+				else if (el instanceof RegisterFile file) {
+					file.setAccessLog(log);
 				}
 			}
-			last = t;
-		}
-
-		// a final timestamp so viewers show the full simulated duration
-		if (now > last) {
-			out.append('#').append(now).append('\n');
 		}
-		return out.toString();
-	} // end of toVcd method
+	} // end of openMemLogs method
 
 	/**
-	 * Fold a signal's ordered samples into a time -> value map (the last
-	 * sample recorded at a given time wins) and add its change times to
-	 * the shared set, so watched elements and probed nets share one
-	 * timeline (issue #200).
-	 *
-	 * @param samples The signal's samples, oldest first.
-	 * @param times   The shared change-time set to extend.
-	 *
-	 * @return the time -> value map for this signal.
+	 * Detach and finish every access log, waiting for its writer.
 	 */
-	private static TreeMap<Long,BitSet> fold(List<TraceSample> samples,
-			TreeSet<Long> times) {
+	private void closeMemLogs() {
 
-		TreeMap<Long,BitSet> byTime = new TreeMap<Long,BitSet>();
-		for (TraceSample ev : samples) {
-			byTime.put(ev.time(), ev.value());
-			times.add(ev.time());
+		for (Map.Entry<LogicElement,MemoryLog> e : memLogs.entrySet()) {
+			if (e.getKey() instanceof Memory mem) {
+				mem.setAccessLog(null);
+			}
+			else if (e.getKey() instanceof RegisterFile file) {
+				file.setAccessLog(null);
+			}
+			try {
+				e.getValue().close();
+			} catch (IOException ex) {
+				if (memLogError == null) {
+					memLogError = ex;
+				}
+			}
 		}
-		return byTime;
-	} // end of fold method
+		memLogs.clear();
+	} // end of closeMemLogs method
 
 	/**
-	 * The VCD identifier code for the n'th signal: the printable ASCII
-	 * characters '!' (33) through '~' (126), extended to multiple
-	 * characters after 94 signals, assigned in signal-name order.
+	 * Report how writing the -memlog access logs went. runSim writes
+	 * them as it runs and finishes them when it ends.
 	 *
-	 * @param index The zero-based signal number.
+	 * @throws IOException if a log could not be written.
 	 *
-	 * @return the identifier code.
+	 * @jls.testedby jls.sim.MemoryLogTest#aRunLogsEveryAccess()
 	 */
-	private static String vcdId(int index) {
+	public void writeMemLogs() throws IOException {
 
-		StringBuilder code = new StringBuilder();
-		int n = index + 1;
-		while (n > 0) {
-			n -= 1;
-			code.insert(0, (char)('!' + n % 94));
-			n /= 94;
+		IOException error = memLogError;
+		if (error != null) {
+			throw error;
 		}
-		return code.toString();
-	} // end of vcdId method
+	} // end of writeMemLogs method
 
 	/**
-	 * One VCD value-change entry. JLS values are two-state plus HiZ,
-	 * so only 0, 1 and z ever appear ('x' never does): a single-bit
-	 * signal becomes its value directly followed by the identifier
-	 * code ({@code 0c}, {@code 1c} or {@code zc}); a multi-bit signal
-	 * becomes a binary vector {@code b<value> <code>} with leading
-	 * zeros omitted, or {@code bz <code>} when the whole signal is
-	 * HiZ.
+	 * The Value Change Dump runSim wrote for all watched elements and
+	 * probed nets. The exact format is a compatibility contract
+	 * documented in docs/batch-interface.md (issue #72). Deterministic by
+	 * construction: signals are declared and dumped in full-name order,
+	 * no $date/$version headers, one JLS simulation time unit per VCD
+	 * time unit (timescale 1 ns). A waveform file is converted to the
+	 * VCD text it stands for.
 	 *
-	 * @param bits The signal's bit width (a watched element's or a
-	 *        probed net's, issue #200).
-	 * @param value The recorded value, with HiZ encoded as the trace's
-	 *        marker BitSet (only bit {@code bits} set).
-	 * @param code The signal's identifier code.
+	 * @return the complete VCD text.
+	 *
+	 * @throws IOException if the file was not written or cannot be read.
+	 * @throws IllegalStateException if setVcdFile has not been called
+	 *         with a non-null file name.
 	 *
-	 * @return the value-change line, without the newline.
+	 * @jls.testedby jls.VcdExportGoldenTest#clockedRegisterVcdMatchesGoldenByteForByte()
+	 * @jls.testedby jls.VcdExportGoldenTest#testVectorStimulusVcdMatchesGoldenAndCoversHiZ()
 	 */
-	private static String vcdValue(int bits, BitSet value,
-			String code) {
-
-		BitSet off = new BitSet(bits + 1);
-		off.set(bits);
-		boolean hiZ = value.equals(off);
-		if (bits == 1) {
-			if (hiZ) {
-				return "z" + code;
+	public String toVcd() throws IOException {
+
+		writeVcd();
+		Path file = Paths.get(Objects.requireNonNull(vcdFileName));
+		if (WaveFile.isWaveFileName(file.toString())) {
+			ByteArrayOutputStream text = new ByteArrayOutputStream();
+			try (WaveFile wave = WaveFile.open(file)) {
+				wave.writeVcd(Channels.newChannel(text));
 			}
-			return (BitSetUtils.ToLong(value) == 0 ? "0" : "1") + code;
-		}
-		if (hiZ) {
-			return "bz " + code;
+			return text.toString(StandardCharsets.UTF_8);
 		}
-		return "b" + BitSetUtils.ToBigInteger(value).toString(2)
-				+ " " + code;
-	} // end of vcdValue method
+		return Files.readString(file, StandardCharsets.UTF_8);
+	} // end of toVcd method
 
 	/**
 	 * Display reason for stopping and the time at which it stopped.
@@ -571,4 +898,36 @@ public class BatchSimulator extends Simulator {
 		System.out.println(reason + " at " + now);
 	} // end of displayOutcome method
 
+	/**
+	 * Display the expectation report, if the test file had any
+	 * expectations: a summary line, then one line per mismatch.
+	 *
+	 * @jls.testedby jls.sim.ExpectationTest#theFirstMismatchStopsTheRunEarly()
+	 */
+	public void displayExpectations() {
+
+		int failed = getMismatches().size();
+		int unreached = getExpectationsUnreached();
+		if (getExpectationsChecked() == 0 && unreached == 0) {
+			return;
+		}
+		System.out.println("Expectations: " + getExpectationsChecked()
+				+ " checked, " + failed + " failed, " + unreached
+				+ " not reached");
+		for (Expectation.Mismatch mismatch : getMismatches()) {
+			System.out.println(mismatch.describe());
+		}
+	} // end of displayExpectations method
+
+	/**
+	 * Whether every expectation of the run was checked and met. A run
+	 * without expectations passes.
+	 *
+	 * @return false if any expectation failed or was never reached.
+	 */
+	public boolean expectationsPassed() {
+
+		return getMismatches().isEmpty() && getExpectationsUnreached() == 0;
+	} // end of expectationsPassed method
+
 } // end of BatchSimulator class
@@ -0,0 +1,77 @@
+package jls.sim;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * How a simulation run treats the elements' configured propagation
+ * delays. The default, {@link #CONFIGURED}, is the timing model of
+ * docs/simulation-semantics.md §6-7 and is what every run used before
+ * this choice existed. The two functional models trade timing fidelity
+ * for speed in runs that only care about cycle-level correctness (batch
+ * grading): with {@link #ZERO} a whole combinational settle collapses
+ * into same-timestamp delta steps instead of being spread across many
+ * distinct event times.
+ *
+ * Only element delays are remapped (gate, adder, mux, register, memory
+ * access time, ...). Stimulus timing - clock periods, signal
+ * generators, test vectors - is never touched, so a clock edge still
+ * lands at the same time under every model.
+ */
+public enum DelayModel {
+
+	/** Every element uses its configured propagation delay. */
+	CONFIGURED,
+
+	/**
+	 * Every nonzero element delay becomes 1: outputs still trail their
+	 * inputs, one time unit per level of logic.
+	 */
+	UNIT,
+
+	/**
+	 * Every element delay becomes 0: combinational logic settles in
+	 * delta steps within the timestamp of the change that caused it,
+	 * and clocked elements update at their edges.
+	 */
+	ZERO;
+
+	/**
+	 * The delay an element with the given configured delay actually
+	 * uses under this model.
+	 *
+	 * @param configured The element's configured delay (0 or more).
+	 *
+	 * @return the effective delay.
+	 *
+	 * @jls.testedby jls.sim.DelayModelTest#unitKeepsZeroDelaysZero()
+	 */
+	public long apply(long configured) {
+
+		return switch (this) {
+		case CONFIGURED -> configured;
+		case UNIT -> configured > 0 ? 1 : 0;
+		case ZERO -> 0;
+		};
+	} // end of apply method
+
+	/**
+	 * The model named on the command line: {@code configured},
+	 * {@code unit} or {@code zero}, case-insensitive.
+	 *
+	 * @param name The model name.
+	 *
+	 * @return the model, or null if the name is not one of the three.
+	 *
+	 * @jls.testedby jls.sim.DelayModelTest#namesParseCaseInsensitively()
+	 */
+	public static @Nullable DelayModel byName(String name) {
+
+		for (DelayModel model : values()) {
+			if (model.name().equalsIgnoreCase(name)) {
+				return model;
+			}
+		}
+		return null;
+	} // end of byName method
+
+} // end of DelayModel enum
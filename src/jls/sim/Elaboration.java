@@ -0,0 +1,124 @@
+package jls.sim;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jspecify.annotations.Nullable;
+
+import jls.*;
+import jls.elem.*;
+
+/**
+ * Speculative elaboration: the parts of a run's setup that depend only
+ * on the circuit as it stands, done on a background virtual thread
+ * while the user is not editing, so pressing Start finds them done.
+ * Every circuit level's stable-id element order is sorted, and every
+ * memory's initialization file or built-in values are read and
+ * parsed.
+ *
+ * What the background thread works from is copied on the calling
+ * thread (the EDT) when elaboration starts, and each result is only
+ * used while it is still current: an order while no element has
+ * joined or left its circuit, a memory image while the memory's
+ * settings and file are unchanged. A run that finds a result stale, or
+ * not yet made, does that part of the setup itself. Starting a new
+ * elaboration of a circuit abandons the one of the same circuit still
+ * going; those of circuits in other windows carry on.
+ *
+ * Posting the time-zero events stays with the run: it changes element
+ * state, which the editor owns until the run starts.
+ */
+public final class Elaboration {
+
+	/**
+	 * Counts the elaborations started of each top-level circuit; a
+	 * running one stops when its circuit's count is passed. Weak, so a
+	 * closed circuit is not kept.
+	 */
+	private static final Map<Circuit,AtomicInteger> started =
+			new WeakHashMap<Circuit,AtomicInteger>();
+
+	/**
+	 * Not instantiable.
+	 */
+	private Elaboration() {
+	} // end of constructor
+
+	/**
+	 * Start elaborating a circuit in the background, abandoning any
+	 * elaboration of the same circuit still going. Call on the thread
+	 * that edits the circuit.
+	 *
+	 * @param circuit The top-level circuit.
+	 *
+	 * @return the background thread, or null if the circuit is still
+	 *         loading.
+	 *
+	 * @jls.testedby jls.sim.ElaborationTest#aPreparedOrderIsUsedUntilTheCircuitChanges()
+	 * @jls.testedby jls.sim.ElaborationTest#preparedMemoryImagesAreUsedOnlyWhileCurrent()
+	 * @jls.testedby jls.sim.ElaborationTest#anElaborationIsAbandonedOnlyForItsOwnCircuit()
+	 */
+	public static @Nullable Thread start(Circuit circuit) {
+
+		if (circuit.isLoadPending())
+			return null;
+		final List<Runnable> tasks = new ArrayList<Runnable>();
+		collect(circuit, tasks);
+		final AtomicInteger count;
+		synchronized (started) {
+			count = started.computeIfAbsent(circuit, c -> new AtomicInteger());
+		}
+		final int mine = count.incrementAndGet();
+		return Thread.ofVirtual().name("elaborate").start(new Runnable() {
+			/**
+			 * Run the tasks until they are done or a newer elaboration
+			 * starts.
+			 */
+			@Override
+			public void run() {
+				for (Runnable task : tasks) {
+					if (count.get() != mine)
+						return;
+					task.run();
+				}
+			}
+		});
+	} // end of start method
+
+	/**
+	 * The number of elaborations started of a circuit.
+	 *
+	 * @param circuit The top-level circuit.
+	 *
+	 * @return the count; a running elaboration of the circuit stops once
+	 *         it is passed.
+	 */
+	static int started(Circuit circuit) {
+
+		synchronized (started) {
+			AtomicInteger count = started.get(circuit);
+			return count == null ? 0 : count.get();
+		}
+	} // end of started method
+
+	/**
+	 * Collect the elaboration tasks of a circuit and every circuit
+	 * nested in it, copying what each works from.
+	 *
+	 * @param circuit The circuit.
+	 * @param tasks The tasks, added to.
+	 */
+	private static void collect(Circuit circuit, List<Runnable> tasks) {
+
+		tasks.add(circuit.prepareStableOrder());
+		for (Element el : circuit.getElements()) {
+			if (el instanceof Memory mem) {
+				tasks.add(mem.prepareInit());
+			}
+			else if (el instanceof SubCircuit sub) {
+				collect(sub.getSubCircuit(), tasks);
+			}
+		}
+	} // end of collect method
+
+} // end of Elaboration class
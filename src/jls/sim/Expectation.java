@@ -0,0 +1,63 @@
+package jls.sim;
+
+import java.util.BitSet;
+
+import org.jspecify.annotations.Nullable;
+
+import jls.BitSetUtils;
+import jls.elem.OutputPin;
+
+/**
+ * One expected output value from a test file's {@code expect} clause
+ * (docs/batch-interface.md section 2.5): the value an output pin must
+ * hold at a simulation time, once every event at that time has
+ * happened. The simulator checks expectations as the run passes their
+ * times, so a wrong design can stop as soon as it is known to be wrong.
+ *
+ * @param time The simulation time the value is due.
+ * @param pin The top-level output pin checked.
+ * @param value The expected value, within the pin's width.
+ */
+public record Expectation(long time, OutputPin pin, BitSet value) {
+
+	/**
+	 * One failed expectation, with what the pin actually held.
+	 *
+	 * @param expected The expectation that failed.
+	 * @param actual The pin's value at the expected time, or null if it
+	 *        was high-impedance.
+	 */
+	public record Mismatch(Expectation expected, @Nullable BitSet actual) {
+
+		/**
+		 * The report line for this mismatch, with both values in the
+		 * watched-element display form.
+		 *
+		 * @return the line, without a newline.
+		 */
+		public String describe() {
+
+			int bits = expected.pin().getBits();
+			return "Mismatch " + expected.pin().getName() + " at "
+					+ expected.time() + ": expected "
+					+ BitSetUtils.toDisplay(expected.value(), bits)
+					+ ", got " + BitSetUtils.toDisplay(actual, bits);
+		} // end of describe method
+
+	} // end of Mismatch record
+
+	/**
+	 * Whether a pin value meets this expectation. High impedance never
+	 * does.
+	 *
+	 * @param actual The pin's value, or null for high impedance.
+	 *
+	 * @return true if the value is the expected one.
+	 */
+	public boolean matches(@Nullable BitSet actual) {
+
+		return actual != null
+				&& actual.get(0, pin.getBits()).equals(value);
+	} // end of matches method
+
+} // end of Expectation record
@@ -0,0 +1,459 @@
+package jls.sim;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * The access log of one memory element (docs/batch-interface.md
+ * section 4.5): every read and write a Memory or RegisterFile performs,
+ * with its time, address and data, in a binary ring file. A run writes
+ * one per memory when given {@code -memlog dir}.
+ *
+ * The file is a fixed header followed by a ring of fixed-size records,
+ * so it holds the newest {@code capacity} accesses however long the run
+ * and a reader can seek to any of them. The simulation thread only
+ * appends records to an in-memory batch; full batches go to a writer
+ * thread of their own, which puts them in place in the file. The event
+ * loop waits only if the writer falls {@link #PENDING} batches behind.
+ *
+ * {@link #scan} reads a log back, oldest access first, optionally
+ * limited to an address range and a time window.
+ */
+public final class MemoryLog implements Closeable {
+
+	/** The first bytes of every log file; the last is the version. */
+	private static final byte[] MAGIC = { 'J', 'L', 'S', 'M', 'E', 'M', 0, 1 };
+
+	/** The file name extension of a log. */
+	public static final String EXTENSION = ".jlsm";
+
+	/** The accesses a log holds unless told otherwise: the newest 16M. */
+	public static final long DEFAULT_CAPACITY = 1L << 24;
+
+	/** The bytes before the first record. */
+	private static final int HEADER = 32;
+	/** The position of the access count in the header. */
+	private static final int COUNT_AT = 24;
+	/** The bytes of one batch of records handed to the writer. */
+	private static final int BATCH = 1 << 16;
+	/** The full batches that may wait for the writer. */
+	static final int PENDING = 8;
+
+	/**
+	 * One logged access.
+	 *
+	 * @param time The simulation time it completed at.
+	 * @param address The word address.
+	 * @param write True for a write, false for a read.
+	 * @param data The word written or read.
+	 */
+	public record Access(long time, int address, boolean write, BitSet data) {
+	} // end of Access record
+
+	/** The log file, written by the writer thread only. */
+	private final FileChannel channel;
+	/** The word width. */
+	private final int bits;
+	/** The bytes of one record: time, address, kind, then the word. */
+	private final int record;
+	/** The records the ring holds. */
+	private final long capacity;
+	/** The batch being filled by the simulation thread. */
+	private ByteBuffer batch;
+	/** The accesses in the batches already handed to the writer. */
+	private long handed = 0;
+	/** Full batches, in order, and the empty end marker. */
+	private final BlockingQueue<ByteBuffer> full =
+			new ArrayBlockingQueue<ByteBuffer>(PENDING);
+	/** Written batches, for reuse. */
+	private final BlockingQueue<ByteBuffer> free =
+			new ArrayBlockingQueue<ByteBuffer>(PENDING + 1);
+	/** The writer thread. */
+	private final Thread writer;
+	/** The first write failure, or null. */
+	private volatile @Nullable IOException error = null;
+	/** Whether close has been called. */
+	private boolean closed = false;
+
+	/**
+	 * Create a log file, replacing any file of the name, and start its
+	 * writer.
+	 *
+	 * @param file The file.
+	 * @param bits The memory's word width.
+	 * @param capacity The newest accesses to keep, positive.
+	 *
+	 * @throws IOException if the file cannot be created.
+	 *
+	 * @jls.testedby jls.sim.MemoryLogTest#accessesReadBackAsLogged()
+	 * @jls.testedby jls.sim.MemoryLogTest#theRingKeepsTheNewestAccesses()
+	 */
+	public MemoryLog(Path file, int bits, long capacity) throws IOException {
+
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity must be positive, got "
+					+ capacity);
+		this.bits = bits;
+		this.record = 13 + (bits + 7) / 8;
+		this.capacity = capacity;
+		this.batch = newBatch();
+		channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.READ,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		ByteBuffer header = ByteBuffer.allocate(HEADER)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		header.put(MAGIC).putInt(bits).putInt(record).putLong(capacity)
+				.putLong(0).flip();
+		try {
+			writeFully(header, 0);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		writer = new Thread(this::drain, "JLS-memlog-writer");
+		writer.setDaemon(true);
+		writer.start();
+	} // end of constructor
+
+	/**
+	 * Log a write.
+	 *
+	 * @param time The simulation time it completed at.
+	 * @param address The word address.
+	 * @param data The word written; read, not kept.
+	 */
+	public void write(long time, int address, BitSet data) {
+
+		add(time, address, true, data);
+	} // end of write method
+
+	/**
+	 * Log a read.
+	 *
+	 * @param time The simulation time it completed at.
+	 * @param address The word address.
+	 * @param data The word read; read, not kept.
+	 */
+	public void read(long time, int address, BitSet data) {
+
+		add(time, address, false, data);
+	} // end of read method
+
+	/**
+	 * Append one record to the batch, handing the batch to the writer
+	 * when it is full.
+	 *
+	 * @param time The simulation time.
+	 * @param address The word address.
+	 * @param write True for a write.
+	 * @param data The word.
+	 */
+	private void add(long time, int address, boolean write, BitSet data) {
+
+		if (batch.remaining() < record) {
+			hand();
+		}
+		ByteBuffer b = batch;
+		b.putLong(time).putInt(address).put((byte) (write ? 1 : 0));
+
+		// the word's bytes, least significant first, from its set bits:
+		// nothing is allocated per access
+		int at = b.position();
+		for (int i = 13; i < record; i += 1) {
+			b.put((byte) 0);
+		}
+		for (int i = data.nextSetBit(0); i >= 0 && i < bits;
+				i = data.nextSetBit(i + 1)) {
+			int p = at + (i >>> 3);
+			b.put(p, (byte) (b.get(p) | (1 << (i & 7))));
+		}
+	} // end of add method
+
+	/**
+	 * Hand the batch to the writer and start a new one, waiting if the
+	 * writer is {@link #PENDING} batches behind.
+	 */
+	private void hand() {
+
+		ByteBuffer b = batch;
+		b.flip();
+		handed += b.remaining() / record;
+		put(b);
+		ByteBuffer next = free.poll();
+		batch = next == null ? newBatch() : next;
+	} // end of hand method
+
+	/**
+	 * Queue a batch for the writer, waiting for room.
+	 *
+	 * @param b The batch, or an empty one to end the writer.
+	 */
+	private void put(ByteBuffer b) {
+
+		boolean interrupted = false;
+		while (true) {
+			try {
+				full.put(b);
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	} // end of put method
+
+	/**
+	 * A new, empty batch holding a whole number of records.
+	 *
+	 * @return the batch.
+	 */
+	private ByteBuffer newBatch() {
+
+		return ByteBuffer.allocate(Math.max(1, BATCH / record) * record)
+				.order(ByteOrder.LITTLE_ENDIAN);
+	} // end of newBatch method
+
+	/**
+	 * The writer thread: put each batch's records in their ring slots
+	 * until the end marker. After a failure the batches are still taken,
+	 * so the simulation never waits on a dead file.
+	 */
+	private void drain() {
+
+		long written = 0;
+		while (true) {
+			ByteBuffer b;
+			try {
+				b = full.take();
+			} catch (InterruptedException e) {
+				// only close ends the writer
+				continue;
+			}
+			if (!b.hasRemaining()) {
+				return;
+			}
+			if (error == null) {
+				try {
+					while (b.hasRemaining()) {
+						long slot = written % capacity;
+						int n = (int) Math.min(b.remaining() / record,
+								capacity - slot);
+						ByteBuffer run = b.slice(b.position(), n * record);
+						writeFully(run, HEADER + slot * record);
+						b.position(b.position() + n * record);
+						written += n;
+					}
+				} catch (IOException e) {
+					error = e;
+				}
+			}
+			free.offer(b.clear());
+		}
+	} // end of drain method
+
+	/**
+	 * Write the rest of the logged accesses, record their count in the
+	 * header, and close the file.
+	 *
+	 * @throws IOException if any of the log could not be written.
+	 */
+	@Override
+	public void close() throws IOException {
+
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (batch.position() > 0) {
+			hand();
+		}
+		put(ByteBuffer.allocate(0));
+		boolean interrupted = false;
+		while (writer.isAlive()) {
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		try (channel) {
+			IOException e = error;
+			if (e != null) {
+				throw e;
+			}
+			ByteBuffer total = ByteBuffer.allocate(8)
+					.order(ByteOrder.LITTLE_ENDIAN).putLong(0, handed);
+			writeFully(total, COUNT_AT);
+		}
+	} // end of close method
+
+	/**
+	 * Write a buffer at a position in the file.
+	 *
+	 * @param b The bytes.
+	 * @param at The position.
+	 *
+	 * @throws IOException if they cannot be written.
+	 */
+	private void writeFully(ByteBuffer b, long at) throws IOException {
+
+		while (b.hasRemaining()) {
+			at += channel.write(b, at);
+		}
+	} // end of writeFully method
+
+	/**
+	 * Read a log back, oldest access first, keeping those in an address
+	 * range and a time window. The accesses are in time order, so the
+	 * first one in the window is found by binary search and the scan
+	 * stops at the first one past it.
+	 *
+	 * @param file The log file.
+	 * @param fromAddress The lowest address to keep.
+	 * @param toAddress The highest address to keep.
+	 * @param fromTime The earliest time to keep.
+	 * @param toTime The latest time to keep.
+	 * @param sink Given each access kept.
+	 *
+	 * @throws IOException if the file cannot be read or is not a
+	 *         complete log.
+	 *
+	 * @jls.testedby jls.sim.MemoryLogTest#accessesReadBackAsLogged()
+	 * @jls.testedby jls.sim.MemoryLogTest#theRingKeepsTheNewestAccesses()
+	 * @jls.testedby jls.sim.MemoryLogTest#aRunLogsEveryAccess()
+	 */
+	public static void scan(Path file, long fromAddress, long toAddress,
+			long fromTime, long toTime, Consumer<Access> sink)
+			throws IOException {
+
+		try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = read(in, 0, HEADER);
+			byte[] magic = new byte[MAGIC.length];
+			header.get(magic);
+			if (!Arrays.equals(magic, MAGIC)) {
+				throw new IOException("not a memory access log");
+			}
+			int bits = header.getInt();
+			int record = header.getInt();
+			long capacity = header.getLong();
+			long count = header.getLong();
+			if (bits <= 0 || record != 13 + (bits + 7) / 8 || capacity <= 0
+					|| count < 0) {
+				throw new IOException("damaged memory access log header");
+			}
+			long kept = Math.min(count, capacity);
+			if (in.size() < HEADER + kept * record) {
+				throw new IOException("memory access log cut short");
+			}
+
+			// record n of the kept ones, oldest first, is in slot
+			// (count - kept + n) % capacity
+			long oldest = count - kept;
+			long low = 0;
+			long high = kept;
+			while (low < high) {
+				long mid = (low + high) >>> 1;
+				long at = HEADER + (oldest + mid) % capacity * record;
+				if (read(in, at, 8).getLong() < fromTime) {
+					low = mid + 1;
+				}
+				else {
+					high = mid;
+				}
+			}
+			int perRead = Math.max(1, BATCH / record);
+			for (long n = low; n < kept; ) {
+				long slot = (oldest + n) % capacity;
+				int run = (int) Math.min(perRead,
+						Math.min(kept - n, capacity - slot));
+				ByteBuffer b = read(in, HEADER + slot * record, run * record);
+				for (int r = 0; r < run; r += 1) {
+					long time = b.getLong();
+					if (time > toTime) {
+						return;
+					}
+					int address = b.getInt();
+					boolean write = b.get() != 0;
+					byte[] word = new byte[record - 13];
+					b.get(word);
+					if (Integer.toUnsignedLong(address) >= fromAddress
+							&& Integer.toUnsignedLong(address) <= toAddress) {
+						sink.accept(new Access(time, address, write,
+								BitSet.valueOf(word)));
+					}
+				}
+				n += run;
+			}
+		}
+	} // end of scan method
+
+	/**
+	 * Read bytes at a position in a file.
+	 *
+	 * @param in The file.
+	 * @param at The position.
+	 * @param length The bytes to read.
+	 *
+	 * @return them, little-endian, ready to get.
+	 *
+	 * @throws IOException if the file ends first.
+	 */
+	private static ByteBuffer read(FileChannel in, long at, int length)
+			throws IOException {
+
+		ByteBuffer b = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (b.hasRemaining()) {
+			int n = in.read(b, at + b.position());
+			if (n < 0) {
+				throw new IOException("memory access log cut short");
+			}
+		}
+		return b.flip();
+	} // end of read method
+
+	/**
+	 * Print a log's accesses in an address range and time window, one
+	 * per line: time, R or W, address and data in hex.
+	 *
+	 * @param file The log file.
+	 * @param fromAddress The lowest address to print.
+	 * @param toAddress The highest address to print.
+	 * @param fromTime The earliest time to print.
+	 * @param toTime The latest time to print.
+	 * @param out Where to print.
+	 *
+	 * @throws IOException if the file cannot be read or is not a log.
+	 *
+	 * @jls.testedby jls.sim.MemoryLogTest#aRunLogsEveryAccess()
+	 */
+	public static void print(Path file, long fromAddress, long toAddress,
+			long fromTime, long toTime, PrintStream out) throws IOException {
+
+		scan(file, fromAddress, toAddress, fromTime, toTime, access -> {
+			long[] word = access.data().toLongArray();
+			StringBuilder hex = new StringBuilder();
+			for (int w = word.length - 1; w >= 0; w -= 1) {
+				hex.append(w == word.length - 1 ? Long.toHexString(word[w])
+						: String.format("%016x", word[w]));
+			}
+			out.println(access.time() + (access.write() ? " W 0x" : " R 0x")
+					+ Integer.toHexString(access.address()) + " 0x"
+					+ (hex.length() == 0 ? "0" : hex));
+		});
+	} // end of print method
+
+} // end of MemoryLog class
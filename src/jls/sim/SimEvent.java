@@ -1,6 +1,7 @@
 package jls.sim;
 
 import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 import jls.elem.State;
 
@@ -83,8 +84,13 @@ public final class SimEvent implements Comparable<SimEvent> {
 	public record TableOutput(int position, BitSet value) implements Payload {
 	} // end of TableOutput record
 
-	/** The next sequence number, assigned at construction (post order). */
-	private static long sequence = 0;
+	/**
+	 * The next sequence number, assigned at construction (post order).
+	 * Atomic because simulators on different threads (multi-job batch
+	 * runs) share it; each thread still sees its own postings numbered
+	 * in increasing order, which is all the (time, seq) rule needs.
+	 */
+	private static final AtomicLong SEQUENCE = new AtomicLong();
 
 	// properties (all set once in the constructor: a SimEvent is an
 	// immutable value carrier, kept a plain class rather than a record
@@ -113,12 +119,46 @@ public final class SimEvent implements Comparable<SimEvent> {
 	public SimEvent(long time, Reacts callBack, Payload todo) {
 
 		this.time = time;
-		seq = sequence;
+		seq = SEQUENCE.getAndIncrement();
 		this.callBack = callBack;
 		this.todo = todo;
-		sequence += 1;
 	} // end of constructor
 
+	/**
+	 * Create a new event with a sequence number reserved by
+	 * {@link #reserve}: among same-time events it fires where it would
+	 * have had it been posted when the number was reserved.
+	 *
+	 * @param time The time the event will occur
+	 * @param callBack The object to tell when the event occurs.
+	 * @param todo The payload saying what the reacting object should do
+	 *             about this event.
+	 * @param seq The sequence number.
+	 *
+	 * @jls.testedby jls.elem.VectorFileTest#chunkedStimulusFiresInTheTextOrder()
+	 */
+	public SimEvent(long time, Reacts callBack, Payload todo, long seq) {
+
+		this.time = time;
+		this.seq = seq;
+		this.callBack = callBack;
+		this.todo = todo;
+	} // end of constructor
+
+	/**
+	 * Reserve sequence numbers for events that will be created later but
+	 * must keep the same-time order they would have had if posted now:
+	 * a test file's stimulus, posted a chunk at a time (TestGen).
+	 *
+	 * @param count The number of events.
+	 *
+	 * @return the first of count consecutive sequence numbers.
+	 */
+	public static long reserve(long count) {
+
+		return SEQUENCE.getAndAdd(count);
+	} // end of reserve method
+
 	/**
 	 * Compares this SimEvent with another.
 	 * Only the time and seq is used since compareTo is only used by the event
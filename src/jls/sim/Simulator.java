@@ -44,6 +44,35 @@ public abstract class Simulator {
 	protected volatile boolean stopping = false;
 	/** The test-vector file name; null when none was requested (#93). */
 	protected @Nullable String testFileName = null;
+	/** How element delays are treated; configured delays by default. */
+	protected DelayModel delayModel = DelayModel.CONFIGURED;
+
+	/**
+	 * The most events a functional (unit- or zero-delay) run lets fire
+	 * at one timestamp before it declares the logic unsettled. Zero
+	 * delay turns a combinational loop that oscillates under real delays
+	 * into an endless run of same-time delta steps, so the guard is what
+	 * keeps such a design from hanging the run.
+	 */
+	public static final int DELTA_LIMIT = 1_000_000;
+	/** The timestamp deltaCount is counting events for. */
+	private long deltaTime = -1;
+	/** How many events have fired at deltaTime so far. */
+	private int deltaCount = 0;
+	/** Elements already warned about a delay-dependent capture this run. */
+	private final Set<LogicElement> racesReported =
+		new HashSet<LogicElement>();
+	/** Expectations not yet checked this run, earliest first. */
+	private final PriorityQueue<Expectation> expectations =
+		new PriorityQueue<Expectation>(
+				Comparator.comparingLong(Expectation::time));
+	/** Expectations checked so far this run. */
+	private int expectationsChecked = 0;
+	/** Expectations that failed this run, in the order they were found. */
+	private final List<Expectation.Mismatch> mismatches =
+		new ArrayList<Expectation.Mismatch>();
+	/** Mismatches that stop the run, or 0 to run to the end regardless. */
+	private int maxMismatches = 0;
 
 	/**
 	 * Create a simulator. Element callbacks receive the concrete
@@ -119,6 +148,192 @@ public abstract class Simulator {
 		testFileName = name;
 	} // end of setTestFile method
 
+	/**
+	 * Choose how element propagation delays are treated in subsequent
+	 * runs (see {@link DelayModel}). Must be called before the run's
+	 * initSim, since elements post their time-0 events there.
+	 *
+	 * @param model The delay model.
+	 *
+	 * @jls.testedby jls.sim.DelayModelTest#zeroDelaySettlesEachCycleWithinItsEdgeTimestamp()
+	 */
+	public void setDelayModel(DelayModel model) {
+
+		delayModel = model;
+	} // end of setDelayModel method
+
+	/**
+	 * Get the delay model in effect.
+	 *
+	 * @return the delay model.
+	 */
+	public DelayModel getDelayModel() {
+
+		return delayModel;
+	} // end of getDelayModel method
+
+	/**
+	 * The delay an element actually waits before its scheduled change,
+	 * given its configured propagation delay: the configured value
+	 * itself unless a functional delay model is in effect. Every element
+	 * schedules its delayed events through this method, never by adding
+	 * its raw delay to the current time.
+	 *
+	 * @param configured The element's configured delay.
+	 *
+	 * @return the effective delay under the current delay model.
+	 */
+	public final long delay(long configured) {
+
+		return delayModel.apply(configured);
+	} // end of delay method
+
+	/**
+	 * Report a delay-dependent capture. Clocked elements call this at
+	 * the moment they sample their inputs on a clock edge (a latch, as
+	 * it closes). If any input other than the clock changed earlier in
+	 * the same timestamp, which of the two changes the element saw first
+	 * was decided by delta order rather than by the circuit's timing,
+	 * so the value captured could differ under configured delays. A
+	 * configured-delay run never warns (its timing is the reference);
+	 * a functional run warns once per element per run.
+	 *
+	 * @param element The clocked element sampling its inputs.
+	 * @param clock The element's clock input, which is exempt.
+	 * @param now The current simulation time.
+	 *
+	 * @jls.testedby jls.sim.DelayModelTest#zeroDelayWarnsWhenDataChangesWithTheEdge()
+	 * @jls.testedby jls.sim.DelayModelTest#zeroDelaySettlesEachCycleWithinItsEdgeTimestamp()
+	 */
+	public void checkCapture(LogicElement element, Input clock, long now) {
+
+		if (delayModel == DelayModel.CONFIGURED) {
+			return;
+		}
+		for (Input in : element.getInputList()) {
+			if (in != clock && in.getChangedAt() == now) {
+				if (racesReported.add(element)) {
+					TellUser.warn(null,
+							"delay-dependent capture: \""
+							+ element.getFullName() + "\" sampled its"
+							+ " inputs on a clock edge at time " + now
+							+ ", the same time one of them changed; with "
+							+ delayModel.name().toLowerCase(Locale.ROOT)
+							+ " delays the captured value may differ from"
+							+ " a run with configured delays",
+							"Simulation");
+				}
+				return;
+			}
+		}
+	} // end of checkCapture method
+
+	/**
+	 * Stop the run after this many failed expectations (see {@link
+	 * Expectation}); by default every expectation is checked and the run
+	 * goes on to its usual end.
+	 *
+	 * @param count The mismatches that stop the run, or 0 for none.
+	 *
+	 * @jls.testedby jls.sim.ExpectationTest#theFirstMismatchStopsTheRunEarly()
+	 */
+	public void setMaxMismatches(int count) {
+
+		maxMismatches = count;
+	} // end of setMaxMismatches method
+
+	/**
+	 * Register an expected output value for this run. Called by the
+	 * test-file parser during initSim.
+	 *
+	 * @param expected The expectation.
+	 */
+	public void expect(Expectation expected) {
+
+		expectations.add(expected);
+	} // end of expect method
+
+	/**
+	 * Check, in time order, every expectation due before a time: all
+	 * events before it have happened, so the values they name are
+	 * settled. Stops the run when the mismatch limit is reached.
+	 *
+	 * @param before The time bound, exclusive.
+	 *
+	 * @return false if a mismatch stopped the run.
+	 */
+	private boolean checkExpectations(long before) {
+
+		while (!expectations.isEmpty()
+				&& expectations.peek().time() < before
+				&& expectations.peek().time() <= maxTime) {
+			Expectation next = expectations.poll();
+			expectationsChecked += 1;
+			BitSet actual = next.pin().getCurrentValue();
+			if (next.matches(actual)) {
+				continue;
+			}
+			mismatches.add(new Expectation.Mismatch(next, actual));
+			if (maxMismatches > 0 && mismatches.size() >= maxMismatches) {
+				now = next.time();
+				stopping = true;
+				return false;
+			}
+		}
+		return true;
+	} // end of checkExpectations method
+
+	/**
+	 * Check the expectations still pending when the event loop has
+	 * ended. If it ran out of events or reached the time limit, every
+	 * value is final up to the limit; if it was stopped, only times
+	 * before the stop are settled. Expectations past that point are
+	 * left unchecked.
+	 */
+	protected void finishExpectations() {
+
+		if (expectations.isEmpty()) {
+			return;
+		}
+		if (stopping) {
+			checkExpectations(now);
+		}
+		else {
+			checkExpectations(Long.MAX_VALUE);
+		}
+	} // end of finishExpectations method
+
+	/**
+	 * Get how many expectations this run checked.
+	 *
+	 * @return the count.
+	 */
+	public int getExpectationsChecked() {
+
+		return expectationsChecked;
+	} // end of getExpectationsChecked method
+
+	/**
+	 * Get how many expectations this run never reached: those due after
+	 * the time limit or after the run stopped.
+	 *
+	 * @return the count.
+	 */
+	public int getExpectationsUnreached() {
+
+		return expectations.size();
+	} // end of getExpectationsUnreached method
+
+	/**
+	 * Get the expectations that failed this run.
+	 *
+	 * @return the mismatches, in the order they were found.
+	 */
+	public List<Expectation.Mismatch> getMismatches() {
+
+		return Collections.unmodifiableList(mismatches);
+	} // end of getMismatches method
+
 	/**
 	 * Get the circuit being simulated, checked non-null.
 	 * The circuit field follows a two-phase lifecycle (issue #93):
@@ -180,6 +395,12 @@ public abstract class Simulator {
 		now = 0;
 		eventQueue.clear();
 		dupCheck.clear();
+		deltaTime = -1;
+		deltaCount = 0;
+		racesReported.clear();
+		expectations.clear();
+		expectationsChecked = 0;
+		mismatches.clear();
 
 		Circuit circ = circuit();
 
@@ -220,16 +441,27 @@ public abstract class Simulator {
 			if (!beforeEvent())
 				continue;
 
-			// get the next event
+			// values due before the next event's time are settled now
+			long next = eventQueue.peek().getTime();
+			if (!expectations.isEmpty() && !checkExpectations(next)) {
+				break;
+			}
+
+			// quit if after time limit, leaving the event queued so a
+			// stepped run (Testbench) can go on from here
+			if (next > maxTime) {
+				now = maxTime;
+				break;
+			}
+
+			// get the next event and update clock
 			SimEvent event = eventQueue.poll();
 			dupCheck.remove(event);
+			now = next;
 
-			// update clock
-			now = event.getTime();
-
-			// quit if after time limit
-			if (now > maxTime) {
-				now = maxTime;
+			// a functional run must settle each timestamp in finitely
+			// many delta steps
+			if (delayModel != DelayModel.CONFIGURED && !settling()) {
 				break;
 			}
 
@@ -242,6 +474,36 @@ public abstract class Simulator {
 		}
 	} // end of runEventLoop method
 
+	/**
+	 * Count one more event at the current timestamp, for the delta guard
+	 * of functional runs. Past {@link #DELTA_LIMIT} events at one time
+	 * the logic is not settling - a combinational loop that oscillates
+	 * once its delays are removed - so the user is told and the run
+	 * stops, rather than spinning forever without advancing time.
+	 *
+	 * @return true to let the event react, false if the run was stopped.
+	 */
+	private boolean settling() {
+
+		if (now != deltaTime) {
+			deltaTime = now;
+			deltaCount = 0;
+		}
+		deltaCount += 1;
+		if (deltaCount <= DELTA_LIMIT) {
+			return true;
+		}
+		TellUser.warn(null,
+				"the circuit did not settle at time " + now + " after "
+				+ DELTA_LIMIT + " events with "
+				+ delayModel.name().toLowerCase(Locale.ROOT)
+				+ " delays; it likely has a combinational loop whose"
+				+ " behavior depends on delay values - stopping",
+				"Simulation");
+		stopping = true;
+		return false;
+	} // end of settling method
+
 	/**
 	 * Hook called before the next event is dequeued. A mode can block
 	 * (pause), or set state and decline this iteration.
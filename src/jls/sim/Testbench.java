@@ -0,0 +1,389 @@
+package jls.sim;
+
+import java.util.*;
+
+import org.jspecify.annotations.Nullable;
+
+import jls.*;
+import jls.elem.*;
+
+/**
+ * A loaded circuit driven step by step from Java code: a JUnit test or
+ * any other JVM testbench pokes top-level input pins, advances
+ * simulation time, and peeks at pins and probed nets in between,
+ * instead of writing a {@code -t} file, running {@code jls -b} and
+ * parsing its report (docs/batch-interface.md section 10).
+ *
+ * The bench runs the same event loop as {@link BatchSimulator}, in
+ * bounded slices: each run processes every event up to a target time
+ * and leaves later events queued, so the next call goes on from there.
+ * A poke drives the pin at once; the logic behind it reacts when time
+ * next advances, so {@code runFor(0)} settles the current time.
+ *
+ * Names are the top-level input and output pin names, then the probe
+ * names of named wires anywhere in the hierarchy (the first one found
+ * wins, as in VCD export). A peek reads the net's value in place
+ * rather than copying it, so reading after every step costs no
+ * allocation.
+ *
+ * A bench is single-threaded: one thread owns it, as one thread owns
+ * a BatchSimulator run.
+ */
+public final class Testbench extends Simulator {
+
+	/** Per top-level input pin name, the pin. */
+	private final Map<String,InputPin> inputs = new HashMap<String,InputPin>();
+	/** Per readable name, the wire net its value is read from. */
+	private final Map<String,WireNet> nets = new HashMap<String,WireNet>();
+	/** No run goes past this time. */
+	private long limit = JLSInfo.defaultTimeLimit;
+
+	/**
+	 * Create a bench for a loaded circuit with configured delays, and
+	 * settle it at time 0.
+	 *
+	 * @param circ The circuit, fully loaded (finishLoad done).
+	 *
+	 * @jls.testedby jls.sim.TestbenchTest#aCounterStepsEdgeByEdge()
+	 */
+	public Testbench(Circuit circ) {
+
+		this(circ, DelayModel.CONFIGURED);
+	} // end of constructor
+
+	/**
+	 * Create a bench for a loaded circuit, and settle it at time 0.
+	 *
+	 * @param circ The circuit, fully loaded (finishLoad done).
+	 * @param model How element delays are treated.
+	 *
+	 * @jls.testedby jls.sim.TestbenchTest#pokedInputsReachOutputsWhenTimeAdvances()
+	 */
+	public Testbench(Circuit circ, DelayModel model) {
+
+		setCircuit(circ);
+		setDelayModel(model);
+		for (Element el : circ.getElementsInStableOrder()) {
+			if (el instanceof InputPin pin) {
+				inputs.put(pin.getName(), pin);
+				addNet(pin.getName(), pin.getOutputList().get(0));
+			}
+			else if (el instanceof OutputPin pin) {
+				addNet(pin.getName(), pin.getInputList().get(0));
+			}
+		}
+		findProbes(circ);
+		reset();
+	} // end of constructor
+
+	/**
+	 * Register a pin's net under the pin name, if the pin is wired.
+	 *
+	 * @param name The pin name.
+	 * @param put The pin's input or output.
+	 */
+	private void addNet(String name, Put put) {
+
+		WireEnd end = put.getWireEnd();
+		if (end != null) {
+			nets.putIfAbsent(name, end.getNet());
+		}
+	} // end of addNet method
+
+	/**
+	 * Register every probed net in a circuit and its subcircuits.
+	 *
+	 * @param circ The circuit (or subcircuit) to look in.
+	 */
+	private void findProbes(Circuit circ) {
+
+		for (Element el : circ.getElementsInStableOrder()) {
+			if (el instanceof SubCircuit sub) {
+				findProbes(sub.getSubCircuit());
+			}
+			else if (el instanceof Wire wire) {
+				String name = wire.getProbe();
+				if (name != null) {
+					nets.putIfAbsent(name, wire.getEnd().getNet());
+				}
+			}
+		}
+	} // end of findProbes method
+
+	/**
+	 * Start over: every element back to its initial state, time back to
+	 * 0, and the time-0 events settled.
+	 *
+	 * @jls.testedby jls.sim.TestbenchTest#resetStartsOverAtTimeZero()
+	 */
+	public void reset() {
+
+		initSimulation();
+		advance(0);
+	} // end of reset method
+
+	/**
+	 * Set the time no run goes past; {@link JLSInfo#defaultTimeLimit}
+	 * by default.
+	 *
+	 * @param limit The time limit.
+	 */
+	@Override
+	public void setTimeLimit(long limit) {
+
+		this.limit = limit;
+	} // end of setTimeLimit method
+
+	/**
+	 * Get the current simulation time.
+	 *
+	 * @return the time.
+	 */
+	public long getTime() {
+
+		return now;
+	} // end of getTime method
+
+	/**
+	 * Drive a top-level input pin. The value may be given signed: any
+	 * value that fits the pin's width as an unsigned or a two's
+	 * complement number is accepted.
+	 *
+	 * @param pin The input pin's name.
+	 * @param value The value.
+	 *
+	 * @throws IllegalArgumentException if there is no such pin or the
+	 *         value does not fit it.
+	 *
+	 * @jls.testedby jls.sim.TestbenchTest#pokedInputsReachOutputsWhenTimeAdvances()
+	 * @jls.testedby jls.sim.TestbenchTest#badNamesAndValuesAreRejected()
+	 */
+	public void poke(String pin, long value) {
+
+		int bits = input(pin).getBits();
+		if (bits < Long.SIZE) {
+			long high = value >> bits;
+			if (high != 0 && (high != -1 || (value >> (bits - 1)) != -1)) {
+				throw new IllegalArgumentException("value " + value
+						+ " will not fit in input pin " + pin);
+			}
+			value &= (1L << bits) - 1;
+		}
+		poke(pin, BitSet.valueOf(new long[] { value }));
+	} // end of poke method
+
+	/**
+	 * Drive a top-level input pin with a value of any width, or leave it
+	 * undriven.
+	 *
+	 * @param pin The input pin's name.
+	 * @param value The value, or null for high impedance.
+	 *
+	 * @throws IllegalArgumentException if there is no such pin.
+	 *
+	 * @jls.testedby jls.sim.TestbenchTest#triStateNetsReadAsHighImpedance()
+	 */
+	public void poke(String pin, @Nullable BitSet value) {
+
+		InputPin in = input(pin);
+		if (value == null) {
+			in.react(now, this, new SimEvent.TriStateOff());
+		}
+		else {
+			in.react(now, this, new SimEvent.NewValue(value));
+		}
+	} // end of poke method
+
+	/**
+	 * Read a pin or probed net's value, up to 64 bits, without copying
+	 * it.
+	 *
+	 * @param name The pin or probe name.
+	 *
+	 * @return the value, unsigned.
+	 *
+	 * @throws IllegalArgumentException if there is no such name or the
+	 *         net is wider than 64 bits (use peekBits).
+	 * @throws IllegalStateException if the net is high-impedance.
+	 *
+	 * @jls.testedby jls.sim.TestbenchTest#aCounterStepsEdgeByEdge()
+	 * @jls.testedby jls.sim.TestbenchTest#triStateNetsReadAsHighImpedance()
+	 */
+	public long peek(String name) {
+
+		WireNet net = net(name);
+		if (net.getBits() > Long.SIZE) {
+			throw new IllegalArgumentException(name + " is " + net.getBits()
+					+ " bits wide; use peekBits");
+		}
+		if (net.isHighImpedance()) {
+			throw new IllegalStateException(name + " is high impedance at "
+					+ now);
+		}
+		return net.getLong();
+	} // end of peek method
+
+	/**
+	 * Read a pin or probed net's value at any width.
+	 *
+	 * @param name The pin or probe name.
+	 *
+	 * @return a copy of the value, or null for high impedance.
+	 *
+	 * @throws IllegalArgumentException if there is no such name.
+	 */
+	public @Nullable BitSet peekBits(String name) {
+
+		return net(name).getValue();
+	} // end of peekBits method
+
+	/**
+	 * See whether a pin or probed net is undriven.
+	 *
+	 * @param name The pin or probe name.
+	 *
+	 * @return true if its value is high-impedance.
+	 *
+	 * @throws IllegalArgumentException if there is no such name.
+	 *
+	 * @jls.testedby jls.sim.TestbenchTest#triStateNetsReadAsHighImpedance()
+	 */
+	public boolean isHighImpedance(String name) {
+
+		return net(name).isHighImpedance();
+	} // end of isHighImpedance method
+
+	/**
+	 * Advance simulation time, processing every event up to and
+	 * including the new time.
+	 *
+	 * @param time How far to advance; 0 settles the current time.
+	 *
+	 * @return true if the bench reached the new time, false if the run
+	 *         stopped first (a Stop or Pause element, a circuit that
+	 *         does not settle, or the time limit).
+	 *
+	 * @jls.testedby jls.sim.TestbenchTest#pokedInputsReachOutputsWhenTimeAdvances()
+	 * @jls.testedby jls.sim.TestbenchTest#theTimeLimitStopsARun()
+	 */
+	public boolean runFor(long time) {
+
+		if (time < 0) {
+			throw new IllegalArgumentException("negative time " + time);
+		}
+		return advance(now + time);
+	} // end of runFor method
+
+	/**
+	 * Run until a net has risen from 0 to 1 a number of times, and
+	 * every event at the time of the last rise has happened. Only bit 0
+	 * of the net is looked at, and only its settled value at each
+	 * time, so a glitch within one time does not count.
+	 *
+	 * Elements clocked by the edge have captured their inputs when this
+	 * returns, but their outputs change after their delays: read them
+	 * after a further runFor, or run with a zero delay model.
+	 *
+	 * @param clock The pin or probe name of the clock net.
+	 * @param n The number of rising edges to wait for.
+	 *
+	 * @return true once the edges were seen, false if the run stopped or
+	 *         ran out of events first.
+	 *
+	 * @jls.testedby jls.sim.TestbenchTest#aCounterStepsEdgeByEdge()
+	 */
+	public boolean runUntilEdge(String clock, int n) {
+
+		WireNet net = net(clock);
+		boolean high = (net.getLong() & 1) != 0;
+		int edges = 0;
+		while (edges < n) {
+			SimEvent next = eventQueue.peek();
+			if (next == null || !advance(next.getTime())) {
+				return false;
+			}
+			boolean rose = !high;
+			high = (net.getLong() & 1) != 0;
+			if (high && rose) {
+				edges += 1;
+			}
+		}
+		return true;
+	} // end of runUntilEdge method
+
+	/**
+	 * Process every event up to a time, leaving later ones queued, and
+	 * move the clock to it.
+	 *
+	 * @param target The time to reach.
+	 *
+	 * @return true if the target was reached.
+	 */
+	private boolean advance(long target) {
+
+		if (stopping) {
+			return false;
+		}
+		maxTime = Math.min(target, limit);
+		runEventLoop();
+		if (stopping) {
+			return false;
+		}
+		now = maxTime;
+		return target <= limit;
+	} // end of advance method
+
+	/**
+	 * Look up an input pin by name.
+	 *
+	 * @param name The pin name.
+	 *
+	 * @return the pin.
+	 */
+	private InputPin input(String name) {
+
+		InputPin pin = inputs.get(name);
+		if (pin == null) {
+			throw new IllegalArgumentException("no input pin named " + name);
+		}
+		return pin;
+	} // end of input method
+
+	/**
+	 * Look up a readable net by name.
+	 *
+	 * @param name The pin or probe name.
+	 *
+	 * @return the net.
+	 */
+	private WireNet net(String name) {
+
+		WireNet net = nets.get(name);
+		if (net == null) {
+			throw new IllegalArgumentException(
+					"no wired pin or probe named " + name);
+		}
+		return net;
+	} // end of net method
+
+	/**
+	 * Stop the bench: no later run advances.
+	 */
+	@Override
+	public void stop() {
+
+		stopping = true;
+	} // end of stop method
+
+	/**
+	 * Stop the bench, as a batch run does; there is no one to resume it.
+	 *
+	 * @param which Ignored.
+	 */
+	@Override
+	public void pause(boolean which) {
+
+		stopping = true;
+	} // end of pause method
+
+} // end of Testbench class
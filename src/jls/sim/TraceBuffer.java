@@ -0,0 +1,305 @@
+package jls.sim;
+
+import java.util.*;
+
+/**
+ * One signal's recorded trace, packed into primitive arrays instead of
+ * a list of sample objects. Times are stored as varint deltas from the
+ * previous sample; values are bit-packed at the signal's width plus a
+ * HiZ flag bit, so a 1-bit signal costs two bits per sample. Both grow
+ * a chunk at a time, so a long trace is never copied to grow it.
+ *
+ * {@link #asList} reads the trace back as {@link TraceSample}s, made
+ * as they are read. Iterating is linear; {@code get(i)} starts from the
+ * nearest of the checkpoints kept every {@link #MARK} samples.
+ */
+final class TraceBuffer {
+
+	/** Longs (value bits) or bytes (time deltas) per chunk. */
+	private static final int CHUNK = 4096;
+	/** Samples between time checkpoints. */
+	private static final int MARK = 64;
+
+	/** The signal's bit width. */
+	private final int bits;
+	/** Bits per sample: the value, then the HiZ flag. */
+	private final int width;
+	/** The packed values, CHUNK longs per chunk. */
+	private long[][] values = new long[1][];
+	/** The time deltas as varints, CHUNK bytes per chunk. */
+	private byte[][] times = new byte[1][];
+	/** The number of samples. */
+	private int size = 0;
+	/** The number of time-delta bytes written. */
+	private long timeBytes = 0;
+	/** The time of the last sample. */
+	private long lastTime = 0;
+	/** Per checkpoint, the time of its sample. */
+	private long[] markTime = new long[16];
+	/** Per checkpoint, the position of the delta after its sample. */
+	private long[] markPos = new long[16];
+
+	/**
+	 * Create an empty trace.
+	 *
+	 * @param bits The signal's bit width.
+	 */
+	TraceBuffer(int bits) {
+
+		this.bits = bits;
+		this.width = bits + 1;
+	} // end of constructor
+
+	/**
+	 * Append a sample.
+	 *
+	 * @param time Its time, not before the last sample's.
+	 * @param value Its value, with HiZ as the marker BitSet (only bit
+	 *        {@code bits} set); read, not kept.
+	 */
+	void add(long time, BitSet value) {
+
+		// the time, as a delta from the last sample
+		long delta = time - lastTime;
+		while ((delta & ~0x7fL) != 0) {
+			putByte((byte) ((delta & 0x7f) | 0x80));
+			delta >>>= 7;
+		}
+		putByte((byte) delta);
+		lastTime = time;
+		if (size % MARK == 0) {
+			int mark = size / MARK;
+			if (mark == markTime.length) {
+				markTime = Arrays.copyOf(markTime, mark * 2);
+				markPos = Arrays.copyOf(markPos, mark * 2);
+			}
+			markTime[mark] = time;
+			markPos[mark] = timeBytes;
+		}
+
+		// the value a word at a time, gathered from its set bits so
+		// nothing is allocated per sample, then the HiZ flag; the
+		// storage starts zeroed, so zero words are skipped
+		long at = (long) size * width;
+		boolean hiZ = value.get(bits);
+		if (!hiZ) {
+			long word = 0;
+			int base = 0;
+			for (int i = value.nextSetBit(0); i >= 0 && i < bits;
+					i = value.nextSetBit(i + 1)) {
+				if (i - base >= 64) {
+					if (word != 0) {
+						putBits(at + base, word, Math.min(64, bits - base));
+					}
+					word = 0;
+					base = i & ~63;
+				}
+				word |= 1L << (i - base);
+			}
+			if (word != 0) {
+				putBits(at + base, word, Math.min(64, bits - base));
+			}
+		}
+		putBits(at + bits, hiZ ? 1 : 0, 1);
+		size += 1;
+	} // end of add method
+
+	/**
+	 * Get the number of samples.
+	 *
+	 * @return the sample count.
+	 */
+	int size() {
+
+		return size;
+	} // end of size method
+
+	/**
+	 * A read-only view of the trace as samples, oldest first.
+	 *
+	 * @return the view; it sees samples added later.
+	 */
+	List<TraceSample> asList() {
+
+		return new AbstractList<TraceSample>() {
+
+			@Override
+			public TraceSample get(int index) {
+
+				Objects.checkIndex(index, size);
+				int mark = index / MARK;
+				long time = markTime[mark];
+				long pos = markPos[mark];
+				for (int i = mark * MARK; i < index; i += 1) {
+					long delta = 0;
+					for (int shift = 0; ; shift += 7) {
+						byte b = getByte(pos++);
+						delta |= (long) (b & 0x7f) << shift;
+						if (b >= 0) {
+							break;
+						}
+					}
+					time += delta;
+				}
+				return new TraceSample(time, value(index));
+			}
+
+			@Override
+			public int size() {
+
+				return size;
+			}
+
+			@Override
+			public Iterator<TraceSample> iterator() {
+
+				return new Iterator<TraceSample>() {
+
+					/** The next sample's index. */
+					private int next = 0;
+					/** The position of the next sample's delta. */
+					private long pos = 0;
+					/** The last sample's time. */
+					private long time = 0;
+
+					@Override
+					public boolean hasNext() {
+
+						return next < size;
+					}
+
+					@Override
+					public TraceSample next() {
+
+						if (next >= size) {
+							throw new NoSuchElementException();
+						}
+						long delta = 0;
+						for (int shift = 0; ; shift += 7) {
+							byte b = getByte(pos++);
+							delta |= (long) (b & 0x7f) << shift;
+							if (b >= 0) {
+								break;
+							}
+						}
+						time += delta;
+						return new TraceSample(time, value(next++));
+					}
+				};
+			}
+		};
+	} // end of asList method
+
+	/**
+	 * Unpack one sample's value.
+	 *
+	 * @param index The sample's index.
+	 *
+	 * @return the value, with HiZ as the marker BitSet.
+	 */
+	private BitSet value(int index) {
+
+		long at = (long) index * width;
+		if (getBits(at + bits, 1) != 0) {
+			BitSet off = new BitSet(width);
+			off.set(bits);
+			return off;
+		}
+		long[] words = new long[(bits + 63) / 64];
+		for (int w = 0; w < words.length; w += 1) {
+			words[w] = getBits(at + w * 64L, Math.min(64, bits - w * 64));
+		}
+		return BitSet.valueOf(words);
+	} // end of value method
+
+	/**
+	 * Append one byte to the time deltas.
+	 *
+	 * @param b The byte.
+	 */
+	private void putByte(byte b) {
+
+		int chunk = (int) (timeBytes / CHUNK);
+		if (chunk == times.length) {
+			times = Arrays.copyOf(times, chunk * 2);
+		}
+		if (times[chunk] == null) {
+			times[chunk] = new byte[CHUNK];
+		}
+		times[chunk][(int) (timeBytes % CHUNK)] = b;
+		timeBytes += 1;
+	} // end of putByte method
+
+	/**
+	 * Read one byte of the time deltas.
+	 *
+	 * @param pos Its position.
+	 *
+	 * @return the byte.
+	 */
+	private byte getByte(long pos) {
+
+		return times[(int) (pos / CHUNK)][(int) (pos % CHUNK)];
+	} // end of getByte method
+
+	/**
+	 * Write up to 64 bits into the packed values, growing them as
+	 * needed; the bits there are still 0.
+	 *
+	 * @param at The first bit's position.
+	 * @param v The bits, low first; those above n must be 0.
+	 * @param n The number of bits, 1 to 64.
+	 */
+	private void putBits(long at, long v, int n) {
+
+		long word = at >>> 6;
+		int shift = (int) (at & 63);
+		word(word)[(int) (word % CHUNK)] |= v << shift;
+		if (shift + n > 64) {
+			word(word + 1)[(int) ((word + 1) % CHUNK)] |= v >>> (64 - shift);
+		}
+	} // end of putBits method
+
+	/**
+	 * Read up to 64 bits of the packed values.
+	 *
+	 * @param at The first bit's position.
+	 * @param n The number of bits, 1 to 64.
+	 *
+	 * @return the bits, low first.
+	 */
+	private long getBits(long at, int n) {
+
+		long word = at >>> 6;
+		int shift = (int) (at & 63);
+		long v = values[(int) (word / CHUNK)][(int) (word % CHUNK)] >>> shift;
+		if (shift + n > 64) {
+			long next = word + 1;
+			v |= values[(int) (next / CHUNK)][(int) (next % CHUNK)]
+					<< (64 - shift);
+		}
+		return n == 64 ? v : v & ((1L << n) - 1);
+	} // end of getBits method
+
+	/**
+	 * The chunk holding a packed-value word, allocating it if new.
+	 *
+	 * @param word The word's index.
+	 *
+	 * @return its chunk.
+	 */
+	private long[] word(long word) {
+
+		int chunk = (int) (word / CHUNK);
+		if (chunk == values.length) {
+			values = Arrays.copyOf(values, chunk * 2);
+		}
+		long[] c = values[chunk];
+		if (c == null) {
+			c = new long[CHUNK];
+			values[chunk] = c;
+		}
+		return c;
+	} // end of word method
+
+} // end of TraceBuffer class
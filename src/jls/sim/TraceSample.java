@@ -8,9 +8,10 @@ import java.util.BitSet;
  * BitSet width is the element's bit count plus one, with the extra top
  * bit set to mark a HiZ (undriven) value.
  *
- * This is a headless-core type: consumers such as the VCD exporter
- * (issue #72) and the GUI-side {@link jls.BatchTracePrinter} read
- * samples from {@link BatchSimulator#getTraceSamples}.
+ * This is a headless-core type: consumers such as the GUI-side
+ * {@link jls.BatchTracePrinter} read samples from
+ * {@link BatchSimulator#getTraceSamples}, which makes them on demand
+ * from a packed per-element trace.
  *
  * @param time The simulation time at which the value took effect.
  * @param value The recorded value, with HiZ encoded as the marker
@@ -0,0 +1,37 @@
+package jls.sim;
+
+import java.io.IOException;
+import java.util.BitSet;
+
+/**
+ * A waveform output a run streams its value changes to: the VCD
+ * text of docs/batch-interface.md section 4 ({@link VcdWriter}) or the
+ * block-compressed waveform file ({@link WaveFile}). A writer is
+ * created with the signal set, sorted by name, and each signal's value
+ * at time 0, then told each change in non-decreasing time order.
+ */
+interface TraceWriter {
+
+	/**
+	 * Record a signal's new value.
+	 *
+	 * @param signal The signal's index in name order.
+	 * @param time The time of the change, not before any earlier one.
+	 * @param value The new value, with HiZ as the marker BitSet (only
+	 *        bit {@code bits} set); not modified afterwards by the
+	 *        caller.
+	 *
+	 * @throws IOException if the output cannot be written.
+	 */
+	void change(int signal, long time, BitSet value) throws IOException;
+
+	/**
+	 * End the output. The caller closes the channel it was written to.
+	 *
+	 * @param now The time the run ended.
+	 *
+	 * @throws IOException if the output cannot be written.
+	 */
+	void finish(long now) throws IOException;
+
+} // end of TraceWriter interface
@@ -0,0 +1,267 @@
+package jls.sim;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Streams a Value Change Dump (IEEE 1364-2001 section 18) as a run
+ * records its changes, in the exact format docs/batch-interface.md
+ * section 4 specifies (issue #72). The header is written as soon as
+ * the signal set is known; after that only the changes at the current
+ * timestamp are held, and each timestamp is written out, signals in
+ * name order, once the run moves past it. Output goes through one
+ * reused buffer to a channel, so memory does not grow with the length
+ * of the run.
+ *
+ * The caller declares the signals sorted by name, which fixes their
+ * identifier codes and the order of changes within a timestamp, and
+ * reports changes in non-decreasing time order. Within one timestamp
+ * the last value reported for a signal is the one dumped.
+ */
+final class VcdWriter implements TraceWriter {
+
+	/** The channel the dump goes to. */
+	private final WritableByteChannel out;
+	/** Text waiting to be encoded and written. */
+	private final StringBuilder text = new StringBuilder();
+	/** Encoded text waiting to be written. */
+	private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+	/** Per signal, its bit width. */
+	private final int[] bits;
+	/** Per signal, its identifier code. */
+	private final String[] codes;
+	/** Per signal, its latest value. */
+	private final BitSet[] pending;
+	/** Per signal, whether it changed at the pending time. */
+	private final boolean[] dirty;
+	/** Whether any signal changed at the pending time. */
+	private boolean changed;
+	/** The timestamp whose changes are being collected. */
+	private long pendingTime = 0;
+	/** The last timestamp written. */
+	private long last = 0;
+
+	/**
+	 * Start a dump: write the header and collect the time-0 values.
+	 *
+	 * @param out The channel to write to; the caller closes it.
+	 * @param module The scope name, the circuit's name.
+	 * @param names The signal names, sorted.
+	 * @param bits Per signal, its bit width.
+	 * @param initial Per signal, its value at time 0, with HiZ as the
+	 *        trace's marker BitSet (only bit {@code bits} set).
+	 *
+	 * @throws IOException if the channel cannot be written.
+	 */
+	VcdWriter(WritableByteChannel out, String module, List<String> names,
+			int[] bits, BitSet[] initial) throws IOException {
+
+		this.out = out;
+		this.bits = bits.clone();
+		this.codes = new String[names.size()];
+		this.pending = initial.clone();
+		this.dirty = new boolean[initial.length];
+		Arrays.fill(dirty, true);
+		this.changed = true;
+
+		// header: no $date/$version sections (both optional in the
+		// standard) so the same run always produces the same bytes
+		text.append("$comment JLS batch simulation trace $end\n");
+		text.append("$timescale 1 ns $end\n");
+		text.append("$scope module ").append(module).append(" $end\n");
+		for (int s = 0; s < codes.length; s += 1) {
+			codes[s] = vcdId(s);
+			text.append("$var wire ").append(bits[s]).append(' ')
+				.append(codes[s]).append(' ').append(names.get(s));
+			if (bits[s] > 1) {
+				text.append(" [").append(bits[s] - 1).append(":0]");
+			}
+			text.append(" $end\n");
+		}
+		text.append("$upscope $end\n");
+		text.append("$enddefinitions $end\n");
+		drain(false);
+	} // end of constructor
+
+	/**
+	 * Record a signal's new value. Writes out the pending timestamp
+	 * first if this change is later.
+	 *
+	 * @param signal The signal's index in name order.
+	 * @param time The time of the change.
+	 * @param value The new value.
+	 *
+	 * @throws IOException if the channel cannot be written.
+	 */
+	@Override
+	public void change(int signal, long time, BitSet value) throws IOException {
+
+		if (time != pendingTime) {
+			flush();
+			pendingTime = time;
+		}
+		pending[signal] = value;
+		dirty[signal] = true;
+		changed = true;
+	} // end of change method
+
+	/**
+	 * End the dump: write out the pending timestamp and, so viewers
+	 * show the full simulated duration, a final timestamp for the time
+	 * the run ended.
+	 *
+	 * @param now The time the run ended.
+	 *
+	 * @throws IOException if the channel cannot be written.
+	 */
+	@Override
+	public void finish(long now) throws IOException {
+
+		flush();
+		if (now > last) {
+			text.append('#').append(now).append('\n');
+		}
+		drain(true);
+	} // end of finish method
+
+	/**
+	 * Append the pending timestamp's changes, signals in name order;
+	 * time 0 is the $dumpvars block of initial values.
+	 *
+	 * @throws IOException if the channel cannot be written.
+	 */
+	private void flush() throws IOException {
+
+		if (!changed) {
+			return;
+		}
+		text.append('#').append(pendingTime).append('\n');
+		if (pendingTime == 0) {
+			text.append("$dumpvars\n");
+		}
+		for (int s = 0; s < pending.length; s += 1) {
+			if (dirty[s]) {
+				appendValue(text, bits[s], pending[s], codes[s]);
+				text.append('\n');
+				dirty[s] = false;
+			}
+		}
+		if (pendingTime == 0) {
+			text.append("$end\n");
+		}
+		last = pendingTime;
+		changed = false;
+		drain(false);
+	} // end of flush method
+
+	/**
+	 * Move collected text to the channel once enough has built up, or
+	 * all of it at the end.
+	 *
+	 * @param all True to write everything collected.
+	 *
+	 * @throws IOException if the channel cannot be written.
+	 */
+	private void drain(boolean all) throws IOException {
+
+		if (!all && text.length() < buffer.capacity()) {
+			return;
+		}
+		byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+		text.setLength(0);
+		for (int at = 0; at < bytes.length; ) {
+			int n = Math.min(buffer.remaining(), bytes.length - at);
+			buffer.put(bytes, at, n);
+			at += n;
+			if (!buffer.hasRemaining()) {
+				write();
+			}
+		}
+		if (all) {
+			write();
+		}
+	} // end of drain method
+
+	/**
+	 * Write the buffer to the channel and empty it.
+	 *
+	 * @throws IOException if the channel cannot be written.
+	 */
+	private void write() throws IOException {
+
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+		buffer.clear();
+	} // end of write method
+
+	/**
+	 * The VCD identifier code for the n'th signal: the printable ASCII
+	 * characters '!' (33) through '~' (126), extended to multiple
+	 * characters after 94 signals, assigned in signal-name order.
+	 *
+	 * @param index The zero-based signal number.
+	 *
+	 * @return the identifier code.
+	 */
+	static String vcdId(int index) {
+
+		StringBuilder code = new StringBuilder();
+		int n = index + 1;
+		while (n > 0) {
+			n -= 1;
+			code.insert(0, (char)('!' + n % 94));
+			n /= 94;
+		}
+		return code.toString();
+	} // end of vcdId method
+
+	/**
+	 * One VCD value-change entry. JLS values are two-state plus HiZ,
+	 * so only 0, 1 and z ever appear ('x' never does): a single-bit
+	 * signal becomes its value directly followed by the identifier
+	 * code ({@code 0c}, {@code 1c} or {@code zc}); a multi-bit signal
+	 * becomes a binary vector {@code b<value> <code>} with leading
+	 * zeros omitted, or {@code bz <code>} when the whole signal is
+	 * HiZ.
+	 *
+	 * The entry is appended straight from the value's bits, so writing
+	 * it allocates nothing beyond the text buffer's growth.
+	 *
+	 * @param text Where to append the value-change line, without the
+	 *        newline.
+	 * @param bits The signal's bit width (a watched element's or a
+	 *        probed net's, issue #200).
+	 * @param value The recorded value, with HiZ encoded as the trace's
+	 *        marker BitSet (only bit {@code bits} set).
+	 * @param code The signal's identifier code.
+	 */
+	static void appendValue(StringBuilder text, int bits, BitSet value,
+			String code) {
+
+		boolean hiZ = value.nextSetBit(0) == bits
+				&& value.nextSetBit(bits + 1) < 0;
+		if (bits == 1) {
+			text.append(hiZ ? 'z' : value.get(0) ? '1' : '0').append(code);
+			return;
+		}
+		if (hiZ) {
+			text.append("bz ").append(code);
+			return;
+		}
+		text.append('b');
+		int top = value.length() - 1;
+		if (top < 0) {
+			text.append('0');
+		}
+		for (int i = top; i >= 0; i -= 1) {
+			text.append(value.get(i) ? '1' : '0');
+		}
+		text.append(' ').append(code);
+	} // end of appendValue method
+
+} // end of VcdWriter class
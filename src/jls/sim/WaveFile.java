@@ -0,0 +1,750 @@
+package jls.sim;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+import org.tukaani.xz.BasicArrayCache;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.XZ;
+import org.tukaani.xz.XZInputStream;
+import org.tukaani.xz.XZOutputStream;
+
+/**
+ * The block-compressed waveform file (docs/batch-interface.md section
+ * 4.4): the same value changes as a VCD, for runs whose VCD would be
+ * too big to keep or too slow to seek. A run writes it when the
+ * {@code -vcd} file name ends in {@link #EXTENSION}.
+ *
+ * The changes are cut into blocks of about {@link #BLOCK_BYTES}, each
+ * covering a window of whole timestamps. A block holds every signal's
+ * value at its start, then one column of changes per signal with
+ * varint time deltas, and is XZ-compressed on its own. An index at the
+ * end of the file gives each block's start time and position, so a
+ * reader can find the values at any time by decoding one block rather
+ * than everything before it.
+ *
+ * {@link #open} reads a file; {@link #toVcd} converts one to the VCD a
+ * run would have written directly, byte for byte.
+ */
+public final class WaveFile implements Closeable {
+
+	/** The first bytes of every waveform file; the last is the version. */
+	private static final byte[] MAGIC = { 'J', 'L', 'S', 'W', 'A', 'V', 0, 1 };
+
+	/** The file name extension that selects this format for -vcd. */
+	public static final String EXTENSION = ".jlsw";
+
+	/** The uncompressed size a block is closed at. */
+	static final int BLOCK_BYTES = 1 << 20;
+
+	/** The file. */
+	private final FileChannel channel;
+	/** The scope name, the circuit's name. */
+	private final String module;
+	/** The signal names, sorted. */
+	private final List<String> names;
+	/** Per signal, its bit width. */
+	private final int[] bits;
+	/** The time the run ended. */
+	private final long end;
+	/** Per block, the time of its first change (0 for the first block). */
+	private final long[] blockTime;
+	/** Per block, its position in the file. */
+	private final long[] blockOffset;
+	/** Per block, its compressed length. */
+	private final int[] blockLength;
+	/** Per block, its uncompressed length. */
+	private final int[] blockRaw;
+
+	/**
+	 * One decoded block.
+	 *
+	 * @param start Every signal's value at the start of the block.
+	 * @param times Per signal, the times of its changes in the block.
+	 * @param values Per signal, the values of its changes in the block.
+	 */
+	private record Block(BitSet[] start, long[][] times, BitSet[][] values) {
+	}
+
+	/**
+	 * Read an open file's header and index.
+	 *
+	 * @param channel The file.
+	 *
+	 * @throws IOException if the file cannot be read or is malformed.
+	 */
+	private WaveFile(FileChannel channel) throws IOException {
+
+		this.channel = channel;
+		long size = channel.size();
+		if (size < MAGIC.length + Long.BYTES) {
+			throw new IOException("not a waveform file");
+		}
+		byte[] magic = new byte[MAGIC.length];
+		read(0, MAGIC.length).get(magic);
+		if (!Arrays.equals(magic, MAGIC)) {
+			throw new IOException("not a waveform file"
+					+ " (or an unsupported version)");
+		}
+		long indexAt = read(size - Long.BYTES, Long.BYTES).getLong();
+		if (indexAt < MAGIC.length || indexAt > size - Long.BYTES) {
+			throw new IOException("the waveform index is damaged");
+		}
+		try {
+			ByteBuffer index = read(indexAt,
+					(int) (size - Long.BYTES - indexAt));
+			int blocks = readInt(index);
+			if (blocks < 1 || blocks > index.remaining()) {
+				throw new IOException("the waveform index is damaged");
+			}
+			blockTime = new long[blocks];
+			blockOffset = new long[blocks];
+			blockLength = new int[blocks];
+			blockRaw = new int[blocks];
+			long at = -1;
+			for (int b = 0; b < blocks; b += 1) {
+				blockTime[b] = readVarint(index);
+				blockOffset[b] = readVarint(index);
+				blockLength[b] = readInt(index);
+				blockRaw[b] = readInt(index);
+				if (blockOffset[b] < MAGIC.length || blockOffset[b] < at
+						|| blockOffset[b] + blockLength[b] > indexAt
+						|| (b > 0 && blockTime[b] <= blockTime[b - 1])) {
+					throw new IOException("the waveform index is damaged");
+				}
+				at = blockOffset[b] + blockLength[b];
+			}
+			end = readVarint(index);
+
+			// the header runs from the magic to the first block
+			ByteBuffer head = read(MAGIC.length,
+					(int) (blockOffset[0] - MAGIC.length));
+			module = readString(head);
+			int count = readInt(head);
+			if (count > head.remaining()) {
+				throw new IOException("the waveform header is damaged");
+			}
+			names = new ArrayList<String>();
+			bits = new int[count];
+			for (int s = 0; s < count; s += 1) {
+				names.add(readString(head));
+				bits[s] = readInt(head);
+				if (bits[s] < 1) {
+					throw new IOException("signal " + names.get(s)
+							+ " has no bits");
+				}
+			}
+		} catch (java.nio.BufferUnderflowException e) {
+			throw new IOException("the waveform file is truncated", e);
+		}
+	} // end of constructor
+
+	/**
+	 * See whether a file name selects the waveform format.
+	 *
+	 * @param fileName The file name.
+	 *
+	 * @return true if it ends in {@link #EXTENSION}.
+	 */
+	public static boolean isWaveFileName(String fileName) {
+
+		return fileName.endsWith(EXTENSION);
+	} // end of isWaveFileName method
+
+	/**
+	 * Open a waveform file and read its header and block index.
+	 *
+	 * @param file The file.
+	 *
+	 * @return the open file; the caller closes it.
+	 *
+	 * @throws IOException if the file cannot be read or is malformed.
+	 *
+	 * @jls.testedby jls.sim.WaveFileTest#valuesAtAnyTimeDecodeOneBlock()
+	 * @jls.testedby jls.sim.WaveFileTest#aDamagedFileIsRejected()
+	 */
+	public static WaveFile open(Path file) throws IOException {
+
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			return new WaveFile(channel);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	} // end of open method
+
+	/**
+	 * Convert a waveform file to the VCD (docs/batch-interface.md
+	 * section 4) the run would have written with a {@code .vcd} name.
+	 *
+	 * @param wave The waveform file.
+	 * @param vcd Where to write the VCD.
+	 *
+	 * @throws IOException if a file cannot be read or written, or the
+	 *         waveform file is malformed.
+	 *
+	 * @jls.testedby jls.sim.WaveFileTest#aRunConvertsToTheVcdItWouldHaveWritten()
+	 */
+	public static void toVcd(Path wave, Path vcd) throws IOException {
+
+		try (WaveFile in = open(wave);
+				FileChannel out = FileChannel.open(vcd,
+						StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+			in.writeVcd(out);
+		}
+	} // end of toVcd method
+
+	/**
+	 * Write this waveform as VCD text, replaying its changes block by
+	 * block in time order.
+	 *
+	 * @param out Where to write the VCD; the caller closes it.
+	 *
+	 * @throws IOException if it cannot be written or a block is
+	 *         malformed.
+	 */
+	void writeVcd(WritableByteChannel out) throws IOException {
+
+		VcdWriter vcd = null;
+		for (int b = 0; b < blockTime.length; b += 1) {
+			Block block = decode(b);
+			if (vcd == null) {
+				vcd = new VcdWriter(out, module, names, bits, block.start());
+			}
+
+			// the columns merged into time order; a stable sort keeps
+			// each signal's own changes in the order they happened
+			List<int[]> order = new ArrayList<int[]>();
+			for (int s = 0; s < bits.length; s += 1) {
+				for (int c = 0; c < block.times()[s].length; c += 1) {
+					order.add(new int[] { s, c });
+				}
+			}
+			order.sort(Comparator.comparingLong(
+					(int[] e) -> block.times()[e[0]][e[1]]));
+			for (int[] e : order) {
+				vcd.change(e[0], block.times()[e[0]][e[1]],
+						block.values()[e[0]][e[1]]);
+			}
+		}
+		Objects.requireNonNull(vcd).finish(end);
+	} // end of writeVcd method
+
+	/**
+	 * Every signal's value at a time, decoding only the block that
+	 * covers it. Where a signal changed more than once at that time,
+	 * the last value counts, as in the VCD.
+	 *
+	 * @param time The time, 0 through {@link #getEndTime()}.
+	 *
+	 * @return per signal, its value, with HiZ as the marker BitSet (only
+	 *         bit {@code bits} set).
+	 *
+	 * @throws IOException if the block cannot be read or is malformed.
+	 *
+	 * @jls.testedby jls.sim.WaveFileTest#valuesAtAnyTimeDecodeOneBlock()
+	 */
+	public BitSet[] valuesAt(long time) throws IOException {
+
+		int b = Arrays.binarySearch(blockTime, time);
+		if (b < 0) {
+			b = Math.max(0, -b - 2);
+		}
+		Block block = decode(b);
+		BitSet[] values = block.start().clone();
+		for (int s = 0; s < values.length; s += 1) {
+			long[] times = block.times()[s];
+			for (int c = 0; c < times.length && times[c] <= time; c += 1) {
+				values[s] = block.values()[s][c];
+			}
+		}
+		return values;
+	} // end of valuesAt method
+
+	/**
+	 * Get the signal names.
+	 *
+	 * @return the names, sorted, in signal index order.
+	 */
+	public List<String> getSignalNames() {
+
+		return Collections.unmodifiableList(names);
+	} // end of getSignalNames method
+
+	/**
+	 * Get a signal's bit width.
+	 *
+	 * @param signal The signal's index.
+	 *
+	 * @return the width.
+	 */
+	public int getBits(int signal) {
+
+		return bits[signal];
+	} // end of getBits method
+
+	/**
+	 * Get the time the run ended.
+	 *
+	 * @return the end time.
+	 */
+	public long getEndTime() {
+
+		return end;
+	} // end of getEndTime method
+
+	/**
+	 * Get the number of compressed blocks.
+	 *
+	 * @return the block count, at least 1.
+	 */
+	public int getBlockCount() {
+
+		return blockTime.length;
+	} // end of getBlockCount method
+
+	/**
+	 * Close the file.
+	 *
+	 * @throws IOException if closing fails.
+	 */
+	@Override
+	public void close() throws IOException {
+
+		channel.close();
+	} // end of close method
+
+	/**
+	 * Read and decompress one block.
+	 *
+	 * @param b The block's index.
+	 *
+	 * @return the decoded block.
+	 *
+	 * @throws IOException if it cannot be read or is malformed.
+	 */
+	private Block decode(int b) throws IOException {
+
+		ByteBuffer packed = read(blockOffset[b], blockLength[b]);
+		byte[] raw;
+		try (InputStream in = new XZInputStream(new ByteArrayInputStream(
+				packed.array(), 0, blockLength[b]))) {
+			raw = in.readNBytes(blockRaw[b]);
+			if (raw.length != blockRaw[b] || in.read() != -1) {
+				throw new IOException("block " + b + " has the wrong length");
+			}
+		}
+		ByteBuffer data = ByteBuffer.wrap(raw);
+		int count = bits.length;
+		BitSet[] start = new BitSet[count];
+		long[][] times = new long[count][];
+		BitSet[][] values = new BitSet[count][];
+		try {
+			for (int s = 0; s < count; s += 1) {
+				start[s] = readValue(data, bits[s]);
+			}
+			for (int s = 0; s < count; s += 1) {
+				int changes = readInt(data);
+				if (changes > data.remaining()) {
+					throw new IOException("block " + b + " is damaged");
+				}
+				times[s] = new long[changes];
+				values[s] = new BitSet[changes];
+				long time = blockTime[b];
+				for (int c = 0; c < changes; c += 1) {
+					time += readVarint(data);
+					times[s][c] = time;
+					values[s][c] = readValue(data, bits[s]);
+				}
+			}
+		} catch (java.nio.BufferUnderflowException e) {
+			throw new IOException("block " + b + " is truncated", e);
+		}
+		if (data.hasRemaining()) {
+			throw new IOException("block " + b + " is damaged");
+		}
+		return new Block(start, times, values);
+	} // end of decode method
+
+	/**
+	 * Read a range of the file.
+	 *
+	 * @param at The position.
+	 * @param length The number of bytes.
+	 *
+	 * @return a heap buffer holding them, positioned at the start.
+	 *
+	 * @throws IOException if they cannot all be read.
+	 */
+	private ByteBuffer read(long at, int length) throws IOException {
+
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, at + buffer.position()) < 0) {
+				throw new IOException("the waveform file is truncated");
+			}
+		}
+		return buffer.flip();
+	} // end of read method
+
+	/**
+	 * Read a length-prefixed UTF-8 string.
+	 *
+	 * @param in The buffer, positioned at the string.
+	 *
+	 * @return the string.
+	 *
+	 * @throws IOException if it is truncated.
+	 */
+	private static String readString(ByteBuffer in) throws IOException {
+
+		int length = readInt(in);
+		if (length > in.remaining()) {
+			throw new IOException("the waveform file is truncated");
+		}
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	} // end of readString method
+
+	/**
+	 * Read a varint that must fit a non-negative int.
+	 *
+	 * @param in The buffer, positioned at the varint.
+	 *
+	 * @return the value.
+	 *
+	 * @throws IOException if it is truncated or out of range.
+	 */
+	private static int readInt(ByteBuffer in) throws IOException {
+
+		long value = readVarint(in);
+		if (value < 0 || value > Integer.MAX_VALUE) {
+			throw new IOException("a count is out of range");
+		}
+		return (int) value;
+	} // end of readInt method
+
+	/**
+	 * Write an unsigned LEB128 varint.
+	 *
+	 * @param out Where to write it.
+	 * @param value The value, treated as unsigned.
+	 */
+	private static void writeVarint(ByteArrayOutputStream out, long value) {
+
+		while ((value & ~0x7fL) != 0) {
+			out.write((int) (value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.write((int) value);
+	} // end of writeVarint method
+
+	/**
+	 * Read an unsigned LEB128 varint.
+	 *
+	 * @param in The buffer, positioned at the varint.
+	 *
+	 * @return the value.
+	 *
+	 * @throws IOException if the varint is truncated or too long.
+	 */
+	private static long readVarint(ByteBuffer in) throws IOException {
+
+		long value = 0;
+		for (int shift = 0; shift < Long.SIZE; shift += 7) {
+			if (!in.hasRemaining()) {
+				throw new IOException("the waveform file is truncated");
+			}
+			int b = in.get();
+			value |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("a varint is too long");
+	} // end of readVarint method
+
+	/**
+	 * Read one value: a 0 byte for HiZ, or a 1 byte and the value's
+	 * bytes, least significant first.
+	 *
+	 * @param in The buffer, positioned at the value.
+	 * @param bits The signal's bit width.
+	 *
+	 * @return the value, with HiZ as the marker BitSet.
+	 *
+	 * @throws IOException if it is malformed.
+	 */
+	private static BitSet readValue(ByteBuffer in, int bits)
+			throws IOException {
+
+		int tag = in.get();
+		if (tag == 0) {
+			BitSet off = new BitSet(bits + 1);
+			off.set(bits);
+			return off;
+		}
+		if (tag != 1) {
+			throw new IOException("a value is damaged");
+		}
+		int width = (int) ((bits + 7L) / 8);
+		if (width > in.remaining()) {
+			throw new IOException("a value is truncated");
+		}
+		byte[] bytes = new byte[width];
+		in.get(bytes);
+		BitSet value = BitSet.valueOf(bytes);
+		if (value.length() > bits) {
+			throw new IOException("a value is too wide");
+		}
+		return value;
+	} // end of readValue method
+
+	/**
+	 * Streams a run's changes to a waveform file. Only the open block
+	 * is held in memory; it is compressed and written once it reaches
+	 * {@link #BLOCK_BYTES} and the run moves to a new timestamp, so a
+	 * block never splits one. The header goes first and the index
+	 * last.
+	 */
+	static final class Writer implements TraceWriter {
+
+		/** The channel the file goes to. */
+		private final WritableByteChannel out;
+		/** The uncompressed size a block is closed at. */
+		private final int blockBytes;
+		/** Per signal, its bit width. */
+		private final int[] bits;
+		/** Per signal, its latest value. */
+		private final BitSet[] current;
+		/** Per signal, its value at the start of the open block. */
+		private BitSet[] start;
+		/** Per signal, its changes in the open block, encoded. */
+		private final ByteArrayOutputStream[] columns;
+		/** Per signal, its number of changes in the open block. */
+		private final int[] counts;
+		/** Per signal, the time of its last change, the delta base. */
+		private final long[] columnTime;
+		/** The open block's total encoded size. */
+		private int blockSize = 0;
+		/** The open block's start time. */
+		private long blockTime = 0;
+		/** The time of the latest change. */
+		private long lastTime = 0;
+		/** The number of bytes written so far. */
+		private long offset = 0;
+		/** The index: per written block, time, offset, lengths. */
+		private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+		/** The number of blocks written. */
+		private int blocks = 0;
+		/** The compressor settings: one block fits the dictionary. */
+		private final LZMA2Options options = new LZMA2Options();
+
+		/**
+		 * Start a waveform file: write the header and open the first
+		 * block with the time-0 values.
+		 *
+		 * @param out The channel to write to; the caller closes it.
+		 * @param module The scope name, the circuit's name.
+		 * @param names The signal names, sorted.
+		 * @param bits Per signal, its bit width.
+		 * @param initial Per signal, its value at time 0, with HiZ as the
+		 *        marker BitSet.
+		 *
+		 * @throws IOException if the channel cannot be written.
+		 */
+		Writer(WritableByteChannel out, String module, List<String> names,
+				int[] bits, BitSet[] initial) throws IOException {
+
+			this(out, module, names, bits, initial, BLOCK_BYTES);
+		} // end of constructor
+
+		/**
+		 * Start a waveform file with a given block size.
+		 *
+		 * @param out The channel to write to; the caller closes it.
+		 * @param module The scope name, the circuit's name.
+		 * @param names The signal names, sorted.
+		 * @param bits Per signal, its bit width.
+		 * @param initial Per signal, its value at time 0.
+		 * @param blockBytes The uncompressed size a block is closed at.
+		 *
+		 * @throws IOException if the channel cannot be written.
+		 */
+		Writer(WritableByteChannel out, String module, List<String> names,
+				int[] bits, BitSet[] initial, int blockBytes)
+				throws IOException {
+
+			this.out = out;
+			this.blockBytes = blockBytes;
+			this.bits = bits.clone();
+			this.current = initial.clone();
+			this.start = initial.clone();
+			this.columns = new ByteArrayOutputStream[bits.length];
+			this.counts = new int[bits.length];
+			this.columnTime = new long[bits.length];
+			for (int s = 0; s < bits.length; s += 1) {
+				columns[s] = new ByteArrayOutputStream();
+			}
+			options.setDictSize(Math.max(LZMA2Options.DICT_SIZE_MIN,
+					Integer.highestOneBit(blockBytes) * 2));
+
+			ByteArrayOutputStream header = new ByteArrayOutputStream();
+			header.write(MAGIC);
+			writeString(header, module);
+			writeVarint(header, bits.length);
+			for (int s = 0; s < bits.length; s += 1) {
+				writeString(header, names.get(s));
+				writeVarint(header, bits[s]);
+			}
+			write(header);
+		} // end of constructor
+
+		/**
+		 * Record a signal's new value, closing the open block first if
+		 * it is full and this change starts a new timestamp.
+		 *
+		 * @param signal The signal's index in name order.
+		 * @param time The time of the change.
+		 * @param value The new value.
+		 *
+		 * @throws IOException if the channel cannot be written.
+		 */
+		@Override
+		public void change(int signal, long time, BitSet value)
+				throws IOException {
+
+			if (time != lastTime && blockSize >= blockBytes) {
+				flushBlock();
+				start = current.clone();
+				blockTime = time;
+				Arrays.fill(columnTime, time);
+			}
+			lastTime = time;
+			ByteArrayOutputStream column = columns[signal];
+			int before = column.size();
+			writeVarint(column, time - columnTime[signal]);
+			writeValue(column, bits[signal], value);
+			blockSize += column.size() - before;
+			columnTime[signal] = time;
+			counts[signal] += 1;
+			current[signal] = value;
+		} // end of change method
+
+		/**
+		 * Write the open block, the index and the trailer.
+		 *
+		 * @param now The time the run ended.
+		 *
+		 * @throws IOException if the channel cannot be written.
+		 */
+		@Override
+		public void finish(long now) throws IOException {
+
+			flushBlock();
+			long indexAt = offset;
+			ByteArrayOutputStream tail = new ByteArrayOutputStream();
+			writeVarint(tail, blocks);
+			index.writeTo(tail);
+			writeVarint(tail, now);
+			tail.write(ByteBuffer.allocate(Long.BYTES).putLong(indexAt)
+					.array());
+			write(tail);
+		} // end of finish method
+
+		/**
+		 * Compress and write the open block and add it to the index.
+		 *
+		 * @throws IOException if the channel cannot be written.
+		 */
+		private void flushBlock() throws IOException {
+
+			ByteArrayOutputStream raw = new ByteArrayOutputStream(
+					blockSize + 16 * bits.length);
+			for (int s = 0; s < bits.length; s += 1) {
+				writeValue(raw, bits[s], start[s]);
+			}
+			for (int s = 0; s < bits.length; s += 1) {
+				writeVarint(raw, counts[s]);
+				columns[s].writeTo(raw);
+				columns[s].reset();
+				counts[s] = 0;
+			}
+			blockSize = 0;
+
+			ByteArrayOutputStream packed = new ByteArrayOutputStream();
+			try (XZOutputStream xz = new XZOutputStream(packed, options,
+					XZ.CHECK_CRC32, BasicArrayCache.getInstance())) {
+				raw.writeTo(xz);
+			}
+			writeVarint(index, blockTime);
+			writeVarint(index, offset);
+			writeVarint(index, packed.size());
+			writeVarint(index, raw.size());
+			blocks += 1;
+			write(packed);
+		} // end of flushBlock method
+
+		/**
+		 * Write bytes to the channel.
+		 *
+		 * @param bytes The bytes.
+		 *
+		 * @throws IOException if the channel cannot be written.
+		 */
+		private void write(ByteArrayOutputStream bytes) throws IOException {
+
+			ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+			while (buffer.hasRemaining()) {
+				offset += out.write(buffer);
+			}
+		} // end of write method
+
+		/**
+		 * Write a length-prefixed UTF-8 string.
+		 *
+		 * @param out Where to write it.
+		 * @param s The string.
+		 */
+		private static void writeString(ByteArrayOutputStream out, String s) {
+
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			writeVarint(out, bytes.length);
+			out.writeBytes(bytes);
+		} // end of writeString method
+
+		/**
+		 * Write one value: a 0 byte for HiZ, or a 1 byte and the
+		 * value's bytes, least significant first.
+		 *
+		 * @param out Where to write it.
+		 * @param bits The signal's bit width.
+		 * @param value The value, with HiZ as the marker BitSet.
+		 */
+		private static void writeValue(ByteArrayOutputStream out, int bits,
+				BitSet value) {
+
+			if (value.get(bits)) {
+				out.write(0);
+				return;
+			}
+			out.write(1);
+			byte[] bytes = value.toByteArray();
+			int width = (bits + 7) / 8;
+			out.write(bytes, 0, Math.min(bytes.length, width));
+			for (int i = bytes.length; i < width; i += 1) {
+				out.write(0);
+			}
+		} // end of writeValue method
+
+	} // end of Writer class
+
+} // end of WaveFile class
@@ -0,0 +1,181 @@
+package jls.sim;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.List;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * A waveform file an interactive run streams its traced signals to, as
+ * a batch run streams its -vcd file: the block-compressed waveform
+ * format for a name ending in {@link WaveFile#EXTENSION}, VCD text
+ * otherwise. The run declares its signals, sorted by name, with their
+ * values at the start; then reports every value a signal takes, and
+ * only the changes are written.
+ *
+ * A write failure stops the recording but not the run; {@link #error()}
+ * reports it.
+ */
+public final class WaveRecorder implements Closeable {
+
+	/** The file written. */
+	private final Path file;
+	/** The channel the file goes to. */
+	private final FileChannel channel;
+	/** Writes the file, or null once writing has failed. */
+	private @Nullable TraceWriter writer;
+	/** Per signal, its last value recorded, HiZ as the marker BitSet. */
+	private final BitSet[] last;
+	/** Per signal, its HiZ marker: only bit {@code bits} set. */
+	private final BitSet[] hiZ;
+	/** The first write failure, or null. */
+	private @Nullable IOException error = null;
+
+	/**
+	 * Start a recording: create the file and write the signals' values
+	 * at the start.
+	 *
+	 * @param file The file, replaced if it exists.
+	 * @param module The scope name, the circuit's name.
+	 * @param names The signal names, sorted and distinct.
+	 * @param bits Per signal, its bit width.
+	 * @param initial Per signal, its value at the start, or null for
+	 *        HiZ.
+	 *
+	 * @throws IOException if the file cannot be created or written.
+	 *
+	 * @jls.testedby jls.sim.WaveFileTest#anInteractiveRunRecordsWhatABatchRunWrites()
+	 */
+	public WaveRecorder(Path file, String module, List<String> names,
+			int[] bits, @Nullable BitSet[] initial) throws IOException {
+
+		for (int s = 1; s < names.size(); s += 1) {
+			if (names.get(s - 1).compareTo(names.get(s)) >= 0) {
+				throw new IllegalArgumentException("signal " + names.get(s)
+						+ " is out of order or repeated");
+			}
+		}
+		this.file = file;
+		last = new BitSet[names.size()];
+		hiZ = new BitSet[names.size()];
+		for (int s = 0; s < last.length; s += 1) {
+			hiZ[s] = new BitSet(bits[s] + 1);
+			hiZ[s].set(bits[s]);
+			last[s] = normal(s, initial[s]);
+		}
+		channel = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			writer = WaveFile.isWaveFileName(file.toString())
+					? new WaveFile.Writer(channel, module, names, bits, last)
+					: new VcdWriter(channel, module, names, bits, last);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			Files.deleteIfExists(file);
+			throw e;
+		}
+	} // end of constructor
+
+	/**
+	 * A signal's value as recorded: a copy, HiZ as the marker BitSet.
+	 *
+	 * @param signal The signal's index.
+	 * @param value The value, or null for HiZ.
+	 *
+	 * @return the value to record.
+	 */
+	private BitSet normal(int signal, @Nullable BitSet value) {
+
+		return value == null ? hiZ[signal] : (BitSet)value.clone();
+	} // end of normal method
+
+	/**
+	 * Record a signal's value, if it differs from the last one.
+	 *
+	 * @param signal The signal's index in name order.
+	 * @param time The simulation time, not before any earlier one.
+	 * @param value The value, or null for HiZ.
+	 *
+	 * @jls.testedby jls.sim.WaveFileTest#anInteractiveRunRecordsWhatABatchRunWrites()
+	 */
+	public void record(int signal, long time, @Nullable BitSet value) {
+
+		TraceWriter out = writer;
+		if (out == null
+				|| (value == null ? last[signal] == hiZ[signal]
+						: value.equals(last[signal]))) {
+			return;
+		}
+		last[signal] = normal(signal, value);
+		try {
+			out.change(signal, time, last[signal]);
+		} catch (IOException e) {
+			fail(e);
+		}
+	} // end of record method
+
+	/**
+	 * End the recording at the time the run ended, and close the file.
+	 *
+	 * @param now The time the run ended.
+	 *
+	 * @jls.testedby jls.sim.WaveFileTest#anInteractiveRunRecordsWhatABatchRunWrites()
+	 */
+	public void finish(long now) {
+
+		TraceWriter out = writer;
+		try (channel) {
+			if (out != null) {
+				out.finish(now);
+			}
+		} catch (IOException e) {
+			fail(e);
+		}
+		writer = null;
+	} // end of finish method
+
+	/**
+	 * Abandon the recording of a run that failed: close the file and
+	 * remove it.
+	 *
+	 * @throws IOException if the file cannot be closed or removed.
+	 */
+	@Override
+	public void close() throws IOException {
+
+		writer = null;
+		try (channel) {
+			Files.deleteIfExists(file);
+		}
+	} // end of close method
+
+	/**
+	 * Note a write failure and stop writing.
+	 *
+	 * @param e The failure.
+	 */
+	private void fail(IOException e) {
+
+		if (error == null) {
+			error = e;
+		}
+		writer = null;
+	} // end of fail method
+
+	/**
+	 * Get the first failure writing the file.
+	 *
+	 * @return the failure, or null if there was none.
+	 */
+	public @Nullable IOException error() {
+
+		return error;
+	} // end of error method
+
+} // end of WaveRecorder class
@@ -0,0 +1,271 @@
+package jls;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jls.sim.DelayModel;
+
+/**
+ * Multi-job batch mode (BatchJobs): every job's stdout report and exit
+ * status must be exactly what a single {@code jls -b} run of the same
+ * job prints (docs/batch-interface.md sections 1 and 7), however many
+ * jobs share the JVM and its worker threads, and a job whose input is
+ * bad must fail alone instead of ending the whole run.
+ */
+class BatchJobsTest {
+
+	@TempDir
+	Path dir;
+
+	/** A watched counter register starting at init, counting by step. */
+	private static String counter(long init, long step) {
+		CircuitTextBuilder cb = new CircuitTextBuilder();
+		cb.counter(400, init, step);
+		return cb.build();
+	}
+
+	private Path write(String name, String text) throws Exception {
+		Path file = dir.resolve(name);
+		Files.writeString(file, text, StandardCharsets.UTF_8);
+		return file;
+	}
+
+	/** What one job prints to stdout when run on its own. */
+	private static String single(BatchJob job) {
+		PrintStream saved = System.out;
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(buffer, true, StandardCharsets.UTF_8));
+		try {
+			assertEquals(0, job.run(), "the reference run must succeed");
+		} finally {
+			System.setOut(saved);
+		}
+		return buffer.toString(StandardCharsets.UTF_8);
+	}
+
+	/** Run a manifest, returning {stdout, exit status}. */
+	private static String[] runManifest(Path manifest, int threads) {
+		boolean oldBatch = JLSInfo.batch;
+		JLSInfo.batch = true;
+		PrintStream saved = System.out;
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(buffer, true, StandardCharsets.UTF_8));
+		int status;
+		try {
+			status = BatchJobs.run(manifest.toString(), threads,
+					JLSInfo.defaultTimeLimit, DelayModel.CONFIGURED,
+					BatchJob.DEFAULT_MAX_FAIL, null);
+		} finally {
+			System.setOut(saved);
+			JLSInfo.batch = oldBatch;
+		}
+		return new String[] { buffer.toString(StandardCharsets.UTF_8),
+				String.valueOf(status) };
+	}
+
+	@Test
+	void jobsReportExactlyWhatSingleRunsPrint() throws Exception {
+		Path a = write("counta.jls", counter(0, 1));
+		Path b = write("countb.jls", counter(7, 3));
+		String expectA = single(new BatchJob(a.toString(), null, null,
+				1900, DelayModel.CONFIGURED, null));
+		String expectB = single(new BatchJob(b.toString(), null, null,
+				3000, DelayModel.CONFIGURED, null));
+		assertTrue(expectA.contains("Simulation"), expectA);
+
+		StringBuilder manifest = new StringBuilder("# circuit\ttest\tparam\tlimit\toutput\n\n");
+		StringBuilder summary = new StringBuilder();
+		for (int i = 0; i < 8; i += 1) {
+			Path circuit = i % 2 == 0 ? a : b;
+			String limit = i % 2 == 0 ? "1900" : "3000";
+			Path out = dir.resolve("job" + i + ".out");
+			manifest.append(circuit).append("\t-\t-\t").append(limit)
+					.append('\t').append(out).append('\n');
+			summary.append("0\t").append(out).append('\n');
+		}
+		String[] result = runManifest(write("jobs.txt", manifest.toString()), 3);
+
+		assertEquals("0", result[1], "every job succeeded");
+		assertEquals(summary.toString(), result[0],
+				"one status line per job, in manifest order");
+		for (int i = 0; i < 8; i += 1) {
+			Path out = dir.resolve("job" + i + ".out");
+			assertEquals(i % 2 == 0 ? expectA : expectB,
+					Files.readString(out, StandardCharsets.UTF_8),
+					"job " + i + " must report exactly what a single run prints");
+			assertEquals("", Files.readString(dir.resolve("job" + i + ".out.err"),
+					StandardCharsets.UTF_8), "a clean job writes nothing to stderr");
+		}
+	}
+
+	@Test
+	void aFailingJobEndsOnlyItself() throws Exception {
+		Path a = write("counta.jls", counter(0, 1));
+		Path missing = dir.resolve("nosuch.txt");
+		Path bad = dir.resolve("bad.out");
+		Path good = dir.resolve("good.out");
+		String manifest = a + "\t" + missing + "\t-\t-\t" + bad + "\n"
+				+ a + "\t-\t-\t1900\t" + good + "\n";
+		String[] result = runManifest(write("jobs.txt", manifest), 2);
+
+		assertEquals("1", result[1], "a failed job fails the run");
+		assertEquals("1\t" + bad + "\n0\t" + good + "\n", result[0]);
+		assertEquals("Can't open test file: " + missing + "\n",
+				Files.readString(bad, StandardCharsets.UTF_8),
+				"the failing job's diagnostic is its own stdout, as in a single run");
+		assertTrue(Files.readString(good, StandardCharsets.UTF_8)
+				.startsWith("Simulation"), "the other job still ran");
+	}
+
+	/**
+	 * A sweep copies one loaded circuit per job, so each job's test
+	 * file, parameter file and limit must act on a fresh copy: a test
+	 * file replacing the signal generator in one job must leave it in
+	 * place for the next, and a parameter file must not leak into a job
+	 * without one.
+	 */
+	@Test
+	void sweepJobsReportExactlyWhatSingleRunsPrint() throws Exception {
+		CircuitTextBuilder cb = new CircuitTextBuilder();
+		int clock = cb.clock(400, 200);
+		int reg = cb.register(8, 0, "pff");
+		int adder = cb.adder(8);
+		int step = cb.inputPin("step", 8);
+		int zero = cb.constant(0);
+		cb.sigGen("step 1 end");
+		cb.wire(clock, "output", reg, "C");
+		cb.wire(reg, "Q", adder, "A");
+		cb.wire(step, "output", adder, "B");
+		cb.wire(zero, "output", adder, "Cin");
+		cb.wire(adder, "S", reg, "D");
+		Path circuit = write("sweep.jls", cb.build());
+		Path three = write("three.txt", "step 3 end\n");
+		Path five = write("five.txt", "step 5 until 1000 2 end\n");
+		Path slow = write("slow.txt", "TYPE Register PROPDELAY 150\n");
+
+		Object[][] jobs = {
+			{ three, null, 1900L },
+			{ null, null, 1900L },
+			{ null, slow, 1900L },
+			{ five, slow, 3000L },
+		};
+		StringBuilder list = new StringBuilder("# test\tparam\tlimit\toutput\n");
+		String[] expected = new String[jobs.length];
+		for (int i = 0; i < jobs.length; i += 1) {
+			Path test = (Path) jobs[i][0];
+			Path param = (Path) jobs[i][1];
+			long limit = (Long) jobs[i][2];
+			expected[i] = single(new BatchJob(circuit.toString(),
+					test == null ? null : test.toString(),
+					param == null ? null : param.toString(), limit,
+					DelayModel.CONFIGURED, null));
+			list.append(test == null ? "-" : test).append('\t')
+					.append(param == null ? "-" : param).append('\t')
+					.append(limit).append('\t')
+					.append(dir.resolve("sweep" + i + ".out")).append('\n');
+		}
+		assertTrue(!expected[0].equals(expected[1]),
+				"the test file must change the outcome");
+		assertTrue(!expected[1].equals(expected[2]),
+				"the parameter file must change the outcome");
+
+		Path listFile = write("sweep.txt", list.toString());
+		boolean oldBatch = JLSInfo.batch;
+		JLSInfo.batch = true;
+		PrintStream saved = System.out;
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(buffer, true, StandardCharsets.UTF_8));
+		int status;
+		try {
+			status = BatchJobs.runSweep(circuit.toString(),
+					listFile.toString(), 2, JLSInfo.defaultTimeLimit,
+					DelayModel.CONFIGURED, BatchJob.DEFAULT_MAX_FAIL, null);
+		} finally {
+			System.setOut(saved);
+			JLSInfo.batch = oldBatch;
+		}
+
+		assertEquals(0, status, buffer.toString(StandardCharsets.UTF_8));
+		for (int i = 0; i < jobs.length; i += 1) {
+			assertEquals(expected[i], Files.readString(
+					dir.resolve("sweep" + i + ".out"), StandardCharsets.UTF_8),
+					"sweep job " + i + " must report exactly what a single run prints");
+		}
+	}
+
+	/**
+	 * The simulator seeds elements in stable-id order, so a sweep copy
+	 * must carry every id over, inside subcircuits too; fresh ids would
+	 * seed an order-sensitive design differently from a single run.
+	 */
+	@Test
+	void aSweepCopyKeepsTheSimulationSeedOrder() throws Exception {
+		CircuitTextBuilder cb = new CircuitTextBuilder();
+		int clock = cb.clock(40, 20);
+		int sub = cb.subCircuit("pass");
+		int reg = cb.register(1, 0, "pff");
+		int twin = cb.clock(40, 20);
+		cb.wire(clock, "output", sub, "a");
+		cb.wire(sub, "y", reg, "C");
+		cb.wire(twin, "output", reg, "D");
+		Circuit template = new BatchJob(write("seed.jls", cb.build())
+				.toString(), null, null, 100, DelayModel.CONFIGURED, null)
+				.load();
+
+		Circuit copy = BatchJobs.copyOf(template);
+		assertEquals(seedOrder(template), seedOrder(copy));
+	}
+
+	/** Stable ids in seed order, descending into subcircuits. */
+	private static List<String> seedOrder(Circuit circ) {
+		List<String> ids = new java.util.ArrayList<String>();
+		for (jls.elem.Element el : circ.getElementsInStableOrder()) {
+			ids.add(el.getClass().getSimpleName() + " " + el.getStableId());
+			if (el instanceof jls.elem.SubCircuit sub) {
+				ids.add("{");
+				ids.addAll(seedOrder(sub.getSubCircuit()));
+				ids.add("}");
+			}
+		}
+		return ids;
+	}
+
+	@Test
+	void malformedManifestLinesAreRejectedByNumber() {
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+				() -> BatchJobs.parse(List.of("# jobs", "a.jls\t-\t-\tout"),
+						100, DelayModel.CONFIGURED, 1));
+		assertTrue(e.getMessage().startsWith("line 2: expected 5"), e.getMessage());
+
+		e = assertThrows(IllegalArgumentException.class,
+				() -> BatchJobs.parse(List.of("a.jls\t-\t-\t0\tout"),
+						100, DelayModel.CONFIGURED, 1));
+		assertTrue(e.getMessage().contains("positive integer"), e.getMessage());
+
+		e = assertThrows(IllegalArgumentException.class,
+				() -> BatchJobs.parseSweep("a.jls",
+						List.of("t.txt\t-\t-\t-\tout"), 100,
+						DelayModel.CONFIGURED, 1));
+		assertTrue(e.getMessage().startsWith("line 1: expected 4"), e.getMessage());
+		assertEquals(new BatchJob("a.jls", "t.txt", null, 100,
+				DelayModel.CONFIGURED, null), BatchJobs.parseSweep("a.jls",
+						List.of("t.txt\t-\t-\tout"), 100,
+						DelayModel.CONFIGURED, 1).get(0).job());
+
+		List<BatchJobs.Entry> jobs = BatchJobs.parse(
+				List.of("a.jls\tt.txt\t-\t-\tout"), 100, DelayModel.ZERO, 1);
+		assertEquals(new BatchJob("a.jls", "t.txt", null, 100,
+				DelayModel.ZERO, null), jobs.get(0).job());
+	}
+}
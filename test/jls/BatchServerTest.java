@@ -0,0 +1,243 @@
+package jls;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jls.collab.net.RequestListener;
+import jls.sim.DelayModel;
+
+/**
+ * The warm simulation server (BatchServer, docs/batch-interface.md
+ * section 8): a request must be answered with exactly the stdout and
+ * exit status a single {@code jls -b} run of the same files prints,
+ * whether its circuit was loaded for it or reused warm from an earlier
+ * identical request, and a request the server cannot parse must be
+ * answered rather than dropped.
+ */
+class BatchServerTest {
+
+	@TempDir
+	Path dir;
+
+	private RequestListener listener;
+	private BatchServer server;
+	private BatchJobs.Console console;
+	private ExecutorService pool;
+	private Thread acceptor;
+	private boolean oldBatch;
+
+	@BeforeEach
+	void start() throws Exception {
+		oldBatch = JLSInfo.batch;
+		JLSInfo.batch = true;
+		listener = RequestListener.bindUnix(dir.resolve("jls.sock"));
+		server = new BatchServer(listener, JLSInfo.defaultTimeLimit,
+				DelayModel.CONFIGURED, BatchJob.DEFAULT_MAX_FAIL);
+		console = BatchJobs.Console.install();
+		pool = Executors.newFixedThreadPool(4);
+		acceptor = new Thread(() -> {
+			try {
+				server.serve(pool, console);
+			} catch (Exception e) {
+				throw new AssertionError(e);
+			}
+		});
+		acceptor.start();
+	}
+
+	@AfterEach
+	void stop() throws Exception {
+		listener.close();
+		acceptor.join(10_000);
+		pool.shutdownNow();
+		console.close();
+		JLSInfo.batch = oldBatch;
+	}
+
+	/** A watched counter register starting at init, counting by step. */
+	private static String counter(long init, long step) {
+		CircuitTextBuilder cb = new CircuitTextBuilder();
+		cb.counter(400, init, step);
+		return cb.build();
+	}
+
+	/** What one job prints to stdout when run on its own. */
+	private String single(String circuit, long limit) throws Exception {
+		Path file = dir.resolve("single.jls");
+		Files.writeString(file, circuit, StandardCharsets.UTF_8);
+		PrintStream saved = System.out;
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(buffer, true, StandardCharsets.UTF_8));
+		try {
+			assertEquals(0, new BatchJob(file.toString(), null, null, limit,
+					DelayModel.CONFIGURED, null).run());
+		} finally {
+			System.setOut(saved);
+		}
+		return buffer.toString(StandardCharsets.UTF_8);
+	}
+
+	/** A request for one circuit, hand-built so the test pins the format. */
+	private static byte[] request(String circuit, long limit) {
+		byte[] body = circuit.getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.writeBytes(("JLS-JOB 1\nlimit " + limit + "\ncircuit "
+				+ body.length + "\n").getBytes(StandardCharsets.US_ASCII));
+		out.writeBytes(body);
+		out.writeBytes("end\n".getBytes(StandardCharsets.US_ASCII));
+		return out.toByteArray();
+	}
+
+	/** The expected response to a request that succeeded silently. */
+	private static byte[] success(String stdout) {
+		byte[] text = stdout.getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.writeBytes(("JLS-RESULT 1\nstatus 0\nstdout " + text.length
+				+ "\n").getBytes(StandardCharsets.US_ASCII));
+		out.writeBytes(text);
+		out.writeBytes("stderr 0\nend\n".getBytes(StandardCharsets.US_ASCII));
+		return out.toByteArray();
+	}
+
+	private byte[] send(byte[] request) throws Exception {
+		SocketAddress address = listener.address();
+		return RequestListener.exchange(address, request);
+	}
+
+	@Test
+	void aRequestReportsExactlyWhatASingleRunPrints() throws Exception {
+		String a = counter(0, 1);
+		String b = counter(7, 3);
+		String expectA = single(a, 1900);
+		String expectB = single(b, 3000);
+		assertTrue(expectA.startsWith("Simulation"), expectA);
+
+		ExecutorService clients = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<byte[]>> answers = new ArrayList<Future<byte[]>>();
+			for (int i = 0; i < 8; i += 1) {
+				byte[] req = i % 2 == 0 ? request(a, 1900) : request(b, 3000);
+				answers.add(clients.submit(() -> send(req)));
+			}
+			for (int i = 0; i < 8; i += 1) {
+				assertArrayEquals(success(i % 2 == 0 ? expectA : expectB),
+						answers.get(i).get(),
+						"request " + i + " must report what a single run prints");
+			}
+		} finally {
+			clients.shutdownNow();
+		}
+	}
+
+	@Test
+	void aRepeatedRequestReusesTheWarmCircuit() throws Exception {
+		String circuit = counter(3, 2);
+		byte[] expected = success(single(circuit, 2500));
+		assertArrayEquals(expected, send(request(circuit, 2500)),
+				"a cold request must report what a single run prints");
+		assertEquals(0, server.warmHits());
+		assertArrayEquals(expected, send(request(circuit, 2500)),
+				"a warm circuit must report what a fresh load does");
+		assertEquals(1, server.warmHits(), "the second run must reuse the circuit");
+	}
+
+	@Test
+	void aMalformedRequestIsAnsweredWithStatusTwo() throws Exception {
+		String response = new String(send("JLS-JOB 1\nlimit 5\nend\n"
+				.getBytes(StandardCharsets.US_ASCII)), StandardCharsets.UTF_8);
+		assertTrue(response.startsWith("JLS-RESULT 1\nstatus 2\nstdout 0\n"),
+				response);
+		assertTrue(response.contains("jls: error: bad request: a request"
+				+ " requires a circuit section"), response);
+
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+				() -> BatchServer.parse("JLS-JOB 1\ncircuit 99\nx\nend\n"
+						.getBytes(StandardCharsets.US_ASCII), 100,
+						DelayModel.CONFIGURED, 1));
+		assertTrue(e.getMessage().contains("runs past the end"), e.getMessage());
+		BatchServer.Request parsed = BatchServer.parse(
+				"JLS-JOB 1\ndelay zero\nmaxfail 4\nvcd\ncircuit 1\nxend\n"
+						.getBytes(StandardCharsets.US_ASCII), 100,
+				DelayModel.CONFIGURED, 1);
+		assertEquals(DelayModel.ZERO, parsed.model());
+		assertEquals(4, parsed.maxFail());
+		assertEquals(100, parsed.limit());
+		assertTrue(parsed.vcd());
+	}
+
+	@Test
+	void aMemoryFileIsRefused() throws Exception {
+		CircuitTextBuilder cb = new CircuitTextBuilder();
+		cb.memory("ROM", 8, 16, "");
+		String circuit = cb.build().replace("String file \"\"",
+				"String file \"/etc/passwd\"");
+		String response = new String(send(request(circuit, 100)),
+				StandardCharsets.UTF_8);
+		assertTrue(response.startsWith("JLS-RESULT 1\nstatus 1\nstdout 0\n"),
+				response);
+		assertTrue(response.contains("jls: error: memory mem0 names"
+				+ " initialization file \"/etc/passwd\""), response);
+	}
+
+	@Test
+	void anIdleClientIsDisconnected() throws Exception {
+		listener.setIdleTimeout(200);
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			// one that never sends, and one that stops mid-frame
+			for (int sent = 0; sent <= 2; sent += 2) {
+				try (SocketChannel idle = SocketChannel.open(listener.address())) {
+					idle.write(ByteBuffer.allocate(sent));
+					assertEquals(-1, idle.read(ByteBuffer.allocate(1)),
+							"the server closes an idle connection");
+				}
+			}
+		});
+		String expected = single(counter(0, 1), 1000);
+		assertArrayEquals(success(expected), send(request(counter(0, 1), 1000)),
+				"an idle client costs other clients nothing");
+	}
+
+	@Test
+	void unixSocketIsOwnerOnly() throws Exception {
+		Path socket = dir.resolve("jls.sock");
+		assertTrue(Files.exists(socket));
+		assertEquals("rw-------", PosixFilePermissions.toString(
+				Files.getPosixFilePermissions(socket)));
+		try (var entries = Files.list(dir)) {
+			assertEquals(List.of(socket), entries.toList(),
+					"the private directory it was bound in is gone");
+		}
+		assertEquals(UnixDomainSocketAddress.of(socket), listener.address());
+		assertEquals(socket.toString(), listener.describe());
+		assertArrayEquals(success(single(counter(0, 1), 1000)),
+				send(request(counter(0, 1), 1000)),
+				"the moved socket still answers");
+		listener.close();
+		assertTrue(!Files.exists(socket), "close must remove the socket file");
+	}
+}
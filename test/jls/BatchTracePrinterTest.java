@@ -14,7 +14,6 @@ import java.util.Map;
 import java.util.Scanner;
 
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.io.TempDir;
 
 import jls.elem.LogicElement;
 import jls.sim.BatchSimulator;
@@ -30,9 +29,6 @@ import jls.sim.TraceSample;
  */
 class BatchTracePrinterTest {
 
-	@TempDir
-	java.nio.file.Path tmp;
-
 	/**
 	 * A 4-bit positive-edge register (delay 8) clocked from a
 	 * free-running clock (cycle 20, high 10) capturing constant 5,
@@ -60,15 +56,20 @@ class BatchTracePrinterTest {
 
 	/**
 	 * Run the fixture for 100 time units with trace accumulation
-	 * enabled (a VCD consumer is set; nothing is written).
+	 * enabled (the -r printer flag is on; nothing is printed).
 	 */
 	private BatchSimulator run() throws Exception {
 		Circuit circuit = load();
 		BatchSimulator sim = new BatchSimulator();
 		sim.setCircuit(circuit);
 		sim.setTimeLimit(100);
-		sim.setVcdFile(tmp.resolve("unused.vcd").toString());
-		sim.runSim();
+		boolean oldTrace = JLSInfo.printTrace;
+		JLSInfo.printTrace = true;
+		try {
+			sim.runSim();
+		} finally {
+			JLSInfo.printTrace = oldTrace;
+		}
 		return sim;
 	}
 
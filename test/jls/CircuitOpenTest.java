@@ -0,0 +1,149 @@
+package jls;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Reading a circuit file for the editor off the event thread: progress
+ * runs to the end of the file, whatever its container, a cancel stops
+ * even the inflating of a compressed one, a cancelled read opens
+ * nothing and reports nothing, a bad file says why as the synchronous
+ * open did, and a read takes the load lock every other load takes.
+ */
+class CircuitOpenTest {
+
+	@TempDir
+	Path tmp;
+
+	/** Circuit text well past one read buffer. */
+	private static String bigCircuit() {
+		CircuitTextBuilder cb = new CircuitTextBuilder();
+		for (int i = 0; i < 200; i += 1) {
+			int a = cb.constant(i % 2);
+			int y = cb.outputPin("y" + i, 1);
+			cb.wire(a, "output", y, "input");
+		}
+		return cb.build();
+	}
+
+	/**
+	 * Read a file with a progress, checking that it runs forward to the
+	 * end of what it is of.
+	 */
+	private void readsToTheEnd(Path file, long total) throws Exception {
+		List<Long> done = new ArrayList<Long>();
+		CircuitOpen.Result result = CircuitOpen.read(file.toString(), "big",
+				tmp.toString(), (read, of) -> {
+					assertEquals(total, of);
+					done.add(read);
+					return true;
+				});
+		assertNull(result.error());
+		assertNotNull(result.circuit());
+		assertTrue(result.circuit().finishLoad(null), () -> JLSInfo.loadError);
+		assertEquals(total, done.get(done.size() - 1), "reading reaches the end");
+		for (int i = 1; i < done.size(); i += 1) {
+			assertTrue(done.get(i) >= done.get(i - 1), "progress never goes back");
+		}
+		assertTrue(done.size() > 2, "progress is told as the file is read");
+	}
+
+	@Test
+	void progressIsReportedToTheEnd() throws Exception {
+		String text = bigCircuit();
+		Path xz = tmp.resolve("big.jls");
+		FileAbstractor.writeCircuit(xz.toFile(), text);
+		readsToTheEnd(xz, Files.size(xz));
+
+		Path zip = tmp.resolve("legacy.jls");
+		FileFormatSupport.writeZip(zip.toFile(), text);
+		readsToTheEnd(zip, Files.size(zip));
+
+		Path plain = tmp.resolve("plain.jls");
+		Files.writeString(plain, text, StandardCharsets.UTF_8);
+		readsToTheEnd(plain, text.length());
+	}
+
+	@Test
+	void aCancelStopsTheInflating() throws Exception {
+		Path file = tmp.resolve("big.jls");
+		FileAbstractor.writeCircuit(file.toFile(), bigCircuit());
+		long size = Files.size(file);
+
+		List<Long> done = new ArrayList<Long>();
+		CircuitOpen.Result result = CircuitOpen.read(file.toString(), "big",
+				tmp.toString(), (read, of) -> {
+					done.add(read);
+					return false;
+				});
+		assertNull(result.circuit());
+		assertNull(result.error(), "a cancel is not an error");
+		assertEquals(1, done.size(), "reading stops at the cancel");
+		assertTrue(done.get(0) < size,
+				"the file is not inflated whole before progress is told");
+	}
+
+	@Test
+	void aCancelledReadOpensNothing() throws Exception {
+		Path file = tmp.resolve("big.jls");
+		Files.writeString(file, bigCircuit(), StandardCharsets.UTF_8);
+
+		int[] calls = { 0 };
+		CircuitOpen.Result result = CircuitOpen.read(file.toString(), "big",
+				tmp.toString(), (read, of) -> ++calls[0] < 2);
+		assertNull(result.circuit());
+		assertNull(result.error(), "a cancel is not an error");
+		assertEquals(2, calls[0], "reading stops at the cancel");
+	}
+
+	@Test
+	void anUnreadableFileSaysWhy() throws Exception {
+		CircuitOpen.Result missing = CircuitOpen.read(
+				tmp.resolve("ghost.jls").toString(), "ghost", tmp.toString(), null);
+		assertNull(missing.circuit());
+		assertNotNull(missing.error());
+		assertTrue(missing.error().startsWith("can't open"), missing.error());
+
+		Path file = tmp.resolve("twice.jls");
+		String text = new CircuitTextBuilder().build();
+		Files.writeString(file, text + text, StandardCharsets.UTF_8);
+		CircuitOpen.Result trailing = CircuitOpen.read(file.toString(), "twice",
+				tmp.toString(), null);
+		assertNull(trailing.circuit());
+		assertNotNull(trailing.error());
+		assertTrue(trailing.error().contains("is not a valid circuit file")
+				&& trailing.error().contains("after the ENDCIRCUIT"),
+				trailing.error());
+	}
+
+	@Test
+	void aReadWaitsForALoadOnAnotherThread() throws Exception {
+		Path file = tmp.resolve("small.jls");
+		Files.writeString(file, new CircuitTextBuilder().build(),
+				StandardCharsets.UTF_8);
+
+		CircuitOpen.Result[] result = { null };
+		Thread reader = new Thread(() -> result[0] = CircuitOpen.read(
+				file.toString(), "small", tmp.toString(), null));
+		synchronized (Circuit.LOAD_LOCK) {
+			reader.start();
+			reader.join(300);
+			assertTrue(reader.isAlive(),
+					"the read waits while another load holds the lock");
+		}
+		reader.join(10_000);
+		assertNotNull(result[0]);
+		assertNotNull(result[0].circuit(), result[0].error());
+	}
+}
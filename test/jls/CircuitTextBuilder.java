@@ -1,5 +1,7 @@
 package jls;
 
+import org.jspecify.annotations.Nullable;
+
 /**
  * Builds circuit text in the on-disk save format, for behavioral tests
  * that load through the real loader and run the real simulator. This is
@@ -434,6 +436,62 @@ public final class CircuitTextBuilder {
 		return id;
 	}
 
+	/**
+	 * Free-running 8-bit counter: a register starting at init that adds
+	 * step on every rising edge of a clock of the given cycle (high for
+	 * half of it). Built first, its register is "reg1" and its adder
+	 * "Adder_2". Returns the register's id.
+	 */
+	public int counter(int cycle, long init, long step) {
+		return counter(cycle, init, step, null, null);
+	}
+
+	/** The counter, with its count also shown on output pin {@code pin}. */
+	public int counter(int cycle, long init, long step, String pin) {
+		return counter(cycle, init, step, pin, null);
+	}
+
+	/**
+	 * The counter, with its count shown on output pin {@code pin} and its
+	 * clock on 1-bit output pin {@code clockPin}. A put takes one wire
+	 * end, so each shown net fans out through a jump named "count" or
+	 * "tick".
+	 */
+	public int counter(int cycle, long init, long step, @Nullable String pin,
+			@Nullable String clockPin) {
+		int clock = clock(cycle, cycle / 2);
+		int reg = register(8, init, "pff");
+		int adder = adder(8);
+		int inc = constant(step);
+		int zero = constant(0);
+		int y = pin == null ? -1 : outputPin(pin, 8);
+		int clk = clockPin == null ? -1 : outputPin(clockPin, 1);
+		if (pin == null) {
+			wire(reg, "Q", adder, "A");
+		} else {
+			int count = jumpStart("count", 8);
+			int toAdder = jumpEnd("count", 8);
+			int toPin = jumpEnd("count", 8);
+			wire(reg, "Q", count, "input");
+			wire(toAdder, "output", adder, "A");
+			wire(toPin, "output", y, "input");
+		}
+		if (clockPin == null) {
+			wire(clock, "output", reg, "C");
+		} else {
+			int tick = jumpStart("tick", 1);
+			int toReg = jumpEnd("tick", 1);
+			int toClk = jumpEnd("tick", 1);
+			wire(clock, "output", tick, "input");
+			wire(toReg, "output", reg, "C");
+			wire(toClk, "output", clk, "input");
+		}
+		wire(inc, "output", adder, "B");
+		wire(zero, "output", adder, "Cin");
+		wire(adder, "S", reg, "D");
+		return reg;
+	}
+
 	/** Wire fromElement's put to toElement's put, as two attached wire ends. */
 	public void wire(int fromElement, String fromPut, int toElement,
 			String toPut) {
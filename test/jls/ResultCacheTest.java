@@ -0,0 +1,239 @@
+package jls;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Set;
+
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jls.elem.Element;
+import jls.elem.Memory;
+import jls.sim.DelayModel;
+
+/**
+ * The batch result cache (ResultCache, docs/batch-interface.md section
+ * 9): a job identical to an earlier one must print exactly what the
+ * earlier run printed and rewrite its VCD file without simulating, any
+ * change to an input the report depends on must miss, verify mode must
+ * catch an entry that no longer matches a fresh run, and the directory
+ * must stay within its size bound by dropping the least recently used
+ * entries.
+ */
+class ResultCacheTest {
+
+	@TempDir
+	Path dir;
+
+	/** A watched counter register with a ROM beside it. */
+	private static String counter() {
+		CircuitTextBuilder cb = new CircuitTextBuilder();
+		cb.counter(400, 0, 1);
+		cb.memory("ROM", 8, 16, "");
+		return cb.build();
+	}
+
+	private Path write(String name, String text) throws Exception {
+		Path file = dir.resolve(name);
+		Files.writeString(file, text, StandardCharsets.UTF_8);
+		return file;
+	}
+
+	/** Point the circuit's ROM at an initialization file. */
+	private static Circuit withRom(Circuit circ, Path rom) {
+		for (Element el : circ.getElements()) {
+			if (el instanceof Memory mem) {
+				mem.setFileName(rom.toString());
+			}
+		}
+		return circ;
+	}
+
+	/** Run a job, through the cache if given: {stdout, stderr, status}. */
+	private static String[] capture(@Nullable ResultCache cache, BatchJob job) {
+		boolean oldBatch = JLSInfo.batch;
+		JLSInfo.batch = true;
+		PrintStream savedOut = System.out;
+		PrintStream savedErr = System.err;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+		System.setErr(new PrintStream(err, true, StandardCharsets.UTF_8));
+		int status;
+		try {
+			status = cache == null ? job.run() : cache.run(job);
+		} finally {
+			System.setOut(savedOut);
+			System.setErr(savedErr);
+			JLSInfo.batch = oldBatch;
+		}
+		return new String[] { out.toString(StandardCharsets.UTF_8),
+				err.toString(StandardCharsets.UTF_8), String.valueOf(status) };
+	}
+
+	@Test
+	void aRepeatedJobIsAnsweredWithoutSimulating() throws Exception {
+		Path circuit = write("counter.jls", counter());
+		Path vcd = dir.resolve("waves.vcd");
+		BatchJob job = new BatchJob(circuit.toString(), null, null, 1900,
+				DelayModel.CONFIGURED, vcd.toString());
+		String[] reference = capture(null, job);
+		byte[] referenceVcd = Files.readAllBytes(vcd);
+		Files.delete(vcd);
+
+		ResultCache cache = new ResultCache(dir.resolve("cache"),
+				ResultCache.DEFAULT_MAX_BYTES, ResultCache.Mode.USE);
+		String[] cold = capture(cache, job);
+		assertArrayEquals(reference, cold, "a cold run must print what a plain run does");
+		assertEquals(0, cache.hits());
+		Files.delete(vcd);
+
+		String[] warm = capture(cache, job);
+		assertArrayEquals(reference, warm, "a hit must print what the run printed");
+		assertEquals(1, cache.hits(), "the second run must come from the cache");
+		assertArrayEquals(referenceVcd, Files.readAllBytes(vcd),
+				"a hit must rewrite the run's VCD file");
+
+		capture(cache, new BatchJob(circuit.toString(), null, null, 2300,
+				DelayModel.CONFIGURED, vcd.toString()));
+		assertEquals(1, cache.hits(), "a different time limit must miss");
+
+		ResultCache refresh = new ResultCache(dir.resolve("cache"),
+				ResultCache.DEFAULT_MAX_BYTES, ResultCache.Mode.REFRESH);
+		assertArrayEquals(reference, capture(refresh, job));
+		assertEquals(0, refresh.hits(), "refresh must always simulate");
+	}
+
+	@Test
+	void manifestJobsGoThroughTheCache() throws Exception {
+		Path circuit = write("counter.jls", counter());
+		Path manifest = write("jobs.txt", circuit + "\t-\t-\t1900\t"
+				+ dir.resolve("a.out") + "\n" + circuit + "\t-\t-\t1900\t"
+				+ dir.resolve("b.out") + "\n");
+		String reference = capture(null, new BatchJob(circuit.toString(),
+				null, null, 1900, DelayModel.CONFIGURED, null))[0];
+		ResultCache cache = new ResultCache(dir.resolve("cache"),
+				ResultCache.DEFAULT_MAX_BYTES, ResultCache.Mode.USE);
+		for (int round = 0; round < 2; round += 1) {
+			PrintStream saved = System.out;
+			System.setOut(new PrintStream(new ByteArrayOutputStream(), true,
+					StandardCharsets.UTF_8));
+			try {
+				assertEquals(0, BatchJobs.run(manifest.toString(), 1, 1900,
+						DelayModel.CONFIGURED, BatchJob.DEFAULT_MAX_FAIL, cache));
+			} finally {
+				System.setOut(saved);
+			}
+			assertEquals(reference, Files.readString(dir.resolve("a.out")));
+			assertEquals(reference, Files.readString(dir.resolve("b.out")));
+		}
+		assertEquals(3, cache.hits(), "every job after the first must hit");
+	}
+
+	@Test
+	void theKeyCoversEveryInput() throws Exception {
+		Path circuit = write("counter.jls", counter());
+		Path test = write("test.txt", "# no signals\n");
+		Path rom = write("rom.txt", "0 1\n");
+		BatchJob job = new BatchJob(circuit.toString(), test.toString(),
+				null, 1900, DelayModel.CONFIGURED, null);
+		Circuit circ = withRom(job.load(), rom);
+		String key = ResultCache.key(job, circ);
+		assertEquals(key, ResultCache.key(job, withRom(job.load(), rom)),
+				"a fresh load of the same files must have the same key");
+
+		Files.writeString(rom, "0 2\n", StandardCharsets.UTF_8);
+		String romChanged = ResultCache.key(job, circ);
+		assertNotEquals(key, romChanged, "memory file contents must be keyed");
+		Files.writeString(test, "# other\n", StandardCharsets.UTF_8);
+		String testChanged = ResultCache.key(job, circ);
+		assertNotEquals(romChanged, testChanged, "test file contents must be keyed");
+
+		Set<String> variants = Set.of(testChanged,
+				ResultCache.key(new BatchJob(circuit.toString(), test.toString(),
+						null, 1901, DelayModel.CONFIGURED, null), circ),
+				ResultCache.key(new BatchJob(circuit.toString(), test.toString(),
+						null, 1900, DelayModel.ZERO, null), circ),
+				ResultCache.key(new BatchJob(circuit.toString(), test.toString(),
+						null, 1900, DelayModel.CONFIGURED, null, 2), circ),
+				ResultCache.key(new BatchJob(circuit.toString(), test.toString(),
+						null, 1900, DelayModel.CONFIGURED, "w.vcd"), circ));
+		assertEquals(5, variants.size(), "limit, delay, maxfail and vcd must be keyed");
+
+		Circuit other = new BatchJob(write("other.jls", new CircuitTextBuilder()
+				.build()).toString(), null, null, 1, DelayModel.CONFIGURED, null)
+				.load();
+		assertNotEquals(testChanged, ResultCache.key(job, other),
+				"the circuit must be keyed");
+	}
+
+	@Test
+	void verifyCatchesAStaleEntry() throws Exception {
+		Path circuit = write("counter.jls", counter());
+		BatchJob job = new BatchJob(circuit.toString(), null, null, 1900,
+				DelayModel.CONFIGURED, null);
+		Path cacheDir = dir.resolve("cache");
+		ResultCache cache = new ResultCache(cacheDir,
+				ResultCache.DEFAULT_MAX_BYTES, ResultCache.Mode.USE);
+		String[] reference = capture(cache, job);
+		String key = ResultCache.key(job, job.load());
+		cache.put(key, new ResultCache.Result(0,
+				"stale\n".getBytes(StandardCharsets.UTF_8), new byte[0], null));
+
+		ResultCache verify = new ResultCache(cacheDir,
+				ResultCache.DEFAULT_MAX_BYTES, ResultCache.Mode.VERIFY);
+		String[] checked = capture(verify, job);
+		assertEquals("1", checked[2]);
+		assertEquals(reference[0], checked[0], "verify must print the fresh run");
+		assertTrue(checked[1].contains("differs from a fresh run"), checked[1]);
+
+		String[] again = capture(verify, job);
+		assertArrayEquals(reference, again, "the stale entry must be replaced");
+		assertArrayEquals(reference, capture(cache, job));
+		assertEquals(1, cache.hits());
+	}
+
+	@Test
+	void theCacheEvictsLeastRecentlyUsedFirst() throws Exception {
+		Path cacheDir = dir.resolve("cache");
+		ResultCache.Result result = new ResultCache.Result(0, new byte[1000],
+				new byte[0], null);
+		ResultCache probe = new ResultCache(cacheDir, Long.MAX_VALUE,
+				ResultCache.Mode.USE);
+		probe.put("a", result);
+		long size = Files.size(cacheDir.resolve("a.jlsr"));
+		Files.delete(cacheDir.resolve("a.jlsr"));
+
+		ResultCache cache = new ResultCache(cacheDir, size * 5 / 2,
+				ResultCache.Mode.USE);
+		cache.put("a", result);
+		Files.setLastModifiedTime(cacheDir.resolve("a.jlsr"),
+				FileTime.fromMillis(1_000_000));
+		cache.put("b", result);
+		Files.setLastModifiedTime(cacheDir.resolve("b.jlsr"),
+				FileTime.fromMillis(2_000_000));
+		assertNotNull(cache.get("a"), "a lookup must mark the entry used");
+		cache.put("c", result);
+
+		assertNull(cache.get("b"), "the least recently used entry must go");
+		assertNotNull(cache.get("a"));
+		assertNotNull(cache.get("c"));
+
+		Files.write(cacheDir.resolve("a.jlsr"), new byte[] { 0, 7, 'J' });
+		assertNull(cache.get("a"), "a truncated entry must miss");
+		assertTrue(!Files.exists(cacheDir.resolve("a.jlsr")),
+				"a truncated entry must be removed");
+	}
+}
@@ -0,0 +1,103 @@
+package jls;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * In-process differential fuzzing of the RV32I CPU circuit
+ * (RiscvFuzzHarness): random programs must leave the same registers
+ * and data memory on the simulated hardware as on the reference model,
+ * and a disagreement must be reported as a program shrunk until no
+ * single instruction can be removed. Seeds are fixed, so a failure
+ * reproduces; {@code RiscvFuzzHarness.main} runs the same check at
+ * scale.
+ */
+class RiscvDifferentialFuzzTest {
+
+	@Test
+	void theReferenceRunsTheGoldenProgram() {
+		// riscv/examples/sum1to10.s, as baked into the fixture's ROM
+		List<Integer> program = List.of(0x93, 0x100113, 0xb00193, 0x2080b3,
+				0x110113, 0xfe314ce3, 0x102023);
+		Rv32iReference ref = new Rv32iReference(program, 16);
+		assertEquals(34, ref.run(1000), "RiscvCpuGoldenTest's step count");
+		assertEquals(55, ref.reg(1));
+		assertEquals(11, ref.reg(2));
+		assertEquals(11, ref.reg(3));
+		assertEquals(55, ref.word(0));
+		assertEquals("blt x2, x3, -8", Rv32iReference.disassemble(0xfe314ce3));
+	}
+
+	@Test
+	void theCpuMatchesTheReferenceOnRandomPrograms() throws Exception {
+		boolean oldBatch = JLSInfo.batch;
+		JLSInfo.batch = true;
+		try {
+			List<RiscvFuzzHarness.Outcome> outcomes = new RiscvFuzzHarness(
+					RiscvFuzzHarness.CPU, Rv32iReference::new)
+					.run(120, 1234, 4);
+			assertEquals(120, outcomes.size());
+			for (RiscvFuzzHarness.Outcome outcome : outcomes) {
+				assertNull(outcome.difference(), () -> "seed " + outcome.seed()
+						+ ":\n" + outcome.listing() + outcome.difference());
+			}
+		} finally {
+			JLSInfo.batch = oldBatch;
+		}
+	}
+
+	/** An oracle whose arithmetic right shift is logical. */
+	private static final class LogicalSra extends Rv32iReference {
+
+		LogicalSra(List<Integer> program, int dmemWords) {
+			super(program, dmemWords);
+		}
+
+		@Override
+		int sra(int value, int shamt) {
+			return value >>> shamt;
+		}
+	}
+
+	@Test
+	void aPlantedBugIsFoundAndShrunkToAMinimalProgram() throws Exception {
+		boolean oldBatch = JLSInfo.batch;
+		JLSInfo.batch = true;
+		try {
+			RiscvFuzzHarness harness = new RiscvFuzzHarness(
+					RiscvFuzzHarness.CPU, LogicalSra::new);
+			List<RiscvFuzzHarness.Outcome> failures =
+					new ArrayList<RiscvFuzzHarness.Outcome>();
+			for (RiscvFuzzHarness.Outcome outcome : harness.run(200, 99, 4)) {
+				if (outcome.difference() != null) {
+					failures.add(outcome);
+				}
+			}
+			assertTrue(!failures.isEmpty(), "the planted bug must be found");
+
+			RiscvFuzzHarness.Worker worker = harness.new Worker();
+			RiscvFuzzHarness.Outcome first = failures.get(0);
+			List<Integer> shrunk = first.program();
+			String listing = first.listing();
+			assertTrue(shrunk.size() <= 4, listing);
+			assertTrue(listing.contains("sra"), listing);
+			assertNotNull(worker.check(shrunk), listing);
+			for (int i = 0; i < shrunk.size(); i += 1) {
+				List<Integer> smaller = new ArrayList<Integer>(shrunk);
+				smaller.remove(i);
+				assertTrue(smaller.isEmpty() || worker.check(smaller) == null,
+						"removing instruction " + i + " must hide the bug:\n"
+								+ listing);
+			}
+		} finally {
+			JLSInfo.batch = oldBatch;
+		}
+	}
+}
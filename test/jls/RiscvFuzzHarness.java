@@ -0,0 +1,423 @@
+package jls;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+
+import org.jspecify.annotations.Nullable;
+
+import jls.elem.Element;
+import jls.elem.Memory;
+import jls.elem.Register;
+import jls.elem.TestGen;
+import jls.sim.BatchSimulator;
+
+/**
+ * In-process differential fuzzing of the RV32I CPU circuit: the Java
+ * counterpart of {@code riscv/fuzz_diff.py}, without a JVM per
+ * program. Random programs run both on the CPU, simulated by
+ * BatchSimulator, and on the instruction-level {@link Rv32iReference};
+ * the final registers x1..x31 and every data memory word must agree.
+ *
+ * Each worker thread loads and elaborates the CPU once. Between
+ * programs only the instruction ROM's contents change; every run
+ * starts by resetting all element state, so a worker's runs are as
+ * independent as fresh loads. The clock is one shared {@code -t}
+ * vector with a rising edge per instruction the ROM can hold, and each
+ * run's time limit stops it after the edges its program needs.
+ *
+ * A failing program is shrunk before it is reported: instructions are
+ * removed, in halving chunks and then one at a time, while the two
+ * sides still disagree. The result is a program from which no single
+ * instruction can be removed without hiding the difference.
+ *
+ * The CPU is {@code test/fixtures/riscv-sum1to10.jls} (32-word ROM,
+ * 16-word RAM) unless another circuit with the same element names is
+ * given. Programs mix the generator of fuzz_diff.py (register and
+ * immediate ALU operations, shifts, lui, auipc, and word loads and
+ * stores at in-range offsets from x0) with forward branches and jumps,
+ * so every program terminates. For long runs:
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes:... jls.RiscvFuzzHarness \
+ *     [programs] [seed] [threads] [cpu.jls]
+ * </pre>
+ */
+final class RiscvFuzzHarness {
+
+	/** The CPU circuit the fuzzer drives by default. */
+	static final Path CPU = Path.of("test", "fixtures", "riscv-sum1to10.jls");
+
+	/** Half a clock period, in simulation time units. */
+	static final int HALF = 1000;
+
+	/**
+	 * One program's result.
+	 *
+	 * @param seed The seed the program was generated from.
+	 * @param program The program, shrunk if it failed.
+	 * @param difference What differed, or null if the sides agreed.
+	 */
+	record Outcome(long seed, List<Integer> program,
+			@Nullable String difference) {
+
+		/** The program in assembler syntax, one instruction per line. */
+		String listing() {
+			StringBuilder text = new StringBuilder();
+			for (int w : program) {
+				text.append("    ").append(Rv32iReference.disassemble(w))
+						.append('\n');
+			}
+			return text.toString();
+		}
+	}
+
+	/** The CPU circuit's text. */
+	private final String cpuText;
+	/** The shared clock vector file. */
+	private final Path clockFile;
+	/** Makes the oracle for a program and data memory size. */
+	private final BiFunction<List<Integer>, Integer, Rv32iReference> oracle;
+
+	/**
+	 * Create a harness on a CPU circuit.
+	 *
+	 * @param cpu The CPU circuit file.
+	 * @param oracle Makes the reference model for a program and a data
+	 *        memory size; {@code Rv32iReference::new} outside tests.
+	 *
+	 * @throws IOException if the circuit cannot be read or the clock
+	 *         vector cannot be written.
+	 */
+	RiscvFuzzHarness(Path cpu,
+			BiFunction<List<Integer>, Integer, Rv32iReference> oracle)
+			throws IOException {
+		this.cpuText = Files.readString(cpu, StandardCharsets.UTF_8);
+		this.oracle = oracle;
+		this.clockFile = Files.createTempFile("jls-fuzz-clk", ".txt");
+		this.clockFile.toFile().deleteOnExit();
+		Worker probe = new Worker();
+		StringBuilder b = new StringBuilder("clk 0");
+		for (int k = 1; k <= 2 * probe.imem.getCapacity(); k += 1) {
+			b.append(" until ").append(k * HALF).append(' ')
+					.append(k % 2);
+		}
+		Files.writeString(clockFile, b.append(" end\n").toString());
+	}
+
+	/**
+	 * Check programs on a pool of workers, one elaborated CPU each.
+	 *
+	 * @param programs How many programs to generate.
+	 * @param seed The run's seed; program i uses seed + i.
+	 * @param threads The worker count.
+	 *
+	 * @return one outcome per program, in seed order.
+	 *
+	 * @throws Exception if a worker fails to load the CPU or a check
+	 *         throws.
+	 */
+	List<Outcome> run(int programs, long seed, int threads) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+		try {
+			List<Future<Outcome>> results = new ArrayList<Future<Outcome>>();
+			for (int i = 0; i < programs; i += 1) {
+				long programSeed = seed + i;
+				results.add(pool.submit(() -> workers.get().fuzz(programSeed)));
+			}
+			List<Outcome> outcomes = new ArrayList<Outcome>();
+			for (Future<Outcome> result : results) {
+				outcomes.add(result.get());
+			}
+			return outcomes;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * One CPU circuit, loaded once and reused for every program a
+	 * thread checks.
+	 */
+	final class Worker {
+
+		/** The elaborated CPU. */
+		private final Circuit cpu;
+		/** The instruction ROM reloaded for each program. */
+		final Memory imem;
+		/** The data RAM compared after each run. */
+		private final Memory dmem;
+		/** Registers x1..x31, at their index; x0 is not a register. */
+		private final Register[] regs = new Register[32];
+
+		/** Load and elaborate the CPU, resolving the elements compared. */
+		Worker() {
+			cpu = new Circuit("riscv");
+			synchronized (RiscvFuzzHarness.class) {
+				// the loader reports through static state
+				boolean loaded;
+				try {
+					loaded = cpu.load(new Scanner(cpuText))
+							&& cpu.finishLoad(null);
+				} catch (Exception e) {
+					throw new IllegalStateException("CPU does not load", e);
+				}
+				if (!loaded) {
+					throw new IllegalStateException("CPU does not load: "
+							+ JLSInfo.loadError);
+				}
+			}
+			Memory rom = null;
+			Memory ram = null;
+			for (Element el : cpu.getElements()) {
+				if (el instanceof Memory mem && "imem".equals(mem.getName())) {
+					rom = mem;
+				}
+				else if (el instanceof Memory mem
+						&& "dmem".equals(mem.getName())) {
+					ram = mem;
+				}
+				else if (el instanceof Register reg) {
+					String name = reg.getName();
+					if (name != null && name.matches("x[1-9][0-9]?")) {
+						regs[Integer.parseInt(name.substring(1))] = reg;
+					}
+				}
+			}
+			if (rom == null || ram == null) {
+				throw new IllegalStateException("CPU has no imem or dmem");
+			}
+			imem = rom;
+			dmem = ram;
+		}
+
+		/**
+		 * Generate, check and, if it fails, shrink one program.
+		 *
+		 * @param seed The program's seed.
+		 *
+		 * @return its outcome.
+		 */
+		Outcome fuzz(long seed) {
+			Random rng = new Random(seed);
+			int length = 4 + rng.nextInt(imem.getCapacity() - 4);
+			List<Integer> program = randomProgram(rng, length,
+					dmem.getCapacity());
+			String difference = check(program);
+			if (difference == null) {
+				return new Outcome(seed, program, null);
+			}
+			List<Integer> shrunk = shrink(program);
+			String shrunkDifference = check(shrunk);
+			return new Outcome(seed, shrunk,
+					shrunkDifference == null ? difference : shrunkDifference);
+		}
+
+		/**
+		 * Run a program on both sides and compare the architectural
+		 * state.
+		 *
+		 * @param program The instruction words, at most the ROM's size.
+		 *
+		 * @return the differences, or null if there are none.
+		 */
+		@Nullable String check(List<Integer> program) {
+			Rv32iReference ref = oracle.apply(program, dmem.getCapacity());
+			int steps = ref.run(imem.getCapacity());
+
+			StringBuilder rom = new StringBuilder();
+			for (int i = 0; i < program.size(); i += 1) {
+				rom.append(Integer.toHexString(i)).append(' ')
+						.append(Integer.toHexString(program.get(i)))
+						.append('\n');
+			}
+			imem.setInitialValue(rom.toString());
+			BatchSimulator sim = new BatchSimulator();
+			sim.setCircuit(cpu);
+			sim.setTimeLimit(2L * Math.max(steps, 1) * HALF);
+			if (!hasTestGen()) {
+				sim.setTestFile(clockFile.toString());
+				sim.addTestGen();
+			}
+			sim.runSim();
+
+			List<String> diffs = new ArrayList<String>();
+			for (int i = 1; i < 32; i += 1) {
+				Register reg = regs[i];
+				int hw = value(reg == null ? null : reg.getCurrentValue());
+				if (hw != ref.reg(i)) {
+					diffs.add(String.format("x%d: ref=%#x hw=%#x", i,
+							ref.reg(i), hw));
+				}
+			}
+			for (int i = 0; i < dmem.getCapacity(); i += 1) {
+				int hw = value(dmem.getCurrentValue(i));
+				if (hw != ref.word(i)) {
+					diffs.add(String.format("dmem[%d]: ref=%#x hw=%#x", i,
+							ref.word(i), hw));
+				}
+			}
+			return diffs.isEmpty() ? null : String.join("; ", diffs);
+		}
+
+		/** Whether the clock's test generator is already in the circuit. */
+		private boolean hasTestGen() {
+			for (Element el : cpu.getElements()) {
+				if (el instanceof TestGen) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Remove instructions while the program still fails: chunks of
+		 * halving size first, then single instructions until none can
+		 * go.
+		 *
+		 * @param failing A program that fails.
+		 *
+		 * @return a program that fails and loses its failure if any one
+		 *         instruction is removed.
+		 */
+		List<Integer> shrink(List<Integer> failing) {
+			List<Integer> best = failing;
+			for (int chunk = best.size() / 2; chunk >= 1; chunk /= 2) {
+				boolean removed = true;
+				while (removed) {
+					removed = false;
+					for (int at = 0; at + chunk <= best.size(); at += chunk) {
+						List<Integer> trial = new ArrayList<Integer>(best);
+						trial.subList(at, at + chunk).clear();
+						if (!trial.isEmpty() && check(trial) != null) {
+							best = trial;
+							removed = true;
+							break;
+						}
+					}
+				}
+			}
+			return List.copyOf(best);
+		}
+	}
+
+	/** A BitSet register or memory value as a 32-bit word, 0 if unset. */
+	private static int value(@Nullable BitSet bits) {
+		return bits == null ? 0 : (int) BitSetUtils.ToLong(bits);
+	}
+
+	/**
+	 * A random program that terminates: branches and jumps only go
+	 * forward, and loads and stores address in-range words from x0.
+	 * Operands come from six registers chosen per program, and now and
+	 * then x0.
+	 *
+	 * @param rng The generator.
+	 * @param length The instruction count.
+	 * @param dmemWords The data memory size, in words.
+	 *
+	 * @return the instruction words.
+	 */
+	static List<Integer> randomProgram(Random rng, int length, int dmemWords) {
+		// a few live registers per program, so results feed later
+		// instructions instead of mostly reading zeros
+		int[] live = new int[6];
+		for (int r = 0; r < live.length; r += 1) {
+			live[r] = 1 + rng.nextInt(31);
+		}
+		List<Integer> program = new ArrayList<Integer>();
+		for (int i = 0; i < length; i += 1) {
+			int rd = live[rng.nextInt(live.length)];
+			int rs1 = rng.nextInt(8) == 0 ? 0 : live[rng.nextInt(live.length)];
+			int rs2 = rng.nextInt(8) == 0 ? 0 : live[rng.nextInt(live.length)];
+			int kind = rng.nextInt(100);
+			int word;
+			if (kind < 28) {
+				int f3 = rng.nextInt(8);
+				boolean alt = (f3 == 0 || f3 == 5) && rng.nextBoolean();
+				word = Rv32iReference.rType(alt ? 0x20 : 0, rs2, rs1, f3, rd);
+			}
+			else if (kind < 56) {
+				int f3 = rng.nextInt(8);
+				int imm = rng.nextInt(4096) - 2048;
+				if (f3 == 1 || f3 == 5) {
+					imm = rng.nextInt(32)
+							| (f3 == 5 && rng.nextBoolean() ? 0x400 : 0);
+				}
+				word = Rv32iReference.iType(imm & 0xfff, rs1, f3, rd, 0x13);
+			}
+			else if (kind < 64) {
+				word = Rv32iReference.uType(rng.nextInt(1 << 20), rd, 0x37);
+			}
+			else if (kind < 68) {
+				word = Rv32iReference.uType(rng.nextInt(1 << 20), rd, 0x17);
+			}
+			else if (kind < 76) {
+				word = Rv32iReference.iType(4 * rng.nextInt(dmemWords), 0, 2,
+						rd, 0x03);
+			}
+			else if (kind < 84) {
+				word = Rv32iReference.sw(rs2, 0, 4 * rng.nextInt(dmemWords));
+			}
+			else if (kind < 96) {
+				int[] f3s = {0, 1, 4, 5, 6, 7};
+				int skip = 1 + rng.nextInt(3);
+				word = Rv32iReference.branch(f3s[rng.nextInt(f3s.length)],
+						rs1, rs2, 4 * skip);
+			}
+			else {
+				word = Rv32iReference.jal(rd, 4 * (1 + rng.nextInt(3)));
+			}
+			program.add(word);
+		}
+		return program;
+	}
+
+	/**
+	 * Fuzz from the command line: {@code [programs] [seed] [threads]
+	 * [cpu.jls]}. Prints each failure, shrunk, and a summary; exits 1 if
+	 * any program failed.
+	 *
+	 * @param args The optional arguments.
+	 *
+	 * @throws Exception if the CPU cannot be loaded.
+	 */
+	public static void main(String[] args) throws Exception {
+		int programs = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 1234;
+		int threads = args.length > 2 ? Integer.parseInt(args[2])
+				: Runtime.getRuntime().availableProcessors();
+		Path cpu = args.length > 3 ? Path.of(args[3]) : CPU;
+		JLSInfo.batch = true;
+
+		long start = System.nanoTime();
+		List<Outcome> outcomes = new RiscvFuzzHarness(cpu, Rv32iReference::new)
+				.run(programs, seed, threads);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		int failed = 0;
+		for (Outcome outcome : outcomes) {
+			if (outcome.difference() != null) {
+				failed += 1;
+				System.out.println("[FAIL] seed " + outcome.seed() + ":\n"
+						+ outcome.listing() + "  -> " + outcome.difference()
+						+ "\n");
+			}
+		}
+		System.out.printf("fuzz: %d passed, %d failed (seed=%d, %.0f"
+				+ " programs/minute on %d threads)%n",
+				programs - failed, failed, seed, programs * 60 / seconds,
+				threads);
+		System.exit(failed == 0 ? 0 : 1);
+	}
+}
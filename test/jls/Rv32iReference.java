@@ -0,0 +1,252 @@
+package jls;
+
+import java.util.List;
+
+/**
+ * An instruction-level RV32I model: the oracle of the differential
+ * fuzzer (RiscvFuzzHarness), the in-process counterpart of
+ * {@code riscv/riscv_ref.py}. It decodes and executes the encoded
+ * instruction words themselves, so an encoding slip in the generator
+ * shows up as a disagreement instead of being shared by both sides.
+ *
+ * Memory is word-granular, like the hardware's data RAM: a load or
+ * store addresses word {@code address >>> 2} of {@code dmemWords}
+ * words, wrapping around. Execution stops when the PC leaves the
+ * program, as the CPU's clock vector does.
+ *
+ * The static helpers encode the instructions the generator emits and
+ * disassemble them for failure reports.
+ */
+class Rv32iReference {
+
+	/** The program, one instruction word per entry. */
+	private final int[] imem;
+	/** The data memory, one 32-bit word per entry. */
+	private final int[] dmem;
+	/** The register file; x0 stays zero. */
+	private final int[] regs = new int[32];
+	/** The program counter, a byte address. */
+	private int pc = 0;
+
+	/**
+	 * Create a model with the program loaded and registers and data
+	 * memory zeroed.
+	 *
+	 * @param program The instruction words.
+	 * @param dmemWords The data memory size, in words.
+	 */
+	Rv32iReference(List<Integer> program, int dmemWords) {
+		imem = program.stream().mapToInt(Integer::intValue).toArray();
+		dmem = new int[dmemWords];
+	}
+
+	/**
+	 * Execute until the PC leaves the program or the step budget runs
+	 * out.
+	 *
+	 * @param maxSteps The most instructions to execute.
+	 *
+	 * @return the number of instructions executed.
+	 */
+	int run(int maxSteps) {
+		int steps = 0;
+		while (steps < maxSteps && pc >= 0 && (pc >>> 2) < imem.length) {
+			step(imem[pc >>> 2]);
+			steps += 1;
+		}
+		return steps;
+	}
+
+	/** Register xi's value. */
+	int reg(int i) {
+		return regs[i];
+	}
+
+	/** Data memory word i's value. */
+	int word(int i) {
+		return dmem[i];
+	}
+
+	/**
+	 * The arithmetic right shift, separate so a test can plant a known
+	 * bug in the oracle and watch the fuzzer find and shrink it.
+	 */
+	int sra(int value, int shamt) {
+		return value >> shamt;
+	}
+
+	private void write(int rd, int value) {
+		if (rd != 0) {
+			regs[rd] = value;
+		}
+	}
+
+	private static int immI(int w) {
+		return w >> 20;
+	}
+
+	private static int immS(int w) {
+		return ((w >> 25) << 5) | ((w >>> 7) & 0x1f);
+	}
+
+	private static int immB(int w) {
+		return ((w >> 31) << 12) | (((w >>> 7) & 1) << 11)
+				| (((w >>> 25) & 0x3f) << 5) | (((w >>> 8) & 0xf) << 1);
+	}
+
+	private static int immJ(int w) {
+		return ((w >> 31) << 20) | (((w >>> 12) & 0xff) << 12)
+				| (((w >>> 20) & 1) << 11) | (((w >>> 21) & 0x3ff) << 1);
+	}
+
+	/** Execute one instruction word at the current PC. */
+	private void step(int w) {
+		int opcode = w & 0x7f;
+		int rd = (w >>> 7) & 0x1f;
+		int f3 = (w >>> 12) & 7;
+		int rs1 = (w >>> 15) & 0x1f;
+		int rs2 = (w >>> 20) & 0x1f;
+		int f7 = w >>> 25;
+		int a = regs[rs1];
+		int b = regs[rs2];
+		int next = pc + 4;
+		switch (opcode) {
+			case 0x37 -> write(rd, w & 0xfffff000);
+			case 0x17 -> write(rd, pc + (w & 0xfffff000));
+			case 0x6f -> {
+				write(rd, next);
+				next = pc + immJ(w);
+			}
+			case 0x67 -> {
+				write(rd, next);
+				next = (a + immI(w)) & ~1;
+			}
+			case 0x63 -> {
+				boolean taken = switch (f3) {
+					case 0 -> a == b;
+					case 1 -> a != b;
+					case 4 -> a < b;
+					case 5 -> a >= b;
+					case 6 -> Integer.compareUnsigned(a, b) < 0;
+					case 7 -> Integer.compareUnsigned(a, b) >= 0;
+					default -> throw illegal(w);
+				};
+				if (taken) {
+					next = pc + immB(w);
+				}
+			}
+			case 0x03 -> {
+				if (f3 != 2) {
+					throw illegal(w);
+				}
+				write(rd, dmem[wordIndex(a + immI(w))]);
+			}
+			case 0x23 -> {
+				if (f3 != 2) {
+					throw illegal(w);
+				}
+				dmem[wordIndex(a + immS(w))] = b;
+			}
+			case 0x13 -> write(rd, alu(f3, a, immI(w), f7 == 0x20 && f3 == 5,
+					false, w));
+			case 0x33 -> write(rd, alu(f3, a, b, f7 == 0x20, true, w));
+			default -> throw illegal(w);
+		}
+		pc = next;
+	}
+
+	private int wordIndex(int address) {
+		return Integer.remainderUnsigned(address >>> 2, dmem.length);
+	}
+
+	private int alu(int f3, int a, int b, boolean alt, boolean reg, int w) {
+		int shamt = b & 0x1f;
+		return switch (f3) {
+			case 0 -> reg && alt ? a - b : a + b;
+			case 1 -> a << shamt;
+			case 2 -> a < b ? 1 : 0;
+			case 3 -> Integer.compareUnsigned(a, b) < 0 ? 1 : 0;
+			case 4 -> a ^ b;
+			case 5 -> alt ? sra(a, shamt) : a >>> shamt;
+			case 6 -> a | b;
+			case 7 -> a & b;
+			default -> throw illegal(w);
+		};
+	}
+
+	private static IllegalStateException illegal(int w) {
+		return new IllegalStateException(String.format(
+				"illegal instruction %08x", w));
+	}
+
+	// ------------------------------------------------------------------
+	// encoding and disassembly
+	// ------------------------------------------------------------------
+
+	/** Register-register ALU mnemonics, indexed by funct3 (sub and sra aside). */
+	static final String[] RR = {"add", "sll", "slt", "sltu", "xor", "srl",
+			"or", "and"};
+
+	/** Register-immediate ALU mnemonics, indexed by funct3. */
+	static final String[] RI = {"addi", "slli", "slti", "sltiu", "xori",
+			"srli", "ori", "andi"};
+
+	/** Branch mnemonics, indexed by funct3 (2 and 3 are unused). */
+	static final String[] BR = {"beq", "bne", "?", "?", "blt", "bge",
+			"bltu", "bgeu"};
+
+	static int rType(int f7, int rs2, int rs1, int f3, int rd) {
+		return (f7 << 25) | (rs2 << 20) | (rs1 << 15) | (f3 << 12) | (rd << 7)
+				| 0x33;
+	}
+
+	static int iType(int imm, int rs1, int f3, int rd, int opcode) {
+		return (imm << 20) | (rs1 << 15) | (f3 << 12) | (rd << 7) | opcode;
+	}
+
+	static int uType(int imm20, int rd, int opcode) {
+		return (imm20 << 12) | (rd << 7) | opcode;
+	}
+
+	static int sw(int rs2, int rs1, int offset) {
+		return ((offset >> 5) << 25) | (rs2 << 20) | (rs1 << 15) | (2 << 12)
+				| ((offset & 0x1f) << 7) | 0x23;
+	}
+
+	static int branch(int f3, int rs1, int rs2, int offset) {
+		return (((offset >> 12) & 1) << 31) | (((offset >> 5) & 0x3f) << 25)
+				| (rs2 << 20) | (rs1 << 15) | (f3 << 12)
+				| (((offset >> 1) & 0xf) << 8) | (((offset >> 11) & 1) << 7)
+				| 0x63;
+	}
+
+	static int jal(int rd, int offset) {
+		return (((offset >> 20) & 1) << 31) | (((offset >> 1) & 0x3ff) << 21)
+				| (((offset >> 11) & 1) << 20) | (((offset >> 12) & 0xff) << 12)
+				| (rd << 7) | 0x6f;
+	}
+
+	/** One instruction word in assembler syntax. */
+	static String disassemble(int w) {
+		int rd = (w >>> 7) & 0x1f;
+		int f3 = (w >>> 12) & 7;
+		int rs1 = (w >>> 15) & 0x1f;
+		int rs2 = (w >>> 20) & 0x1f;
+		boolean alt = (w >>> 25) == 0x20;
+		return switch (w & 0x7f) {
+			case 0x37 -> "lui x" + rd + ", " + (w >>> 12);
+			case 0x17 -> "auipc x" + rd + ", " + (w >>> 12);
+			case 0x6f -> "jal x" + rd + ", " + immJ(w);
+			case 0x67 -> "jalr x" + rd + ", " + immI(w) + "(x" + rs1 + ")";
+			case 0x63 -> BR[f3] + " x" + rs1 + ", x" + rs2 + ", " + immB(w);
+			case 0x03 -> "lw x" + rd + ", " + immI(w) + "(x" + rs1 + ")";
+			case 0x23 -> "sw x" + rs2 + ", " + immS(w) + "(x" + rs1 + ")";
+			case 0x13 -> (f3 == 5 && alt ? "srai" : RI[f3]) + " x" + rd
+					+ ", x" + rs1 + ", "
+					+ (f3 == 1 || f3 == 5 ? rs2 : immI(w));
+			case 0x33 -> (f3 == 0 && alt ? "sub" : f3 == 5 && alt ? "sra"
+					: RR[f3]) + " x" + rd + ", x" + rs1 + ", x" + rs2;
+			default -> String.format(".word 0x%08x", w);
+		};
+	}
+}
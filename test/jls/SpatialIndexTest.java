@@ -172,12 +172,20 @@ class SpatialIndexTest {
 					moved.add(el);
 				}
 			}
+			long changes = circuit.getIndexChanges();
 			circuit.reindexAfterMove(moved);
+			assertTrue(moved.isEmpty() || circuit.getIndexChanges() > changes,
+					"a move changes the index");
+			changes = circuit.getIndexChanges();
 			assertQueryParity(circuit, random, 50);
+			assertEquals(changes, circuit.getIndexChanges(),
+					"queries leave the index as it is");
 		}
 
 		// an invalidation (gesture end) must also restore exactness
+		long changes = circuit.getIndexChanges();
 		circuit.invalidateIndex();
+		assertTrue(circuit.getIndexChanges() > changes);
 		assertQueryParity(circuit, random, 100);
 	}
 
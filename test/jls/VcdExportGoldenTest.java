@@ -23,6 +23,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import jls.sim.BatchSimulator;
+import jls.sim.SimEvent;
 
 /**
  * Golden tests for the batch-mode VCD export (issue #72, spec in
@@ -232,6 +233,48 @@ class VcdExportGoldenTest {
 				"the undriven ROM output must appear as HiZ (z)");
 	}
 
+	/**
+	 * The VCD streams to its file as the run goes (docs section 4): by
+	 * mid-run more than one write buffer's worth is already on disk,
+	 * no trace is kept in memory, and the finished file is the same
+	 * dump a short run produces, extended.
+	 */
+	@Test
+	void vcdIsWrittenWhileTheRunGoes() throws Exception {
+		Path out = tmp.resolve("long.vcd");
+		long[] midRun = { -1 };
+		BatchSimulator sim = new BatchSimulator() {
+			@Override
+			protected void afterEvent(SimEvent event) {
+				super.afterEvent(event);
+				if (midRun[0] < 0 && event.getTime() >= 100_000) {
+					try {
+						midRun[0] = Files.size(out);
+					} catch (java.io.IOException e) {
+						throw new java.io.UncheckedIOException(e);
+					}
+				}
+			}
+		};
+		sim.setCircuit(load(waveCircuit(), "wave"));
+		sim.setTimeLimit(200_000);
+		sim.setVcdFile(out.toString());
+		sim.runSim();
+		sim.writeVcd();
+		long size = Files.size(out);
+		assertTrue(midRun[0] >= 64 * 1024 && midRun[0] < size,
+				"half way through, " + midRun[0] + " of " + size
+						+ " bytes must be on disk");
+		assertTrue(sim.getTraceSamples().isEmpty(),
+				"a VCD run keeps no trace in memory");
+		String vcd = Files.readString(out);
+		String shortRun = WAVE_GOLDEN.substring(0,
+				WAVE_GOLDEN.lastIndexOf("#100\n"));
+		assertTrue(vcd.startsWith(shortRun), vcd.substring(0, 400));
+		assertTrue(vcd.endsWith("#199990\n1!\n#200000\n0!\n"),
+				vcd.substring(vcd.length() - 40));
+	}
+
 	/**
 	 * Structural check written from docs/batch-interface.md section 4
 	 * (not from the emitter): header order, one $var per watched
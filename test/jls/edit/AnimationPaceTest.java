@@ -0,0 +1,50 @@
+package jls.edit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Real-time pacing of an animated run, on a made-up wall clock: an
+ * event runs once the clock reaches its time at the rate, events
+ * already due run without reading the clock, and a run that falls
+ * behind is paced again from where it is rather than rushed.
+ */
+class AnimationPaceTest {
+
+	private static final long SECOND = 1_000_000_000L;
+
+	@Test
+	void eventsRunWhenTheWallClockReachesThem() {
+		// 100 time units a second, from time 50 at wall time 7s
+		AnimationPace pace = new AnimationPace(100, 50, 7 * SECOND);
+		assertTrue(pace.admits(50), "what is due at the start runs at once");
+		assertFalse(pace.admits(60));
+
+		assertEquals(SECOND / 10, pace.wait(60, 7 * SECOND),
+				"10 units at 100 a second are a tenth of a second away");
+		assertEquals(50, pace.until());
+		assertEquals(SECOND / 20, pace.wait(60, 7 * SECOND + SECOND / 20));
+		assertEquals(55, pace.until(), "the clock shows the time passed");
+
+		assertEquals(0, pace.wait(60, 7 * SECOND + SECOND / 5),
+				"late by less than the lag allowed, it runs at once");
+		assertEquals(70, pace.until());
+		assertTrue(pace.admits(65), "a batch of due events reads no clock");
+		assertTrue(pace.admits(70));
+		assertFalse(pace.admits(71));
+	}
+
+	@Test
+	void aLaggingRunIsNotRushedToCatchUp() {
+		AnimationPace pace = new AnimationPace(1000, 0, 0);
+
+		// an event at 10 is due at 10ms; the run gets there at 2s
+		assertEquals(0, pace.wait(10, 2 * SECOND));
+		assertEquals(10, pace.until(), "paced again from the late event");
+		assertEquals(SECOND / 1000, pace.wait(11, 2 * SECOND),
+				"the next unit is a millisecond on, not long overdue");
+	}
+}
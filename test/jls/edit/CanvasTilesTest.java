@@ -0,0 +1,179 @@
+package jls.edit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Scanner;
+import java.util.Set;
+
+import javax.swing.JPanel;
+
+import org.junit.jupiter.api.Test;
+
+import jls.Circuit;
+import jls.CircuitTextBuilder;
+import jls.JLSInfo;
+import jls.elem.Element;
+import jls.elem.InputPin;
+import jls.elem.LogicElement;
+import jls.elem.Put;
+import jls.elem.WireEnd;
+
+/**
+ * The static-layer tile cache: a repaint through the tiles paints what
+ * a normal paint does, pixel for pixel and at the device scale, and a
+ * tile is drawn once until the zoom, the scale or the content changes.
+ */
+class CanvasTilesTest {
+
+	private static final int WIDTH = 700;
+	private static final int HEIGHT = 420;
+
+	/**
+	 * Constants wired to gates and pins, moved apart to a grid over
+	 * several tiles, each wire running from put to put, and a filled
+	 * input pin lying across the first wire: parts are drawn over wires.
+	 */
+	private static Circuit circuit() throws Exception {
+		CircuitTextBuilder cb = new CircuitTextBuilder();
+		for (int i = 0; i < 3; i += 1) {
+			int a = cb.constant(i);
+			int b = cb.constant(1);
+			int and = cb.gate("AndGate", 1, 2);
+			int y = cb.outputPin("y" + i, 1);
+			cb.wire(a, "output", and, "input0");
+			cb.wire(b, "output", and, "input1");
+			cb.wire(and, "output", y, "input");
+		}
+		cb.inputPin("over", 1);
+		Circuit circuit = new Circuit("tiles");
+		assertTrue(circuit.load(new Scanner(cb.build())),
+				() -> "the circuit must load: " + JLSInfo.loadError);
+		assertTrue(circuit.finishLoad(null),
+				() -> "the circuit must assemble: " + JLSInfo.loadError);
+		int k = 0;
+		for (Element el : circuit.getElementsInStableOrder()) {
+			if (el instanceof InputPin) {
+				el.move(144 - el.getX(), 36 - el.getY());
+			} else if (el instanceof LogicElement) {
+				el.move(48 + (k % 4) * 168 - el.getX(),
+						48 + (k / 4) * 132 - el.getY());
+				k += 1;
+			}
+		}
+		for (Element el : circuit.getElementsInStableOrder()) {
+			Put put = el instanceof WireEnd end ? end.getPut() : null;
+			if (put != null) {
+				el.move(put.getX() - el.getX(), put.getY() - el.getY());
+			}
+		}
+		circuit.invalidateIndex();
+		return circuit;
+	}
+
+	/** A white canvas in the panel's font. */
+	private static Graphics2D canvas(BufferedImage image, JPanel panel) {
+		Graphics2D g = image.createGraphics();
+		g.setFont(panel.getFont());
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, image.getWidth(), image.getHeight());
+		return g;
+	}
+
+	/** The circuit drawn directly, as a normal paint draws it. */
+	private static BufferedImage direct(Circuit circuit, JPanel panel,
+			double scale) throws Exception {
+		BufferedImage image = new BufferedImage((int)(WIDTH * scale),
+				(int)(HEIGHT * scale), BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = canvas(image, panel);
+		g.scale(scale, scale);
+		CircuitRenderer.of(circuit).draw(g, Set.of(), null);
+		g.dispose();
+		return image;
+	}
+
+	/** The circuit drawn as a run repaints it, through the tiles. */
+	private static BufferedImage tiled(Circuit circuit, JPanel panel,
+			CanvasTiles tiles, double scale) {
+		BufferedImage image = new BufferedImage((int)(WIDTH * scale),
+				(int)(HEIGHT * scale), BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = canvas(image, panel);
+		g.scale(scale, scale);
+		CircuitRenderer renderer = CircuitRenderer.of(circuit);
+		renderer.drawValues(g, () -> tiles.paint(g,
+				new Rectangle(0, 0, WIDTH, HEIGHT), new AffineTransform(), 0,
+				renderer::drawStatic));
+		g.dispose();
+		return image;
+	}
+
+	/** Every pixel of an image. */
+	private static int[] pixels(BufferedImage image) {
+		return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null,
+				0, image.getWidth());
+	}
+
+	@Test
+	void tiledRenderMatchesTheDirectRender() throws Exception {
+		Circuit circuit = circuit();
+		JPanel panel = new JPanel();
+		panel.setBackground(Color.WHITE);
+		assertArrayEquals(pixels(direct(circuit, panel, 1)),
+				pixels(tiled(circuit, panel, new CanvasTiles(panel), 1)),
+				"a repaint through the tiles must paint what a normal paint does");
+	}
+
+	@Test
+	void tilesAreDrawnAtTheDeviceScale() throws Exception {
+		Circuit circuit = circuit();
+		JPanel panel = new JPanel();
+		panel.setBackground(Color.WHITE);
+		CanvasTiles tiles = new CanvasTiles(panel);
+		assertArrayEquals(pixels(direct(circuit, panel, 2)),
+				pixels(tiled(circuit, panel, tiles, 2)),
+				"tiles on a 2x screen must not be enlarged from 1x ones");
+		assertEquals(2 * CanvasTiles.TILE, tiles.tilePixels().width);
+		int cached = tiles.size();
+		tiled(circuit, panel, tiles, 1.5);
+		assertEquals(cached, tiles.size());
+		assertEquals(384, tiles.tilePixels().height,
+				"a new scale draws the tiles again at it");
+	}
+
+	@Test
+	void tilesAreDrawnOnceUntilTheViewOrContentChanges() {
+		CanvasTiles tiles = new CanvasTiles(new JPanel());
+		int[] drawn = { 0 };
+		CanvasTiles.Layer layer = g -> drawn[0] += 1;
+		Graphics2D g = new BufferedImage(WIDTH, HEIGHT,
+				BufferedImage.TYPE_INT_RGB).createGraphics();
+		Rectangle all = new Rectangle(0, 0, WIDTH, HEIGHT);
+		AffineTransform view = new AffineTransform();
+
+		tiles.paint(g, all, view, 1, layer);
+		assertEquals(3 * 2, drawn[0], "one draw per tile");
+		tiles.paint(g, all, view, 1, layer);
+		tiles.paint(g, new Rectangle(300, 100, 20, 20), view, 1, layer);
+		assertEquals(6, drawn[0], "cached tiles are copied, not drawn");
+
+		tiles.paint(g, all, view, 2, layer);
+		assertEquals(12, drawn[0], "new content draws every tile again");
+		tiles.paint(g, all, AffineTransform.getScaleInstance(2, 2), 2, layer);
+		assertEquals(18, drawn[0], "so does a new zoom");
+		assertEquals(6, tiles.size());
+
+		// a huge canvas keeps only the most recently drawn tiles
+		tiles.paint(g, new Rectangle(0, 0, 40 * CanvasTiles.TILE,
+				10 * CanvasTiles.TILE), view, 2, layer);
+		assertEquals(CanvasTiles.MAX_TILES, tiles.size());
+		tiles.clear();
+		assertEquals(0, tiles.size());
+		g.dispose();
+	}
+}
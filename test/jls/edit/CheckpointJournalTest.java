@@ -0,0 +1,236 @@
+package jls.edit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Scanner;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jls.BatchJob;
+import jls.Circuit;
+import jls.CircuitTextBuilder;
+import jls.FileAbstractor;
+import jls.JLSInfo;
+import jls.collab.op.CircuitOp;
+import jls.collab.op.MoveElements;
+import jls.collab.op.ToggleWatched;
+import jls.core.Geometry;
+import jls.elem.Element;
+import jls.elem.Register;
+import jls.sim.DelayModel;
+
+/**
+ * Journaled crash checkpoints: edits made through ops after a
+ * checkpoint are appended to its journal rather than the circuit being
+ * saved again, recovery replays them onto the checkpoint, and a journal
+ * cut short or left from another checkpoint replays only what is sound.
+ */
+class CheckpointJournalTest {
+
+	private static final String CIRCUIT_TEXT =
+			"CIRCUIT journal\n"
+			+ "ELEMENT Constant\n"
+			+ " int id 0\n int x 60\n int y 60\n int width 24\n int height 24\n"
+			+ " Int value 5\n int base 10\n String orient \"RIGHT\"\nEND\n"
+			+ "ENDCIRCUIT\n";
+
+	@TempDir
+	Path tmp;
+
+	/** A finished one-element circuit. */
+	private static Circuit circuit(Scanner text) throws Exception {
+		Circuit circuit = new Circuit("journal");
+		assertTrue(circuit.load(text), () -> "load: " + JLSInfo.loadError);
+		assertTrue(circuit.finishLoad(null), () -> "finish: " + JLSInfo.loadError);
+		return circuit;
+	}
+
+	/** The circuit's one element. */
+	private static Element element(Circuit circuit) {
+		return circuit.getElements().iterator().next();
+	}
+
+	/** The circuit in the save format. */
+	private static String save(Circuit circuit) {
+		StringWriter text = new StringWriter();
+		try (PrintWriter output = new PrintWriter(text)) {
+			circuit.save(output);
+		}
+		return text.toString();
+	}
+
+	/** Move the element a grid space, as an edit, and return its op. */
+	private static List<CircuitOp> move(Circuit circuit) throws Exception {
+		CircuitOp op = new MoveElements(List.of(element(circuit).getStableId()),
+				Geometry.SPACING, 0);
+		op.apply(circuit, null);
+		return List.of(op);
+	}
+
+	/** The circuit recovered from a checkpoint, as a headless open does. */
+	private static Circuit recovered(String checkpoint) throws Exception {
+		Scanner input = FileAbstractor.openCircuit(checkpoint);
+		assertNotNull(input, () -> "open: " + JLSInfo.loadError);
+		Circuit circuit = circuit(input);
+		CheckpointJournal.replay(circuit, checkpoint);
+		return circuit;
+	}
+
+	/** What a batch run of a circuit file prints to stdout. */
+	private static String batch(String file) {
+		PrintStream saved = System.out;
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(buffer, true, StandardCharsets.UTF_8));
+		try {
+			assertEquals(0, new BatchJob(file, null, null, JLSInfo.defaultTimeLimit,
+					DelayModel.CONFIGURED, null).run());
+		} finally {
+			System.setOut(saved);
+		}
+		return buffer.toString(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	void journaledOpsAreReplayedOntoTheBase() throws Exception {
+		String checkpoint = tmp.resolve("journal.jls~").toString();
+		Circuit circuit = circuit(new Scanner(CIRCUIT_TEXT));
+		int x0 = element(circuit).getX();
+		SimpleEditor.writeCheckpointInBackground(checkpoint, save(circuit));
+		for (int i = 0; i < 3; i += 1) {
+			SimpleEditor.journalInBackground(checkpoint,
+					CheckpointJournal.text(move(circuit)), circuit);
+		}
+		SimpleEditor.awaitCheckpoints();
+
+		File journal = new File(CheckpointJournal.journalPath(checkpoint));
+		assertTrue(journal.isFile());
+		Scanner base = FileAbstractor.openCircuit(checkpoint);
+		assertNotNull(base);
+		assertEquals(x0, element(circuit(base)).getX(),
+				"the base is not written again for a journaled edit");
+
+		Circuit replayed = recovered(checkpoint);
+		assertEquals(x0 + 3 * Geometry.SPACING, element(replayed).getX());
+		assertEquals(save(circuit), save(replayed),
+				"recovery reaches the circuit as edited");
+
+		// the editor's open path recovers an unfinished circuit
+		Scanner input = FileAbstractor.openCircuit(checkpoint);
+		assertNotNull(input);
+		Circuit loaded = new Circuit("journal");
+		assertTrue(loaded.load(input));
+		Circuit opened = CheckpointJournal.recover(loaded, checkpoint);
+		assertTrue(opened.isLoadPending(), "finished at the editor's first paint");
+		assertTrue(opened.finishLoad(null));
+		assertEquals(save(circuit), save(opened));
+
+		SimpleEditor.cancelCheckpoint(checkpoint);
+		assertFalse(new File(checkpoint).isFile());
+		assertFalse(journal.isFile(), "a save discards the journal too");
+	}
+
+	@Test
+	void aTornOrStaleJournalIsNotReplayed() throws Exception {
+		String checkpoint = tmp.resolve("journal.jls~").toString();
+		Circuit circuit = circuit(new Scanner(CIRCUIT_TEXT));
+		int x0 = element(circuit).getX();
+		SimpleEditor.writeCheckpointInBackground(checkpoint, save(circuit));
+		SimpleEditor.journalInBackground(checkpoint,
+				CheckpointJournal.text(move(circuit)), circuit);
+		SimpleEditor.awaitCheckpoints();
+
+		// a crash part way through writing the next op
+		Path journal = Path.of(CheckpointJournal.journalPath(checkpoint));
+		String next = CheckpointJournal.text(move(circuit));
+		Files.writeString(journal, next.substring(0, next.length() - 5),
+				StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+		assertEquals(x0 + Geometry.SPACING, element(recovered(checkpoint)).getX(),
+				"the ops written whole are replayed, the torn one is not");
+
+		// a journal whose base has since been replaced
+		String stale = Files.readString(journal, StandardCharsets.UTF_8);
+		SimpleEditor.writeCheckpointInBackground(checkpoint, save(circuit));
+		SimpleEditor.awaitCheckpoints();
+		Files.writeString(journal, stale, StandardCharsets.UTF_8);
+		assertEquals(0, CheckpointJournal.replay(
+				circuit(new Scanner(save(circuit))), checkpoint),
+				"a journal never replays onto a base it does not follow");
+		assertEquals(x0 + 2 * Geometry.SPACING, element(recovered(checkpoint)).getX());
+
+		SimpleEditor.cancelCheckpoint(checkpoint);
+	}
+
+	@Test
+	void aBatchRunReplaysTheJournal() throws Exception {
+		String checkpoint = tmp.resolve("counter.jls~").toString();
+		CircuitTextBuilder cb = new CircuitTextBuilder();
+		cb.counter(400, 0, 1);
+		Circuit circuit = circuit(new Scanner(cb.build()));
+		SimpleEditor.writeCheckpointInBackground(checkpoint, save(circuit));
+		SimpleEditor.awaitCheckpoints();
+		String base = batch(checkpoint);
+
+		// stop watching the counter's register after the checkpoint
+		Element reg = circuit.getElements().stream()
+				.filter(el -> el instanceof Register).findFirst().orElseThrow();
+		CircuitOp op = new ToggleWatched(reg.getStableId());
+		op.apply(circuit, null);
+		SimpleEditor.journalInBackground(checkpoint,
+				CheckpointJournal.text(List.of(op)), circuit);
+		SimpleEditor.awaitCheckpoints();
+
+		Path edited = tmp.resolve("counter.jls");
+		Files.writeString(edited, save(circuit), StandardCharsets.UTF_8);
+		String replayed = batch(checkpoint);
+		assertNotEquals(base, replayed, "the journaled edit changes the report");
+		assertEquals(batch(edited.toString()), replayed,
+				"a batch run of the checkpoint runs the circuit as edited");
+
+		SimpleEditor.cancelCheckpoint(checkpoint);
+	}
+
+	@Test
+	void aLongJournalIsCompactedIntoANewBase() throws Exception {
+		String checkpoint = tmp.resolve("journal.jls~").toString();
+		Circuit circuit = circuit(new Scanner(CIRCUIT_TEXT));
+		int x0 = element(circuit).getX();
+		SimpleEditor.writeCheckpointInBackground(checkpoint, save(circuit));
+		int edits = 0;
+		long written = 0;
+		while (written <= 2L * CheckpointJournal.COMPACT_CHARS) {
+			String text = CheckpointJournal.text(move(circuit));
+			SimpleEditor.journalInBackground(checkpoint, text, circuit);
+			written += text.length();
+			edits += 1;
+		}
+		SimpleEditor.awaitCheckpoints();
+
+		Path journal = Path.of(CheckpointJournal.journalPath(checkpoint));
+		assertTrue(Files.size(journal) < CheckpointJournal.COMPACT_CHARS + 100,
+				"the journal is started again once it grows too long");
+		Scanner base = FileAbstractor.openCircuit(checkpoint);
+		assertNotNull(base);
+		assertTrue(element(circuit(base)).getX() > x0,
+				"the journal is compacted into a newer base");
+		assertEquals(x0 + edits * Geometry.SPACING,
+				element(recovered(checkpoint)).getX(),
+				"nothing is lost by compacting");
+
+		SimpleEditor.cancelCheckpoint(checkpoint);
+	}
+}
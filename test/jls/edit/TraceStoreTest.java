@@ -0,0 +1,104 @@
+package jls.edit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The interactive trace's store: changes that spill past the on-heap
+ * window read back from the mapped file exactly as added, and once the
+ * retention cap is reached the oldest drop out, as the cap always made
+ * them.
+ */
+class TraceStoreTest {
+
+	/** A random value of a width, or its HiZ marker one time in five. */
+	private static BitSet value(Random random, int bits) {
+		BitSet value = new BitSet(bits + 1);
+		if (random.nextInt(5) == 0) {
+			value.set(bits);
+			return value;
+		}
+		for (int b = 0; b < bits; b += 1) {
+			if (random.nextBoolean()) {
+				value.set(b);
+			}
+		}
+		return value;
+	}
+
+	@Test
+	void spilledChangesReadBackAsAdded() {
+		Random random = new Random(39);
+		for (int bits : new int[] { 1, 63, 64, 100 }) {
+			TraceStore store = new TraceStore(bits, 16, 1000);
+			List<Trace.Change> added = new ArrayList<Trace.Change>();
+			long when = 0;
+			for (int i = 0; i < 700; i += 1) {
+				when += random.nextInt(3) == 0 ? 0 : random.nextInt(1 << 20);
+				BitSet value = value(random, bits);
+				store.add(when, (BitSet) value.clone());
+				added.add(new Trace.Change(value, when));
+			}
+			assertEquals(0, store.first());
+			List<Trace.Change> view = store.newestFirst(store.count());
+			assertEquals(added.size(), view.size());
+			for (int i = 0; i < added.size(); i += 1) {
+				assertEquals(added.get(i), view.get(added.size() - 1 - i),
+						bits + " bits, change " + i);
+			}
+		}
+	}
+
+	@Test
+	void theOldestChangesDropOutAtTheCap() {
+		Random random = new Random(40);
+		TraceStore store = new TraceStore(8, 16, 100);
+		List<Trace.Change> added = new ArrayList<Trace.Change>();
+		for (int i = 0; i < 1234; i += 1) {
+			BitSet value = value(random, 8);
+			store.add(i, (BitSet) value.clone());
+			added.add(new Trace.Change(value, i));
+		}
+		assertEquals(1234 - 100, store.first());
+		List<Trace.Change> view = store.newestFirst(store.count());
+		assertEquals(added.subList(1134, 1234).reversed(), view);
+
+		// a view taken earlier only loses the changes that dropped out
+		List<Trace.Change> older = store.newestFirst(1200);
+		store.add(1234, new BitSet());
+		assertEquals(added.subList(1135, 1200).reversed(), older);
+	}
+
+	@Test
+	void levelsMatchTheChangesInAnyRun() {
+		Random random = new Random(41);
+		for (int bits : new int[] { 1, 8 }) {
+			TraceStore store = new TraceStore(bits, 16, 300);
+			List<Integer> levels = new ArrayList<Integer>();
+			for (int i = 0; i < 1000; i += 1) {
+				BitSet value = value(random, bits);
+				store.add(i, value);
+				levels.add(value.get(bits) ? TraceStore.MIDDLE
+						: bits > 1 ? TraceStore.TOP | TraceStore.BOTTOM
+						: value.get(0) ? TraceStore.TOP : TraceStore.BOTTOM);
+
+				// any run of the retained changes, also once the oldest drop out
+				long first = store.first();
+				long from = first + random.nextInt(i + 1 - (int) first);
+				long to = from + random.nextInt(i + 1 - (int) from);
+				int expected = 0;
+				for (long n = from; n <= to; n += 1) {
+					expected |= levels.get((int) n);
+				}
+				assertEquals(expected, store.levels(from, to),
+						bits + " bits, changes " + from + " to " + to);
+			}
+		}
+	}
+}
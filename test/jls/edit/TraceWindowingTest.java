@@ -218,4 +218,46 @@ class TraceWindowingTest {
 			assertRegionEqualAndInked(full, part, x0, clipWidth);
 		}
 	}
+
+	@Test
+	void aFarZoomDrawsEachBusyColumnAsOneBar() {
+
+		// ~200 changes per pixel column: the older half toggles 0/1,
+		// the newer half 1/HiZ, so its bars must stop at the middle
+		Trace trace = new Trace("sig", null, 1, 500, parent());
+		trace.setScaleFactor(500);
+		long t = 0;
+		int half = 40_000;
+		for (int i = 0; i < 2 * half; i++) {
+			t += 1 + i % 3;
+			if (i < half)
+				trace.addValue(bits(i % 2, 1), t);
+			else
+				trace.addValue(i % 2 == 0 ? null : bits(1, 1), t);
+		}
+		long now = t + 5;
+		int width = (int) (now / 500) + 10;
+		trace.setSize(width, HEIGHT);
+		trace.commit(now);
+
+		BufferedImage full = paint(trace, width, null);
+		int clipWidth = 60;
+		for (int x0 : new int[] { 0, 97, width / 2, width - 10 - clipWidth }) {
+			BufferedImage part = paint(trace, width,
+					new Rectangle(x0, 0, clipWidth, HEIGHT));
+			assertRegionEqualAndInked(full, part, x0, clipWidth);
+		}
+
+		// every busy column is a bar over the levels it reaches
+		int black = Color.black.getRGB();
+		int split = width - 10 - (int) ((now - 80_000) / 500);
+		for (int x = 2; x < width - 12; x++) {
+			if (Math.abs(x - split) <= 2)
+				continue;
+			assertEquals(black, full.getRGB(x, 10), "top at x=" + x);
+			assertEquals(black, full.getRGB(x, 20), "middle at x=" + x);
+			assertEquals(x < split, full.getRGB(x, 30) == black,
+					"bottom at x=" + x);
+		}
+	}
 }
@@ -13,6 +13,9 @@ import org.junit.jupiter.api.Test;
 
 import jls.Circuit;
 import jls.JLSInfo;
+import jls.collab.op.CircuitOp;
+import jls.collab.op.MoveElements;
+import jls.collab.op.OpRejected;
 import jls.core.Geometry;
 import jls.elem.Element;
 
@@ -281,4 +284,244 @@ class UndoManagerTest {
 		}
 	} // end of pushClampsToTheConfiguredDepth method
 
+	/**
+	 * The circuit's one element, in whichever instance is current.
+	 *
+	 * @return the element.
+	 */
+	private Element element() {
+
+		for (Element el : circuit.getElements()) {
+			return el;
+		}
+		throw new AssertionError("the circuit has no element");
+	} // end of element method
+
+	/**
+	 * Move the element one grid space through an op and record the edit
+	 * as the editor's op sink does: inverse first, then apply.
+	 *
+	 * @param manager The manager to record in.
+	 *
+	 * @throws OpRejected if the move does not apply.
+	 */
+	private void recordMove(UndoManager manager) throws OpRejected {
+
+		CircuitOp op = new MoveElements(List.of(element().getStableId()),
+				Geometry.SPACING, 0);
+		CircuitOp inverse = op.invert(circuit);
+		op.apply(circuit, null);
+		manager.record(List.of(op), List.of(inverse), this::snapshot);
+	} // end of recordMove method
+
+	/**
+	 * A restorer that installs the snapshot as the test's circuit and
+	 * counts the restores, as the editor's finishDo installs it.
+	 */
+	private final class InstallingRestorer implements UndoManager.Restorer {
+
+		/** How many snapshots were restored. */
+		int restores = 0;
+
+		/**
+		 * Restore the snapshot into a new circuit instance.
+		 *
+		 * @param snap The snapshot to restore.
+		 *
+		 * @return true if it loaded.
+		 */
+		@Override
+		public boolean restore(CircuitSnapshot snap) {
+
+			Circuit restored = snap.restore("undotest", null);
+			if (restored == null) {
+				return false;
+			}
+			circuit = restored;
+			restores += 1;
+			return true;
+		} // end of restore method
+	} // end of InstallingRestorer class
+
+	/**
+	 * Applies ops to the test's current circuit, as the editor's applyDo
+	 * does.
+	 */
+	private final UndoManager.Applier applier = op -> op.apply(circuit, null);
+
+	/**
+	 * Edits made through ops are undone and redone in place by their
+	 * inverses and ops: no snapshot is restored, and none is taken
+	 * beyond the base state.
+	 *
+	 * @throws Exception if an op does not apply.
+	 */
+	@Test
+	void deltasUndoAndRedoInPlace() throws Exception {
+
+		UndoManager manager = new UndoManager();
+		manager.push(snapshot());
+		int x0 = element().getX();
+		for (int i = 0; i < 3; i += 1) {
+			recordMove(manager);
+		}
+		assertEquals(1, manager.snapshotCount(),
+				"a delta costs its ops, not a copy of the circuit");
+
+		InstallingRestorer restorer = new InstallingRestorer();
+		for (int i = 3; i > 0; i -= 1) {
+			assertEquals(x0 + i * Geometry.SPACING, element().getX());
+			assertTrue(manager.undo(restorer, applier));
+		}
+		assertEquals(x0, element().getX());
+		assertFalse(manager.canUndo());
+		assertEquals(3, manager.redoCount());
+
+		while (manager.redo(restorer, applier)) {
+			// redo everything undone
+		}
+		assertEquals(x0 + 3 * Geometry.SPACING, element().getX());
+		assertEquals(0, restorer.restores,
+				"neither undo nor redo of a delta restores a snapshot");
+	} // end of deltasUndoAndRedoInPlace method
+
+	/**
+	 * A long run of op edits takes a snapshot only every
+	 * {@link UndoManager#ANCHOR_EVERY} deltas, and is not cut short by
+	 * the depth bound, which limits only snapshot entries.
+	 *
+	 * @throws Exception if an op does not apply.
+	 */
+	@Test
+	void deltasTakeSnapshotsOnlyAsAnchors() throws Exception {
+
+		UndoManager manager = new UndoManager(() -> 3);
+		manager.push(snapshot());
+		int x0 = element().getX();
+		int edits = 100;
+		for (int i = 0; i < edits; i += 1) {
+			recordMove(manager);
+		}
+		assertEquals(edits + 1, manager.undoCount(),
+				"op edits are kept past the depth bound");
+		assertEquals(1 + edits / UndoManager.ANCHOR_EVERY,
+				manager.snapshotCount(),
+				"only the base and the anchors are snapshots");
+
+		InstallingRestorer restorer = new InstallingRestorer();
+		while (manager.undo(restorer, applier)) {
+			// undo back to the first paint
+		}
+		assertEquals(x0, element().getX());
+		assertEquals(0, restorer.restores);
+	} // end of deltasTakeSnapshotsOnlyAsAnchors method
+
+	/**
+	 * However long a session of op edits runs, only the base and the
+	 * newest {@link UndoManager#MAX_ANCHORS} anchors keep a snapshot; the
+	 * older anchors' deltas stay undoable, and a rebuild still starts
+	 * from the nearest snapshot kept.
+	 *
+	 * @throws Exception if an op does not apply.
+	 */
+	@Test
+	void anchorsStayBoundedOverManyOpEdits() throws Exception {
+
+		UndoManager manager = new UndoManager();
+		manager.push(snapshot());
+		int x0 = element().getX();
+		int edits = UndoManager.ANCHOR_EVERY * (UndoManager.MAX_ANCHORS + 4);
+		for (int i = 0; i < edits; i += 1) {
+			recordMove(manager);
+			assertTrue(manager.snapshotCount() <= 1 + UndoManager.MAX_ANCHORS,
+					"the anchors are bounded");
+		}
+		assertEquals(1 + UndoManager.MAX_ANCHORS, manager.snapshotCount());
+		assertEquals(edits + 1, manager.undoCount(),
+				"dropping an anchor keeps its deltas");
+
+		// a direct gesture on top is undone from the newest anchor
+		manager.push(changedSnapshot());
+		InstallingRestorer restorer = new InstallingRestorer();
+		assertTrue(manager.undo(restorer, applier));
+		assertEquals(1, restorer.restores);
+		assertEquals(x0 + edits * Geometry.SPACING, element().getX());
+
+		while (manager.undo(restorer, applier)) {
+			// undo back to the first paint
+		}
+		assertEquals(x0, element().getX());
+		assertEquals(1, restorer.restores);
+	} // end of anchorsStayBoundedOverManyOpEdits method
+
+	/**
+	 * Undoing a direct gesture's snapshot entry that sits on deltas
+	 * rebuilds the state below it: the nearest snapshot under it is
+	 * restored and the deltas above that replayed. The deltas below are
+	 * then undone in place on the rebuilt circuit.
+	 *
+	 * @throws Exception if an op does not apply.
+	 */
+	@Test
+	void undoPastASnapshotReplaysTheDeltasBelowIt() throws Exception {
+
+		UndoManager manager = new UndoManager();
+		manager.push(snapshot());
+		int x0 = element().getX();
+		recordMove(manager);
+		recordMove(manager);
+		manager.push(changedSnapshot());
+
+		InstallingRestorer restorer = new InstallingRestorer();
+		assertTrue(manager.undo(restorer, applier));
+		assertEquals(1, restorer.restores, "the base is restored once");
+		assertEquals(x0 + 2 * Geometry.SPACING, element().getX(),
+				"the deltas on the base are replayed");
+
+		assertTrue(manager.undo(restorer, applier));
+		assertTrue(manager.undo(restorer, applier));
+		assertEquals(x0, element().getX());
+		assertEquals(1, restorer.restores,
+				"the replayed deltas undo in place");
+
+		assertTrue(manager.redo(restorer, applier));
+		assertTrue(manager.redo(restorer, applier));
+		assertTrue(manager.redo(restorer, applier));
+		assertEquals(x0 + 3 * Geometry.SPACING, element().getX());
+		assertEquals(2, restorer.restores,
+				"redoing the direct gesture restores its snapshot");
+	} // end of undoPastASnapshotReplaysTheDeltasBelowIt method
+
+	/**
+	 * A delta whose ops no longer apply is undone by rebuilding from the
+	 * snapshots instead; a redo that can be neither applied nor rebuilt
+	 * fails and leaves the history and the circuit where they were.
+	 *
+	 * @throws Exception if an op does not apply.
+	 */
+	@Test
+	void aRejectedInverseFallsBackToTheSnapshots() throws Exception {
+
+		UndoManager manager = new UndoManager();
+		manager.push(snapshot());
+		int x0 = element().getX();
+		recordMove(manager);
+		UndoManager.Applier rejecting = op -> {
+			throw new OpRejected("stale");
+		};
+
+		InstallingRestorer restorer = new InstallingRestorer();
+		assertTrue(manager.undo(restorer, rejecting));
+		assertEquals(1, restorer.restores);
+		assertEquals(x0, element().getX());
+		assertEquals(1, manager.redoCount());
+
+		assertFalse(manager.redo(restorer, rejecting));
+		assertEquals(x0, element().getX(),
+				"a failed redo leaves the circuit undone");
+		assertEquals(1, manager.undoCount());
+		assertEquals(1, manager.redoCount(),
+				"a failed redo must not touch the history");
+	} // end of aRejectedInverseFallsBackToTheSnapshots method
+
 } // end of UndoManagerTest class
@@ -0,0 +1,266 @@
+package jls.edit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Rectangle;
+import java.util.BitSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.Set;
+
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import jls.Circuit;
+import jls.CircuitTextBuilder;
+import jls.JLSInfo;
+import jls.elem.Display;
+import jls.elem.Element;
+import jls.elem.Wire;
+import jls.elem.WireNet;
+import jls.sim.Testbench;
+
+/**
+ * The frames an interactive run publishes for the canvas: a held frame
+ * keeps the values it was published with while the run goes on, every
+ * frame catches up on what changed while the other was shown, and a
+ * publish that would overwrite a held frame is skipped, not waited for.
+ */
+class ValueSnapshotTest {
+
+	/** Input pin a driving a wire to a base-10 display. */
+	private static Circuit pinToDisplay() throws Exception {
+		CircuitTextBuilder cb = new CircuitTextBuilder();
+		int a = cb.inputPin("a", 8);
+		int display = cb.display(8, 10);
+		cb.wire(a, "output", display, "input0");
+		Circuit circuit = new Circuit("values");
+		assertTrue(circuit.load(new Scanner(cb.build())),
+				() -> "the circuit must load: " + JLSInfo.loadError);
+		assertTrue(circuit.finishLoad(null),
+				() -> "the circuit must assemble: " + JLSInfo.loadError);
+		return circuit;
+	}
+
+	/** The circuit's element of a class. */
+	private static <T extends Element> T find(Circuit circuit, Class<T> type) {
+		for (Element el : circuit.getElements()) {
+			if (type.isInstance(el)) {
+				return type.cast(el);
+			}
+		}
+		throw new AssertionError("no " + type.getSimpleName());
+	}
+
+	/** A frame's value of a net or display, as a number. */
+	private static long value(ValueSnapshot values, ValueSnapshot.Frame frame,
+			Object key) {
+		BitSet value = frame.value(values.slot(key));
+		assertNotNull(value, "not HiZ");
+		return value.isEmpty() ? 0 : value.toLongArray()[0];
+	}
+
+	/** Set pin a and let the change reach the display. */
+	private static void drive(Testbench bench, long value) {
+		bench.poke("a", value);
+		bench.runFor(10);
+	}
+
+	@Test
+	void publishedFramesHoldTheValuesAtTheirTime() throws Exception {
+		Circuit circuit = pinToDisplay();
+		Testbench bench = new Testbench(circuit);
+		WireNet net = find(circuit, Wire.class).getNet();
+		assertNotNull(net);
+		Display display = find(circuit, Display.class);
+		ValueSnapshot values = new ValueSnapshot(circuit);
+
+		drive(bench, 5);
+		assertTrue(values.publish());
+		ValueSnapshot.Frame shown = values.acquire();
+		assertNotNull(shown);
+		drive(bench, 9);
+		assertTrue(values.publish(), "the other frame is free");
+		assertEquals(5, value(values, shown, net), "the held frame is unchanged");
+		assertEquals(5, value(values, shown, display));
+
+		// a paint pass reads its frame, not the live values
+		ValueSnapshot.show(values);
+		try {
+			ValueSnapshot.beginPaint();
+			@Nullable BitSet painted = ValueSnapshot.valueOf(find(circuit, Wire.class));
+			ValueSnapshot.endPaint();
+			assertEquals(BitSet.valueOf(new long[] { 9 }), painted);
+			assertEquals(BitSet.valueOf(new long[] { 9 }), net.getValue());
+
+			// while the run is parked the live values are read
+			drive(bench, 12);
+			values.setLive(true);
+			ValueSnapshot.beginPaint();
+			painted = ValueSnapshot.valueOf(display);
+			ValueSnapshot.endPaint();
+			assertEquals(BitSet.valueOf(new long[] { 12 }), painted);
+		} finally {
+			ValueSnapshot.show(null);
+		}
+		values.release(shown);
+	}
+
+	@Test
+	void eachFrameCatchesUpOnTheChangesItMissed() throws Exception {
+		Circuit circuit = pinToDisplay();
+		Testbench bench = new Testbench(circuit);
+		WireNet net = find(circuit, Wire.class).getNet();
+		assertNotNull(net);
+		Display display = find(circuit, Display.class);
+		ValueSnapshot values = new ValueSnapshot(circuit);
+
+		drive(bench, 5);
+		assertTrue(values.publish());
+		ValueSnapshot.Frame first = values.acquire();
+		assertNotNull(first);
+		values.release(first);
+		drive(bench, 9);
+		assertTrue(values.publish());
+
+		// nothing changed since, but this frame last held 5
+		int version = net.getVersion();
+		assertTrue(values.publish());
+		ValueSnapshot.Frame again = values.acquire();
+		assertSame(first, again, "the frames alternate");
+		assertEquals(9, value(values, again, net));
+		assertEquals(9, value(values, again, display));
+		values.release(again);
+		assertEquals(version, net.getVersion(), "publishing reads only");
+
+		drive(bench, 3);
+		assertTrue(values.publish());
+		ValueSnapshot.Frame last = values.acquire();
+		assertNotNull(last);
+		assertEquals(3, value(values, last, net));
+		assertEquals(3, value(values, last, display));
+		values.release(last);
+	}
+
+	@Test
+	void aHeldFrameIsNeverOverwritten() throws Exception {
+		Circuit circuit = pinToDisplay();
+		Testbench bench = new Testbench(circuit);
+		WireNet net = find(circuit, Wire.class).getNet();
+		assertNotNull(net);
+		ValueSnapshot values = new ValueSnapshot(circuit);
+		assertEquals(null, values.acquire(), "nothing published yet");
+
+		drive(bench, 1);
+		assertTrue(values.publish());
+		ValueSnapshot.Frame held = values.acquire();
+		assertNotNull(held);
+		drive(bench, 2);
+		assertTrue(values.publish());
+		drive(bench, 3);
+		assertFalse(values.publish(), "the other frame is held");
+		assertFalse(values.publish());
+		assertEquals(2, values.published());
+		assertEquals(1, value(values, held, net));
+		values.release(held);
+
+		assertTrue(values.publish(), "released, it is filled again");
+		ValueSnapshot.Frame front = values.acquire();
+		assertSame(held, front);
+		assertEquals(3, value(values, front, net));
+		values.release(front);
+	}
+
+	@Test
+	void onlyChangedValuesAreRepainted() throws Exception {
+		CircuitTextBuilder cb = new CircuitTextBuilder();
+		int a = cb.inputPin("a", 8);
+		int display = cb.display(8, 10);
+		int b = cb.inputPin("b", 8);
+		int y = cb.outputPin("y", 8);
+		cb.wire(a, "output", display, "input0");
+		cb.wire(b, "output", y, "input");
+		Circuit circuit = new Circuit("regions");
+		assertTrue(circuit.load(new Scanner(cb.build())),
+				() -> "the circuit must load: " + JLSInfo.loadError);
+		assertTrue(circuit.finishLoad(null),
+				() -> "the circuit must assemble: " + JLSInfo.loadError);
+		Testbench bench = new Testbench(circuit);
+		drive(bench, 1);
+		Rectangle toDisplay = null;
+		Rectangle toPin = null;
+		for (Element el : circuit.getElements()) {
+			if (el instanceof Wire wire && wire.getNet() != null) {
+				Rectangle r = AwtGeom.awt(wire.getRect());
+				if (wire.getNet().getLong() == 1)
+					toDisplay = r;
+				else
+					toPin = r;
+			}
+		}
+		assertNotNull(toDisplay);
+		assertNotNull(toPin);
+		Rectangle box = AwtGeom.awt(find(circuit, Display.class).getRect());
+		ValueSnapshot values = new ValueSnapshot(circuit);
+
+		assertTrue(values.publish());
+		assertEquals(3, values.changedSince(0, circuit).size(),
+				"the first frame changes everything");
+		assertEquals(List.of(), values.changedSince(1, circuit));
+
+		drive(bench, 7);
+		assertTrue(values.publish());
+		assertEquals(Set.of(toDisplay, box),
+				Set.copyOf(values.changedSince(1, circuit)));
+
+		// a frame never painted still counts for the next one
+		bench.poke("b", 4);
+		bench.runFor(10);
+		assertTrue(values.publish());
+		assertEquals(List.of(toPin), values.changedSince(2, circuit));
+		assertEquals(Set.of(toDisplay, box, toPin),
+				Set.copyOf(values.changedSince(1, circuit)));
+
+		assertTrue(values.publish());
+		assertEquals(List.of(), values.changedSince(3, circuit),
+				"nothing changed since");
+		assertEquals(List.of(), values.changedSince(0, new Circuit("other")),
+				"another circuit's elements are not on this canvas");
+	}
+
+	@Test
+	void farApartRegionsArePaintedApart() {
+		Rectangle corner = new Rectangle(0, 0, 10, 10);
+		Rectangle far = new Rectangle(1000, 1000, 10, 10);
+		assertEquals(List.of(new Rectangle(-2, -2, 14, 14),
+				new Rectangle(998, 998, 14, 14)),
+				ValueSnapshot.paintRegions(List.of(corner, far), 2),
+				"not their bounding box, as repaint would paint");
+		assertEquals(new Rectangle(0, 0, 10, 10), corner, "the input is kept");
+
+		assertEquals(List.of(new Rectangle(-2, -2, 19, 14)),
+				ValueSnapshot.paintRegions(
+						List.of(corner, new Rectangle(5, 0, 10, 10)), 2),
+				"overlapping regions are painted once");
+		assertEquals(List.of(new Rectangle(0, 0, 20, 10)),
+				ValueSnapshot.paintRegions(
+						List.of(corner, new Rectangle(10, 0, 10, 10)), 0),
+				"regions whose bounding box costs nothing more are merged");
+		assertEquals(List.of(), ValueSnapshot.paintRegions(List.of(), 2));
+
+		List<Rectangle> scattered = new ArrayList<Rectangle>();
+		for (int i = 0; i <= ValueSnapshot.MAX_REGIONS; i += 1) {
+			scattered.add(new Rectangle(100 * i, 100 * i, 10, 10));
+		}
+		assertEquals(List.of(new Rectangle(0, 0,
+				100 * ValueSnapshot.MAX_REGIONS + 10,
+				100 * ValueSnapshot.MAX_REGIONS + 10)),
+				ValueSnapshot.paintRegions(scattered, 0),
+				"too many regions are painted as one");
+	}
+}
@@ -0,0 +1,173 @@
+package jls.elem;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jls.BatchJob;
+import jls.CircuitTextBuilder;
+import jls.JLSInfo;
+import jls.sim.DelayModel;
+
+/**
+ * VCD test files (VcdStimulus, docs/batch-interface.md section 2.7): a
+ * run's own VCD, mapped back onto the input pins, must drive the run
+ * it recorded, far past one refill chunk; variables map onto pins by
+ * name from any scope; and a malformed file or a mapping that does not
+ * fit the circuit must be reported instead of run.
+ */
+class VcdStimulusTest {
+
+	@TempDir
+	Path dir;
+
+	/** Input pins a (8 bits), b (4) and c (1), each wired to an output pin. */
+	private static String pins() {
+		CircuitTextBuilder cb = new CircuitTextBuilder();
+		int a = cb.inputPin("a", 8);
+		int b = cb.inputPin("b", 4);
+		int c = cb.inputPin("c", 1);
+		int ya = cb.outputPin("ya", 8);
+		int yb = cb.outputPin("yb", 4);
+		int yc = cb.outputPin("yc", 1);
+		cb.wire(a, "output", ya, "input");
+		cb.wire(b, "output", yb, "input");
+		cb.wire(c, "output", yc, "input");
+		return cb.build();
+	}
+
+	private Path write(String name, String text) throws Exception {
+		Path file = dir.resolve(name);
+		Files.writeString(file, text, StandardCharsets.UTF_8);
+		return file;
+	}
+
+	/** Run a batch job with a VCD and a -vcdmap file: {stdout, status, vcd}. */
+	private String[] run(Path test, @Nullable Path map) throws Exception {
+		Path circuit = write("pins.jls", pins());
+		Path vcd = dir.resolve("out.vcd");
+		Files.deleteIfExists(vcd);
+		boolean oldBatch = JLSInfo.batch;
+		JLSInfo.batch = true;
+		JLSInfo.vcdMapFile = map == null ? null : map.toString();
+		PrintStream saved = System.out;
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(buffer, true, StandardCharsets.UTF_8));
+		int status;
+		try {
+			status = new BatchJob(circuit.toString(), test.toString(), null,
+					10_000_000, DelayModel.CONFIGURED, vcd.toString(), 1).run();
+		} finally {
+			System.setOut(saved);
+			JLSInfo.batch = oldBatch;
+			JLSInfo.vcdMapFile = null;
+		}
+		String waves = Files.exists(vcd) ? Files.readString(vcd) : "";
+		return new String[] { buffer.toString(StandardCharsets.UTF_8),
+				String.valueOf(status), waves };
+	}
+
+	@Test
+	void aRecordedRunDrivesTheSameRun() throws Exception {
+		StringBuilder text = new StringBuilder();
+		text.append("a 0x10 for 5 -1 until 20 0xff for 3 -0x80 end\n")
+				.append("c 1 for 7 0 end\n");
+		// more changes than one refill chunk, some at the same times
+		text.append("b 0");
+		for (int i = 1; i <= 3 * TestGen.CHUNK + 17; i += 1) {
+			text.append(" for 2 ").append(i % 16 - 8);
+		}
+		text.append(" end\nc 0 until 30");
+		for (int i = 1; i <= TestGen.CHUNK + 5; i += 1) {
+			text.append(' ').append(i % 2).append(" for 4");
+		}
+		text.append(" 1 end\n");
+		String[] original = run(write("test.txt", text.toString()), null);
+		assertEquals("0", original[1], original[0]);
+
+		// the recording drives the inputs through the pins it watched
+		Path recorded = write("recorded.vcd", original[2].replace(
+				"$scope module pins ", "$scope module vcdreplay "));
+		Path map = write("pins.map",
+				"# recorded output, input pin\nya a\nvcdreplay.yb b # by path\n\nyc c\n");
+		String[] replayed = run(recorded, map);
+		assertArrayEquals(original, replayed,
+				"a recorded run must replay exactly");
+	}
+
+	@Test
+	void signalsMapByNameInAnyScope() throws Exception {
+		String vcd = "$date today $end\n"
+				+ "$timescale 1 ns $end\n"
+				+ "$scope module top $end\n"
+				+ "$var wire 1 % q $end\n"
+				+ "$scope module dut $end\n"
+				+ "$comment the bus $end\n"
+				+ "$var wire 8 ! a [7:0] $end\n"
+				+ "$var wire 1 \" c $end\n"
+				+ "$upscope $end\n"
+				+ "$var wire 1 \" alias $end\n"
+				+ "$upscope $end\n"
+				+ "$enddefinitions $end\n"
+				+ "#0\n$dumpvars\nb0 !\nx\"\nz%\n$end\n"
+				+ "#10 b101 ! 1\" 1%\n"
+				+ "#20\n$comment no change $end\n1%\n"
+				+ "#30\nbz11x1 !\n0\"\n";
+		String[] out = run(write("test.vcd", vcd), null);
+		assertEquals("0", out[1], out[0]);
+		String waves = out[2];
+		assertTrue(waves.contains("#10\nb101 !\n1#\n"), waves);
+		assertTrue(waves.contains("#30\nb1101 !\n0#\n"),
+				"x and z read as 0:\n" + waves);
+	}
+
+	@Test
+	void malformedFilesAreReported() throws Exception {
+		String head = "$scope module m $end\n$var wire 4 ! b $end\n"
+				+ "$upscope $end\n";
+		String[][] cases = {
+			{ head, "not a valid VCD file: no $enddefinitions" },
+			{ head + "$enddefinitions $end\n#5 b1 ?\n",
+					"undeclared identifier code ?" },
+			{ head + "$enddefinitions $end\n#5 b1 ! #4 b0 !\n",
+					"timestamp #4 is before #5" },
+			{ head + "$enddefinitions $end\nr1.5 !\n",
+					"real value r1.5 cannot drive a pin" },
+			{ head + "$enddefinitions $end\nb12 !\n", "invalid value 12" },
+			{ "$scope module m $end\n$var wire 5 ! b $end\n$upscope $end\n"
+					+ "$enddefinitions $end\n",
+					"values of 5 bits will not fit in signal b" },
+			{ "$scope module m $end\n$var wire 5 ! q $end\n$upscope $end\n"
+					+ "$enddefinitions $end\n",
+					"no variable in the VCD file names an input pin" },
+		};
+		for (String[] c : cases) {
+			String[] out = run(write("bad.vcd", c[0]), null);
+			assertEquals("1", out[1], c[0] + out[0]);
+			assertTrue(out[0].startsWith("error in test file\n"), out[0]);
+			assertTrue(out[0].contains(c[1]), out[0]);
+		}
+
+		Path vcd = write("good.vcd", head + "$enddefinitions $end\n");
+		String[][] maps = {
+			{ "b\n", "line 1 of " },
+			{ "m.b a\nx a\n", "line 2 of " },
+			{ "b z\n", "no input pin for signal z" },
+		};
+		for (String[] m : maps) {
+			String[] out = run(vcd, write("bad.map", m[0]));
+			assertEquals("1", out[1], m[0] + out[0]);
+			assertTrue(out[0].contains(m[1]), out[0]);
+		}
+	}
+}
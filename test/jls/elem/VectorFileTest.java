@@ -0,0 +1,214 @@
+package jls.elem;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jls.BatchJob;
+import jls.Circuit;
+import jls.CircuitTextBuilder;
+import jls.JLSInfo;
+import jls.sim.BatchSimulator;
+import jls.sim.DelayModel;
+import jls.sim.SimEvent;
+
+/**
+ * The binary test-vector format (VectorFile, docs/batch-interface.md
+ * section 2.6): a packed test file must drive a run exactly as its
+ * text does, output for output and VCD byte for byte, including
+ * stimulus far longer than one refill chunk, whose same-time events
+ * fire in the text's order; it must be checked
+ * against the circuit as the text is; and malformed text or a damaged
+ * binary file must be reported instead of run.
+ */
+class VectorFileTest {
+
+	@TempDir
+	Path dir;
+
+	/** Input pins a (8 bits), b (4) and c (1), each wired to an output pin. */
+	private static String pins() {
+		CircuitTextBuilder cb = new CircuitTextBuilder();
+		int a = cb.inputPin("a", 8);
+		int b = cb.inputPin("b", 4);
+		int c = cb.inputPin("c", 1);
+		int ya = cb.outputPin("ya", 8);
+		int yb = cb.outputPin("yb", 4);
+		int yc = cb.outputPin("yc", 1);
+		cb.wire(a, "output", ya, "input");
+		cb.wire(b, "output", yb, "input");
+		cb.wire(c, "output", yc, "input");
+		return cb.build();
+	}
+
+	private Path write(String name, String text) throws Exception {
+		Path file = dir.resolve(name);
+		Files.writeString(file, text, StandardCharsets.UTF_8);
+		return file;
+	}
+
+	/** Run a batch job with a VCD: {stdout, status, vcd}. */
+	private String[] run(Path test) throws Exception {
+		Path circuit = write("pins.jls", pins());
+		Path vcd = dir.resolve("out.vcd");
+		Files.deleteIfExists(vcd);
+		boolean oldBatch = JLSInfo.batch;
+		JLSInfo.batch = true;
+		PrintStream saved = System.out;
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(buffer, true, StandardCharsets.UTF_8));
+		int status;
+		try {
+			status = new BatchJob(circuit.toString(), test.toString(), null,
+					10_000_000, DelayModel.CONFIGURED, vcd.toString(), 1).run();
+		} finally {
+			System.setOut(saved);
+			JLSInfo.batch = oldBatch;
+		}
+		String waves = Files.exists(vcd) ? Files.readString(vcd) : "";
+		return new String[] { buffer.toString(StandardCharsets.UTF_8),
+				String.valueOf(status), waves };
+	}
+
+	@Test
+	void aPackedFileRunsLikeItsText() throws Exception {
+		StringBuilder text = new StringBuilder();
+		text.append("# a comment line\n")
+				.append("a 0x10 for 5 -1 until 20 0xff for 3 -0x80 end # tail\n")
+				.append("c 1 for 7 0 end\n")
+				.append("expect ya at 4 16 at 5 -1 at 20 255 end\n");
+		// more events than one refill chunk, on two columns at
+		// different rates
+		text.append("b 0");
+		for (int i = 1; i <= 3 * TestGen.CHUNK + 17; i += 1) {
+			text.append(" for 2 ").append(i % 16 - 8);
+		}
+		text.append(" end\nc 0 until 30");
+		for (int i = 1; i <= TestGen.CHUNK + 5; i += 1) {
+			text.append(' ').append(i % 2).append(" for 3");
+		}
+		text.append(" 1 end\n");
+		Path textFile = write("test.txt", text.toString());
+		Path binary = dir.resolve("test.jlsv");
+		VectorFile.pack(textFile, binary);
+		assertTrue(Files.size(binary) * 3 < Files.size(textFile),
+				"the binary file must be much smaller: " + Files.size(binary)
+						+ " vs " + Files.size(textFile));
+
+		String[] fromText = run(textFile);
+		String[] fromBinary = run(binary);
+		assertEquals("0", fromText[1], fromText[0]);
+		assertTrue(fromText[0].contains("Expectations: 3 checked, 0 failed"),
+				fromText[0]);
+		assertArrayEquals(fromText, fromBinary,
+				"a packed file must run exactly as its text");
+	}
+
+	/** The input pin events a run of a test file fires, in firing order. */
+	private List<String> fired(Path test) throws Exception {
+		Circuit circuit = new Circuit("pins");
+		assertTrue(circuit.load(new Scanner(pins())), () -> JLSInfo.loadError);
+		assertTrue(circuit.finishLoad(null), () -> JLSInfo.loadError);
+		List<String> fired = new ArrayList<String>();
+		BatchSimulator sim = new BatchSimulator() {
+			@Override
+			protected void afterEvent(SimEvent event) {
+				if (event.getCallBack() instanceof InputPin pin) {
+					fired.add(event.getTime() + " " + pin.getName() + " "
+							+ event.getTodo());
+				}
+			}
+		};
+		sim.setCircuit(circuit);
+		sim.setTimeLimit(10_000_000);
+		sim.setTestFile(test.toString());
+		sim.addTestGen();
+		sim.runSim();
+		return fired;
+	}
+
+	@Test
+	void chunkedStimulusFiresInTheTextOrder() throws Exception {
+		// three columns changing at the same times, at rates that end
+		// their refill chunks at different times
+		StringBuilder text = new StringBuilder();
+		for (String pin : new String[] { "c", "a", "b" }) {
+			int step = pin.equals("c") ? 1 : pin.equals("a") ? 2 : 3;
+			text.append(pin).append(" 0");
+			for (int i = 1; i <= 2 * TestGen.CHUNK + 7; i += 1) {
+				text.append(" for ").append(step).append(' ').append(i % 2);
+			}
+			text.append(" end\n");
+		}
+		Path textFile = write("same.txt", text.toString());
+		Path binary = dir.resolve("same.jlsv");
+		VectorFile.pack(textFile, binary);
+
+		List<String> eager = fired(textFile);
+		assertTrue(eager.size() > 3 * 2 * TestGen.CHUNK, "the whole stimulus ran");
+		assertEquals(eager, fired(binary),
+				"same-time events on different pins fire in the text's order");
+	}
+
+	@Test
+	void aBinaryFileIsCheckedAgainstTheCircuit() throws Exception {
+		String[][] cases = {
+			{ "z 1 end\n", "no input pin for signal z" },
+			{ "b 0 for 1 16 end\n", "values of 5 bits will not fit in signal b" },
+			{ "b 0 for 1 -9 end\n", "values of 5 bits will not fit in signal b" },
+			{ "expect q at 1 1 end\n", "no output pin for expectation q" },
+		};
+		for (String[] c : cases) {
+			Path binary = dir.resolve("bad.jlsv");
+			VectorFile.pack(write("bad.txt", c[0]), binary);
+			String[] out = run(binary);
+			assertEquals("1", out[1], c[0] + out[0]);
+			assertTrue(out[0].startsWith("error in test file\n"), out[0]);
+			assertTrue(out[0].contains(c[1]), out[0]);
+		}
+	}
+
+	@Test
+	void malformedTextIsReportedAsARunWould() throws Exception {
+		String[][] cases = {
+			{ "a end\n", "missing or invalid initial value for signal a" },
+			{ "a 1 for 3\n", "expected value for signal a" },
+			{ "a 1 until 5 2 until 5 3 end\n", "until time not greater" },
+			{ "a 1 for 0 2 end\n", "duration 0 is not positive for signal a" },
+			{ "a 1 wait 2 end\n", "expected for, until or end for signal a" },
+			{ "expect y at 3 1 at 2 0 end\n", "expectation time not greater" },
+		};
+		for (String[] c : cases) {
+			Path text = write("bad.txt", c[0]);
+			IllegalArgumentException e = assertThrows(
+					IllegalArgumentException.class,
+					() -> VectorFile.pack(text, dir.resolve("bad.jlsv")), c[0]);
+			assertTrue(e.getMessage().contains(c[1]), e.getMessage());
+		}
+	}
+
+	@Test
+	void aDamagedFileIsRejected() throws Exception {
+		Path binary = dir.resolve("test.jlsv");
+		VectorFile.pack(write("test.txt", "a 1 for 5 2 for 5 3 end\n"), binary);
+		byte[] bytes = Files.readAllBytes(binary);
+		Files.write(binary, Arrays.copyOf(bytes, bytes.length - 1));
+		String[] out = run(binary);
+		assertEquals("1", out[1], out[0]);
+		assertTrue(out[0].contains("not a valid binary test file"), out[0]);
+	}
+}
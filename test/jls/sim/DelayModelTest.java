@@ -0,0 +1,194 @@
+package jls.sim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.Scanner;
+
+import org.junit.jupiter.api.Test;
+
+import jls.BitSetUtils;
+import jls.Circuit;
+import jls.CircuitTextBuilder;
+import jls.JLSInfo;
+import jls.elem.Element;
+import jls.elem.Register;
+
+/**
+ * The functional delay models (unit and zero delay) of
+ * {@link DelayModel}: element delays are remapped, a race-free
+ * synchronous design reaches the same cycle-level result as with its
+ * configured delays, and the two outcomes a functional run cannot
+ * decide - data racing its clock edge, a loop that never settles - are
+ * reported rather than silently resolved.
+ */
+class DelayModelTest {
+
+	@Test
+	void unitKeepsZeroDelaysZero() {
+		assertEquals(0, DelayModel.UNIT.apply(0),
+				"a zero-delay element (splitter, pin) must stay zero");
+		assertEquals(1, DelayModel.UNIT.apply(50));
+		assertEquals(0, DelayModel.ZERO.apply(50));
+		assertEquals(50, DelayModel.CONFIGURED.apply(50));
+	}
+
+	@Test
+	void namesParseCaseInsensitively() {
+		assertEquals(DelayModel.ZERO, DelayModel.byName("zero"));
+		assertEquals(DelayModel.UNIT, DelayModel.byName("Unit"));
+		assertEquals(DelayModel.CONFIGURED, DelayModel.byName("CONFIGURED"));
+		assertNull(DelayModel.byName("fast"));
+	}
+
+	/**
+	 * A 4-bit counter (register plus adder) clocked slowly enough for
+	 * its configured delays: every model must count the same edges to
+	 * the same value, and a race-free design must not warn.
+	 */
+	@Test
+	void zeroDelaySettlesEachCycleWithinItsEdgeTimestamp() throws Exception {
+		long configured = -1;
+		for (DelayModel model : DelayModel.values()) {
+			CircuitTextBuilder cb = new CircuitTextBuilder();
+			int clock = cb.clock(400, 200);
+			int reg = cb.register(4, 0, "pff");
+			int adder = cb.adder(4);
+			int one = cb.constant(1);
+			int zero = cb.constant(0);
+			cb.wire(clock, "output", reg, "C");
+			cb.wire(reg, "Q", adder, "A");
+			cb.wire(one, "output", adder, "B");
+			cb.wire(zero, "output", adder, "Cin");
+			cb.wire(adder, "S", reg, "D");
+			Circuit circuit = load(cb.build());
+
+			BatchSimulator sim = new BatchSimulator();
+			sim.setCircuit(circuit);
+			sim.setTimeLimit(1900);
+			sim.setDelayModel(model);
+			String stderr = captureStderr(sim::runSim);
+
+			long count = registerValue(circuit);
+			if (configured < 0) {
+				configured = count;
+				assertTrue(count > 0, "the counter never counted");
+			}
+			assertEquals(configured, count,
+					model + " delays must reach the configured count");
+			assertEquals("", stderr,
+					model + " delays must not warn on a race-free design");
+		}
+	}
+
+	/**
+	 * Clock skew: the register's clock passes through a gate while its
+	 * data is a second clock in phase with the first. With configured delays the edge arrives a
+	 * gate delay late and the data is long stable; with no delays both
+	 * change at one timestamp and only delta order decides what is
+	 * captured, which must be reported once. (Unit delay keeps a
+	 * one-unit skew here, so its data is already stable at the edge.)
+	 */
+	@Test
+	void zeroDelayWarnsWhenDataChangesWithTheEdge() throws Exception {
+		for (DelayModel model : new DelayModel[] {
+				DelayModel.CONFIGURED, DelayModel.ZERO }) {
+			CircuitTextBuilder cb = new CircuitTextBuilder();
+			int clock = cb.clock(40, 20);
+			int buffer = cb.gate("AndGate", 1, 2);
+			int one = cb.constant(1);
+			int reg = cb.register(1, 0, "pff");
+			int twin = cb.clock(40, 20);
+			cb.wire(clock, "output", buffer, "input0");
+			cb.wire(one, "output", buffer, "input1");
+			cb.wire(buffer, "output", reg, "C");
+			cb.wire(twin, "output", reg, "D");
+			Circuit circuit = load(cb.build());
+
+			BatchSimulator sim = new BatchSimulator();
+			sim.setCircuit(circuit);
+			sim.setTimeLimit(400);
+			sim.setDelayModel(model);
+			String stderr = captureStderr(sim::runSim);
+
+			int warnings = count(stderr, "delay-dependent capture");
+			if (model == DelayModel.CONFIGURED) {
+				assertEquals(0, warnings,
+						"configured delays are the reference and never warn");
+			}
+			else {
+				assertEquals(1, warnings,
+						"zero delays must report the race once per element,"
+						+ " got:\n" + stderr);
+			}
+		}
+	}
+
+	/**
+	 * An inverter feeding itself oscillates with its configured delay;
+	 * with none it would flip forever at time 0, so the run must stop
+	 * with a warning instead of hanging.
+	 */
+	@Test
+	void zeroDelayLoopStopsAtTheDeltaLimit() throws Exception {
+		CircuitTextBuilder cb = new CircuitTextBuilder();
+		int not = cb.gate("NotGate", 1, 1);
+		cb.wire(not, "output", not, "input0");
+		Circuit circuit = load(cb.build());
+
+		BatchSimulator sim = new BatchSimulator();
+		sim.setCircuit(circuit);
+		sim.setTimeLimit(1000);
+		sim.setDelayModel(DelayModel.ZERO);
+		String stderr = captureStderr(sim::runSim);
+
+		assertEquals(1, count(stderr, "did not settle at time 0"),
+				"the unsettled loop must be reported once, got:\n" + stderr);
+	}
+
+	private static Circuit load(String text) throws Exception {
+		Circuit circuit = new Circuit("");
+		assertTrue(circuit.load(new Scanner(text)),
+				() -> "load failed: " + JLSInfo.loadError);
+		assertTrue(circuit.finishLoad(null),
+				() -> "finishLoad failed: " + JLSInfo.loadError);
+		return circuit;
+	}
+
+	private static long registerValue(Circuit circuit) {
+		for (Element el : circuit.getElements()) {
+			if (el instanceof Register register) {
+				BitSet value = register.getCurrentValue();
+				return value == null ? -1 : BitSetUtils.ToLong(value);
+			}
+		}
+		throw new AssertionError("no register in circuit");
+	}
+
+	/** Run body with stderr captured and return what was written. */
+	private static String captureStderr(Runnable body) {
+		PrintStream saved = System.err;
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		System.setErr(new PrintStream(buffer, true, StandardCharsets.UTF_8));
+		try {
+			body.run();
+		} finally {
+			System.setErr(saved);
+		}
+		return buffer.toString(StandardCharsets.UTF_8);
+	}
+
+	private static int count(String haystack, String needle) {
+		int hits = 0;
+		for (int at = haystack.indexOf(needle); at >= 0;
+				at = haystack.indexOf(needle, at + 1)) {
+			hits += 1;
+		}
+		return hits;
+	}
+}
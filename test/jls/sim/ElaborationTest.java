@@ -0,0 +1,167 @@
+package jls.sim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Scanner;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jls.Circuit;
+import jls.CircuitTextBuilder;
+import jls.JLSInfo;
+import jls.elem.Constant;
+import jls.elem.Element;
+import jls.elem.Memory;
+
+/**
+ * Elaboration ahead of a run: the stable element order and memory
+ * images made in the background are what the run starts from, and
+ * only while the circuit and the files they came from are unchanged.
+ */
+class ElaborationTest {
+
+	/** Gates, pins and a ROM with built-in values. */
+	private static Circuit circuit() throws Exception {
+		CircuitTextBuilder cb = new CircuitTextBuilder();
+		int a = cb.inputPin("a", 1);
+		int b = cb.inputPin("b", 1);
+		int and = cb.gate("AndGate", 1, 2);
+		int y = cb.outputPin("y", 1);
+		cb.wire(a, "output", and, "input0");
+		cb.wire(b, "output", and, "input1");
+		cb.wire(and, "output", y, "input");
+		cb.memory("ROM", 8, 4, "0 5\\n1 9");
+		Circuit circuit = new Circuit("elaborate");
+		assertTrue(circuit.load(new Scanner(cb.build())),
+				() -> "the circuit must load: " + JLSInfo.loadError);
+		assertTrue(circuit.finishLoad(null),
+				() -> "the circuit must assemble: " + JLSInfo.loadError);
+		return circuit;
+	}
+
+	/** The circuit's memory. */
+	private static Memory memory(Circuit circuit) {
+		for (Element el : circuit.getElements()) {
+			if (el instanceof Memory mem) {
+				return mem;
+			}
+		}
+		throw new AssertionError("no memory");
+	}
+
+	/** A memory word after a run's setup, as a number. */
+	private static long word(Circuit circuit, int addr) {
+		new Testbench(circuit);
+		BitSet value = memory(circuit).getCurrentValue(addr);
+		assertNotNull(value);
+		return value.isEmpty() ? 0 : value.toLongArray()[0];
+	}
+
+	@Test
+	void aPreparedOrderIsUsedUntilTheCircuitChanges() throws Exception {
+		Circuit circuit = circuit();
+		assertFalse(circuit.hasStableOrder(), "nothing sorted after a load");
+		Thread elaborating = Elaboration.start(circuit);
+		assertNotNull(elaborating);
+		elaborating.join();
+		assertTrue(circuit.hasStableOrder());
+
+		List<Element> expected = new ArrayList<Element>(circuit.getElements());
+		expected.sort(Comparator.comparing(Element::getStableId));
+		List<Element> ordered = circuit.getElementsInStableOrder();
+		assertEquals(expected, ordered);
+		assertSame(ordered, circuit.getElementsInStableOrder(),
+				"a run's setup sorts nothing");
+
+		// an order prepared before an element joins is not used
+		Runnable stale = circuit.prepareStableOrder();
+		Constant added = new Constant(circuit);
+		circuit.addElement(added);
+		assertFalse(circuit.hasStableOrder());
+		stale.run();
+		assertFalse(circuit.hasStableOrder());
+		assertTrue(circuit.getElementsInStableOrder().contains(added));
+		assertTrue(circuit.hasStableOrder(), "sorted once, then kept");
+
+		circuit.remove(added);
+		assertFalse(circuit.getElementsInStableOrder().contains(added));
+	}
+
+	@Test
+	void preparedMemoryImagesAreUsedOnlyWhileCurrent(@TempDir Path dir)
+			throws Exception {
+		Circuit circuit = circuit();
+		Memory mem = memory(circuit);
+		assertFalse(mem.hasPreparedInit());
+		Thread elaborating = Elaboration.start(circuit);
+		assertNotNull(elaborating);
+		elaborating.join();
+		assertTrue(mem.hasPreparedInit());
+		assertEquals(9, word(circuit, 1));
+
+		mem.setInitialValue("0 5\n1 7");
+		assertFalse(mem.hasPreparedInit(), "edited values are read again");
+		assertEquals(7, word(circuit, 1));
+
+		// a file image is used while the file is unchanged
+		Path file = dir.resolve("rom.txt");
+		Files.writeString(file, "0 5\n1 3\n", StandardCharsets.UTF_8);
+		FileTime written = Files.getLastModifiedTime(file);
+		mem.setMemFile(file.toString());
+		mem.prepareInit().run();
+		assertTrue(mem.hasPreparedInit());
+		Files.setLastModifiedTime(file, written);
+		assertTrue(mem.hasPreparedInit(), "the same bytes keep the image");
+		assertEquals(3, word(circuit, 1), "the run starts from the image read");
+
+		Files.setLastModifiedTime(file,
+				FileTime.fromMillis(written.toMillis() + 2000));
+		assertFalse(mem.hasPreparedInit(), "a touched file is read again");
+
+		// a rewrite keeping the size and time is still seen
+		mem.prepareInit().run();
+		FileTime kept = Files.getLastModifiedTime(file);
+		Files.writeString(file, "0 5\n1 4\n", StandardCharsets.UTF_8);
+		Files.setLastModifiedTime(file, kept);
+		assertFalse(mem.hasPreparedInit(), "a rewritten file is read again");
+		assertEquals(4, word(circuit, 1));
+	}
+
+	@Test
+	void anElaborationIsAbandonedOnlyForItsOwnCircuit() throws Exception {
+		Circuit one = circuit();
+		Circuit other = circuit();
+		Thread first = Elaboration.start(one);
+		assertNotNull(first);
+		int mine = Elaboration.started(one);
+		Thread second = Elaboration.start(other);
+		assertNotNull(second);
+		assertEquals(mine, Elaboration.started(one),
+				"elaborating another window's circuit leaves this one going");
+		first.join();
+		second.join();
+		assertTrue(one.hasStableOrder());
+		assertTrue(memory(one).hasPreparedInit());
+		assertTrue(other.hasStableOrder());
+		assertTrue(memory(other).hasPreparedInit());
+
+		Thread again = Elaboration.start(one);
+		assertNotNull(again);
+		again.join();
+		assertEquals(mine + 1, Elaboration.started(one),
+				"a new elaboration of the same circuit passes the old one");
+	}
+}
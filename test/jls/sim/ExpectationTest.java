@@ -0,0 +1,139 @@
+package jls.sim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jls.BatchJob;
+import jls.CircuitTextBuilder;
+import jls.JLSInfo;
+
+/**
+ * Test-file expectations (docs/batch-interface.md section 2.5): each
+ * expected output value is checked as simulation time passes it, a
+ * mismatch stops the run at the -maxfail count instead of running on
+ * to the time limit, and the outcome has its own exit status.
+ */
+class ExpectationTest {
+
+	@TempDir
+	Path dir;
+
+	/** An input pin a driving an output pin y, both 4 bits. */
+	private static String wireThrough() {
+		CircuitTextBuilder cb = new CircuitTextBuilder();
+		int a = cb.inputPin("a", 4);
+		int y = cb.outputPin("y", 4);
+		cb.wire(a, "output", y, "input");
+		return cb.build();
+	}
+
+	/** A free-running 8-bit counter clocked every 400, shown on pin y. */
+	private static String counter() {
+		CircuitTextBuilder cb = new CircuitTextBuilder();
+		cb.counter(400, 0, 1, "y");
+		return cb.build();
+	}
+
+	/** Run one batch job on the given files, returning {stdout, status}. */
+	private String[] run(String circuit, String test, long limit,
+			int maxFail) throws Exception {
+		Path circuitFile = dir.resolve("circ.jls");
+		Path testFile = dir.resolve("test.txt");
+		Files.writeString(circuitFile, circuit, StandardCharsets.UTF_8);
+		Files.writeString(testFile, test, StandardCharsets.UTF_8);
+		boolean oldBatch = JLSInfo.batch;
+		JLSInfo.batch = true;
+		PrintStream saved = System.out;
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(buffer, true, StandardCharsets.UTF_8));
+		int status;
+		try {
+			status = new BatchJob(circuitFile.toString(),
+					testFile.toString(), null, limit, DelayModel.CONFIGURED,
+					null, maxFail).run();
+		} finally {
+			System.setOut(saved);
+			JLSInfo.batch = oldBatch;
+		}
+		return new String[] { buffer.toString(StandardCharsets.UTF_8),
+				String.valueOf(status) };
+	}
+
+	@Test
+	void metExpectationsPassAndAreReported() throws Exception {
+		String[] out = run(wireThrough(),
+				"a 0 for 10 5 until 30 0xf end\n"
+						+ "expect y at 0 0 at 10 5 at 29 5 at 30 -1 end\n",
+				100, 1);
+		assertEquals("0", out[1], out[0]);
+		assertTrue(out[0].contains(
+				"Expectations: 4 checked, 0 failed, 0 not reached\n"), out[0]);
+	}
+
+	@Test
+	void theFirstMismatchStopsTheRunEarly() throws Exception {
+		// the counter holds 2 after the edges at 200 and 600
+		String[] out = run(counter(),
+				"expect y at 700 3 at 1500 3 at 90000 0 end\n", 100_000, 1);
+		assertEquals(String.valueOf(BatchJob.EXPECTATIONS_FAILED), out[1],
+				out[0]);
+		assertTrue(out[0].startsWith("Simulation Stopped at 700\n"), out[0]);
+		assertTrue(out[0].contains(
+				"Expectations: 1 checked, 1 failed, 2 not reached\n"
+						+ "Mismatch y at 700: expected 0x3 (3 unsigned, 3 signed),"
+						+ " got 0x2 (2 unsigned, 2 signed)\n"), out[0]);
+
+		out = run(counter(), "expect y at 700 3 at 1500 3 at 1700 5 end\n",
+				100_000, 2);
+		assertTrue(out[0].startsWith("Simulation Stopped at 1500\n"), out[0]);
+		assertTrue(out[0].contains(
+				"Expectations: 2 checked, 2 failed, 1 not reached\n"), out[0]);
+	}
+
+	@Test
+	void anUnreachedExpectationFails() throws Exception {
+		String[] out = run(wireThrough(), "a 3 end\nexpect y at 500 3 end\n",
+				100, 1);
+		assertEquals(String.valueOf(BatchJob.EXPECTATIONS_FAILED), out[1],
+				out[0]);
+		assertTrue(out[0].contains(
+				"Expectations: 0 checked, 0 failed, 1 not reached\n"), out[0]);
+	}
+
+	@Test
+	void aFailedExpectationHasItsOwnExitStatus() throws Exception {
+		String[] out = run(wireThrough(), "a 1 end\nexpect y at 5 2 end\n",
+				100, 1);
+		assertEquals("3", out[1], out[0]);
+
+		String[] plain = run(wireThrough(), "a 1 end\n", 100, 1);
+		assertEquals("0", plain[1], plain[0]);
+		assertTrue(!plain[0].contains("Expectations:"),
+				"a test file without expectations must report as before");
+	}
+
+	@Test
+	void malformedExpectationsAreSpecErrors() throws Exception {
+		String[][] cases = {
+			{ "expect z at 5 1 end\n", "no output pin for expectation z" },
+			{ "expect y at 5 99 end\n", "will not fit in output pin y" },
+			{ "expect y at 5 1 at 5 2 end\n", "not greater than previous" },
+			{ "expect y 5 1 end\n", "expected at or end" },
+		};
+		for (String[] c : cases) {
+			String[] out = run(wireThrough(), "a 1 end\n" + c[0], 100, 1);
+			assertEquals("1", out[1], c[0] + out[0]);
+			assertTrue(out[0].startsWith("error in test file\n"), out[0]);
+			assertTrue(out[0].contains(c[1]), out[0]);
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package jls.sim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jls.BatchJob;
+import jls.CircuitTextBuilder;
+import jls.JLSInfo;
+
+/**
+ * Memory access logs (-memlog, docs/batch-interface.md section 4.5):
+ * accesses read back exactly as logged, through the writer thread and
+ * across many batches; the ring keeps the newest; the address and time
+ * filters keep what they name; and a run logs the reads and writes of
+ * its memories and register files.
+ */
+class MemoryLogTest {
+
+	@TempDir
+	Path dir;
+
+	/** Every access of a log, oldest first. */
+	private static List<MemoryLog.Access> all(Path file) throws Exception {
+		List<MemoryLog.Access> read = new ArrayList<MemoryLog.Access>();
+		MemoryLog.scan(file, 0, 0xffff_ffffL, 0, Long.MAX_VALUE, read::add);
+		return read;
+	}
+
+	/** A random word of a width. */
+	private static BitSet word(Random random, int bits) {
+		BitSet word = new BitSet(bits);
+		for (int b = 0; b < bits; b += 1) {
+			if (random.nextBoolean()) {
+				word.set(b);
+			}
+		}
+		return word;
+	}
+
+	@Test
+	void accessesReadBackAsLogged() throws Exception {
+		Random random = new Random(42);
+		for (int bits : new int[] { 1, 8, 33, 64, 100 }) {
+			Path file = dir.resolve("log" + bits + MemoryLog.EXTENSION);
+			List<MemoryLog.Access> logged = new ArrayList<MemoryLog.Access>();
+			long time = 0;
+			try (MemoryLog log = new MemoryLog(file, bits, 1 << 20)) {
+				// many more batches than may wait for the writer
+				for (int i = 0; i < 100_000; i += 1) {
+					time += random.nextInt(3);
+					int address = random.nextInt(64);
+					BitSet data = word(random, bits);
+					boolean write = random.nextBoolean();
+					if (write) {
+						log.write(time, address, data);
+					}
+					else {
+						log.read(time, address, data);
+					}
+					logged.add(new MemoryLog.Access(time, address, write, data));
+				}
+			}
+			assertEquals(logged, all(file), bits + " bits");
+
+			long from = time / 3;
+			long to = time / 2;
+			List<MemoryLog.Access> filtered = new ArrayList<MemoryLog.Access>();
+			MemoryLog.scan(file, 10, 20, from, to, filtered::add);
+			List<MemoryLog.Access> expected = logged.stream()
+					.filter(a -> a.address() >= 10 && a.address() <= 20
+							&& a.time() >= from && a.time() <= to)
+					.toList();
+			assertEquals(expected, filtered, bits + " bits, filtered");
+		}
+	}
+
+	@Test
+	void theRingKeepsTheNewestAccesses() throws Exception {
+		Random random = new Random(43);
+		Path file = dir.resolve("ring" + MemoryLog.EXTENSION);
+		List<MemoryLog.Access> logged = new ArrayList<MemoryLog.Access>();
+		try (MemoryLog log = new MemoryLog(file, 16, 1000)) {
+			for (int i = 0; i < 12_345; i += 1) {
+				BitSet data = word(random, 16);
+				log.write(i, i % 7, data);
+				logged.add(new MemoryLog.Access(i, i % 7, true, data));
+			}
+		}
+		assertEquals(logged.subList(12_345 - 1000, 12_345), all(file));
+		assertTrue(Files.size(file) < 32 + 1001 * 15, "the file is one ring");
+	}
+
+	/**
+	 * A RAM and a register file sharing address a, data d and write
+	 * enable we, with the RAM's CS low and OE from pin oe, the register
+	 * file clocked by pin c.
+	 */
+	private static String memories() {
+		CircuitTextBuilder cb = new CircuitTextBuilder();
+		int a = cb.inputPin("a", 4);
+		int d = cb.inputPin("d", 8);
+		int we = cb.inputPin("we", 1);
+		int oe = cb.inputPin("oe", 1);
+		int c = cb.inputPin("c", 1);
+		int low = cb.constant(0);
+		int ram = cb.memory("RAM", 8, 16, "");
+		int rf = cb.registerFile(8, 16, 1, 1, false);
+		int toRam = cb.jumpStart("a", 4);
+		int[] addrs = { cb.jumpEnd("a", 4), cb.jumpEnd("a", 4),
+				cb.jumpEnd("a", 4) };
+		int data = cb.jumpStart("d", 8);
+		int[] datas = { cb.jumpEnd("d", 8), cb.jumpEnd("d", 8) };
+		int we1 = cb.jumpStart("we", 1);
+		int[] wes = { cb.jumpEnd("we", 1), cb.jumpEnd("we", 1) };
+		int notWe = cb.gate("NotGate", 1, 1);
+		cb.wire(a, "output", toRam, "input");
+		cb.wire(d, "output", data, "input");
+		cb.wire(we, "output", we1, "input");
+		cb.wire(addrs[0], "output", ram, "address");
+		cb.wire(datas[0], "output", ram, "input");
+		cb.wire(wes[0], "output", ram, "WE");
+		cb.wire(low, "output", ram, "CS");
+		cb.wire(oe, "output", ram, "OE");
+		cb.wire(addrs[1], "output", rf, "RA0");
+		cb.wire(addrs[2], "output", rf, "WA0");
+		cb.wire(datas[1], "output", rf, "WD0");
+		cb.wire(wes[1], "output", notWe, "input0");
+		cb.wire(notWe, "output", rf, "WE0");
+		cb.wire(c, "output", rf, "C");
+		return cb.build();
+	}
+
+	@Test
+	void aRunLogsEveryAccess() throws Exception {
+		Path circuit = dir.resolve("mems.jls");
+		Files.writeString(circuit, memories(), StandardCharsets.UTF_8);
+		Path test = dir.resolve("test.txt");
+		Files.writeString(test, "a 1 until 100 2 until 200 1 end\n"
+				+ "d 0x11 until 100 0x22 end\n"
+				+ "we 0 until 50 1 until 120 0 until 150 1 end\n"
+				+ "oe 1 until 60 0 end\n"
+				+ "c 0 until 20 1 until 40 0 until 130 1 until 145 0 end\n",
+				StandardCharsets.UTF_8);
+		Path logs = dir.resolve("logs");
+		String saved = JLSInfo.memLogDir;
+		boolean oldBatch = JLSInfo.batch;
+		JLSInfo.memLogDir = logs.toString();
+		JLSInfo.batch = true;
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new ByteArrayOutputStream(), true,
+				StandardCharsets.UTF_8));
+		int status;
+		try {
+			status = new BatchJob(circuit.toString(), test.toString(), null,
+					10_000, DelayModel.CONFIGURED, null, 1).run();
+		} finally {
+			System.setOut(out);
+			JLSInfo.memLogDir = saved;
+			JLSInfo.batch = oldBatch;
+		}
+		assertEquals(0, status);
+		Path ramLog = null;
+		Path rfLog = null;
+		try (var files = Files.list(logs)) {
+			for (Path file : files.toList()) {
+				String name = file.getFileName().toString();
+				assertTrue(name.endsWith(MemoryLog.EXTENSION), name);
+				if (name.startsWith("mem")) {
+					ramLog = file;
+				}
+				else if (name.startsWith("rf")) {
+					rfLog = file;
+				}
+			}
+		}
+		assertTrue(ramLog != null && rfLog != null,
+				"one log per memory, named after it");
+
+		String ram = print(ramLog, 0,
+				0xffff_ffffL, 0, Long.MAX_VALUE);
+		assertTrue(ram.contains(" W 0x1 0x11\n"), ram);
+		assertTrue(ram.contains(" R 0x1 0x11\n"), ram);
+		assertTrue(ram.contains(" W 0x2 0x22\n"), ram);
+		assertTrue(ram.contains(" R 0x2 0x22\n"), ram);
+		String ramEarly = print(ramLog, 0,
+				0xffff_ffffL, 0, 59);
+		assertTrue(!ramEarly.isEmpty() && !ramEarly.contains(" R "),
+				"no reads before OE goes low:\n" + ramEarly);
+		String ramTwo = print(ramLog, 2, 2,
+				0, Long.MAX_VALUE);
+		assertTrue(ramTwo.lines().allMatch(l -> l.contains(" 0x2 0x")), ramTwo);
+
+		String rf = print(rfLog, 0,
+				0xffff_ffffL, 0, Long.MAX_VALUE);
+		assertTrue(rf.contains(" W 0x1 0x11\n"), rf);
+		assertTrue(rf.contains(" R 0x1 0x11\n"), "a written word is read again:\n" + rf);
+		assertTrue(rf.contains(" W 0x2 0x22\n"), rf);
+		List<Long> times = rf.lines().map(l -> Long.parseLong(l.split(" ")[0]))
+				.toList();
+		assertEquals(times.stream().sorted().toList(), times, "in time order");
+	}
+
+	/** The -memfilter listing of a log. */
+	private static String print(Path file, long fromAddress, long toAddress,
+			long fromTime, long toTime) throws Exception {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		MemoryLog.print(file, fromAddress, toAddress, fromTime, toTime,
+				new PrintStream(buffer, true, StandardCharsets.UTF_8));
+		return buffer.toString(StandardCharsets.UTF_8);
+	}
+}
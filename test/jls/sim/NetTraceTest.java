@@ -0,0 +1,122 @@
+package jls.sim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jls.Circuit;
+import jls.CircuitTextBuilder;
+import jls.JLSInfo;
+
+/**
+ * Net selection by -trace (docs/batch-interface.md section 4.1): the
+ * glob patterns match hierarchical names, the nets they select are
+ * written to the VCD beside the watched elements, and every other net
+ * reports nothing while the run goes.
+ */
+class NetTraceTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void globsMatchHierarchicalNames() {
+		Pattern alu = BatchSimulator.globPattern(List.of("cpu.alu.*"));
+		assertTrue(alu.matcher("cpu.alu.sum").matches());
+		assertTrue(alu.matcher("cpu.alu.x.AndGate_3.output").matches(),
+				"* spans levels");
+		assertFalse(alu.matcher("cpu.alux.sum").matches(),
+				"a dot is a dot, not any character");
+		assertFalse(alu.matcher("cpu.alu").matches());
+
+		Pattern pc = BatchSimulator.globPattern(List.of("*.pc", "r?g+1"));
+		assertTrue(pc.matcher("cpu.pc").matches());
+		assertTrue(pc.matcher("a.b.pc").matches());
+		assertFalse(pc.matcher("cpu.pcx").matches());
+		assertTrue(pc.matcher("reg+1").matches(), "either pattern");
+		assertFalse(pc.matcher("regg1").matches(), "+ is literal");
+	}
+
+	/**
+	 * A free-running 8-bit counter: register reg1, fed by an adder, with
+	 * the count watched on pin y.
+	 */
+	private static Circuit counter() throws Exception {
+		CircuitTextBuilder cb = new CircuitTextBuilder();
+		cb.counter(40, 0, 1, "y");
+		Circuit circuit = new Circuit("counter");
+		assertTrue(circuit.load(new Scanner(cb.build())),
+				() -> "the circuit must load: " + JLSInfo.loadError);
+		assertTrue(circuit.finishLoad(null),
+				() -> "the circuit must assemble: " + JLSInfo.loadError);
+		return circuit;
+	}
+
+	/** A batch simulator counting the net changes reported to it. */
+	private static final class Counting extends BatchSimulator {
+
+		final Map<String,Integer> samples = new TreeMap<String,Integer>();
+
+		@Override
+		public void probeSample(String name, int bits, long time,
+				@Nullable BitSet value) {
+			samples.merge(name, 1, Integer::sum);
+			super.probeSample(name, bits, time, value);
+		}
+	}
+
+	/** Run the counter with the given -trace patterns. */
+	private Counting run(Circuit circuit, List<String> patterns)
+			throws Exception {
+		List<String> saved = JLSInfo.tracePatterns;
+		JLSInfo.tracePatterns = patterns;
+		try {
+			Counting sim = new Counting();
+			sim.setCircuit(circuit);
+			sim.setTimeLimit(400);
+			sim.setVcdFile(dir.resolve("out.vcd").toString());
+			sim.runSim();
+			sim.writeVcd();
+			return sim;
+		} finally {
+			JLSInfo.tracePatterns = saved;
+		}
+	}
+
+	@Test
+	void selectedNetsTraceAndOthersDoNot() throws Exception {
+		Circuit circuit = counter();
+		Counting sim = run(circuit, List.of("reg*", "*.S"));
+		String vcd = sim.toVcd();
+		assertTrue(vcd.contains(" reg1.Q [7:0] $end"),
+				"the register is selected by name:\n" + vcd);
+		assertTrue(vcd.contains(" Adder_2.S [7:0] $end"),
+				"the adder's sum is selected by output:\n" + vcd);
+		assertTrue(vcd.contains(" y [7:0] $end"),
+				"the watched pin stays:\n" + vcd);
+		assertFalse(vcd.contains("Clock_"), "the clock is not selected");
+		assertEquals(List.of("Adder_2.S", "reg1.Q"),
+				List.copyOf(sim.samples.keySet()),
+				"only the selected nets report their changes");
+		// the sum runs one ahead of the count
+		assertTrue(vcd.contains("b1010 "), "the count reaches 10:\n" + vcd);
+		assertTrue(vcd.contains("b1011 "), "the sum reaches 11:\n" + vcd);
+
+		// a later run without -trace leaves every net silent
+		Counting quiet = run(circuit, List.of());
+		assertEquals(Map.of(), quiet.samples);
+		assertFalse(quiet.toVcd().contains("reg1.Q"));
+	}
+}
@@ -0,0 +1,193 @@
+package jls.sim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.BitSet;
+import java.util.Scanner;
+
+import org.junit.jupiter.api.Test;
+
+import jls.Circuit;
+import jls.CircuitTextBuilder;
+import jls.JLSInfo;
+
+/**
+ * The stepping API (Testbench, docs/batch-interface.md section 10): a
+ * poke reaches the logic when time next advances, runs go on from
+ * where the previous one stopped without losing queued events, a clock
+ * can be followed edge by edge, and peeks see pins, probed nets and
+ * high impedance.
+ */
+class TestbenchTest {
+
+	private static Circuit load(String text) throws Exception {
+		Circuit circuit = new Circuit("bench");
+		assertTrue(circuit.load(new Scanner(text)),
+				() -> "the circuit must load: " + JLSInfo.loadError);
+		assertTrue(circuit.finishLoad(null),
+				() -> "the circuit must assemble: " + JLSInfo.loadError);
+		return circuit;
+	}
+
+	/** y = a AND b, through a gate with a delay of 10. */
+	private static Circuit andGate() throws Exception {
+		CircuitTextBuilder cb = new CircuitTextBuilder();
+		int a = cb.inputPin("a", 4);
+		int b = cb.inputPin("b", 4);
+		int and = cb.gate("AndGate", 4, 2);
+		int y = cb.outputPin("y", 4);
+		cb.wire(a, "output", and, "input0");
+		cb.wire(b, "output", and, "input1");
+		cb.wire(and, "output", y, "input");
+		return load(cb.build());
+	}
+
+	/**
+	 * A free-running 8-bit counter on a clock rising at 200 + 400k,
+	 * with the count on pin y and the clock on pin clk.
+	 */
+	private static Circuit counter() throws Exception {
+		CircuitTextBuilder cb = new CircuitTextBuilder();
+		cb.counter(400, 0, 1, "y", "clk");
+		return load(cb.build());
+	}
+
+	@Test
+	void pokedInputsReachOutputsWhenTimeAdvances() throws Exception {
+		Testbench bench = new Testbench(andGate());
+		assertEquals(0, bench.peek("y"));
+		bench.poke("a", 0b1100);
+		bench.poke("b", -3);
+		assertEquals(0b1100, bench.peek("a"), "a poke drives the pin at once");
+		assertEquals(0, bench.peek("y"), "the gate reacts when time advances");
+		assertTrue(bench.runFor(5));
+		assertEquals(0, bench.peek("y"), "the gate delay has not passed");
+		assertTrue(bench.runFor(5));
+		assertEquals(0b1100 & 0b1101, bench.peek("y"));
+		assertEquals(10, bench.getTime());
+
+		// thousands of transactions, each settled under zero delay
+		Testbench fast = new Testbench(andGate(), DelayModel.ZERO);
+		for (int i = 0; i < 4096; i += 1) {
+			fast.poke("a", i & 0xf);
+			fast.poke("b", i >> 8);
+			fast.runFor(0);
+			assertEquals(i & 0xf & (i >> 8), fast.peek("y"), "transaction " + i);
+		}
+		assertEquals(0, fast.getTime());
+	}
+
+	@Test
+	void aCounterStepsEdgeByEdge() throws Exception {
+		Testbench bench = new Testbench(counter());
+		assertTrue(bench.runUntilEdge("clk", 1));
+		assertEquals(200, bench.getTime());
+		assertEquals(1, bench.peek("clk"));
+		assertEquals(0, bench.peek("y"), "the register output follows its delay");
+		bench.runFor(100);
+		assertEquals(1, bench.peek("y"));
+
+		assertTrue(bench.runUntilEdge("clk", 3));
+		assertEquals(1400, bench.getTime());
+		bench.runFor(100);
+		assertEquals(4, bench.peek("y"));
+
+		// time-bounded runs and edge runs interleave without losing
+		// queued events
+		for (int i = 0; i < 10; i += 1) {
+			bench.runFor(37);
+		}
+		assertTrue(bench.runUntilEdge("clk", 1));
+		assertEquals(2200, bench.getTime());
+		bench.runFor(100);
+		assertEquals(6, bench.peek("y"));
+	}
+
+	@Test
+	void resetStartsOverAtTimeZero() throws Exception {
+		Testbench bench = new Testbench(counter());
+		bench.runUntilEdge("clk", 5);
+		bench.runFor(100);
+		assertEquals(5, bench.peek("y"));
+		bench.reset();
+		assertEquals(0, bench.getTime());
+		assertEquals(0, bench.peek("y"));
+		assertTrue(bench.runUntilEdge("clk", 1));
+		assertEquals(200, bench.getTime());
+	}
+
+	@Test
+	void theTimeLimitStopsARun() throws Exception {
+		Testbench bench = new Testbench(counter());
+		bench.setTimeLimit(1000);
+		assertTrue(bench.runFor(900));
+		assertFalse(bench.runFor(200), "the run must stop at the limit");
+		assertEquals(1000, bench.getTime());
+		assertFalse(bench.runUntilEdge("clk", 1));
+		assertEquals(1000, bench.getTime());
+	}
+
+	@Test
+	void triStateNetsReadAsHighImpedance() throws Exception {
+		CircuitTextBuilder cb = new CircuitTextBuilder();
+		int d = cb.inputPin("d", 4);
+		int en = cb.inputPin("en", 1);
+		int tri = cb.triState(4);
+		int q = cb.outputPin("q", 4);
+		cb.wire(d, "output", tri, "input");
+		cb.wire(en, "output", tri, "control");
+		cb.wire(tri, "output", q, "input");
+		Testbench bench = new Testbench(load(cb.build()), DelayModel.ZERO);
+		bench.poke("d", 9);
+		bench.runFor(0);
+		assertTrue(bench.isHighImpedance("q"));
+		assertThrows(IllegalStateException.class, () -> bench.peek("q"));
+		bench.poke("en", 1);
+		bench.runFor(1);
+		assertFalse(bench.isHighImpedance("q"));
+		assertEquals(9, bench.peek("q"));
+		assertEquals(BitSet.valueOf(new long[] { 9 }), bench.peekBits("q"));
+
+		bench.poke("en", (BitSet) null);
+		bench.runFor(1);
+		assertTrue(bench.isHighImpedance("en"));
+		assertTrue(bench.isHighImpedance("q"));
+	}
+
+	@Test
+	void probedNetsCanBePeeked() throws Exception {
+		Testbench bench = new Testbench(load("CIRCUIT probe\n"
+				+ "ELEMENT Constant\n int id 0\n int x 60\n int y 60\n"
+				+ " int width 24\n int height 24\n Int value 5\n int base 10\n"
+				+ " String orient \"RIGHT\"\nEND\n"
+				+ "ELEMENT OutputPin\n int id 1\n int x 300\n int y 60\n"
+				+ " int width 48\n int height 24\n String name \"q\"\n"
+				+ " int bits 4\n int watch 0\n String orient \"RIGHT\"\nEND\n"
+				+ "ELEMENT WireEnd\n int id 2\n int x 84\n int y 72\n"
+				+ " int width 8\n int height 8\n String put \"output\"\n"
+				+ " ref attach 0\n ref wire 3\n probe 3 \"mid\"\nEND\n"
+				+ "ELEMENT WireEnd\n int id 3\n int x 300\n int y 72\n"
+				+ " int width 8\n int height 8\n String put \"input\"\n"
+				+ " ref attach 1\n ref wire 2\nEND\n"
+				+ "ENDCIRCUIT\n"));
+		assertEquals(5, bench.peek("mid"));
+		assertEquals(5, bench.peek("q"));
+	}
+
+	@Test
+	void badNamesAndValuesAreRejected() throws Exception {
+		Testbench bench = new Testbench(andGate());
+		assertThrows(IllegalArgumentException.class, () -> bench.poke("y", 1),
+				"an output pin cannot be poked");
+		assertThrows(IllegalArgumentException.class, () -> bench.poke("z", 1));
+		assertThrows(IllegalArgumentException.class, () -> bench.peek("z"));
+		assertThrows(IllegalArgumentException.class, () -> bench.poke("a", 16));
+		assertThrows(IllegalArgumentException.class, () -> bench.poke("a", -9));
+		assertThrows(IllegalArgumentException.class, () -> bench.runFor(-1));
+		bench.poke("a", -8);
+		assertEquals(8, bench.peek("a"), "a signed value is masked to the pin");
+	}
+}
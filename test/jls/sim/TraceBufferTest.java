@@ -0,0 +1,60 @@
+package jls.sim;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The packed trace store behind BatchSimulator.getTraceSamples: any
+ * mix of widths, HiZ samples and time gaps reads back exactly as
+ * recorded, by iteration and by index, across many chunks.
+ */
+class TraceBufferTest {
+
+	@Test
+	void samplesReadBackAsRecorded() {
+		Random random = new Random(37);
+		for (int bits : new int[] { 1, 7, 63, 64, 65, 130 }) {
+			TraceBuffer buffer = new TraceBuffer(bits);
+			List<TraceSample> expected = new ArrayList<TraceSample>();
+			long time = 0;
+			for (int i = 0; i < 40_000; i += 1) {
+				BitSet value;
+				if (random.nextInt(7) == 0) {
+					value = new BitSet(bits + 1);
+					value.set(bits);
+				}
+				else {
+					value = new BitSet(bits);
+					for (int b = 0; b < bits; b += 1) {
+						if (random.nextBoolean()) {
+							value.set(b);
+						}
+					}
+				}
+				buffer.add(time, value);
+				expected.add(new TraceSample(time, value));
+				// mostly small steps, some same-time glitches, a few
+				// gaps far beyond one varint byte
+				int kind = random.nextInt(50);
+				time += kind == 0 ? 0 : kind == 1 ? 1L << 40 : random.nextInt(300);
+			}
+			List<TraceSample> view = buffer.asList();
+			assertEquals(expected, view, bits + " bits, iterated");
+			for (int probe = 0; probe < 500; probe += 1) {
+				int i = random.nextInt(expected.size());
+				assertEquals(expected.get(i), view.get(i), bits + " bits, sample " + i);
+			}
+			assertThrows(IndexOutOfBoundsException.class,
+					() -> view.get(expected.size()));
+			assertThrows(UnsupportedOperationException.class,
+					() -> view.add(expected.get(0)), "the view is read-only");
+		}
+	}
+}
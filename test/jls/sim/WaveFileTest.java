@@ -0,0 +1,195 @@
+package jls.sim;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Scanner;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jls.Circuit;
+import jls.CircuitTextBuilder;
+import jls.JLSInfo;
+import jls.edit.InteractiveSimulator;
+
+/**
+ * The block-compressed waveform file (WaveFile, docs/batch-interface.md
+ * section 4.4): a run written to it converts back to exactly the VCD
+ * the run writes directly, the values at any time are found by
+ * decoding the one block that covers it, and a damaged file is
+ * rejected rather than misread.
+ */
+class WaveFileTest {
+
+	@TempDir
+	Path dir;
+
+	/**
+	 * A free-running 8-bit counter on a clock with a cycle of 40, with
+	 * the count watched on pin y and in its register.
+	 */
+	private static Circuit counter() throws Exception {
+		CircuitTextBuilder cb = new CircuitTextBuilder();
+		cb.counter(40, 0, 1, "y");
+		Circuit circuit = new Circuit("counter");
+		assertTrue(circuit.load(new Scanner(cb.build())),
+				() -> "the circuit must load: " + JLSInfo.loadError);
+		assertTrue(circuit.finishLoad(null),
+				() -> "the circuit must assemble: " + JLSInfo.loadError);
+		return circuit;
+	}
+
+	/** Run the counter to a time limit, writing the named output file. */
+	private BatchSimulator run(String name, long limit) throws Exception {
+		BatchSimulator sim = new BatchSimulator();
+		sim.setCircuit(counter());
+		sim.setTimeLimit(limit);
+		sim.setVcdFile(dir.resolve(name).toString());
+		sim.runSim();
+		sim.writeVcd();
+		return sim;
+	}
+
+	@Test
+	void aRunConvertsToTheVcdItWouldHaveWritten() throws Exception {
+		run("direct.vcd", 400_000);
+		BatchSimulator sim = run("waves.jlsw", 400_000);
+		Path converted = dir.resolve("converted.vcd");
+		WaveFile.toVcd(dir.resolve("waves.jlsw"), converted);
+		byte[] direct = Files.readAllBytes(dir.resolve("direct.vcd"));
+		assertArrayEquals(direct, Files.readAllBytes(converted),
+				"the converted VCD must match the direct one byte for byte");
+		assertEquals(new String(direct, java.nio.charset.StandardCharsets.UTF_8),
+				sim.toVcd(), "toVcd converts a waveform file");
+		long packed = Files.size(dir.resolve("waves.jlsw"));
+		assertTrue(packed * 10 < direct.length,
+				"the waveform file must be much smaller: " + packed + " vs "
+						+ direct.length);
+	}
+
+	@Test
+	void anInteractiveRunRecordsWhatABatchRunWrites() throws Exception {
+		run("batch.vcd", 4000);
+		byte[] direct = Files.readAllBytes(dir.resolve("batch.vcd"));
+		boolean oldBatch = JLSInfo.batch;
+		JLSInfo.batch = true;
+		try {
+			for (String name : List.of("run.jlsw", "run.vcd")) {
+				InteractiveSimulator sim = new InteractiveSimulator();
+				sim.setCircuit(counter());
+				sim.setTimeLimit(4000);
+				sim.setWaveFile(dir.resolve(name).toString());
+				sim.runSim();
+			}
+		} finally {
+			JLSInfo.batch = oldBatch;
+		}
+		Path converted = dir.resolve("converted.vcd");
+		WaveFile.toVcd(dir.resolve("run.jlsw"), converted);
+		assertArrayEquals(direct, Files.readAllBytes(converted),
+				"an interactive run records the same waveform");
+		assertArrayEquals(direct, Files.readAllBytes(dir.resolve("run.vcd")),
+				"as VCD text too");
+	}
+
+	@Test
+	void valuesAtAnyTimeDecodeOneBlock() throws Exception {
+		// a 1-bit toggle, an 8-bit count and a 4-bit bus that is
+		// undriven every third step, with a same-time glitch on the bus
+		List<String> names = List.of("a", "b", "c");
+		int[] bits = { 1, 8, 4 };
+		BitSet hiZ = new BitSet(5);
+		hiZ.set(4);
+		BitSet[] initial = { new BitSet(), new BitSet(), hiZ };
+		Path file = dir.resolve("synthetic.jlsw");
+		Path direct = dir.resolve("synthetic.vcd");
+		int steps = 5000;
+		BitSet[][] expected = new BitSet[steps][];
+		try (FileChannel waveOut = open(file);
+				FileChannel vcdOut = open(direct)) {
+			WaveFile.Writer wave = new WaveFile.Writer(waveOut, "synthetic",
+					names, bits, initial, 256);
+			VcdWriter vcd = new VcdWriter(vcdOut, "synthetic", names, bits,
+					initial);
+			BitSet[] now = initial.clone();
+			for (int step = 1; step < steps; step += 1) {
+				long time = 10L * step;
+				BitSet[] changes = {
+					BitSet.valueOf(new long[] { step & 1 }),
+					BitSet.valueOf(new long[] { step & 0xff }),
+					step % 3 == 0 ? hiZ : BitSet.valueOf(new long[] { step & 0xf }),
+				};
+				for (int s = 0; s < changes.length; s += 1) {
+					if (s == 2 && step % 5 == 0) {
+						BitSet glitch = BitSet.valueOf(new long[] { 0xf });
+						wave.change(s, time, glitch);
+						vcd.change(s, time, glitch);
+					}
+					wave.change(s, time, changes[s]);
+					vcd.change(s, time, changes[s]);
+					now[s] = changes[s];
+				}
+				expected[step] = now.clone();
+			}
+			expected[0] = initial;
+			wave.finish(10L * steps + 3);
+			vcd.finish(10L * steps + 3);
+		}
+
+		try (WaveFile wave = WaveFile.open(file)) {
+			assertEquals(names, wave.getSignalNames());
+			assertEquals(10L * steps + 3, wave.getEndTime());
+			assertTrue(wave.getBlockCount() > 50,
+					"the changes must span many blocks: " + wave.getBlockCount());
+			for (long time : new long[] { 0, 5, 10, 15, 12_345, 20_000,
+					30_005, 10L * steps - 10, 10L * steps + 3 }) {
+				int step = (int) Math.min(time / 10, steps - 1);
+				assertArrayEquals(expected[step], wave.valuesAt(time),
+						"values at " + time);
+			}
+		}
+		Path converted = dir.resolve("converted.vcd");
+		WaveFile.toVcd(file, converted);
+		assertArrayEquals(Files.readAllBytes(direct),
+				Files.readAllBytes(converted),
+				"every block must replay into the VCD in time order");
+	}
+
+	@Test
+	void aDamagedFileIsRejected() throws Exception {
+		run("waves.jlsw", 4000);
+		byte[] bytes = Files.readAllBytes(dir.resolve("waves.jlsw"));
+		Path bad = dir.resolve("bad.jlsw");
+
+		Files.write(bad, Arrays.copyOf(bytes, bytes.length - 1));
+		assertThrows(IOException.class, () -> WaveFile.open(bad).close(),
+				"a truncated file");
+		byte[] magic = bytes.clone();
+		magic[3] = 'X';
+		Files.write(bad, magic);
+		assertThrows(IOException.class, () -> WaveFile.open(bad).close(),
+				"a file that is not a waveform file");
+		byte[] block = bytes.clone();
+		block[bytes.length / 2] ^= 0x55;
+		Files.write(bad, block);
+		assertThrows(IOException.class,
+				() -> WaveFile.toVcd(bad, dir.resolve("bad.vcd")),
+				"a damaged block");
+	}
+
+	private static FileChannel open(Path file) throws IOException {
+		return FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+	}
+}